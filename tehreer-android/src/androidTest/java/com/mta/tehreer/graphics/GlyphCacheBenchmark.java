@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mta.tehreer.collections.FloatList;
+import com.mta.tehreer.collections.IntList;
+import com.mta.tehreer.collections.PointList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlyphCacheBenchmark {
+    private static final String TAG = GlyphCacheBenchmark.class.getSimpleName();
+
+    private static final String PARAGRAPH = "The quick brown fox jumps over the lazy dog. "
+            + "Pack my box with five dozen liquor jugs. How vexingly quick daft zebras jump! "
+            + "Sphinx of black quartz, judge my vow. The five boxing wizards jump quickly. ";
+    private static final int REPEAT_COUNT = 8;
+    private static final int ITERATIONS = 20;
+
+    private Typeface typeface;
+    private Renderer renderer;
+    private Canvas canvas;
+    private IntList glyphIds;
+    private PointList offsets;
+    private FloatList advances;
+
+    @Before
+    public void setUp() {
+        typeface = new Typeface(InstrumentationRegistry.getInstrumentation().getContext().getAssets(),
+                                "NafeesWeb.ttf");
+        renderer = new Renderer();
+        renderer.setTypeface(typeface);
+        renderer.setTypeSize(24.0f);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < REPEAT_COUNT; i++) {
+            text.append(PARAGRAPH);
+        }
+
+        int length = text.length();
+        int[] ids = new int[length];
+        float[] widths = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            ids[i] = typeface.getGlyphId(text.charAt(i));
+            widths[i] = typeface.getGlyphAdvance(ids[i], 24.0f, false);
+        }
+
+        glyphIds = IntList.of(ids);
+        offsets = PointList.of(new float[length * 2]);
+        advances = FloatList.of(widths);
+
+        Bitmap bitmap = Bitmap.createBitmap(1024, 64, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+    }
+
+    @After
+    public void tearDown() {
+        GlyphCache.getInstance().clear();
+    }
+
+    private long drawRunWise(boolean cold) {
+        long totalTime = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (cold) {
+                GlyphCache.getInstance().clear();
+            }
+
+            long startTime = System.nanoTime();
+            renderer.drawGlyphs(canvas, glyphIds, offsets, advances);
+            totalTime += System.nanoTime() - startTime;
+        }
+
+        return totalTime / ITERATIONS;
+    }
+
+    private long drawGlyphWise(boolean cold) {
+        GlyphCache cache = GlyphCache.getInstance();
+        GlyphStrike strike = new GlyphStrike();
+        strike.typeface = typeface;
+        strike.pixelWidth = (int) (24.0f * 64.0f + 0.5f);
+        strike.pixelHeight = strike.pixelWidth;
+
+        long totalTime = 0;
+        int size = glyphIds.size();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (cold) {
+                cache.clear();
+            }
+
+            long startTime = System.nanoTime();
+            for (int j = 0; j < size; j++) {
+                cache.getMaskGlyph(strike, glyphIds.get(j));
+            }
+            totalTime += System.nanoTime() - startTime;
+        }
+
+        return totalTime / ITERATIONS;
+    }
+
+    @Test
+    public void benchmarkColdDraws() {
+        long glyphWiseTime = drawGlyphWise(true);
+        long runWiseTime = drawRunWise(true);
+
+        Log.i(TAG, "Cold draw of " + glyphIds.size() + " glyphs: per glyph fetch = "
+                   + (glyphWiseTime / 1000) + " us, per run fetch and draw = "
+                   + (runWiseTime / 1000) + " us");
+    }
+
+    @Test
+    public void benchmarkWarmDraws() {
+        drawRunWise(false);
+
+        long glyphWiseTime = drawGlyphWise(false);
+        long runWiseTime = drawRunWise(false);
+
+        Log.i(TAG, "Warm draw of " + glyphIds.size() + " glyphs: per glyph fetch = "
+                   + (glyphWiseTime / 1000) + " us, per run fetch and draw = "
+                   + (runWiseTime / 1000) + " us");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mta.tehreer.internal.TestJNI;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertTrue;
+
+public class GlyphRasterizerStressTest {
+    static {
+        TestJNI.loadLibrary();
+    }
+
+    private static final String TAG = GlyphRasterizerStressTest.class.getSimpleName();
+    private static final int GLYPH_COUNT = 2000;
+
+    private Typeface typeface;
+
+    @Before
+    public void setUp() throws IOException {
+        // Isolated faces need a font file which is not read through a shared stream.
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        File file = new File(context.getCacheDir(), "NafeesWeb.ttf");
+
+        InputStream input = context.getAssets().open("NafeesWeb.ttf");
+        OutputStream output = new FileOutputStream(file);
+        byte[] buffer = new byte[8192];
+        int length;
+
+        try {
+            while ((length = input.read(buffer)) > 0) {
+                output.write(buffer, 0, length);
+            }
+        } finally {
+            input.close();
+            output.close();
+        }
+
+        typeface = new Typeface(file);
+    }
+
+    private float measureSpeedup(int threadCount, boolean isolated) {
+        long singleTime = nRasterize(typeface.nativeTypeface, 1, GLYPH_COUNT, isolated);
+        long multipleTime = nRasterize(typeface.nativeTypeface, threadCount, GLYPH_COUNT, isolated);
+
+        // Every thread does the same work, so the ideal time does not depend on thread count.
+        return (singleTime * threadCount) / (float) multipleTime;
+    }
+
+    @Test
+    public void testIsolatedRasterizationScales() {
+        int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        float sharedSpeedup = measureSpeedup(threadCount, false);
+        float isolatedSpeedup = measureSpeedup(threadCount, true);
+
+        Log.i(TAG, "Speedup on " + threadCount + " threads: shared face = " + sharedSpeedup
+                   + ", isolated faces = " + isolatedSpeedup);
+
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertTrue(isolatedSpeedup > sharedSpeedup);
+        }
+    }
+
+    private static native long nRasterize(long nativeTypeface, int threadCount, int glyphCount, boolean isolated);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.graphics;
+
+import com.mta.tehreer.internal.TestJNI;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class PixelCompositorTest {
+    static {
+        TestJNI.loadLibrary();
+    }
+
+    private static final int WIDTH = 6;
+    private static final int HEIGHT = 4;
+
+    // A mask of four by two pixels, fully covered on the left half and half covered on the right.
+    private static final byte[] MASK = {
+        (byte) 255, (byte) 255, (byte) 128, (byte) 128,
+        (byte) 255, (byte) 255, (byte) 128, (byte) 128
+    };
+
+    private static int[] placeMask(int left, int top) {
+        return new int[] { 4, 2, left, top };
+    }
+
+    private static int alphaAt(PixelBuffer buffer, int x, int y) {
+        return buffer.getBuffer().get(y * buffer.getRowBytes() + x) & 0xFF;
+    }
+
+    private static int channelAt(PixelBuffer buffer, int x, int y, int channel) {
+        return buffer.getBuffer().get(y * buffer.getRowBytes() + x * 4 + channel) & 0xFF;
+    }
+
+    @Test
+    public void testCoverageIntoAlphaBuffer() {
+        PixelBuffer buffer = new PixelBuffer(ByteBuffer.allocateDirect(WIDTH * HEIGHT),
+                                             WIDTH, HEIGHT, WIDTH, PixelBuffer.Format.ALPHA_8);
+
+        PixelCompositor.compositeMasks(buffer, new byte[][] { MASK }, placeMask(1, 1), 1, 0xFF000000);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int expected = 0;
+                if (y >= 1 && y < 3 && x >= 1 && x < 5) {
+                    expected = (x < 3 ? 255 : 128);
+                }
+
+                assertEquals("pixel (" + x + ", " + y + ")", expected, alphaAt(buffer, x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testCoverageAccumulatesInAlphaBuffer() {
+        PixelBuffer buffer = new PixelBuffer(ByteBuffer.allocateDirect(WIDTH * HEIGHT),
+                                             WIDTH, HEIGHT, WIDTH, PixelBuffer.Format.ALPHA_8);
+        int[] placements = new int[PixelCompositor.PLACEMENT_SIZE * 2];
+        System.arraycopy(placeMask(0, 0), 0, placements, 0, 4);
+        System.arraycopy(placeMask(0, 0), 0, placements, 4, 4);
+
+        PixelCompositor.compositeMasks(buffer, new byte[][] { MASK, MASK }, placements, 2, 0xFF000000);
+
+        // Half coverage over half coverage leaves a quarter uncovered.
+        assertEquals(255, alphaAt(buffer, 0, 0));
+        assertEquals(192, alphaAt(buffer, 2, 0));
+        assertEquals(192, alphaAt(buffer, 3, 1));
+    }
+
+    @Test
+    public void testColorIntoArgbBuffer() {
+        PixelBuffer buffer = new PixelBuffer(ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4),
+                                             WIDTH, HEIGHT, WIDTH * 4, PixelBuffer.Format.ARGB_8888);
+
+        PixelCompositor.compositeMasks(buffer, new byte[][] { MASK }, placeMask(0, 0), 1, 0xFF0000FF);
+
+        // The pixels are premultiplied in the order of red, green, blue and alpha.
+        assertEquals(0, channelAt(buffer, 0, 0, 0));
+        assertEquals(0, channelAt(buffer, 0, 0, 1));
+        assertEquals(255, channelAt(buffer, 0, 0, 2));
+        assertEquals(255, channelAt(buffer, 0, 0, 3));
+
+        assertEquals(0, channelAt(buffer, 2, 1, 0));
+        assertEquals(0, channelAt(buffer, 2, 1, 1));
+        assertEquals(128, channelAt(buffer, 2, 1, 2));
+        assertEquals(128, channelAt(buffer, 2, 1, 3));
+
+        assertEquals(0, channelAt(buffer, 4, 0, 3));
+        assertEquals(0, channelAt(buffer, 0, 2, 3));
+    }
+
+    @Test
+    public void testMaskIsClipped() {
+        PixelBuffer buffer = new PixelBuffer(ByteBuffer.allocateDirect(WIDTH * HEIGHT),
+                                             WIDTH, HEIGHT, WIDTH, PixelBuffer.Format.ALPHA_8);
+        buffer.clipRect(2, 0, WIDTH, 2);
+
+        PixelCompositor.compositeMasks(buffer, new byte[][] { MASK }, placeMask(1, 1), 1, 0xFF000000);
+
+        assertEquals(0, alphaAt(buffer, 1, 1));
+        assertEquals(255, alphaAt(buffer, 2, 1));
+        assertEquals(128, alphaAt(buffer, 4, 1));
+        assertEquals(0, alphaAt(buffer, 2, 2));
+    }
+
+    @Test
+    public void testMaskPartlyOutsideBuffer() {
+        PixelBuffer buffer = new PixelBuffer(ByteBuffer.allocateDirect(WIDTH * HEIGHT),
+                                             WIDTH, HEIGHT, WIDTH, PixelBuffer.Format.ALPHA_8);
+
+        PixelCompositor.compositeMasks(buffer, new byte[][] { MASK }, placeMask(-2, 3), 1, 0xFF000000);
+
+        assertEquals(128, alphaAt(buffer, 0, 3));
+        assertEquals(128, alphaAt(buffer, 1, 3));
+        assertEquals(0, alphaAt(buffer, 2, 3));
+        assertEquals(0, alphaAt(buffer, 0, 2));
+    }
+}
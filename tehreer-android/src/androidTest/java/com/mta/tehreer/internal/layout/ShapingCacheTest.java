@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.internal.layout;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mta.tehreer.graphics.Typeface;
+import com.mta.tehreer.internal.TestJNI;
+import com.mta.tehreer.sfnt.SfntTag;
+import com.mta.tehreer.sfnt.ShapingEngine;
+import com.mta.tehreer.sfnt.ShapingOrder;
+import com.mta.tehreer.sfnt.ShapingResult;
+import com.mta.tehreer.sfnt.WritingDirection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ShapingCacheTest {
+    static {
+        TestJNI.loadLibrary();
+    }
+
+    private static final float TYPE_SIZE = 16.0f;
+    private static final float DELTA = 0.001f;
+
+    private static final String LATIN_TEXT = "the quick brown fox   jumps over the lazy dog";
+    private static final String ARABIC_TEXT = "بسم الله الرحمن الرحيم الحمد لله رب العالمين";
+
+    private ShapingCache cache;
+    private Typeface typeface;
+    private ShapingEngine engine;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+
+        cache = ShapingCache.getInstance();
+        cache.setEnabled(true);
+        typeface = new Typeface(context.getAssets(), "NafeesWeb.ttf");
+        engine = new ShapingEngine();
+        engine.setTypeface(typeface);
+        engine.setTypeSize(TYPE_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        cache.setEnabled(false);
+        engine.dispose();
+    }
+
+    private ShapingCache.ShapedText shapeCached(String text, int scriptTag,
+                                                WritingDirection writingDirection,
+                                                ShapingOrder shapingOrder) {
+        ShapingCache.Request request = new ShapingCache.Request(0, text.length(), typeface,
+                                                                TYPE_SIZE, scriptTag,
+                                                                writingDirection, shapingOrder, null);
+        cache.shapeRequests(engine, text, Collections.singletonList(request));
+
+        return request.getShapedText();
+    }
+
+    private ShapingCache.ShapedText shapeWhole(String text, int scriptTag,
+                                               WritingDirection writingDirection,
+                                               ShapingOrder shapingOrder) {
+        engine.setScriptTag(scriptTag);
+        engine.setWritingDirection(writingDirection);
+        engine.setShapingOrder(shapingOrder);
+
+        ShapingResult result = engine.shapeText(text, 0, text.length());
+        try {
+            ShapingCache.ShapedText shapedText = new ShapingCache.ShapedText(
+                    result.isBackward(), result.getGlyphCount(), text.length());
+            result.exportTo(shapedText.glyphIds, shapedText.glyphOffsets, shapedText.glyphAdvances,
+                            shapedText.clusterMap, shapedText.caretEdges);
+
+            return shapedText;
+        } finally {
+            result.dispose();
+        }
+    }
+
+    private void assertSameShaping(String text, int scriptTag,
+                                   WritingDirection writingDirection, ShapingOrder shapingOrder) {
+        ShapingCache.ShapedText expected = shapeWhole(text, scriptTag, writingDirection, shapingOrder);
+
+        // The first pass shapes the words, and the second one joins them from the cache.
+        for (int pass = 0; pass < 2; pass++) {
+            ShapingCache.ShapedText actual = shapeCached(text, scriptTag, writingDirection, shapingOrder);
+
+            assertEquals(expected.isBackward, actual.isBackward);
+            assertArrayEquals(expected.glyphIds, actual.glyphIds);
+            assertArrayEquals(expected.glyphOffsets, actual.glyphOffsets, DELTA);
+            assertArrayEquals(expected.glyphAdvances, actual.glyphAdvances, DELTA);
+            assertArrayEquals(expected.clusterMap, actual.clusterMap);
+            assertArrayEquals(expected.caretEdges, actual.caretEdges, DELTA);
+        }
+    }
+
+    @Test
+    public void testLeftToRightWords() {
+        assertSameShaping(LATIN_TEXT, SfntTag.make("latn"),
+                          WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+    }
+
+    @Test
+    public void testRightToLeftWords() {
+        assertSameShaping(ARABIC_TEXT, SfntTag.make("arab"),
+                          WritingDirection.RIGHT_TO_LEFT, ShapingOrder.FORWARD);
+    }
+
+    @Test
+    public void testBackwardWords() {
+        assertSameShaping(ARABIC_TEXT, SfntTag.make("arab"),
+                          WritingDirection.RIGHT_TO_LEFT, ShapingOrder.BACKWARD);
+        assertSameShaping(LATIN_TEXT, SfntTag.make("latn"),
+                          WritingDirection.LEFT_TO_RIGHT, ShapingOrder.BACKWARD);
+    }
+
+    @Test
+    public void testUncachedPieces() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            builder.append("abcdefghij");
+        }
+        String text = "short " + builder + " words";
+
+        assertSameShaping(text, SfntTag.make("latn"),
+                          WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+
+        cache.setEnabled(false);
+        assertSameShaping(text, SfntTag.make("latn"),
+                          WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+    }
+
+    @Test
+    public void testHitAndMissCounts() {
+        int scriptTag = SfntTag.make("latn");
+        String text = "alpha beta alpha gamma";
+
+        long hitCount = cache.hitCount();
+        long missCount = cache.missCount();
+
+        // The repeated word is shaped once, yet counted as a miss as the cache did not serve it.
+        shapeCached(text, scriptTag, WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+        assertEquals(hitCount, cache.hitCount());
+        assertEquals(missCount + 4, cache.missCount());
+
+        shapeCached(text, scriptTag, WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+        assertEquals(hitCount + 4, cache.hitCount());
+        assertEquals(missCount + 4, cache.missCount());
+        assertEquals(3, cache.count());
+    }
+
+    @Test
+    public void testDisabledCacheCountsNothing() {
+        cache.setEnabled(false);
+
+        long hitCount = cache.hitCount();
+        long missCount = cache.missCount();
+
+        shapeCached("alpha beta alpha", SfntTag.make("latn"),
+                    WritingDirection.LEFT_TO_RIGHT, ShapingOrder.FORWARD);
+
+        assertEquals(hitCount, cache.hitCount());
+        assertEquals(missCount, cache.missCount());
+        assertEquals(0, cache.count());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.internal.util;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LruCacheBenchmark {
+    private static final String TAG = LruCacheBenchmark.class.getSimpleName();
+
+    private static final int KEY_COUNT = 1024;
+    private static final int ITERATIONS = 200000;
+
+    private static class TestCache extends LruCache {
+        TestCache(int capacity) {
+            super(capacity);
+        }
+    }
+
+    private static class TestSegment extends LruCache.Segment<Integer, String> {
+        TestSegment(LruCache cache) {
+            super(cache);
+        }
+    }
+
+    private interface Lookup {
+        String get(TestSegment segment, Integer key);
+    }
+
+    private static long measureHits(final TestSegment segment, final Lookup lookup,
+                                    int threadCount) throws Exception {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            Integer key = i & (KEY_COUNT - 1);
+                            if (lookup.get(segment, key) == null) {
+                                throw new AssertionError("Cache hit expected for key: " + key);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        long startTime = System.nanoTime();
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedTime = System.nanoTime() - startTime;
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        return elapsedTime;
+    }
+
+    @Test
+    public void benchmarkContendedHits() throws Exception {
+        final TestCache cache = new TestCache(1 << 20);
+        final TestSegment segment = new TestSegment(cache);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            segment.put(i, "value");
+        }
+
+        // Baseline: every lookup serializes on the cache monitor, as the previous design did.
+        Lookup lockedLookup = new Lookup() {
+            @Override
+            public String get(TestSegment segment, Integer key) {
+                synchronized (cache) {
+                    return segment.get(key);
+                }
+            }
+        };
+        Lookup lockFreeLookup = new Lookup() {
+            @Override
+            public String get(TestSegment segment, Integer key) {
+                return segment.get(key);
+            }
+        };
+
+        int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        // Warm up both paths before measuring them.
+        measureHits(segment, lockedLookup, threadCount);
+        measureHits(segment, lockFreeLookup, threadCount);
+
+        long lockedTime = measureHits(segment, lockedLookup, threadCount);
+        long lockFreeTime = measureHits(segment, lockFreeLookup, threadCount);
+
+        Log.i(TAG, "Contended hits on " + threadCount + " threads: monitor = "
+                   + (lockedTime / 1000) + " us, lock free = "
+                   + (lockFreeTime / 1000) + " us");
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.layout;
+
+import android.content.Context;
+import android.text.SpannableString;
+import android.text.Spanned;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.mta.tehreer.graphics.Typeface;
+import com.mta.tehreer.internal.TestJNI;
+import com.mta.tehreer.internal.layout.IntrinsicRun;
+import com.mta.tehreer.internal.layout.ParagraphCollection;
+import com.mta.tehreer.internal.layout.RunCollection;
+import com.mta.tehreer.layout.style.TypeSizeSpan;
+import com.mta.tehreer.layout.style.TypefaceSpan;
+import com.mta.tehreer.unicode.BidiParagraph;
+import com.mta.tehreer.unicode.BidiRun;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TypesetterConcurrencyTest {
+    static {
+        TestJNI.loadLibrary();
+    }
+
+    private static final String[] PARAGRAPHS = {
+        "The quick brown fox jumps over the lazy dog, 1234 times.",
+        "بسم الله الرحمن الرحيم، الحمد لله رب العالمين.",
+        "Mixed text: السلام عليكم and then back to English (with 42 brackets).",
+        "اردو میں لکھا ہوا متن English words کے ساتھ۔",
+    };
+
+    private ExecutorService executor;
+    private Typeface typeface;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+
+        executor = Executors.newFixedThreadPool(4);
+        typeface = new Typeface(context.getAssets(), "NafeesWeb.ttf");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Spanned createText(int paragraphCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < paragraphCount; i++) {
+            builder.append(PARAGRAPHS[i % PARAGRAPHS.length]);
+            builder.append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+
+        SpannableString spanned = new SpannableString(builder);
+        spanned.setSpan(new TypefaceSpan(typeface), 0, spanned.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+        spanned.setSpan(new TypeSizeSpan(16.0f), 0, spanned.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+
+        return spanned;
+    }
+
+    private static List<BidiRun> getRuns(BidiParagraph paragraph) {
+        List<BidiRun> runs = new ArrayList<>();
+        for (BidiRun run : paragraph.getLogicalRuns()) {
+            runs.add(run);
+        }
+
+        return runs;
+    }
+
+    private static void assertSameParagraphs(ParagraphCollection expected, ParagraphCollection actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            BidiParagraph expectedParagraph = expected.get(i);
+            BidiParagraph actualParagraph = actual.get(i);
+
+            assertEquals(expectedParagraph.getCharStart(), actualParagraph.getCharStart());
+            assertEquals(expectedParagraph.getCharEnd(), actualParagraph.getCharEnd());
+            assertEquals(expectedParagraph.getBaseLevel(), actualParagraph.getBaseLevel());
+
+            List<BidiRun> expectedRuns = getRuns(expectedParagraph);
+            List<BidiRun> actualRuns = getRuns(actualParagraph);
+            assertEquals(expectedRuns.size(), actualRuns.size());
+
+            for (int j = 0; j < expectedRuns.size(); j++) {
+                assertEquals(expectedRuns.get(j).charStart, actualRuns.get(j).charStart);
+                assertEquals(expectedRuns.get(j).charEnd, actualRuns.get(j).charEnd);
+                assertEquals(expectedRuns.get(j).embeddingLevel, actualRuns.get(j).embeddingLevel);
+            }
+        }
+    }
+
+    private static void assertSameRuns(RunCollection expected, RunCollection actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            IntrinsicRun expectedRun = expected.get(i);
+            IntrinsicRun actualRun = actual.get(i);
+
+            assertEquals(expectedRun.charStart, actualRun.charStart);
+            assertEquals(expectedRun.charEnd, actualRun.charEnd);
+            assertEquals(expectedRun.isBackward, actualRun.isBackward);
+            assertEquals(expectedRun.bidiLevel, actualRun.bidiLevel);
+            assertEquals(expectedRun.writingDirection, actualRun.writingDirection);
+            assertSame(expectedRun.typeface, actualRun.typeface);
+            assertEquals(expectedRun.typeSize, actualRun.typeSize, 0.0f);
+            assertArrayEquals(expectedRun.glyphIds, actualRun.glyphIds);
+            assertArrayEquals(expectedRun.glyphOffsets, actualRun.glyphOffsets, 0.0f);
+            assertArrayEquals(expectedRun.glyphAdvances, actualRun.glyphAdvances, 0.0f);
+            assertArrayEquals(expectedRun.clusterMap, actualRun.clusterMap);
+            assertArrayEquals(expectedRun.caretEdges.toArray(), actualRun.caretEdges.toArray(), 0.0f);
+        }
+    }
+
+    private void assertSameTypesetting(int paragraphCount) {
+        Spanned spanned = createText(paragraphCount);
+        Typesetter sequential = new Typesetter(spanned, null);
+        Typesetter concurrent = new Typesetter(spanned, null, executor);
+
+        assertSameParagraphs(sequential.getParagraphs(), concurrent.getParagraphs());
+        assertSameRuns(sequential.getRuns(), concurrent.getRuns());
+        assertArrayEquals(sequential.getBreaks(), concurrent.getBreaks());
+    }
+
+    @Test
+    public void testShortText() {
+        assertSameTypesetting(3);
+    }
+
+    @Test
+    public void testManyParagraphs() {
+        // Long enough to be split into many chunks on any device.
+        assertSameTypesetting(2000);
+    }
+
+    @Test
+    public void testRepeatedTypesetting() {
+        for (int i = 0; i < 20; i++) {
+            assertSameTypesetting(400);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+extern "C" {
+#include <ft2build.h>
+#include FT_FREETYPE_H
+#include FT_GLYPH_H
+}
+
+#include <chrono>
+#include <jni.h>
+#include <thread>
+#include <vector>
+
+#include "GlyphRasterizer.h"
+#include "JavaBridge.h"
+#include "Typeface.h"
+#include "RasterizerStress.h"
+
+using namespace Tehreer;
+
+static jlong rasterize(JNIEnv *env, jobject obj, jlong typefaceHandle,
+    jint threadCount, jint glyphCount, jboolean isolated)
+{
+    Typeface *typeface = reinterpret_cast<Typeface *>(typefaceHandle);
+    FT_Matrix transform = {
+        0x10000, 0,
+        0, 0x10000
+    };
+    FT_Vector delta = { 0, 0 };
+    FT_UInt numGlyphs = static_cast<FT_UInt>(typeface->glyphCount());
+
+    /* Every thread gets a separate strike of the same size so that the work is identical. */
+    std::vector<GlyphRasterizer *> rasterizers;
+    for (jint i = 0; i < threadCount; i++) {
+        rasterizers.push_back(new GlyphRasterizer(*typeface, 24 * 64, 24 * 64, transform, delta, isolated));
+    }
+
+    auto startTime = std::chrono::steady_clock::now();
+
+    std::vector<std::thread> threads;
+    for (jint i = 0; i < threadCount; i++) {
+        GlyphRasterizer *rasterizer = rasterizers[i];
+
+        threads.emplace_back([rasterizer, glyphCount, numGlyphs]() {
+            for (jint j = 0; j < glyphCount; j++) {
+                FT_Glyph maskGlyph = rasterizer->loadMaskGlyph(static_cast<FT_UInt>(j) % numGlyphs);
+                if (maskGlyph) {
+                    FT_Done_Glyph(maskGlyph);
+                }
+            }
+        });
+    }
+    for (auto &thread : threads) {
+        thread.join();
+    }
+
+    auto elapsedTime = std::chrono::steady_clock::now() - startTime;
+
+    for (auto rasterizer : rasterizers) {
+        delete rasterizer;
+    }
+
+    return static_cast<jlong>(std::chrono::duration_cast<std::chrono::nanoseconds>(elapsedTime).count());
+}
+
+static JNINativeMethod JNI_METHODS[] = {
+    { "nRasterize", "(JIIZ)J", (void *)rasterize },
+};
+
+jint register_com_mta_tehreer_graphics_GlyphRasterizerStressTest(JNIEnv *env)
+{
+    return JavaBridge::registerClass(env, "com/mta/tehreer/graphics/GlyphRasterizerStressTest", JNI_METHODS, sizeof(JNI_METHODS) / sizeof(JNI_METHODS[0]));
+}
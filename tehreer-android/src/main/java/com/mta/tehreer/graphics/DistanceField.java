@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Converts 8-bit glyph masks into signed distance fields on the CPU.
+ * <p>
+ * Each field value encodes the distance of a pixel from the edge of the glyph, so that the glyph
+ * can be drawn at any size by scaling the field and applying a threshold at its middle value. The
+ * distances are computed with the exact Euclidean distance transform of Felzenszwalb and
+ * Huttenlocher, seeded with the coverage of the edge pixels for a sub-pixel accurate edge.
+ */
+final class DistanceField {
+    /**
+     * The size in pixels at which the fields are rasterized.
+     */
+    static final int REFERENCE_SIZE = 64;
+    /**
+     * The distance in pixels covered by the field on either side of the edge, which is also the
+     * padding added around each mask.
+     */
+    static final int SPREAD = 8;
+
+    private static final double INFINITY = 1e20;
+
+    private DistanceField() {
+    }
+
+    static @NonNull Bitmap createBitmap(@NonNull Bitmap mask, int spread) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int[] colors = new int[Math.max(width * height,
+                                        (width + spread * 2) * (height + spread * 2))];
+
+        mask.getPixels(colors, 0, width, 0, 0, width, height);
+
+        byte[] coverage = new byte[width * height];
+        for (int i = 0; i < coverage.length; i++) {
+            coverage[i] = (byte) (colors[i] >>> 24);
+        }
+
+        int fieldWidth = width + spread * 2;
+        int fieldHeight = height + spread * 2;
+        byte[] field = generate(coverage, width, height, spread);
+
+        for (int i = 0; i < field.length; i++) {
+            colors[i] = (field[i] & 0xFF) << 24;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(fieldWidth, fieldHeight, Bitmap.Config.ALPHA_8);
+        bitmap.setPixels(colors, 0, fieldWidth, 0, 0, fieldWidth, fieldHeight);
+
+        return bitmap;
+    }
+
+    /**
+     * Generates the distance field of a mask. The field is larger than the mask by the spread on
+     * each side. A value of 255 lies at least the spread inside the glyph, a value of 0 at least
+     * the spread outside of it, and the edge falls at the middle.
+     */
+    static @NonNull byte[] generate(@NonNull byte[] mask, int width, int height, int spread) {
+        int fieldWidth = width + spread * 2;
+        int fieldHeight = height + spread * 2;
+        int fieldSize = fieldWidth * fieldHeight;
+
+        // Squared distances to the nearest pixel inside and outside of the glyph respectively.
+        double[] outer = new double[fieldSize];
+        double[] inner = new double[fieldSize];
+        Arrays.fill(outer, INFINITY);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double alpha = (mask[y * width + x] & 0xFF) / 255.0;
+                int index = (y + spread) * fieldWidth + (x + spread);
+
+                if (alpha == 1.0) {
+                    outer[index] = 0.0;
+                    inner[index] = INFINITY;
+                } else if (alpha > 0.0) {
+                    double distance = 0.5 - alpha;
+                    outer[index] = (distance > 0.0 ? distance * distance : 0.0);
+                    inner[index] = (distance < 0.0 ? distance * distance : 0.0);
+                }
+            }
+        }
+
+        int length = Math.max(fieldWidth, fieldHeight);
+        double[] values = new double[length];
+        double[] bounds = new double[length + 1];
+        int[] parabolas = new int[length];
+
+        transform(outer, fieldWidth, fieldHeight, values, bounds, parabolas);
+        transform(inner, fieldWidth, fieldHeight, values, bounds, parabolas);
+
+        byte[] field = new byte[fieldSize];
+        double unit = 127.5 / spread;
+
+        for (int i = 0; i < fieldSize; i++) {
+            double distance = Math.sqrt(outer[i]) - Math.sqrt(inner[i]);
+            long value = Math.round(127.5 - distance * unit);
+            field[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+
+        return field;
+    }
+
+    private static void transform(@NonNull double[] grid, int width, int height,
+                                  @NonNull double[] values, @NonNull double[] bounds,
+                                  @NonNull int[] parabolas) {
+        for (int x = 0; x < width; x++) {
+            transform(grid, x, width, height, values, bounds, parabolas);
+        }
+        for (int y = 0; y < height; y++) {
+            transform(grid, y * width, 1, width, values, bounds, parabolas);
+        }
+    }
+
+    private static void transform(@NonNull double[] grid, int offset, int stride, int length,
+                                  @NonNull double[] values, @NonNull double[] bounds,
+                                  @NonNull int[] parabolas) {
+        for (int q = 0; q < length; q++) {
+            values[q] = grid[offset + q * stride];
+        }
+
+        // Build the lower envelope of the parabolas rooted at each sample.
+        int k = 0;
+        parabolas[0] = 0;
+        bounds[0] = -INFINITY;
+        bounds[1] = INFINITY;
+
+        for (int q = 1; q < length; q++) {
+            double s = intersection(values, q, parabolas[k]);
+            while (s <= bounds[k]) {
+                k--;
+                s = intersection(values, q, parabolas[k]);
+            }
+
+            k++;
+            parabolas[k] = q;
+            bounds[k] = s;
+            bounds[k + 1] = INFINITY;
+        }
+
+        k = 0;
+        for (int q = 0; q < length; q++) {
+            while (bounds[k + 1] < q) {
+                k++;
+            }
+
+            int r = parabolas[k];
+            grid[offset + q * stride] = values[r] + (q - r) * (q - r);
+        }
+    }
+
+    private static double intersection(@NonNull double[] values, int q, int r) {
+        return ((values[q] + q * q) - (values[r] + r * r)) / (2 * q - 2 * r);
+    }
+}
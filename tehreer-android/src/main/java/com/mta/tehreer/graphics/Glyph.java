@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,9 +17,9 @@
 package com.mta.tehreer.graphics;
 
 import android.graphics.Bitmap;
-import android.graphics.Path;
 
 import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.mta.tehreer.internal.JniBridge;
@@ -32,11 +32,22 @@ class Glyph {
     @Keep
     private final int glyphId;
     @Keep
-    private long nativeOutline;
+    private volatile long nativeOutline;
     private int mLeftSideBearing;
     private int mTopSideBearing;
     private @Nullable Bitmap mBitmap;
-    private @Nullable Path mPath;
+    private @Nullable GlyphAtlas.Page mAtlasPage;
+    @Keep
+    private int mBitmapX;
+    @Keep
+    private int mBitmapY;
+    private int mMaskWidth;
+    private int mMaskHeight;
+    private volatile boolean mBitmapLoaded;
+    private @Nullable byte[] mCoverage;
+    private volatile @Nullable GlyphPath mPath;
+    private int mOutlineSize;
+    private int mPathSize;
 
     public Glyph(int glyphId) {
         this.glyphId = glyphId;
@@ -55,48 +66,129 @@ class Glyph {
     }
 
     public int rightSideBearing() {
-        return mLeftSideBearing + (mBitmap != null ? mBitmap.getWidth() : 0);
+        return mLeftSideBearing + mMaskWidth;
     }
 
     public int bottomSideBearing() {
-        return mTopSideBearing + (mBitmap != null ? mBitmap.getHeight() : 0);
+        return mTopSideBearing + mMaskHeight;
     }
 
     public @Nullable Bitmap bitmap() {
         return mBitmap;
     }
 
-    public @Nullable Path path() {
+    public @Nullable GlyphAtlas.Page atlasPage() {
+        return mAtlasPage;
+    }
+
+    public int bitmapX() {
+        return mBitmapX;
+    }
+
+    public int bitmapY() {
+        return mBitmapY;
+    }
+
+    public int maskWidth() {
+        return mMaskWidth;
+    }
+
+    public int maskHeight() {
+        return mMaskHeight;
+    }
+
+    public @Nullable byte[] coverage() {
+        return mCoverage;
+    }
+
+    public int coverageByteCount() {
+        return (mCoverage != null ? mCoverage.length : 0);
+    }
+
+    public @Nullable GlyphPath path() {
         return mPath;
     }
 
+    public boolean isBitmapLoaded() {
+        return mBitmapLoaded;
+    }
+
     public boolean containsOutline() {
         return (nativeOutline != 0);
     }
 
+    public int outlineByteCount() {
+        return mOutlineSize;
+    }
+
+    public int pathByteCount() {
+        return mPathSize;
+    }
+
+    void placeInAtlas(@NonNull GlyphAtlas.Page page, int x, int y) {
+        mAtlasPage = page;
+        mBitmapX = x;
+        mBitmapY = y;
+    }
+
     @Keep
-    private void ownBitmap(Bitmap bitmap, int left, int top) {
-        if (mBitmap != null && !mBitmap.isRecycled()) {
+    void ownBitmap(Bitmap bitmap, int left, int top) {
+        if (mBitmap != null && mAtlasPage == null && !mBitmap.isRecycled()) {
             mBitmap.recycle();
         }
 
         mBitmap = bitmap;
+        mAtlasPage = null;
+        mBitmapX = 0;
+        mBitmapY = 0;
+        mMaskWidth = (bitmap != null ? bitmap.getWidth() : 0);
+        mMaskHeight = (bitmap != null ? bitmap.getHeight() : 0);
+        mLeftSideBearing = left;
+        mTopSideBearing = top;
+        mBitmapLoaded = true;
+    }
+
+    @Keep
+    void ownAtlasMask(int width, int height, int left, int top) {
+        // The region has already been placed by the atlas and filled by the rasterizer.
+        mBitmap = mAtlasPage.bitmap;
+        mMaskWidth = width;
+        mMaskHeight = height;
         mLeftSideBearing = left;
         mTopSideBearing = top;
+        mBitmapLoaded = true;
     }
 
     @Keep
-    private void ownPath(Path path) {
+    private void ownCoverage(byte[] coverage, int width, int height, int left, int top) {
+        mCoverage = coverage;
+        mMaskWidth = (coverage != null ? width : 0);
+        mMaskHeight = (coverage != null ? height : 0);
+        mLeftSideBearing = left;
+        mTopSideBearing = top;
+    }
+
+    @Keep
+    private void ownPath(GlyphPath path) {
         mPath = path;
+        mPathSize = (path != null ? path.byteCount() : 0);
     }
 
     @Keep
-    private void ownOutline(long nativeOutline) {
+    private void ownOutline(long nativeOutline, int byteCount) {
         if (this.nativeOutline != 0) {
             nDisposeOutline(this.nativeOutline);
         }
 
         this.nativeOutline = nativeOutline;
+        mOutlineSize = byteCount;
+    }
+
+    void disposeOutline() {
+        if (nativeOutline != 0) {
+            nDisposeOutline(nativeOutline);
+            nativeOutline = 0;
+        }
     }
 
     @Override
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Shader;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the glyph masks of a single strike into shared alpha pages.
+ * <p>
+ * Each page is filled with horizontal shelves. A mask goes to the shortest shelf that can hold
+ * it, or opens a new shelf if the existing ones would waste too much space. Individual masks are
+ * never freed; a page is released as a whole along with all of its glyphs.
+ */
+final class GlyphAtlas {
+    static final int PAGE_SIZE = 512;
+    static final int MAX_MASK_SIZE = PAGE_SIZE / 4;
+
+    private static final int PADDING = 1;
+    private static final int SHELF_ALIGNMENT = 4;
+
+    static final class Page {
+        private static final class Shelf {
+            final int top;
+            final int height;
+            int right;
+
+            Shelf(int top, int height) {
+                this.top = top;
+                this.height = height;
+            }
+        }
+
+        final @NonNull Bitmap bitmap;
+        private final @NonNull ArrayList<Shelf> shelves = new ArrayList<>();
+        private final @NonNull ArrayList<Glyph> glyphs = new ArrayList<>();
+        private int bottom;
+        private boolean discarded;
+        private @Nullable BitmapShader shader;
+        volatile boolean registered;
+
+        Page() {
+            bitmap = Bitmap.createBitmap(PAGE_SIZE, PAGE_SIZE, Bitmap.Config.ALPHA_8);
+        }
+
+        @NonNull BitmapShader shader() {
+            // A duplicate shader created by a racing thread is harmless.
+            if (shader == null) {
+                shader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            }
+
+            return shader;
+        }
+
+        int byteCount() {
+            return PAGE_SIZE * PAGE_SIZE;
+        }
+
+        private boolean insert(@NonNull Glyph glyph, int width, int height) {
+            int paddedWidth = width + PADDING;
+            int paddedHeight = height + PADDING;
+            Shelf bestShelf = null;
+
+            for (Shelf shelf : shelves) {
+                if (paddedHeight <= shelf.height && shelf.right + paddedWidth <= PAGE_SIZE) {
+                    if (bestShelf == null || shelf.height < bestShelf.height) {
+                        bestShelf = shelf;
+                    }
+                }
+            }
+
+            // Prefer a new shelf over one which is more than twice as tall as the mask.
+            if (bestShelf == null || bestShelf.height > paddedHeight * 2) {
+                int shelfHeight = (paddedHeight + SHELF_ALIGNMENT - 1) & -SHELF_ALIGNMENT;
+                if (bottom + shelfHeight <= PAGE_SIZE) {
+                    bestShelf = new Shelf(bottom, shelfHeight);
+                    shelves.add(bestShelf);
+                    bottom += shelfHeight;
+                }
+            }
+
+            if (bestShelf == null) {
+                return false;
+            }
+
+            glyph.placeInAtlas(this, bestShelf.right, bestShelf.top);
+            glyphs.add(glyph);
+            bestShelf.right += paddedWidth;
+
+            return true;
+        }
+    }
+
+    private final @NonNull ArrayList<Page> mPages = new ArrayList<>();
+    private @Nullable Page mCurrentPage;
+
+    @Keep
+    synchronized @Nullable Bitmap allocate(@NonNull Glyph glyph, int width, int height) {
+        if (width > MAX_MASK_SIZE || height > MAX_MASK_SIZE) {
+            return null;
+        }
+
+        if (mCurrentPage == null || !mCurrentPage.insert(glyph, width, height)) {
+            mCurrentPage = new Page();
+            mCurrentPage.insert(glyph, width, height);
+            mPages.add(mCurrentPage);
+        }
+
+        return mCurrentPage.bitmap;
+    }
+
+    synchronized boolean isDiscarded(@NonNull Page page) {
+        return page.discarded;
+    }
+
+    synchronized @NonNull List<Page> pages() {
+        return new ArrayList<>(mPages);
+    }
+
+    synchronized @Nullable Page oldestPage() {
+        // The page being filled is never the oldest one unless it is the only one.
+        return (mPages.size() > 1 ? mPages.get(0) : null);
+    }
+
+    synchronized @Nullable List<Glyph> discard(@NonNull Page page) {
+        if (page.discarded) {
+            return null;
+        }
+
+        if (mCurrentPage == page) {
+            mCurrentPage = null;
+        }
+
+        page.discarded = true;
+        mPages.remove(page);
+
+        List<Glyph> glyphs = new ArrayList<>(page.glyphs);
+        page.glyphs.clear();
+
+        return glyphs;
+    }
+}
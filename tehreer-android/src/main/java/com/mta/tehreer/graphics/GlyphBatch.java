@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Collects the placements of atlas masks so that all masks of a page are drawn with a single
+ * textured mesh instead of a bitmap draw per glyph.
+ * <p>
+ * Each mask becomes a quad of two triangles whose texture coordinates address its region in the
+ * page. The page is bound to the paint as an alpha shader, so the quads are tinted with the color
+ * of the paint just like individually drawn masks.
+ */
+final class GlyphBatch {
+    // Keep the vertex indices within the positive range of a short.
+    private static final int MAX_QUADS = 8192;
+
+    private static final int PLACEMENT_STRIDE = 6;
+    private static final int QUAD_FLOATS = 8;
+    private static final int QUAD_INDICES = 6;
+
+    private @NonNull GlyphAtlas.Page[] mPages = new GlyphAtlas.Page[4];
+    private int mPageCount;
+    private @NonNull int[] mPlacements = new int[0];
+    private @NonNull int[] mPageIndexes = new int[0];
+    private int mSize;
+
+    private @NonNull float[] mVertices = new float[0];
+    private @NonNull float[] mTexCoords = new float[0];
+    private @NonNull short[] mIndices = new short[0];
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds a mask region of the given page to be drawn at the given position.
+     */
+    void add(@NonNull GlyphAtlas.Page page, int maskX, int maskY, int maskWidth, int maskHeight,
+             int left, int top) {
+        int pageIndex = indexOfPage(page);
+
+        if (mPageIndexes.length == mSize) {
+            int capacity = Math.max(16, mSize * 2);
+            mPageIndexes = Arrays.copyOf(mPageIndexes, capacity);
+            mPlacements = Arrays.copyOf(mPlacements, capacity * PLACEMENT_STRIDE);
+        }
+
+        int offset = mSize * PLACEMENT_STRIDE;
+        mPlacements[offset + 0] = maskX;
+        mPlacements[offset + 1] = maskY;
+        mPlacements[offset + 2] = maskWidth;
+        mPlacements[offset + 3] = maskHeight;
+        mPlacements[offset + 4] = left;
+        mPlacements[offset + 5] = top;
+        mPageIndexes[mSize] = pageIndex;
+        mSize++;
+    }
+
+    private int indexOfPage(@NonNull GlyphAtlas.Page page) {
+        // A run rarely spans more than a few pages, so a linear search is the fastest lookup.
+        for (int i = mPageCount - 1; i >= 0; i--) {
+            if (mPages[i] == page) {
+                return i;
+            }
+        }
+
+        if (mPageCount == mPages.length) {
+            mPages = Arrays.copyOf(mPages, mPageCount * 2);
+        }
+        mPages[mPageCount] = page;
+
+        return mPageCount++;
+    }
+
+    /**
+     * Draws the collected masks with one mesh per page and clears the batch.
+     */
+    void draw(@NonNull Canvas canvas, @NonNull Paint paint) {
+        ensureMeshCapacity(Math.min(mSize, MAX_QUADS));
+
+        for (int i = 0; i < mPageCount; i++) {
+            paint.setShader(mPages[i].shader());
+
+            int quadCount = 0;
+
+            for (int j = 0; j < mSize; j++) {
+                if (mPageIndexes[j] == i) {
+                    if (quadCount == MAX_QUADS) {
+                        drawMesh(canvas, quadCount, paint);
+                        quadCount = 0;
+                    }
+
+                    putQuad(j, quadCount++);
+                }
+            }
+
+            drawMesh(canvas, quadCount, paint);
+        }
+
+        paint.setShader(null);
+        clear();
+    }
+
+    private void drawMesh(@NonNull Canvas canvas, int quadCount, @NonNull Paint paint) {
+        if (quadCount > 0) {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, quadCount * QUAD_FLOATS,
+                                mVertices, 0, mTexCoords, 0, null, 0,
+                                mIndices, 0, quadCount * QUAD_INDICES, paint);
+        }
+    }
+
+    private void putQuad(int placement, int quad) {
+        int offset = placement * PLACEMENT_STRIDE;
+        int maskX = mPlacements[offset + 0];
+        int maskY = mPlacements[offset + 1];
+        int width = mPlacements[offset + 2];
+        int height = mPlacements[offset + 3];
+        int left = mPlacements[offset + 4];
+        int top = mPlacements[offset + 5];
+
+        int index = quad * QUAD_FLOATS;
+        setQuad(mVertices, index, left, top, left + width, top + height);
+        setQuad(mTexCoords, index, maskX, maskY, maskX + width, maskY + height);
+    }
+
+    private static void setQuad(@NonNull float[] array, int index,
+                                float left, float top, float right, float bottom) {
+        array[index + 0] = left;
+        array[index + 1] = top;
+        array[index + 2] = right;
+        array[index + 3] = top;
+        array[index + 4] = right;
+        array[index + 5] = bottom;
+        array[index + 6] = left;
+        array[index + 7] = bottom;
+    }
+
+    private void ensureMeshCapacity(int quadCount) {
+        if (mVertices.length < quadCount * QUAD_FLOATS) {
+            mVertices = new float[quadCount * QUAD_FLOATS];
+            mTexCoords = new float[quadCount * QUAD_FLOATS];
+        }
+
+        int filledQuads = mIndices.length / QUAD_INDICES;
+        if (filledQuads < quadCount) {
+            mIndices = Arrays.copyOf(mIndices, quadCount * QUAD_INDICES);
+
+            // The indices only depend on the quad number, so they are generated once.
+            for (int i = filledQuads; i < quadCount; i++) {
+                int vertex = i * 4;
+                int index = i * QUAD_INDICES;
+
+                mIndices[index + 0] = (short) vertex;
+                mIndices[index + 1] = (short) (vertex + 1);
+                mIndices[index + 2] = (short) (vertex + 2);
+                mIndices[index + 3] = (short) vertex;
+                mIndices[index + 4] = (short) (vertex + 2);
+                mIndices[index + 5] = (short) (vertex + 3);
+            }
+        }
+    }
+
+    /**
+     * Clears the batch without keeping the pages alive.
+     */
+    void clear() {
+        Arrays.fill(mPages, 0, mPageCount, null);
+        mPageCount = 0;
+        mSize = 0;
+    }
+}
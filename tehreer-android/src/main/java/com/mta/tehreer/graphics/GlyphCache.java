@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,43 +17,142 @@
 package com.mta.tehreer.graphics;
 
 import android.graphics.Bitmap;
-import android.graphics.Path;
+import android.content.ComponentCallbacks2;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.mta.tehreer.collections.IntList;
 import com.mta.tehreer.internal.util.LruCache;
+import com.mta.tehreer.sfnt.SfntTag;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 class GlyphCache extends LruCache {
+    private static final String TAG = GlyphCache.class.getSimpleName();
+
+    private static final long USAGE_RESOLUTION = 1000;
+    // The usage of a strike is only recorded this often, so a shorter timeout could expire a strike
+    // which is still in use.
+    static final long MIN_STRIKE_IDLE_TIMEOUT = USAGE_RESOLUTION;
+    private static final long MIN_EXPIRY_INTERVAL = 1000;
+    private static final long TRIM_IDLE_TIME = 1000;
+
     private static class Segment extends LruCache.Segment<Integer, Glyph> {
         //
-        // HashMap:
-        //  - 1 pointer for map entry
+        // ConcurrentHashMap:
+        //  - 1 pointer for table entry
         //  - 3 pointers for key, value and next
         //  - 1 integer for hash code
         //
+        // ConcurrentLinkedQueue:
+        //  - 2 pointers for item and next
+        //
         // LruCache.Node:
-        //  - 5 pointers for segment, key, value, previous and next
+        //  - 3 pointers for segment, key and value
+        //  - 1 integer for size
+        //  - 2 booleans for referenced and removed flags
         //
         // Glyph:
-        //  - 3 pointers for outline, bitmap and path
-        //  - 3 integers for glyph id, glyph left and glyph top
+        //  - 5 pointers for outline, bitmap, atlas page, coverage and path
+        //  - 9 integers for glyph id, glyph left, glyph top, bitmap x, bitmap y, mask width, mask
+        //    height, outline size and path size
         //
         // Total:
-        //  - 12 pointers
-        //  - 4 integers
+        //  - 14 pointers
+        //  - 12 integers
         //
-        // Size: (12 * 4) + (4 * 4) = 64
+        // Size: (14 * 4) + (12 * 4) = 104
         //
-        private static final int ESTIMATED_OVERHEAD = 64;
+        private static final int ESTIMATED_OVERHEAD = 104;
+
+        public final @NonNull GlyphStrike strike;
+        public final @Nullable GlyphAtlas atlas;
+        public final @NonNull Object loadLock = new Object();
+        public final @NonNull CoverageSegment coverageSegment;
+        public final @NonNull OutlineSegment outlineSegment;
+        public final @NonNull PathSegment pathSegment;
+        public final @NonNull BoundsTable boundsTable = new BoundsTable();
+        private final boolean isolated;
+        private @Nullable GlyphRasterizer rasterizer;
+        volatile boolean expired;
+        volatile long lastUsedTime;
 
-        public final @NonNull GlyphRasterizer rasterizer;
+        // Hits and misses are added once per lookup call so that a run costs a single update.
+        final @NonNull AtomicLong hitCount = new AtomicLong();
+        final @NonNull AtomicLong missCount = new AtomicLong();
+        final @NonNull AtomicLong rasterizationTime = new AtomicLong();
+        final @NonNull AtomicInteger pageSize = new AtomicInteger();
+        final @NonNull AtomicLong pageEvictionCount = new AtomicLong();
+        final @NonNull AtomicLong pageEvictedSize = new AtomicLong();
 
-        public Segment(@NonNull LruCache cache, @NonNull GlyphRasterizer rasterizer) {
+        public Segment(@NonNull GlyphCache cache, @NonNull GlyphStrike strike,
+                       boolean isolated, @Nullable GlyphAtlas atlas) {
             super(cache);
-            this.rasterizer = rasterizer;
+            this.strike = strike;
+            this.coverageSegment = new CoverageSegment(cache, this);
+            this.outlineSegment = new OutlineSegment(cache.outlines, this);
+            this.pathSegment = new PathSegment(cache.paths, this);
+            this.isolated = isolated;
+            this.atlas = atlas;
+        }
+
+        @NonNull GlyphCache owner() {
+            return (GlyphCache) cache;
+        }
+
+        // The rasterizer is created on demand and must only be used while holding the load lock,
+        // so that an expired strike can dispose it without racing with the threads loading from
+        // it.
+        @NonNull GlyphRasterizer rasterizer() {
+            if (rasterizer == null) {
+                rasterizer = new GlyphRasterizer(strike, isolated);
+            }
+
+            return rasterizer;
+        }
+
+        void disposeRasterizer() {
+            if (rasterizer != null) {
+                rasterizer.dispose();
+                rasterizer = null;
+            }
+        }
+
+        // Called at the end of each load, a thread which was still holding an expired segment
+        // must not leave a rasterizer behind.
+        void finishLoad() {
+            if (expired) {
+                disposeRasterizer();
+            }
+        }
+
+        void markUsed(long time) {
+            // Avoid dirtying the shared cache line on every lookup.
+            if (time - lastUsedTime >= USAGE_RESOLUTION) {
+                lastUsedTime = time;
+            }
+        }
+
+        @Override
+        protected int quota() {
+            return ((GlyphCache) cache).strikeQuota;
         }
 
         @Override
@@ -61,12 +160,290 @@ class GlyphCache extends LruCache {
             Bitmap maskBitmap = value.bitmap();
             int innerSize = 0;
 
-            if (maskBitmap != null) {
+            // Atlas pages are accounted separately as a whole.
+            if (maskBitmap != null && value.atlasPage() == null) {
                 innerSize = maskBitmap.getWidth() * maskBitmap.getHeight();
             }
 
             return innerSize + ESTIMATED_OVERHEAD;
         }
+
+        @Override
+        protected void onEntryEvicted(@NonNull Integer key, @NonNull Glyph value) {
+            ((GlyphCache) cache).notifyEviction(strike.typeface, 1, sizeOf(key, value));
+        }
+
+        // Rarely more than a couple of stroke styles are in use per strike, so a linear search in
+        // a copy on write array keeps the lookups lock free without allocating any key.
+        private volatile @NonNull StrokeSegment[] strokeSegments = new StrokeSegment[0];
+
+        @NonNull StrokeSegment getStrokeSegment(int lineRadius, int lineCap, int lineJoin,
+                                                int miterLimit, boolean coverage) {
+            StrokeSegment strokeSegment = findStrokeSegment(lineRadius, lineCap, lineJoin, miterLimit, coverage);
+            if (strokeSegment == null) {
+                synchronized (this) {
+                    strokeSegment = findStrokeSegment(lineRadius, lineCap, lineJoin, miterLimit, coverage);
+                    if (strokeSegment == null) {
+                        StrokeSegment[] oldArray = strokeSegments;
+                        StrokeSegment[] newArray = Arrays.copyOf(oldArray, oldArray.length + 1);
+
+                        strokeSegment = new StrokeSegment(cache, this, lineRadius, lineCap,
+                                                          lineJoin, miterLimit, coverage);
+                        newArray[oldArray.length] = strokeSegment;
+                        strokeSegments = newArray;
+                    }
+                }
+            }
+
+            return strokeSegment;
+        }
+
+        private @Nullable StrokeSegment findStrokeSegment(int lineRadius, int lineCap, int lineJoin,
+                                                          int miterLimit, boolean coverage) {
+            for (StrokeSegment strokeSegment : strokeSegments) {
+                if (strokeSegment.matches(lineRadius, lineCap, lineJoin, miterLimit, coverage)) {
+                    return strokeSegment;
+                }
+            }
+
+            return null;
+        }
+
+        @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+        int discardPage(@NonNull GlyphAtlas.Page page) {
+            List<Glyph> glyphs;
+
+            // Synchronize with the registration of the page so that it is accounted only once.
+            synchronized (page) {
+                glyphs = atlas.discard(page);
+                if (glyphs == null) {
+                    return -1;
+                }
+
+                if (page.registered) {
+                    int byteCount = page.byteCount();
+                    pageSize.addAndGet(-byteCount);
+                    pageEvictionCount.incrementAndGet();
+                    pageEvictedSize.addAndGet(byteCount);
+                }
+            }
+
+            for (Glyph glyph : glyphs) {
+                remove(glyph.glyphId(), glyph);
+            }
+
+            return glyphs.size();
+        }
+
+        @NonNull GlyphCacheStats.StrikeStats getStats() {
+            int byteCount = size() + pageSize.get();
+            int entryCount = count();
+            long evictionCount = evictionCount() + pageEvictionCount.get();
+            long evictedSize = evictedSize() + pageEvictedSize.get();
+
+            List<LruCache.Segment<Integer, Glyph>> innerSegments = new ArrayList<>();
+            innerSegments.add(coverageSegment);
+            innerSegments.add(outlineSegment);
+            innerSegments.add(pathSegment);
+            innerSegments.addAll(Arrays.asList(strokeSegments));
+
+            for (LruCache.Segment<Integer, Glyph> innerSegment : innerSegments) {
+                byteCount += innerSegment.size();
+                entryCount += innerSegment.count();
+                evictionCount += innerSegment.evictionCount();
+                evictedSize += innerSegment.evictedSize();
+            }
+
+            return new GlyphCacheStats.StrikeStats(strike, hitCount.get(), missCount.get(),
+                                                   rasterizationTime.get(), evictionCount,
+                                                   evictedSize, byteCount, entryCount);
+        }
+    }
+
+    private static class StrokeSegment extends LruCache.Segment<Integer, Glyph> {
+        public final @NonNull Segment parent;
+        public final int lineRadius;
+        public final int lineCap;
+        public final int lineJoin;
+        public final int miterLimit;
+        public final boolean coverage;
+
+        public StrokeSegment(@NonNull LruCache cache, @NonNull Segment parent, int lineRadius,
+                             int lineCap, int lineJoin, int miterLimit, boolean coverage) {
+            super(cache);
+            this.parent = parent;
+            this.lineRadius = lineRadius;
+            this.lineCap = lineCap;
+            this.lineJoin = lineJoin;
+            this.miterLimit = miterLimit;
+            this.coverage = coverage;
+        }
+
+        public boolean matches(int lineRadius, int lineCap, int lineJoin, int miterLimit,
+                               boolean coverage) {
+            return this.lineRadius == lineRadius
+                && this.lineCap == lineCap
+                && this.lineJoin == lineJoin
+                && this.miterLimit == miterLimit
+                && this.coverage == coverage;
+        }
+
+        @Override
+        protected int sizeOf(@NonNull Integer key, @NonNull Glyph value) {
+            Bitmap maskBitmap = value.bitmap();
+            int innerSize = value.coverageByteCount();
+
+            if (maskBitmap != null) {
+                innerSize = maskBitmap.getWidth() * maskBitmap.getHeight();
+            }
+
+            return innerSize + Segment.ESTIMATED_OVERHEAD;
+        }
+
+        @Override
+        protected void onEntryEvicted(@NonNull Integer key, @NonNull Glyph value) {
+            ((GlyphCache) cache).notifyEviction(parent.strike.typeface, 1, sizeOf(key, value));
+        }
+
+        @Override
+        protected int quota() {
+            return ((GlyphCache) cache).strikeQuota;
+        }
+    }
+
+    // Holds the coverage masks of the pixel buffer path, which are budgeted along with the bitmaps
+    // but never placed in an atlas.
+    private static class CoverageSegment extends LruCache.Segment<Integer, Glyph> {
+        public final @NonNull Segment parent;
+
+        public CoverageSegment(@NonNull LruCache cache, @NonNull Segment parent) {
+            super(cache);
+            this.parent = parent;
+        }
+
+        @Override
+        protected int sizeOf(@NonNull Integer key, @NonNull Glyph value) {
+            return value.coverageByteCount() + Segment.ESTIMATED_OVERHEAD;
+        }
+
+        @Override
+        protected void onEntryEvicted(@NonNull Integer key, @NonNull Glyph value) {
+            parent.owner().notifyEviction(parent.strike.typeface, 1, sizeOf(key, value));
+        }
+
+        @Override
+        protected int quota() {
+            return parent.owner().strikeQuota;
+        }
+    }
+
+    // Holds the control boxes of the glyphs of a strike in pages of 256 glyphs, allocated as the
+    // glyphs are measured. The boxes are a few bytes each, so they are kept as long as the strike.
+    private static class BoundsTable {
+        private static final int PAGE_SHIFT = 8;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+        private static final int PAGE_COUNT = 0x10000 >> PAGE_SHIFT;
+
+        private final @NonNull float[][] pages = new float[PAGE_COUNT][];
+
+        synchronized boolean get(int glyphId, @NonNull float[] bounds, int offset) {
+            float[] page = pages[(glyphId >>> PAGE_SHIFT) & (PAGE_COUNT - 1)];
+            if (page == null) {
+                return false;
+            }
+
+            int index = (glyphId & PAGE_MASK) * 4;
+            if (Float.isNaN(page[index])) {
+                return false;
+            }
+
+            System.arraycopy(page, index, bounds, offset, 4);
+            return true;
+        }
+
+        synchronized void put(int glyphId, @NonNull float[] bounds, int offset) {
+            int pageIndex = (glyphId >>> PAGE_SHIFT) & (PAGE_COUNT - 1);
+            float[] page = pages[pageIndex];
+            if (page == null) {
+                page = new float[PAGE_SIZE * 4];
+                Arrays.fill(page, Float.NaN);
+                pages[pageIndex] = page;
+            }
+
+            System.arraycopy(bounds, offset, page, (glyphId & PAGE_MASK) * 4, 4);
+        }
+    }
+
+    // Outlines and paths are budgeted apart from the masks so that neither representation can
+    // crowd out the other, each one is held in a separate glyph object and evicted on its own.
+    private static class RepresentationCache extends LruCache {
+        public RepresentationCache(int capacity) {
+            super(capacity);
+        }
+    }
+
+    private static class OutlineSegment extends LruCache.Segment<Integer, Glyph> {
+        public final @NonNull Segment parent;
+
+        public OutlineSegment(@NonNull LruCache cache, @NonNull Segment parent) {
+            super(cache);
+            this.parent = parent;
+        }
+
+        @Override
+        protected int sizeOf(@NonNull Integer key, @NonNull Glyph value) {
+            return value.outlineByteCount() + Segment.ESTIMATED_OVERHEAD;
+        }
+
+        @Override
+        protected void onEntryEvicted(@NonNull Integer key, @NonNull Glyph value) {
+            // The outline may still be in use by a stroke, which runs while holding the load lock.
+            synchronized (parent.loadLock) {
+                value.disposeOutline();
+            }
+
+            parent.owner().notifyEviction(parent.strike.typeface, 1, sizeOf(key, value));
+        }
+    }
+
+    private static class PathSegment extends LruCache.Segment<Integer, Glyph> {
+        public final @NonNull Segment parent;
+
+        public PathSegment(@NonNull LruCache cache, @NonNull Segment parent) {
+            super(cache);
+            this.parent = parent;
+        }
+
+        @Override
+        protected int sizeOf(@NonNull Integer key, @NonNull Glyph value) {
+            return value.pathByteCount() + Segment.ESTIMATED_OVERHEAD;
+        }
+
+        @Override
+        protected void onEntryEvicted(@NonNull Integer key, @NonNull Glyph value) {
+            parent.owner().notifyEviction(parent.strike.typeface, 1, sizeOf(key, value));
+        }
+    }
+
+    private static class PageSegment extends LruCache.Segment<GlyphAtlas.Page, Segment> {
+        public PageSegment(@NonNull LruCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected int sizeOf(@NonNull GlyphAtlas.Page key, @NonNull Segment value) {
+            return key.byteCount();
+        }
+
+        @Override
+        protected void onEntryEvicted(@NonNull GlyphAtlas.Page key, @NonNull Segment value) {
+            // Drop all glyphs of the page so that they are rasterized again into a new one.
+            int glyphCount = value.discardPage(key);
+            if (glyphCount >= 0) {
+                ((GlyphCache) cache).notifyEviction(value.strike.typeface, glyphCount, key.byteCount());
+            }
+        }
     }
 
     private static class Holder {
@@ -74,7 +451,7 @@ class GlyphCache extends LruCache {
 
         static {
             int maxSize = (int) (Runtime.getRuntime().maxMemory() / 8);
-            INSTANCE = new GlyphCache(maxSize);
+            INSTANCE = new GlyphCache(maxSize, maxSize / 8, maxSize / 8);
         }
     }
 
@@ -82,107 +459,962 @@ class GlyphCache extends LruCache {
         return Holder.INSTANCE;
     }
 
-    private @NonNull HashMap<GlyphStrike, Segment> segments = new HashMap<>();
+    private final @NonNull ConcurrentHashMap<GlyphStrike, Segment> segments = new ConcurrentHashMap<>();
+    private final @NonNull PageSegment pages = new PageSegment(this);
+    private final @NonNull RepresentationCache outlines;
+    private final @NonNull RepresentationCache paths;
+    private volatile boolean atlasEnabled;
+    private volatile boolean parallelRasterizationEnabled;
+    private volatile @Nullable GlyphDiskCache diskCache;
+    private final @NonNull Map<Typeface, Long> fontIds = new WeakHashMap<>();
+    private volatile @Nullable GlyphCacheManager.EvictionListener evictionListener;
+    private volatile int strikeQuota;
+    private volatile long strikeIdleTimeout;
+    private volatile long nextExpiryTime;
 
-    public GlyphCache(int capacity) {
+    // Counters of the strikes which have been disposed by clearing the cache.
+    private long retiredHitCount;
+    private long retiredMissCount;
+    private long retiredRasterizationTime;
+
+    public GlyphCache(int capacity, int outlineCapacity, int pathCapacity) {
         super(capacity);
+        this.outlines = new RepresentationCache(outlineCapacity);
+        this.paths = new RepresentationCache(pathCapacity);
+    }
+
+    public int getOutlineCapacity() {
+        return outlines.capacity();
+    }
+
+    public void setOutlineCapacity(int outlineCapacity) {
+        outlines.setCapacity(outlineCapacity);
+    }
+
+    public int getPathCapacity() {
+        return paths.capacity();
+    }
+
+    public void setPathCapacity(int pathCapacity) {
+        paths.setCapacity(pathCapacity);
+    }
+
+    public boolean isAtlasEnabled() {
+        return atlasEnabled;
+    }
+
+    public void setAtlasEnabled(boolean atlasEnabled) {
+        this.atlasEnabled = atlasEnabled;
+    }
+
+    public boolean isParallelRasterizationEnabled() {
+        return parallelRasterizationEnabled;
+    }
+
+    public void setParallelRasterizationEnabled(boolean parallelRasterizationEnabled) {
+        this.parallelRasterizationEnabled = parallelRasterizationEnabled;
+    }
+
+    public @Nullable GlyphDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    public void setDiskCache(@Nullable GlyphDiskCache diskCache) {
+        GlyphDiskCache oldCache;
+
+        synchronized (fontIds) {
+            oldCache = this.diskCache;
+            this.diskCache = diskCache;
+        }
+
+        if (oldCache != null && oldCache != diskCache) {
+            closeDiskCache(oldCache);
+        }
+    }
+
+    private static void closeDiskCache(@NonNull GlyphDiskCache diskCache) {
+        try {
+            diskCache.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not close the glyph disk cache", e);
+        }
+    }
+
+    private void disableDiskCache(@NonNull GlyphDiskCache diskCache, @NonNull IOException e) {
+        Log.e(TAG, "Glyph disk cache failed, disabling it", e);
+
+        synchronized (fontIds) {
+            if (this.diskCache != diskCache) {
+                return;
+            }
+            this.diskCache = null;
+        }
+
+        closeDiskCache(diskCache);
+    }
+
+    public int getStrikeQuota() {
+        return strikeQuota;
+    }
+
+    public void setStrikeQuota(int strikeQuota) {
+        this.strikeQuota = strikeQuota;
+    }
+
+    public long getStrikeIdleTimeout() {
+        return strikeIdleTimeout;
+    }
+
+    public void setStrikeIdleTimeout(long strikeIdleTimeout) {
+        this.strikeIdleTimeout = strikeIdleTimeout;
+        this.nextExpiryTime = 0;
+    }
+
+    public void setEvictionListener(@Nullable GlyphCacheManager.EvictionListener evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    private void notifyEviction(@NonNull Typeface typeface, int glyphCount, int byteCount) {
+        GlyphCacheManager.EvictionListener listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(typeface, glyphCount, byteCount);
+        }
+    }
+
+    public @NonNull GlyphCacheStats getStats() {
+        List<GlyphCacheStats.StrikeStats> strikes = new ArrayList<>();
+        long hitCount;
+        long missCount;
+        long rasterizationTime;
+
+        synchronized (segments) {
+            hitCount = retiredHitCount;
+            missCount = retiredMissCount;
+            rasterizationTime = retiredRasterizationTime;
+
+            for (Segment segment : segments.values()) {
+                GlyphCacheStats.StrikeStats strikeStats = segment.getStats();
+                hitCount += strikeStats.getHitCount();
+                missCount += strikeStats.getMissCount();
+                rasterizationTime += strikeStats.getRasterizationTime();
+
+                strikes.add(strikeStats);
+            }
+        }
+
+        return new GlyphCacheStats(capacity(), hitCount, missCount, rasterizationTime,
+                                   evictionCount() + outlines.evictionCount() + paths.evictionCount(),
+                                   evictedSize() + outlines.evictedSize() + paths.evictedSize(),
+                                   size() + outlines.size() + paths.size(),
+                                   count() + outlines.count() + paths.count(),
+                                   outlines.size(), paths.size(), strikes);
+    }
+
+    // Must be called while holding the lock of segments.
+    private void retireSegment(@NonNull Segment segment) {
+        retiredHitCount += segment.hitCount.get();
+        retiredMissCount += segment.missCount.get();
+        retiredRasterizationTime += segment.rasterizationTime.get();
+
+        segment.expired = true;
+
+        synchronized (segment.loadLock) {
+            segment.disposeRasterizer();
+        }
+    }
+
+    // Must be called while holding the lock of segments.
+    private void expireSegment(@NonNull Segment segment) {
+        segment.expired = true;
+        segment.trimToSize(0);
+        segment.coverageSegment.trimToSize(0);
+        segment.outlineSegment.trimToSize(0);
+        segment.pathSegment.trimToSize(0);
+
+        for (StrokeSegment strokeSegment : segment.strokeSegments) {
+            strokeSegment.trimToSize(0);
+        }
+
+        if (segment.atlas != null) {
+            for (GlyphAtlas.Page page : segment.atlas.pages()) {
+                pages.remove(page, segment);
+
+                int glyphCount = segment.discardPage(page);
+                if (glyphCount >= 0) {
+                    notifyEviction(segment.strike.typeface, glyphCount, page.byteCount());
+                }
+            }
+        }
+
+        retireSegment(segment);
+    }
+
+    // Must be called while holding the lock of segments.
+    private void expireStrikes(long usedBefore) {
+        Iterator<Segment> iterator = segments.values().iterator();
+
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.lastUsedTime < usedBefore) {
+                iterator.remove();
+                expireSegment(segment);
+            }
+        }
+    }
+
+    private void expireIdleStrikes(long now, long idleTimeout) {
+        synchronized (segments) {
+            if (now >= nextExpiryTime) {
+                nextExpiryTime = now + Math.max(idleTimeout / 2, MIN_EXPIRY_INTERVAL);
+                expireStrikes(now - idleTimeout);
+            }
+        }
+    }
+
+    /**
+     * Releases memory according to the given level of {@link ComponentCallbacks2}. Running low
+     * levels and the background levels halve the cache, moderate pressure quarters it and expires
+     * the strikes which are not in use, and critical levels clear it completely.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(capacity() / 4);
+            outlines.trimToSize(outlines.capacity() / 4);
+            paths.trimToSize(paths.capacity() / 4);
+
+            synchronized (segments) {
+                expireStrikes(SystemClock.uptimeMillis() - TRIM_IDLE_TIME);
+            }
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(capacity() / 2);
+            outlines.trimToSize(outlines.capacity() / 2);
+            paths.trimToSize(paths.capacity() / 2);
+        }
     }
 
     @Override
     public void clear() {
-        super.clear();
+        synchronized (segments) {
+            super.clear();
+            outlines.clear();
+            paths.clear();
 
-        // Dispose all glyph rasterizers.
-        for (Map.Entry<GlyphStrike, Segment> entry : segments.entrySet()) {
-            entry.getValue().rasterizer.dispose();
+            // Dispose all glyph rasterizers, the ones in use are disposed after their loads.
+            for (Segment segment : segments.values()) {
+                retireSegment(segment);
+            }
+            segments.clear();
         }
-        segments.clear();
     }
 
-    private @NonNull Segment unsafeGetSegment(@NonNull GlyphStrike strike) {
+    private @NonNull Segment getSegment(@NonNull GlyphStrike strike) {
+        long now = SystemClock.uptimeMillis();
+
         Segment segment = segments.get(strike);
         if (segment == null) {
-            GlyphRasterizer rasterizer = new GlyphRasterizer(strike);
-            segment = new Segment(this, rasterizer);
-            segments.put(strike.clone(), segment);
+            // Only the creation of a segment is serialized, lookups remain lock free.
+            synchronized (segments) {
+                segment = segments.get(strike);
+                if (segment == null) {
+                    // Distance fields are drawn scaled, so they get a bitmap of their own.
+                    GlyphAtlas atlas = (atlasEnabled && !strike.distanceField ? new GlyphAtlas() : null);
+                    GlyphStrike key = strike.clone();
+                    segment = new Segment(this, key, parallelRasterizationEnabled, atlas);
+                    segment.lastUsedTime = now;
+                    segments.put(key, segment);
+                }
+            }
+        } else {
+            segment.markUsed(now);
+        }
+
+        long idleTimeout = strikeIdleTimeout;
+        if (idleTimeout > 0 && now >= nextExpiryTime) {
+            expireIdleStrikes(now, idleTimeout);
         }
 
         return segment;
     }
 
-    public @NonNull Glyph unsafeGetGlyph(@NonNull Segment segment, int glyphId) {
+    private static @NonNull Glyph getGlyph(@NonNull Segment segment, int glyphId) {
         Glyph glyph = segment.get(glyphId);
         if (glyph == null) {
-            glyph = new Glyph(glyphId);
+            glyph = segment.putIfAbsent(glyphId, new Glyph(glyphId));
         }
 
         return glyph;
     }
 
     @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-    public @NonNull Glyph getMaskGlyph(@NonNull GlyphStrike strike, int glyphId) {
-        final Segment segment;
-        final Glyph glyph;
+    private void registerPage(@NonNull GlyphAtlas.Page page, @NonNull Segment segment) {
+        if (!page.registered) {
+            synchronized (page) {
+                if (!page.registered && !segment.atlas.isDiscarded(page)) {
+                    page.registered = true;
+                    segment.pageSize.addAndGet(page.byteCount());
+                    pages.putIfAbsent(page, segment);
+                }
+            }
+
+            trimPagesToQuota(segment);
+        }
+    }
 
-        synchronized (this) {
-            segment = unsafeGetSegment(strike);
-            glyph = unsafeGetGlyph(segment, glyphId);
+    private void trimPagesToQuota(@NonNull Segment segment) {
+        int quota = strikeQuota;
+        if (quota <= 0) {
+            return;
         }
 
-        synchronized (glyph) {
-            if (glyph.bitmap() == null) {
-                segment.remove(glyphId);
+        GlyphAtlas.Page page;
 
-                segment.rasterizer.loadBitmap(glyph);
-                segment.put(glyphId, glyph);
+        while (segment.size() + segment.pageSize.get() > quota
+                && (page = segment.atlas.oldestPage()) != null) {
+            pages.remove(page, segment);
+
+            int glyphCount = segment.discardPage(page);
+            if (glyphCount >= 0) {
+                notifyEviction(segment.strike.typeface, glyphCount, page.byteCount());
             }
         }
+    }
 
-        return glyph;
+    private void touchPage(@NonNull Glyph glyph) {
+        GlyphAtlas.Page page = glyph.atlasPage();
+        if (page != null) {
+            // Keep the page alive as long as any of its glyphs is in use.
+            pages.get(page);
+        }
+    }
+
+    private long getFontId(@NonNull Typeface typeface) {
+        synchronized (fontIds) {
+            Long fontId = fontIds.get(typeface);
+            if (fontId == null) {
+                fontId = computeFontId(typeface);
+                fontIds.put(typeface, fontId);
+            }
+
+            return fontId;
+        }
+    }
+
+    private static long computeFontId(@NonNull Typeface typeface) {
+        // The head table carries the checksum and the modification date of the whole font, the
+        // full name tells apart the faces of a collection, and the coordinates the instances of a
+        // variable font.
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        byte[] headData = typeface.getTableData(SfntTag.make("head"));
+        if (headData != null) {
+            digest.update(headData);
+        }
+        digest.update(typeface.getFullName().getBytes(Charset.forName("UTF-8")));
+
+        int glyphCount = typeface.getGlyphCount();
+        float[] coordinates = typeface.getVariationCoordinates();
+        int valueCount = 1 + (coordinates != null ? coordinates.length : 0);
+        byte[] values = new byte[valueCount * 4];
+
+        putInt(values, 0, glyphCount);
+        for (int i = 1; i < valueCount; i++) {
+            putInt(values, i * 4, Float.floatToIntBits(coordinates[i - 1]));
+        }
+        digest.update(values);
+
+        byte[] hash = digest.digest();
+        long fontId = 0;
+        for (int i = 0; i < 8; i++) {
+            fontId = (fontId << 8) | (hash[i] & 0xFF);
+        }
+
+        return fontId;
+    }
+
+    private static void putInt(@NonNull byte[] array, int index, int value) {
+        array[index] = (byte) (value >>> 24);
+        array[index + 1] = (byte) (value >>> 16);
+        array[index + 2] = (byte) (value >>> 8);
+        array[index + 3] = (byte) value;
+    }
+
+    private static @NonNull GlyphDiskCache.Key getDiskKey(long fontId, @NonNull GlyphStrike strike,
+                                                          int glyphId) {
+        return new GlyphDiskCache.Key(fontId, strike.pixelWidth, strike.pixelHeight,
+                                      strike.skewX, strike.shiftX, glyphId);
+    }
+
+    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+    private static void applyDiskMask(@NonNull Glyph glyph, @NonNull GlyphDiskCache.Mask mask,
+                                      @Nullable GlyphAtlas atlas) {
+        int width = mask.width;
+        int height = mask.height;
+
+        if (width == 0 || height == 0) {
+            glyph.ownBitmap(null, mask.left, mask.top);
+            return;
+        }
+
+        int pixelCount = width * height;
+        int[] colors = new int[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            colors[i] = (mask.pixels[i] & 0xFF) << 24;
+        }
+
+        Bitmap page = (atlas != null ? atlas.allocate(glyph, width, height) : null);
+        if (page != null) {
+            // The rasterizer fills the regions of a page while holding the lock of its atlas.
+            synchronized (atlas) {
+                page.setPixels(colors, 0, width, glyph.bitmapX(), glyph.bitmapY(), width, height);
+            }
+            glyph.ownAtlasMask(width, height, mask.left, mask.top);
+        } else {
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            bitmap.setPixels(colors, 0, width, 0, 0, width, height);
+            glyph.ownBitmap(bitmap, mask.left, mask.top);
+        }
     }
 
     @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+    private static @Nullable GlyphDiskCache.Mask extractDiskMask(@NonNull Glyph glyph,
+                                                                 @Nullable GlyphAtlas atlas) {
+        Bitmap bitmap = glyph.bitmap();
+        int width = glyph.maskWidth();
+        int height = glyph.maskHeight();
+
+        if (bitmap == null || width == 0 || height == 0) {
+            return new GlyphDiskCache.Mask(glyph.leftSideBearing(), glyph.topSideBearing(),
+                                           0, 0, new byte[0]);
+        }
+        if (bitmap.getConfig() != Bitmap.Config.ALPHA_8) {
+            // Only the 8-bit masks are persisted, color glyphs are rasterized every time.
+            return null;
+        }
+
+        int pixelCount = width * height;
+        int[] colors = new int[pixelCount];
+
+        if (glyph.atlasPage() != null && atlas != null) {
+            synchronized (atlas) {
+                bitmap.getPixels(colors, 0, width, glyph.bitmapX(), glyph.bitmapY(), width, height);
+            }
+        } else {
+            bitmap.getPixels(colors, 0, width, 0, 0, width, height);
+        }
+
+        byte[] pixels = new byte[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            pixels[i] = (byte) (colors[i] >>> 24);
+        }
+
+        return new GlyphDiskCache.Mask(glyph.leftSideBearing(), glyph.topSideBearing(),
+                                       width, height, pixels);
+    }
+
+    private int readDiskMasks(@NonNull GlyphDiskCache diskCache, @NonNull Segment segment,
+                              @NonNull Glyph[] glyphs, int count, @NonNull Glyph[] misses) {
+        long fontId = getFontId(segment.strike.typeface);
+        int missCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            Glyph glyph = glyphs[i];
+            GlyphDiskCache.Mask mask = null;
+
+            try {
+                mask = diskCache.get(getDiskKey(fontId, segment.strike, glyph.glyphId()));
+            } catch (IOException e) {
+                disableDiskCache(diskCache, e);
+            }
+
+            if (mask != null) {
+                applyDiskMask(glyph, mask, segment.atlas);
+            } else {
+                misses[missCount++] = glyph;
+            }
+        }
+
+        return missCount;
+    }
+
+    private void writeDiskMasks(@NonNull GlyphDiskCache diskCache, @NonNull Segment segment,
+                                @NonNull Glyph[] glyphs, int count) {
+        long fontId = getFontId(segment.strike.typeface);
+        GlyphDiskCache.Key[] keys = new GlyphDiskCache.Key[count];
+        GlyphDiskCache.Mask[] masks = new GlyphDiskCache.Mask[count];
+        int maskCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            Glyph glyph = glyphs[i];
+            GlyphDiskCache.Mask mask = extractDiskMask(glyph, segment.atlas);
+
+            if (mask != null) {
+                keys[maskCount] = getDiskKey(fontId, segment.strike, glyph.glyphId());
+                masks[maskCount] = mask;
+                maskCount++;
+            }
+        }
+
+        try {
+            diskCache.putAll(keys, masks, maskCount);
+        } catch (IOException e) {
+            disableDiskCache(diskCache, e);
+        }
+    }
+
+    private void loadMasks(@NonNull Segment segment, @NonNull Glyph[] glyphs, int count) {
+        // The keys of the disk cache do not tell the distance fields apart from the masks.
+        GlyphDiskCache diskCache = (segment.strike.distanceField ? null : this.diskCache);
+        Glyph[] misses = glyphs;
+        int missCount = count;
+
+        // Look into the disk before rasterizing anything.
+        if (diskCache != null) {
+            misses = new Glyph[count];
+            missCount = readDiskMasks(diskCache, segment, glyphs, count, misses);
+        }
+
+        if (missCount > 0) {
+            long startTime = System.nanoTime();
+
+            if (segment.strike.distanceField) {
+                segment.rasterizer().loadDistanceFields(misses, missCount, DistanceField.SPREAD);
+            } else if (segment.atlas != null) {
+                segment.rasterizer().loadMasks(misses, missCount, segment.atlas);
+            } else {
+                segment.rasterizer().loadBitmaps(misses, missCount);
+            }
+
+            segment.rasterizationTime.addAndGet(System.nanoTime() - startTime);
+
+            if (diskCache != null) {
+                writeDiskMasks(diskCache, segment, misses, missCount);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Glyph glyph = glyphs[i];
+            segment.put(glyph.glyphId(), glyph);
+
+            GlyphAtlas.Page page = glyph.atlasPage();
+            if (page != null) {
+                registerPage(page, segment);
+            }
+        }
+    }
+
+    public @NonNull Glyph getMaskGlyph(@NonNull GlyphStrike strike, int glyphId) {
+        Segment segment = getSegment(strike);
+        Glyph glyph = getGlyph(segment, glyphId);
+
+        if (!glyph.isBitmapLoaded()) {
+            segment.missCount.incrementAndGet();
+
+            // The masks of a rasterizer are loaded one at a time, the native side serializes them
+            // anyway.
+            synchronized (segment.loadLock) {
+                if (!glyph.isBitmapLoaded()) {
+                    loadMasks(segment, new Glyph[] { glyph }, 1);
+                }
+
+                segment.finishLoad();
+            }
+        } else {
+            segment.hitCount.incrementAndGet();
+            touchPage(glyph);
+        }
+
+        return glyph;
+    }
+
+    /**
+     * Obtains the mask glyphs of a whole run. The strike is resolved only once, and all the missing
+     * masks are rasterized with a single native call.
+     *
+     * @param strike The strike of the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param glyphs The array which will receive the mask glyphs, at least as long as
+     *        <code>glyphIds</code>.
+     */
+    public void getMaskGlyphs(@NonNull GlyphStrike strike, @NonNull IntList glyphIds,
+                              @NonNull Glyph[] glyphs) {
+        getMaskGlyphs(strike, glyphIds, null, 0, glyphIds.size(), glyphs);
+    }
+
+    /**
+     * Obtains the mask glyphs of selected positions of a run in the same way as
+     * {@link #getMaskGlyphs(GlyphStrike, IntList, Glyph[])}.
+     *
+     * @param strike The strike of the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param indexes The array containing the positions of <code>glyphIds</code> to obtain, or
+     *        <code>null</code> to obtain the positions of the given range directly.
+     * @param start The index of the first entry of <code>indexes</code> to use.
+     * @param count The number of entries of <code>indexes</code> to use.
+     * @param glyphs The array which will receive the mask glyphs at their positions, at least as
+     *        long as <code>glyphIds</code>.
+     */
+    public void getMaskGlyphs(@NonNull GlyphStrike strike, @NonNull IntList glyphIds,
+                              @Nullable int[] indexes, int start, int count,
+                              @NonNull Glyph[] glyphs) {
+        Segment segment = getSegment(strike);
+        HashSet<Glyph> misses = null;
+        int hitCount = 0;
+        int end = start + count;
+
+        for (int i = start; i < end; i++) {
+            int index = (indexes != null ? indexes[i] : i);
+            Glyph glyph = getGlyph(segment, glyphIds.get(index));
+            glyphs[index] = glyph;
+
+            if (!glyph.isBitmapLoaded()) {
+                if (misses == null) {
+                    misses = new HashSet<>();
+                }
+                misses.add(glyph);
+            } else {
+                hitCount++;
+                touchPage(glyph);
+            }
+        }
+
+        if (hitCount > 0) {
+            segment.hitCount.addAndGet(hitCount);
+        }
+        if (hitCount < count) {
+            segment.missCount.addAndGet(count - hitCount);
+        }
+
+        if (misses != null) {
+            Glyph[] pending = new Glyph[misses.size()];
+            int pendingCount = 0;
+
+            synchronized (segment.loadLock) {
+                for (Glyph glyph : misses) {
+                    if (!glyph.isBitmapLoaded()) {
+                        pending[pendingCount++] = glyph;
+                    }
+                }
+
+                if (pendingCount > 0) {
+                    loadMasks(segment, pending, pendingCount);
+                }
+
+                segment.finishLoad();
+            }
+        }
+    }
+
+    /**
+     * Obtains the coverage masks of selected positions of a run. The masks are plain byte arrays
+     * held apart from the bitmaps, so that they can be blended without the graphics of the
+     * platform.
+     *
+     * @param strike The strike of the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param indexes The array containing the positions of <code>glyphIds</code> to obtain, or
+     *        <code>null</code> to obtain the positions of the given range directly.
+     * @param start The index of the first entry of <code>indexes</code> to use.
+     * @param count The number of entries of <code>indexes</code> to use.
+     * @param glyphs The array which will receive the coverage glyphs at their positions, at least
+     *        as long as <code>glyphIds</code>.
+     */
+    public void getCoverageGlyphs(@NonNull GlyphStrike strike, @NonNull IntList glyphIds,
+                                  @Nullable int[] indexes, int start, int count,
+                                  @NonNull Glyph[] glyphs) {
+        Segment segment = getSegment(strike);
+        CoverageSegment coverageSegment = segment.coverageSegment;
+        HashMap<Integer, Glyph> misses = null;
+        int hitCount = 0;
+        int end = start + count;
+
+        for (int i = start; i < end; i++) {
+            int index = (indexes != null ? indexes[i] : i);
+            int glyphId = glyphIds.get(index);
+            Glyph glyph = coverageSegment.get(glyphId);
+            glyphs[index] = glyph;
+
+            if (glyph == null) {
+                if (misses == null) {
+                    misses = new HashMap<>();
+                }
+                misses.put(glyphId, null);
+            } else {
+                hitCount++;
+            }
+        }
+
+        if (hitCount > 0) {
+            segment.hitCount.addAndGet(hitCount);
+        }
+        if (hitCount < count) {
+            segment.missCount.addAndGet(count - hitCount);
+        }
+
+        if (misses != null) {
+            Glyph[] pending = new Glyph[misses.size()];
+            int pendingCount = 0;
+
+            synchronized (segment.loadLock) {
+                for (Map.Entry<Integer, Glyph> entry : misses.entrySet()) {
+                    int glyphId = entry.getKey();
+                    Glyph glyph = coverageSegment.get(glyphId);
+
+                    if (glyph == null) {
+                        glyph = new Glyph(glyphId);
+                        pending[pendingCount++] = glyph;
+                    }
+                    entry.setValue(glyph);
+                }
+
+                if (pendingCount > 0) {
+                    long startTime = System.nanoTime();
+                    segment.rasterizer().loadCoverages(pending, pendingCount);
+                    segment.rasterizationTime.addAndGet(System.nanoTime() - startTime);
+
+                    for (int i = 0; i < pendingCount; i++) {
+                        Glyph glyph = pending[i];
+                        coverageSegment.put(glyph.glyphId(), glyph);
+                    }
+                }
+
+                segment.finishLoad();
+            }
+
+            // Hand out the loaded glyphs directly as they might already have been trimmed.
+            for (int i = start; i < end; i++) {
+                int index = (indexes != null ? indexes[i] : i);
+                if (glyphs[index] == null) {
+                    glyphs[index] = misses.get(glyphIds.get(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains the control boxes of a list of glyphs without rasterizing them. The boxes are
+     * written as the left, bottom, right and top edges of each glyph in pixels, with the y-axis
+     * pointing upwards.
+     *
+     * @param strike The strike of the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param bounds The array which will receive the boxes, at least four times as long as
+     *        <code>glyphIds</code>.
+     */
+    public void getGlyphBounds(@NonNull GlyphStrike strike, @NonNull IntList glyphIds,
+                               @NonNull float[] bounds) {
+        Segment segment = getSegment(strike);
+        BoundsTable boundsTable = segment.boundsTable;
+        int size = glyphIds.size();
+        int[] missIndexes = null;
+        int missCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (!boundsTable.get(glyphIds.get(i), bounds, i * 4)) {
+                if (missIndexes == null) {
+                    missIndexes = new int[size - i];
+                }
+                missIndexes[missCount++] = i;
+            }
+        }
+
+        if (missCount > 0) {
+            int[] missIds = new int[missCount];
+            float[] missBounds = new float[missCount * 4];
+
+            for (int i = 0; i < missCount; i++) {
+                missIds[i] = glyphIds.get(missIndexes[i]);
+            }
+
+            synchronized (segment.loadLock) {
+                segment.rasterizer().loadBounds(missIds, missCount, missBounds);
+                segment.finishLoad();
+            }
+
+            for (int i = 0; i < missCount; i++) {
+                boundsTable.put(missIds[i], missBounds, i * 4);
+                System.arraycopy(missBounds, i * 4, bounds, missIndexes[i] * 4, 4);
+            }
+        }
+    }
+
     public @NonNull Glyph getMaskGlyph(@NonNull GlyphStrike strike, int glyphId, int lineRadius,
                                        int lineCap, int lineJoin, int miterLimit) {
-        final Segment segment;
-        final Glyph glyph;
+        return getStrokeGlyph(strike, glyphId, lineRadius, lineCap, lineJoin, miterLimit, false);
+    }
+
+    /**
+     * Obtains the stroke of a glyph as a coverage mask in the same way as
+     * {@link #getMaskGlyph(GlyphStrike, int, int, int, int, int)}.
+     */
+    public @NonNull Glyph getCoverageGlyph(@NonNull GlyphStrike strike, int glyphId, int lineRadius,
+                                           int lineCap, int lineJoin, int miterLimit) {
+        return getStrokeGlyph(strike, glyphId, lineRadius, lineCap, lineJoin, miterLimit, true);
+    }
+
+    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+    private @NonNull Glyph getStrokeGlyph(@NonNull GlyphStrike strike, int glyphId, int lineRadius,
+                                          int lineCap, int lineJoin, int miterLimit,
+                                          boolean coverage) {
+        Segment segment = getSegment(strike);
+        StrokeSegment strokeSegment = segment.getStrokeSegment(lineRadius, lineCap, lineJoin,
+                                                               miterLimit, coverage);
+
+        Glyph strokeGlyph = strokeSegment.get(glyphId);
+        if (strokeGlyph != null) {
+            segment.hitCount.incrementAndGet();
+            return strokeGlyph;
+        }
+
+        segment.missCount.incrementAndGet();
+
+        long startTime = System.nanoTime();
+
+        synchronized (segment.loadLock) {
+            // An evicted outline is disposed under the load lock, so the one found here remains
+            // valid until the stroke is done.
+            Glyph outlineGlyph = segment.outlineSegment.get(glyphId);
+            boolean outlineLoaded = false;
+
+            if (outlineGlyph == null) {
+                outlineGlyph = new Glyph(glyphId);
+                segment.rasterizer().loadOutline(outlineGlyph);
+                outlineLoaded = true;
+            }
+
+            if (coverage) {
+                strokeGlyph = segment.rasterizer().strokeCoverage(outlineGlyph, lineRadius, lineCap, lineJoin, miterLimit);
+            } else {
+                strokeGlyph = segment.rasterizer().strokeGlyph(outlineGlyph, lineRadius, lineCap, lineJoin, miterLimit);
+            }
+            if (outlineLoaded) {
+                segment.outlineSegment.put(glyphId, outlineGlyph);
+            }
 
-        synchronized (this) {
-            segment = unsafeGetSegment(strike);
-            glyph = unsafeGetGlyph(segment, glyphId);
+            segment.finishLoad();
         }
+        segment.rasterizationTime.addAndGet(System.nanoTime() - startTime);
+        if (strokeGlyph == null) {
+            // Remember the glyphs which cannot be stroked as empty ones.
+            strokeGlyph = new Glyph(glyphId);
+        }
+
+        return strokeSegment.putIfAbsent(glyphId, strokeGlyph);
+    }
 
-        synchronized(glyph) {
-            if (!glyph.containsOutline()) {
-                segment.remove(glyphId);
+    public @NonNull GlyphPath getGlyphPath(@NonNull GlyphStrike strike, int glyphId) {
+        Segment segment = getSegment(strike);
 
-                segment.rasterizer.loadOutline(glyph);
-                segment.put(glyphId, glyph);
+        Glyph glyph = segment.pathSegment.get(glyphId);
+        if (glyph == null) {
+            segment.missCount.incrementAndGet();
+
+            synchronized (segment.loadLock) {
+                glyph = segment.pathSegment.get(glyphId);
+                if (glyph == null) {
+                    long startTime = System.nanoTime();
+
+                    glyph = new Glyph(glyphId);
+                    segment.rasterizer().loadPath(glyph);
+                    segment.rasterizationTime.addAndGet(System.nanoTime() - startTime);
+                    segment.pathSegment.put(glyphId, glyph);
+                }
+
+                segment.finishLoad();
             }
+        } else {
+            segment.hitCount.incrementAndGet();
         }
 
-        return segment.rasterizer.strokeGlyph(glyph, lineRadius, lineCap, lineJoin, miterLimit);
+        return pathOf(glyph);
     }
 
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-    public @NonNull Path getGlyphPath(@NonNull GlyphStrike strike, int glyphId) {
-        final Segment segment;
-        final Glyph glyph;
+    /**
+     * Obtains the paths of a whole run. The strike is resolved only once, and all the missing
+     * paths are decomposed with a single native call.
+     *
+     * @param strike The strike of the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param paths The array which will receive the paths, at least as long as
+     *        <code>glyphIds</code>.
+     */
+    public void getGlyphPaths(@NonNull GlyphStrike strike, @NonNull IntList glyphIds,
+                              @NonNull GlyphPath[] paths) {
+        Segment segment = getSegment(strike);
+        PathSegment pathSegment = segment.pathSegment;
+        int size = glyphIds.size();
+        int[] missIndexes = null;
+        int missCount = 0;
 
-        synchronized (this) {
-            segment = unsafeGetSegment(strike);
-            glyph = unsafeGetGlyph(segment, glyphId);
+        for (int i = 0; i < size; i++) {
+            Glyph glyph = pathSegment.get(glyphIds.get(i));
+            if (glyph != null) {
+                paths[i] = pathOf(glyph);
+            } else {
+                if (missIndexes == null) {
+                    missIndexes = new int[size - i];
+                }
+                missIndexes[missCount++] = i;
+            }
         }
 
-        synchronized (glyph) {
-            if (glyph.path() == null) {
-                segment.remove(glyphId);
+        if (missCount < size) {
+            segment.hitCount.addAndGet(size - missCount);
+        }
+        if (missCount == 0) {
+            return;
+        }
+        segment.missCount.addAndGet(missCount);
+
+        synchronized (segment.loadLock) {
+            // Keep a reference to each glyph, a loaded path might be evicted before it is read.
+            Map<Integer, Glyph> resolved = new HashMap<>();
+            List<Glyph> pending = new ArrayList<>();
+
+            for (int i = 0; i < missCount; i++) {
+                int glyphId = glyphIds.get(missIndexes[i]);
+                if (!resolved.containsKey(glyphId)) {
+                    Glyph glyph = pathSegment.get(glyphId);
+                    if (glyph == null) {
+                        glyph = new Glyph(glyphId);
+                        pending.add(glyph);
+                    }
+
+                    resolved.put(glyphId, glyph);
+                }
+            }
 
-                segment.rasterizer.loadPath(glyph);
-                segment.put(glyphId, glyph);
+            if (!pending.isEmpty()) {
+                Glyph[] glyphs = pending.toArray(new Glyph[pending.size()]);
+                long startTime = System.nanoTime();
+
+                segment.rasterizer().loadPaths(glyphs, glyphs.length);
+                segment.rasterizationTime.addAndGet(System.nanoTime() - startTime);
+
+                for (Glyph glyph : glyphs) {
+                    pathSegment.put(glyph.glyphId(), glyph);
+                }
+            }
+
+            segment.finishLoad();
+
+            for (int i = 0; i < missCount; i++) {
+                int index = missIndexes[i];
+                paths[index] = pathOf(resolved.get(glyphIds.get(index)));
             }
         }
+    }
 
-        return glyph.path();
+    private static @NonNull GlyphPath pathOf(@NonNull Glyph glyph) {
+        GlyphPath path = glyph.path();
+        return (path != null ? path : GlyphPath.EMPTY);
     }
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+
+/**
+ * The <code>GlyphCacheManager</code> class provides management activities related to the glyph
+ * cache shared by all renderers.
+ */
+public class GlyphCacheManager {
+    /**
+     * Interface definition for a callback to be invoked when entries are evicted from the glyph
+     * cache.
+     */
+    public interface EvictionListener {
+        /**
+         * Called when an entry is evicted from the glyph cache. The method is invoked on the thread
+         * which caused the eviction, so it should return quickly without touching the cache.
+         *
+         * @param typeface The typeface of the evicted glyphs.
+         * @param glyphCount The number of evicted glyphs, more than one if a whole atlas page was
+         *        evicted.
+         * @param byteCount The number of bytes released by the eviction.
+         */
+        void onEviction(@NonNull Typeface typeface, int glyphCount, int byteCount);
+    }
+
+    private static final @NonNull ComponentCallbacks2 COMPONENT_CALLBACKS = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+    };
+
+    private GlyphCacheManager() { }
+
+    /**
+     * Returns the maximum number of bytes which the glyph masks can hold. By default, it is an
+     * eighth of the maximum heap size.
+     *
+     * @return The capacity of the glyph cache in bytes.
+     */
+    public static int getCapacity() {
+        return GlyphCache.getInstance().capacity();
+    }
+
+    /**
+     * Sets the maximum number of bytes which the glyph cache can hold, evicting the least recently
+     * used glyphs if the cache is already larger.
+     * <p>
+     * Glyph bitmaps live in native memory since Android 8.0, so the default capacity which is
+     * derived from the heap size may not suit every application.
+     *
+     * @param capacity The capacity of the glyph cache in bytes.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public static void setCapacity(int capacity) {
+        checkArgument(capacity > 0, "The capacity must be positive");
+        GlyphCache.getInstance().setCapacity(capacity);
+    }
+
+    /**
+     * Returns the maximum number of bytes which the glyph outlines can hold. The outlines are
+     * loaded for stroking the glyphs. By default, it is an eighth of the capacity of the masks.
+     *
+     * @return The capacity of the glyph outlines in bytes.
+     */
+    public static int getOutlineCapacity() {
+        return GlyphCache.getInstance().getOutlineCapacity();
+    }
+
+    /**
+     * Sets the maximum number of bytes which the glyph outlines can hold, evicting the least
+     * recently used outlines if they are already larger. The outlines are budgeted apart from the
+     * masks and the paths, and their size is reported by the native side as it is allocated.
+     *
+     * @param capacity The capacity of the glyph outlines in bytes.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public static void setOutlineCapacity(int capacity) {
+        checkArgument(capacity > 0, "The capacity must be positive");
+        GlyphCache.getInstance().setOutlineCapacity(capacity);
+    }
+
+    /**
+     * Returns the maximum number of bytes which the glyph paths can hold. By default, it is an
+     * eighth of the capacity of the masks.
+     *
+     * @return The capacity of the glyph paths in bytes.
+     */
+    public static int getPathCapacity() {
+        return GlyphCache.getInstance().getPathCapacity();
+    }
+
+    /**
+     * Sets the maximum number of bytes which the glyph paths can hold, evicting the least recently
+     * used paths if they are already larger. The paths are budgeted apart from the masks and the
+     * outlines.
+     *
+     * @param capacity The capacity of the glyph paths in bytes.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public static void setPathCapacity(int capacity) {
+        checkArgument(capacity > 0, "The capacity must be positive");
+        GlyphCache.getInstance().setPathCapacity(capacity);
+    }
+
+    /**
+     * Returns the maximum number of bytes which the glyphs of a single strike can hold. The default
+     * value is zero, meaning that the strikes are only bounded by the capacity of the cache.
+     *
+     * @return The quota of each strike in bytes.
+     */
+    public static int getStrikeQuota() {
+        return GlyphCache.getInstance().getStrikeQuota();
+    }
+
+    /**
+     * Sets the maximum number of bytes which the glyphs of a single strike can hold, so that a
+     * strike, such as the one of a huge heading, cannot push all others out of the cache. The
+     * filled glyphs of a strike, including its atlas pages, and the glyphs of each of its stroke
+     * styles are bounded separately.
+     *
+     * @param quota The quota of each strike in bytes, or zero to only bound the strikes by the
+     *        capacity of the cache.
+     *
+     * @throws IllegalArgumentException if <code>quota</code> is negative.
+     */
+    public static void setStrikeQuota(int quota) {
+        checkArgument(quota >= 0, "The quota must not be negative");
+        GlyphCache.getInstance().setStrikeQuota(quota);
+    }
+
+    /**
+     * Returns the time after which an unused strike is expired. The default value is zero, meaning
+     * that the strikes never expire on their own.
+     *
+     * @return The idle timeout of strikes in milliseconds.
+     */
+    public static long getStrikeIdleTimeout() {
+        return GlyphCache.getInstance().getStrikeIdleTimeout();
+    }
+
+    /**
+     * Sets the time after which an unused strike is expired. An expired strike releases all of its
+     * glyphs along with its rasterizer, which holds a FreeType size and, with parallel
+     * rasterization, a private font face. The idle strikes are looked for while the cache is in
+     * use, at most once per half of the timeout.
+     * <p>
+     * The usage of a strike is recorded with a resolution of one second, so a non-zero timeout
+     * must be at least one second long.
+     *
+     * @param timeout The idle timeout of strikes in milliseconds, or zero to never expire them on
+     *        their own.
+     *
+     * @throws IllegalArgumentException if <code>timeout</code> is negative, or if it is non-zero
+     *         and less than one second.
+     */
+    public static void setStrikeIdleTimeout(long timeout) {
+        checkArgument(timeout >= 0, "The timeout must not be negative");
+        checkArgument(timeout == 0 || timeout >= GlyphCache.MIN_STRIKE_IDLE_TIMEOUT,
+                      "The timeout must be zero or at least " + GlyphCache.MIN_STRIKE_IDLE_TIMEOUT + " ms");
+        GlyphCache.getInstance().setStrikeIdleTimeout(timeout);
+    }
+
+    /**
+     * Releases memory of the glyph cache according to the given level of memory pressure.
+     * <ul>
+     *     <li>{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE},
+     *         {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN} and
+     *         {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND} shrink the cache to half of its
+     *         capacity.</li>
+     *     <li>{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW} and
+     *         {@link ComponentCallbacks2#TRIM_MEMORY_MODERATE} shrink the cache to a quarter of
+     *         its capacity, and expire the strikes which are not currently in use.</li>
+     *     <li>{@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL} and
+     *         {@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE} clear the cache completely.</li>
+     * </ul>
+     *
+     * @param level The level of memory pressure as passed to
+     *        {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void trimMemory(int level) {
+        GlyphCache.getInstance().trimMemory(level);
+    }
+
+    /**
+     * Returns the callbacks which trim the glyph cache on memory pressure. They can be registered
+     * with {@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)},
+     * preferably on the application context.
+     *
+     * @return The component callbacks of the glyph cache.
+     */
+    public static @NonNull ComponentCallbacks2 getComponentCallbacks() {
+        return COMPONENT_CALLBACKS;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the glyph cache, along with the statistics of each
+     * cached strike.
+     *
+     * @return The current statistics of the glyph cache.
+     */
+    public static @NonNull GlyphCacheStats getStats() {
+        return GlyphCache.getInstance().getStats();
+    }
+
+    /**
+     * Sets the listener to be notified of each eviction from the glyph cache. The notification
+     * carries only a few primitive values, so the listener can be left installed in production.
+     *
+     * @param listener The listener to notify, or <code>null</code> to remove the current one.
+     */
+    public static void setEvictionListener(@Nullable EvictionListener listener) {
+        GlyphCache.getInstance().setEvictionListener(listener);
+    }
+
+    /**
+     * Returns whether glyph masks are packed into shared atlas pages. The default value is
+     * <code>false</code>.
+     *
+     * @return <code>true</code> if glyph masks are packed into atlas pages, <code>false</code>
+     *         otherwise.
+     */
+    public static boolean isAtlasEnabled() {
+        return GlyphCache.getInstance().isAtlasEnabled();
+    }
+
+    /**
+     * Enables or disables packing of glyph masks into shared atlas pages.
+     * <p>
+     * With atlas pages, the masks of a strike are drawn from a few large bitmaps instead of a
+     * separate bitmap per glyph, and the pages are evicted as a whole. The setting only applies to
+     * the strikes which are not yet cached, so it should preferably be changed before any text is
+     * rendered.
+     *
+     * @param enabled <code>true</code> to pack glyph masks into atlas pages, <code>false</code>
+     *        otherwise.
+     */
+    public static void setAtlasEnabled(boolean enabled) {
+        GlyphCache.getInstance().setAtlasEnabled(enabled);
+    }
+
+    /**
+     * Returns whether the glyphs of different strikes can be rasterized in parallel. The default
+     * value is <code>false</code>.
+     *
+     * @return <code>true</code> if the glyphs of different strikes are rasterized in parallel,
+     *         <code>false</code> otherwise.
+     */
+    public static boolean isParallelRasterizationEnabled() {
+        return GlyphCache.getInstance().isParallelRasterizationEnabled();
+    }
+
+    /**
+     * Enables or disables parallel rasterization of glyphs.
+     * <p>
+     * By default, all strikes of a typeface are rasterized with a single font face, one glyph at a
+     * time. When parallel rasterization is enabled, each strike opens a private face on the font
+     * data, so that the glyphs of different strikes can be rasterized on different threads
+     * simultaneously at the cost of some memory per strike. Typefaces created from an asset keep
+     * using the shared face as their data is read through a single stream. The setting only
+     * applies to the strikes which are not yet cached.
+     *
+     * @param enabled <code>true</code> to rasterize the glyphs in parallel, <code>false</code>
+     *        otherwise.
+     */
+    public static void setParallelRasterizationEnabled(boolean enabled) {
+        GlyphCache.getInstance().setParallelRasterizationEnabled(enabled);
+    }
+
+    /**
+     * Sets up a persistent tier of the glyph cache which keeps the rasterized glyph masks on disk
+     * across process restarts.
+     * <p>
+     * The masks of all strikes are stored in a single file inside the given directory. Whenever a
+     * glyph is missing in memory, the disk is looked into before rasterizing it, and newly
+     * rasterized masks are appended to the file. Once the file grows beyond the maximum size, it is
+     * compacted by keeping only the most recently used masks. Color glyphs are never persisted.
+     *
+     * @param directory The directory in which to keep the cache file, or <code>null</code> to
+     *        disable the disk tier.
+     * @param maxSize The maximum size of the cache file in bytes.
+     *
+     * @throws IllegalArgumentException if <code>directory</code> is not null and
+     *         <code>maxSize</code> is not positive.
+     * @throws IOException if the cache file could not be opened.
+     */
+    public static void setDiskCache(@Nullable File directory, int maxSize) throws IOException {
+        GlyphDiskCache diskCache = null;
+        if (directory != null) {
+            checkArgument(maxSize > 0, "The maximum size must be positive");
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create the directory: " + directory);
+            }
+
+            diskCache = new GlyphDiskCache(new File(directory, "glyph-masks"), maxSize);
+        }
+
+        GlyphCache.getInstance().setDiskCache(diskCache);
+    }
+}
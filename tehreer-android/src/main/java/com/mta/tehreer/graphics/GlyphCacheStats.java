@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>GlyphCacheStats</code> class represents a snapshot of the statistics of the glyph
+ * cache. The counters are cumulative since the start of the process, whereas the sizes reflect
+ * the moment at which the snapshot was taken.
+ */
+public final class GlyphCacheStats {
+    /**
+     * The <code>StrikeStats</code> class represents the statistics of a single strike, i.e. the
+     * glyphs of a typeface rasterized at a particular size and transform.
+     */
+    public static final class StrikeStats {
+        private final @NonNull Typeface typeface;
+        private final int pixelWidth;
+        private final int pixelHeight;
+        private final int skewX;
+        private final int shiftX;
+        private final long hitCount;
+        private final long missCount;
+        private final long rasterizationTime;
+        private final long evictionCount;
+        private final long evictedBytes;
+        private final int byteCount;
+        private final int entryCount;
+
+        StrikeStats(@NonNull GlyphStrike strike, long hitCount, long missCount,
+                    long rasterizationTime, long evictionCount, long evictedBytes,
+                    int byteCount, int entryCount) {
+            this.typeface = strike.typeface;
+            this.pixelWidth = strike.pixelWidth;
+            this.pixelHeight = strike.pixelHeight;
+            this.skewX = strike.skewX;
+            this.shiftX = strike.shiftX;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.rasterizationTime = rasterizationTime;
+            this.evictionCount = evictionCount;
+            this.evictedBytes = evictedBytes;
+            this.byteCount = byteCount;
+            this.entryCount = entryCount;
+        }
+
+        /**
+         * Returns the typeface of this strike.
+         *
+         * @return The typeface of this strike.
+         */
+        public @NonNull Typeface getTypeface() {
+            return typeface;
+        }
+
+        /**
+         * Returns the horizontal size of this strike in pixels.
+         *
+         * @return The horizontal size of this strike in pixels.
+         */
+        public float getPixelWidth() {
+            return pixelWidth / 64.0f;
+        }
+
+        /**
+         * Returns the vertical size of this strike in pixels.
+         *
+         * @return The vertical size of this strike in pixels.
+         */
+        public float getPixelHeight() {
+            return pixelHeight / 64.0f;
+        }
+
+        /**
+         * Returns the horizontal skew applied on the glyphs of this strike.
+         *
+         * @return The horizontal skew of this strike.
+         */
+        public float getSkewX() {
+            return skewX / 65536.0f;
+        }
+
+        /**
+         * Returns the fraction of a pixel by which the glyphs of this strike are shifted
+         * horizontally due to subpixel positioning.
+         *
+         * @return The horizontal shift of this strike in pixels.
+         */
+        public float getShiftX() {
+            return shiftX / 64.0f;
+        }
+
+        /**
+         * Returns the number of glyph lookups which were served from memory.
+         *
+         * @return The number of hits.
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * Returns the number of glyph lookups which had to load the glyph.
+         *
+         * @return The number of misses.
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Returns the total time spent in rasterizing the glyphs.
+         *
+         * @return The rasterization time in nanoseconds.
+         */
+        public long getRasterizationTime() {
+            return rasterizationTime;
+        }
+
+        /**
+         * Returns the number of entries evicted so far.
+         *
+         * @return The number of evictions.
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * Returns the number of bytes released by evictions so far.
+         *
+         * @return The number of evicted bytes.
+         */
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        /**
+         * Returns the number of bytes currently held by this strike, including its atlas pages,
+         * outlines and paths.
+         *
+         * @return The current number of bytes.
+         */
+        public int getByteCount() {
+            return byteCount;
+        }
+
+        /**
+         * Returns the number of entries currently held by this strike.
+         *
+         * @return The current number of entries.
+         */
+        public int getEntryCount() {
+            return entryCount;
+        }
+    }
+
+    private final int capacity;
+    private final long hitCount;
+    private final long missCount;
+    private final long rasterizationTime;
+    private final long evictionCount;
+    private final long evictedBytes;
+    private final int byteCount;
+    private final int entryCount;
+    private final int outlineByteCount;
+    private final int pathByteCount;
+    private final @NonNull List<StrikeStats> strikes;
+
+    GlyphCacheStats(int capacity, long hitCount, long missCount, long rasterizationTime,
+                    long evictionCount, long evictedBytes, int byteCount, int entryCount,
+                    int outlineByteCount, int pathByteCount, @NonNull List<StrikeStats> strikes) {
+        this.capacity = capacity;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.rasterizationTime = rasterizationTime;
+        this.evictionCount = evictionCount;
+        this.evictedBytes = evictedBytes;
+        this.byteCount = byteCount;
+        this.entryCount = entryCount;
+        this.outlineByteCount = outlineByteCount;
+        this.pathByteCount = pathByteCount;
+        this.strikes = Collections.unmodifiableList(strikes);
+    }
+
+    /**
+     * Returns the maximum number of bytes which the glyph masks can hold.
+     *
+     * @return The capacity of the glyph cache in bytes.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of glyph lookups which were served from memory.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of glyph lookups which had to load the glyph.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the total time spent in rasterizing the glyphs.
+     *
+     * @return The rasterization time in nanoseconds.
+     */
+    public long getRasterizationTime() {
+        return rasterizationTime;
+    }
+
+    /**
+     * Returns the number of entries evicted so far, including the ones dropped when the cache was
+     * cleared.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of bytes released by evictions so far.
+     *
+     * @return The number of evicted bytes.
+     */
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the glyph cache, including the outlines and
+     * the paths.
+     *
+     * @return The current number of bytes.
+     */
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the glyph outlines.
+     *
+     * @return The current number of outline bytes.
+     */
+    public int getOutlineByteCount() {
+        return outlineByteCount;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the glyph paths.
+     *
+     * @return The current number of path bytes.
+     */
+    public int getPathByteCount() {
+        return pathByteCount;
+    }
+
+    /**
+     * Returns the number of entries currently held by the glyph cache. An atlas page counts as a
+     * single entry along with the entries of its glyphs.
+     *
+     * @return The current number of entries.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of strikes currently held by the glyph cache.
+     *
+     * @return The current number of strikes.
+     */
+    public int getStrikeCount() {
+        return strikes.size();
+    }
+
+    /**
+     * Returns the statistics of the strikes currently held by the glyph cache.
+     *
+     * @return An unmodifiable list of strike statistics.
+     */
+    public @NonNull List<StrikeStats> getStrikeStats() {
+        return strikes;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists 8-bit glyph masks in a single append-only file.
+ * <p>
+ * Each record carries its own key, so the index is rebuilt by scanning the file when it is
+ * opened, and a record which was being written when the process died is simply cut off. Reads go
+ * through a memory mapping of the file. Once the file grows beyond its maximum size, it is
+ * compacted by rewriting the most recently used records, oldest first, into a new file.
+ */
+final class GlyphDiskCache implements Closeable {
+    private static final int MAGIC = 0x54474D43;    // 'TGMC'
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 44;
+    private static final int MAX_MASK_SIZE = 4096;
+
+    static final class Key {
+        final long fontId;
+        final int pixelWidth;
+        final int pixelHeight;
+        final int skewX;
+        final int shiftX;
+        final int glyphId;
+
+        Key(long fontId, int pixelWidth, int pixelHeight, int skewX, int shiftX, int glyphId) {
+            this.fontId = fontId;
+            this.pixelWidth = pixelWidth;
+            this.pixelHeight = pixelHeight;
+            this.skewX = skewX;
+            this.shiftX = shiftX;
+            this.glyphId = glyphId;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this != obj) {
+                if (obj == null || !(obj instanceof Key)) {
+                    return false;
+                }
+
+                Key other = (Key) obj;
+                if (fontId != other.fontId
+                        || pixelWidth != other.pixelWidth || pixelHeight != other.pixelHeight
+                        || skewX != other.skewX || shiftX != other.shiftX
+                        || glyphId != other.glyphId) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (int) (fontId ^ (fontId >>> 32));
+            result = prime * result + pixelWidth;
+            result = prime * result + pixelHeight;
+            result = prime * result + skewX;
+            result = prime * result + shiftX;
+            result = prime * result + glyphId;
+
+            return result;
+        }
+    }
+
+    static final class Mask {
+        final int left;
+        final int top;
+        final int width;
+        final int height;
+        final @NonNull byte[] pixels;
+
+        Mask(int left, int top, int width, int height, @NonNull byte[] pixels) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    private static final class Entry {
+        int offset;
+        final int length;
+
+        Entry(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final @NonNull File mFile;
+    private final int mMaxSize;
+    private final @NonNull LinkedHashMap<Key, Entry> mIndex = new LinkedHashMap<>(256, 0.75f, true);
+    private @Nullable RandomAccessFile mAccessFile;
+    private @Nullable FileChannel mChannel;
+    private @Nullable MappedByteBuffer mMapping;
+    private int mFileSize;
+
+    GlyphDiskCache(@NonNull File file, int maxSize) throws IOException {
+        mFile = file;
+        mMaxSize = maxSize;
+
+        open();
+    }
+
+    private void open() throws IOException {
+        mAccessFile = new RandomAccessFile(mFile, "rw");
+        mChannel = mAccessFile.getChannel();
+        mMapping = null;
+        mIndex.clear();
+
+        long length = mChannel.size();
+        if (length < FILE_HEADER_SIZE || length > mMaxSize * 2L || !scan((int) length)) {
+            reset();
+        }
+    }
+
+    private boolean scan(int length) throws IOException {
+        MappedByteBuffer mapping = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION) {
+            return false;
+        }
+
+        int offset = FILE_HEADER_SIZE;
+
+        while (offset + RECORD_HEADER_SIZE <= length) {
+            int width = mapping.getInt(offset + 36);
+            int height = mapping.getInt(offset + 40);
+            if (width < 0 || height < 0 || width > MAX_MASK_SIZE || height > MAX_MASK_SIZE) {
+                break;
+            }
+
+            int recordLength = RECORD_HEADER_SIZE + (width * height);
+            if (offset + recordLength > length) {
+                break;
+            }
+
+            mIndex.put(readKey(mapping, offset), new Entry(offset, recordLength));
+            offset += recordLength;
+        }
+
+        // Cut off the record which could not be completely written.
+        if (offset < length) {
+            mChannel.truncate(offset);
+        }
+
+        mFileSize = offset;
+
+        return true;
+    }
+
+    private void reset() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+
+        mChannel.truncate(0);
+        mChannel.write(header, 0);
+        mIndex.clear();
+        mMapping = null;
+        mFileSize = FILE_HEADER_SIZE;
+    }
+
+    private static @NonNull Key readKey(@NonNull ByteBuffer buffer, int offset) {
+        return new Key(buffer.getLong(offset),
+                       buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                       buffer.getInt(offset + 16), buffer.getInt(offset + 20),
+                       buffer.getInt(offset + 24));
+    }
+
+    private static void writeRecord(@NonNull ByteBuffer buffer, @NonNull Key key, @NonNull Mask mask) {
+        buffer.putLong(key.fontId);
+        buffer.putInt(key.pixelWidth);
+        buffer.putInt(key.pixelHeight);
+        buffer.putInt(key.skewX);
+        buffer.putInt(key.shiftX);
+        buffer.putInt(key.glyphId);
+        buffer.putInt(mask.left);
+        buffer.putInt(mask.top);
+        buffer.putInt(mask.width);
+        buffer.putInt(mask.height);
+        buffer.put(mask.pixels, 0, mask.width * mask.height);
+    }
+
+    private @NonNull ByteBuffer mapping(int end) throws IOException {
+        if (mMapping == null || mMapping.capacity() < end) {
+            // Appended records are not visible in an older mapping.
+            mMapping = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mFileSize);
+        }
+
+        return mMapping;
+    }
+
+    synchronized int size() {
+        return mFileSize;
+    }
+
+    synchronized int count() {
+        return mIndex.size();
+    }
+
+    synchronized @Nullable Mask get(@NonNull Key key) throws IOException {
+        if (mChannel == null) {
+            return null;
+        }
+
+        Entry entry = mIndex.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = mapping(entry.offset + entry.length).duplicate();
+        int left = buffer.getInt(entry.offset + 28);
+        int top = buffer.getInt(entry.offset + 32);
+        int width = buffer.getInt(entry.offset + 36);
+        int height = buffer.getInt(entry.offset + 40);
+        byte[] pixels = new byte[width * height];
+
+        buffer.position(entry.offset + RECORD_HEADER_SIZE);
+        buffer.get(pixels);
+
+        return new Mask(left, top, width, height, pixels);
+    }
+
+    synchronized void putAll(@NonNull Key[] keys, @NonNull Mask[] masks, int count) throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+
+        int totalLength = 0;
+        for (int i = 0; i < count; i++) {
+            if (!mIndex.containsKey(keys[i])) {
+                totalLength += RECORD_HEADER_SIZE + (masks[i].width * masks[i].height);
+            }
+        }
+        if (totalLength == 0) {
+            return;
+        }
+
+        // Write all the records with a single call, each one is indexed only afterwards.
+        ByteBuffer buffer = ByteBuffer.allocate(totalLength);
+        int offset = mFileSize;
+
+        for (int i = 0; i < count; i++) {
+            Key key = keys[i];
+            if (!mIndex.containsKey(key)) {
+                int start = buffer.position();
+                writeRecord(buffer, key, masks[i]);
+
+                mIndex.put(key, new Entry(offset + start, buffer.position() - start));
+            }
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer, offset + buffer.position());
+        }
+        mFileSize += totalLength;
+
+        if (mFileSize > mMaxSize) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        // Keep the most recently used records within half of the maximum size.
+        List<Map.Entry<Key, Entry>> retained = new ArrayList<>();
+        int budget = mMaxSize / 2 - FILE_HEADER_SIZE;
+
+        List<Map.Entry<Key, Entry>> entries = new ArrayList<>(mIndex.entrySet());
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Map.Entry<Key, Entry> entry = entries.get(i);
+            int length = entry.getValue().length;
+            if (length > budget) {
+                break;
+            }
+
+            retained.add(entry);
+            budget -= length;
+        }
+
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        RandomAccessFile tempAccessFile = new RandomAccessFile(tempFile, "rw");
+        ByteBuffer source = mapping(mFileSize);
+
+        try {
+            FileChannel tempChannel = tempAccessFile.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.flip();
+
+            tempChannel.truncate(0);
+            tempChannel.write(header, 0);
+
+            int offset = FILE_HEADER_SIZE;
+
+            // Write the oldest records first so that a later scan restores the same order.
+            for (int i = retained.size() - 1; i >= 0; i--) {
+                Entry entry = retained.get(i).getValue();
+                ByteBuffer record = source.duplicate();
+                record.limit(entry.offset + entry.length);
+                record.position(entry.offset);
+
+                while (record.hasRemaining()) {
+                    tempChannel.write(record, offset + (record.position() - entry.offset));
+                }
+
+                entry.offset = offset;
+                offset += entry.length;
+            }
+        } finally {
+            tempAccessFile.close();
+        }
+
+        closeFile();
+
+        if (!tempFile.renameTo(mFile)) {
+            tempFile.delete();
+            throw new IOException("Could not replace the glyph mask file");
+        }
+
+        open();
+    }
+
+    private void closeFile() throws IOException {
+        if (mAccessFile != null) {
+            mAccessFile.close();
+        }
+
+        mAccessFile = null;
+        mChannel = null;
+        mMapping = null;
+    }
+
+    synchronized void clear() throws IOException {
+        if (mChannel != null) {
+            reset();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+        mIndex.clear();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import android.graphics.Path;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+
+/**
+ * Holds the outline of a glyph as an array of verbs and an array of point coordinates, filled by
+ * the native side in a single call. The outline is replayed into a <code>Path</code> on the Java
+ * side, optionally translated, so that a glyph path is cached once and added to any number of
+ * paths without crossing JNI.
+ */
+final class GlyphPath {
+    static final byte MOVE_TO = 0;
+    static final byte LINE_TO = 1;
+    static final byte QUAD_TO = 2;
+    static final byte CUBIC_TO = 3;
+    static final byte CLOSE = 4;
+
+    static final @NonNull GlyphPath EMPTY = new GlyphPath(new byte[0], new float[0]);
+
+    //
+    // Object header, 2 array references and 2 array headers.
+    //
+    private static final int ESTIMATED_OVERHEAD = 8 + (2 * 4) + (2 * 12);
+
+    private final @NonNull byte[] verbs;
+    private final @NonNull float[] points;
+
+    @Keep
+    GlyphPath(@NonNull byte[] verbs, @NonNull float[] points) {
+        this.verbs = verbs;
+        this.points = points;
+    }
+
+    int verbCount() {
+        return verbs.length;
+    }
+
+    int byteCount() {
+        return verbs.length + (points.length * 4) + ESTIMATED_OVERHEAD;
+    }
+
+    /**
+     * Adds the outline to the given path, translated by the given offset.
+     */
+    void addTo(@NonNull Path path, float dx, float dy) {
+        float[] points = this.points;
+        int index = 0;
+
+        for (byte verb : verbs) {
+            switch (verb) {
+            case MOVE_TO:
+                path.moveTo(points[index] + dx, points[index + 1] + dy);
+                index += 2;
+                break;
+
+            case LINE_TO:
+                path.lineTo(points[index] + dx, points[index + 1] + dy);
+                index += 2;
+                break;
+
+            case QUAD_TO:
+                path.quadTo(points[index] + dx, points[index + 1] + dy,
+                            points[index + 2] + dx, points[index + 3] + dy);
+                index += 4;
+                break;
+
+            case CUBIC_TO:
+                path.cubicTo(points[index] + dx, points[index + 1] + dy,
+                             points[index + 2] + dx, points[index + 3] + dy,
+                             points[index + 4] + dx, points[index + 5] + dy);
+                index += 6;
+                break;
+
+            case CLOSE:
+                path.close();
+                break;
+            }
+        }
+    }
+
+    @NonNull Path toPath() {
+        Path path = new Path();
+        addTo(path, 0.0f, 0.0f);
+
+        return path;
+    }
+}
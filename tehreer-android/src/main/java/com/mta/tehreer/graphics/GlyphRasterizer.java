@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,10 @@
 
 package com.mta.tehreer.graphics;
 
+import android.graphics.Bitmap;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.mta.tehreer.Disposable;
 import com.mta.tehreer.internal.JniBridge;
@@ -38,16 +41,44 @@ final class GlyphRasterizer implements Disposable {
 
 	long nativeRasterizer;
 
-	GlyphRasterizer(@NonNull GlyphStrike strike) {
+	GlyphRasterizer(@NonNull GlyphStrike strike, boolean isolated) {
 	    nativeRasterizer = nCreate(strike.typeface.nativeTypeface,
                                    strike.pixelWidth, strike.pixelHeight,
-                                   0x10000, -strike.skewX, 0, 0x10000);
+                                   0x10000, -strike.skewX, 0, 0x10000,
+                                   strike.shiftX, 0, isolated);
 	}
 
 	void loadBitmap(@NonNull Glyph glyph) {
 	    nLoadBitmap(nativeRasterizer, glyph);
 	}
 
+    void loadBitmaps(@NonNull Glyph[] glyphs, int count) {
+        nLoadBitmaps(nativeRasterizer, glyphs, count);
+    }
+
+    void loadMasks(@NonNull Glyph[] glyphs, int count, @NonNull GlyphAtlas atlas) {
+        nLoadMasks(nativeRasterizer, glyphs, count, atlas);
+    }
+
+    void loadDistanceFields(@NonNull Glyph[] glyphs, int count, int spread) {
+        nLoadBitmaps(nativeRasterizer, glyphs, count);
+
+        for (int i = 0; i < count; i++) {
+            Glyph glyph = glyphs[i];
+            Bitmap bitmap = glyph.bitmap();
+
+            // Color glyphs have no single coverage to derive a field from, keep them as they are.
+            if (bitmap != null && bitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+                glyph.ownBitmap(DistanceField.createBitmap(bitmap, spread),
+                                glyph.leftSideBearing() - spread, glyph.topSideBearing() + spread);
+            }
+        }
+    }
+
+    void loadCoverages(@NonNull Glyph[] glyphs, int count) {
+        nLoadCoverages(nativeRasterizer, glyphs, count);
+    }
+
     void loadOutline(@NonNull Glyph glyph) {
         nLoadOutline(nativeRasterizer, glyph);
     }
@@ -56,24 +87,47 @@ final class GlyphRasterizer implements Disposable {
         nLoadPath(nativeRasterizer, glyph);
     }
 
-    @NonNull Glyph strokeGlyph(@NonNull Glyph glyph, int lineRadius,
-                               int lineCap, int lineJoin, int miterLimit) {
+    void loadPaths(@NonNull Glyph[] glyphs, int count) {
+        nLoadPaths(nativeRasterizer, glyphs, count);
+    }
+
+    void loadBounds(@NonNull int[] glyphIds, int count, @NonNull float[] bounds) {
+        nLoadBounds(nativeRasterizer, glyphIds, count, bounds);
+    }
+
+    @Nullable Glyph strokeGlyph(@NonNull Glyph glyph, int lineRadius,
+                                int lineCap, int lineJoin, int miterLimit) {
         return nStrokeGlyph(nativeRasterizer, glyph, lineRadius, lineCap, lineJoin, miterLimit);
     }
 
+    @Nullable Glyph strokeCoverage(@NonNull Glyph glyph, int lineRadius,
+                                   int lineCap, int lineJoin, int miterLimit) {
+        return nStrokeCoverage(nativeRasterizer, glyph, lineRadius, lineCap, lineJoin, miterLimit);
+    }
+
     @Override
     public void dispose() {
         nDispose(nativeRasterizer);
     }
 
 	private static native long nCreate(long nativeTypeface, int pixelWidth, int pixelHeight,
-                                       int transformXX, int transformXY, int transformYX, int transformYY);
+                                       int transformXX, int transformXY, int transformYX, int transformYY,
+                                       int deltaX, int deltaY, boolean isolated);
     private static native void nDispose(long nativeRasterizer);
 
     private static native void nLoadBitmap(long nativeRasterizer, @NonNull Glyph glyph);
+    private static native void nLoadBitmaps(long nativeRasterizer, @NonNull Glyph[] glyphs, int count);
+    private static native void nLoadMasks(long nativeRasterizer, @NonNull Glyph[] glyphs, int count,
+                                          @NonNull GlyphAtlas atlas);
+    private static native void nLoadCoverages(long nativeRasterizer, @NonNull Glyph[] glyphs, int count);
     private static native void nLoadOutline(long nativeRasterizer, @NonNull Glyph glyph);
     private static native void nLoadPath(long nativeRasterizer, @NonNull Glyph glyph);
+    private static native void nLoadPaths(long nativeRasterizer, @NonNull Glyph[] glyphs, int count);
+    private static native void nLoadBounds(long nativeRasterizer, @NonNull int[] glyphIds, int count,
+                                           @NonNull float[] bounds);
 
     private static native Glyph nStrokeGlyph(long nativeRasterizer, @NonNull Glyph glyph,
                                              int lineRadius, int lineCap, int lineJoin, int miterLimit);
+    private static native Glyph nStrokeCoverage(long nativeRasterizer, @NonNull Glyph glyph,
+                                                int lineRadius, int lineCap, int lineJoin, int miterLimit);
 }
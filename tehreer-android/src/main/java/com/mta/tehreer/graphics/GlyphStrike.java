@@ -24,6 +24,8 @@ final class GlyphStrike implements Cloneable {
     public int pixelWidth;      // 26.6 fixed-point value.
     public int pixelHeight;     // 26.6 fixed-point value.
     public int skewX;           // 16.16 fixed-point value.
+    public int shiftX;          // 26.6 fixed-point value.
+    public boolean distanceField;
 
     @Override
     public @NonNull GlyphStrike clone() {
@@ -44,7 +46,8 @@ final class GlyphStrike implements Cloneable {
             GlyphStrike other = (GlyphStrike) obj;
             if ((typeface == null ? other.typeface != null : !typeface.equals(other.typeface))
                     || pixelWidth != other.pixelWidth || pixelHeight != other.pixelHeight
-                    || skewX != other.skewX) {
+                    || skewX != other.skewX || shiftX != other.shiftX
+                    || distanceField != other.distanceField) {
                 return false;
             }
         }
@@ -60,6 +63,8 @@ final class GlyphStrike implements Cloneable {
         result = prime * result + pixelWidth;
         result = prime * result + pixelHeight;
         result = prime * result + skewX;
+        result = prime * result + shiftX;
+        result = prime * result + (distanceField ? 1231 : 1237);
 
         return result;
     }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
+
+/**
+ * A drawing target backed by a direct byte buffer, allowing text to be rendered without a
+ * <code>Canvas</code>, such as on a worker thread producing thumbnails.
+ * <p>
+ * The pixels are laid out in rows of the given stride. An {@link Format#ALPHA_8} buffer holds one
+ * coverage byte per pixel, and an {@link Format#ARGB_8888} buffer holds premultiplied pixels in the
+ * same byte order as <code>Bitmap.Config.ARGB_8888</code>, so that it can be copied into a bitmap
+ * with <code>Bitmap.copyPixelsFromBuffer</code>. Like a canvas, the buffer keeps a translation and
+ * a clip rect which can be saved and restored. A pixel buffer must not be drawn into by multiple
+ * threads at the same time, but separate buffers can be drawn into concurrently.
+ */
+public class PixelBuffer {
+    /**
+     * Specifies the format of the pixels of a buffer.
+     */
+    public enum Format {
+        /**
+         * Each pixel is stored as a single byte of coverage.
+         */
+        ALPHA_8(1),
+        /**
+         * Each pixel is stored as four bytes of premultiplied red, green, blue and alpha.
+         */
+        ARGB_8888(4);
+
+        final int bytesPerPixel;
+
+        Format(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    private static final int STATE_SIZE = 6;
+
+    private final @NonNull ByteBuffer mBuffer;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRowBytes;
+    private final @NonNull Format mFormat;
+
+    private float mTranslateX;
+    private float mTranslateY;
+    private int mClipLeft;
+    private int mClipTop;
+    private int mClipRight;
+    private int mClipBottom;
+
+    private @NonNull float[] mStateStack = new float[STATE_SIZE * 4];
+    private int mSaveCount;
+
+    /**
+     * Constructs a pixel buffer.
+     *
+     * @param buffer The direct buffer holding the pixels.
+     * @param width The width of the buffer in pixels.
+     * @param height The height of the buffer in pixels.
+     * @param rowBytes The number of bytes between the starts of consecutive rows.
+     * @param format The format of the pixels.
+     *
+     * @throws NullPointerException if <code>buffer</code> or <code>format</code> is null.
+     * @throws IllegalArgumentException if <code>buffer</code> is not direct, if
+     *         <code>width</code> or <code>height</code> is negative, if <code>rowBytes</code> is
+     *         less than a row of pixels, or if <code>buffer</code> is too small for the pixels.
+     */
+    public PixelBuffer(@NonNull ByteBuffer buffer, int width, int height, int rowBytes,
+                       @NonNull Format format) {
+        checkNotNull(buffer, "buffer");
+        checkNotNull(format, "format");
+        checkArgument(buffer.isDirect(), "The buffer is not direct");
+        checkArgument(width >= 0, "Width is negative");
+        checkArgument(height >= 0, "Height is negative");
+        checkArgument(rowBytes >= width * format.bytesPerPixel, "Row bytes are less than a row");
+        checkArgument((long) rowBytes * height <= buffer.capacity(), "The buffer is too small");
+
+        mBuffer = buffer;
+        mWidth = width;
+        mHeight = height;
+        mRowBytes = rowBytes;
+        mFormat = format;
+        mClipRight = width;
+        mClipBottom = height;
+    }
+
+    /**
+     * Returns the direct buffer holding the pixels.
+     *
+     * @return The buffer holding the pixels.
+     */
+    public @NonNull ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Returns the width of this buffer in pixels.
+     *
+     * @return The width of this buffer.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Returns the height of this buffer in pixels.
+     *
+     * @return The height of this buffer.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns the number of bytes between the starts of consecutive rows.
+     *
+     * @return The row bytes of this buffer.
+     */
+    public int getRowBytes() {
+        return mRowBytes;
+    }
+
+    /**
+     * Returns the format of the pixels of this buffer.
+     *
+     * @return The format of the pixels.
+     */
+    public @NonNull Format getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * Returns the current horizontal translation.
+     *
+     * @return The current horizontal translation.
+     */
+    public float getTranslateX() {
+        return mTranslateX;
+    }
+
+    /**
+     * Returns the current vertical translation.
+     *
+     * @return The current vertical translation.
+     */
+    public float getTranslateY() {
+        return mTranslateY;
+    }
+
+    /**
+     * Returns the left edge of the current clip in pixels of this buffer.
+     *
+     * @return The left edge of the clip.
+     */
+    public int getClipLeft() {
+        return mClipLeft;
+    }
+
+    /**
+     * Returns the top edge of the current clip in pixels of this buffer.
+     *
+     * @return The top edge of the clip.
+     */
+    public int getClipTop() {
+        return mClipTop;
+    }
+
+    /**
+     * Returns the right edge of the current clip in pixels of this buffer.
+     *
+     * @return The right edge of the clip.
+     */
+    public int getClipRight() {
+        return mClipRight;
+    }
+
+    /**
+     * Returns the bottom edge of the current clip in pixels of this buffer.
+     *
+     * @return The bottom edge of the clip.
+     */
+    public int getClipBottom() {
+        return mClipBottom;
+    }
+
+    /**
+     * Returns whether the current clip is empty.
+     *
+     * @return <code>true</code> if nothing can be drawn, <code>false</code> otherwise.
+     */
+    public boolean isClipEmpty() {
+        return mClipLeft >= mClipRight || mClipTop >= mClipBottom;
+    }
+
+    /**
+     * Adds the given offset to the current translation.
+     *
+     * @param dx The horizontal offset.
+     * @param dy The vertical offset.
+     */
+    public void translate(float dx, float dy) {
+        mTranslateX += dx;
+        mTranslateY += dy;
+    }
+
+    /**
+     * Intersects the current clip with the given rect, specified in translated coordinates. The
+     * edges are rounded outwards to whole pixels.
+     *
+     * @param left The left edge of the rect.
+     * @param top The top edge of the rect.
+     * @param right The right edge of the rect.
+     * @param bottom The bottom edge of the rect.
+     */
+    public void clipRect(float left, float top, float right, float bottom) {
+        mClipLeft = (int) Math.max(mClipLeft, Math.floor(left + mTranslateX));
+        mClipTop = (int) Math.max(mClipTop, Math.floor(top + mTranslateY));
+        mClipRight = (int) Math.min(mClipRight, Math.ceil(right + mTranslateX));
+        mClipBottom = (int) Math.min(mClipBottom, Math.ceil(bottom + mTranslateY));
+    }
+
+    /**
+     * Saves the current translation and clip so that they can be restored later.
+     *
+     * @return The save count before this call, to be passed to {@link #restoreToCount(int)}.
+     */
+    public int save() {
+        int offset = mSaveCount * STATE_SIZE;
+        if (offset + STATE_SIZE > mStateStack.length) {
+            mStateStack = Arrays.copyOf(mStateStack, mStateStack.length * 2);
+        }
+
+        mStateStack[offset + 0] = mTranslateX;
+        mStateStack[offset + 1] = mTranslateY;
+        mStateStack[offset + 2] = mClipLeft;
+        mStateStack[offset + 3] = mClipTop;
+        mStateStack[offset + 4] = mClipRight;
+        mStateStack[offset + 5] = mClipBottom;
+
+        return mSaveCount++;
+    }
+
+    /**
+     * Restores the translation and clip saved by the last unmatched call to {@link #save()}.
+     *
+     * @throws IllegalStateException if there is no saved state.
+     */
+    public void restore() {
+        if (mSaveCount == 0) {
+            throw new IllegalStateException("Underflow in restore");
+        }
+
+        restoreToCount(mSaveCount - 1);
+    }
+
+    /**
+     * Restores the translation and clip to the state they had when {@link #save()} returned the
+     * given count.
+     *
+     * @param saveCount The save count returned by {@link #save()}.
+     *
+     * @throws IllegalArgumentException if <code>saveCount</code> does not refer to a saved state.
+     */
+    public void restoreToCount(int saveCount) {
+        checkArgument(saveCount >= 0 && saveCount < mSaveCount, "Invalid save count: " + saveCount);
+
+        int offset = saveCount * STATE_SIZE;
+        mTranslateX = mStateStack[offset + 0];
+        mTranslateY = mStateStack[offset + 1];
+        mClipLeft = (int) mStateStack[offset + 2];
+        mClipTop = (int) mStateStack[offset + 3];
+        mClipRight = (int) mStateStack[offset + 4];
+        mClipBottom = (int) mStateStack[offset + 5];
+        mSaveCount = saveCount;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import androidx.annotation.NonNull;
+
+import com.mta.tehreer.internal.JniBridge;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Blends glyph masks into pixel buffers natively, a whole run per call. The masks are tightly
+ * packed 8-bit coverage arrays, so that nothing on this path depends on the platform bitmaps.
+ */
+final class PixelCompositor {
+    static {
+        JniBridge.loadLibrary();
+    }
+
+    static final int FORMAT_ALPHA_8 = 0;
+    static final int FORMAT_ARGB_8888 = 1;
+
+    /**
+     * The number of integers describing the placement of a single mask: its width and height
+     * followed by its left and top position within the buffer.
+     */
+    static final int PLACEMENT_SIZE = 4;
+
+    private PixelCompositor() {
+    }
+
+    static void compositeMasks(@NonNull PixelBuffer target, @NonNull byte[][] masks,
+                               @NonNull int[] placements, int count, int color) {
+        if (count == 0 || target.isClipEmpty()) {
+            return;
+        }
+
+        int format = (target.getFormat() == PixelBuffer.Format.ALPHA_8
+                      ? FORMAT_ALPHA_8
+                      : FORMAT_ARGB_8888);
+
+        nCompositeMasks(target.getBuffer(), format, target.getRowBytes(),
+                        target.getClipLeft(), target.getClipTop(),
+                        target.getClipRight(), target.getClipBottom(),
+                        masks, placements, count, color);
+    }
+
+    private static native void nCompositeMasks(ByteBuffer buffer, int format, int rowBytes,
+                                               int clipLeft, int clipTop, int clipRight, int clipBottom,
+                                               byte[][] masks, int[] placements, int count, int color);
+}
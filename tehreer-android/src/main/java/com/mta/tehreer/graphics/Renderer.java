@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,9 +19,12 @@ package com.mta.tehreer.graphics;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.ColorInt;
@@ -32,6 +35,8 @@ import com.mta.tehreer.collections.IntList;
 import com.mta.tehreer.collections.PointList;
 import com.mta.tehreer.sfnt.WritingDirection;
 
+import java.util.Arrays;
+
 import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
 import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
 
@@ -42,6 +47,13 @@ import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
 public class Renderer {
     private static final String TAG = Renderer.class.getSimpleName();
 
+    private static final int SUBPIXEL_SHIFT = 2;
+    private static final int SUBPIXEL_PHASES = 1 << SUBPIXEL_SHIFT;
+    private static final int SUBPIXEL_MASK = SUBPIXEL_PHASES - 1;
+
+    // Hardware canvases support drawing vertices since Android Q.
+    private static final int HARDWARE_VERTICES_SDK = 29;
+
     private @NonNull GlyphStrike mGlyphStrike = new GlyphStrike();
     private int mGlyphLineRadius;
     private int mGlyphLineCap;
@@ -49,12 +61,32 @@ public class Renderer {
     private int mGlyphMiterLimit;
 
     private @NonNull Paint mPaint = new Paint();
+    private final @NonNull GlyphStrike mFieldStrike = new GlyphStrike();
+    private final @NonNull Paint mFieldPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final @NonNull RectF mFieldDstRect = new RectF();
+    private float mFieldSharpness = 0.0f;
+    private final @NonNull Rect mMaskSrcRect = new Rect();
+    private final @NonNull Rect mMaskDstRect = new Rect();
+    private final @NonNull Rect mClipBounds = new Rect();
+    private final @NonNull GlyphBatch mGlyphBatch = new GlyphBatch();
+    private final @NonNull Paint mBatchPaint = new Paint();
+    private @NonNull Glyph[] mGlyphBuffer = new Glyph[0];
+    private final @NonNull GlyphStrike[] mPhaseStrikes = new GlyphStrike[SUBPIXEL_PHASES];
+    private final @NonNull int[] mPhaseStarts = new int[SUBPIXEL_PHASES + 1];
+    private @NonNull int[] mOriginBuffer = new int[0];
+    private @NonNull int[] mIndexBuffer = new int[0];
+    private @NonNull float[] mBoundsBuffer = new float[0];
+    private @NonNull byte[][] mMaskBuffer = new byte[0][];
+    private @NonNull int[] mPlacementBuffer = new int[0];
     private boolean mShouldRender = false;
+    private boolean mPhaseStrikesSynced = false;
     private boolean mShadowLayerSynced = true;
 
     private @ColorInt int mFillColor = Color.BLACK;
     private @NonNull RenderingStyle mRenderingStyle = RenderingStyle.FILL;
     private @NonNull WritingDirection mWritingDirection = WritingDirection.LEFT_TO_RIGHT;
+    private boolean mSubpixelPositioning = false;
+    private boolean mDistanceFieldRendering = false;
     private Typeface mTypeface = null;
     private float mTypeSize = 16.0f;
     private float mSlantAngle = 0.0f;
@@ -74,6 +106,10 @@ public class Renderer {
      * Constructs a renderer object.
      */
     public Renderer() {
+        mFieldStrike.pixelWidth = DistanceField.REFERENCE_SIZE * 64;
+        mFieldStrike.pixelHeight = DistanceField.REFERENCE_SIZE * 64;
+        mFieldStrike.distanceField = true;
+
         updatePixelSizes();
         updateTransform();
 
@@ -91,16 +127,33 @@ public class Renderer {
         mShouldRender = (pixelWidth >= 64 && pixelHeight >= 64);
         mGlyphStrike.pixelWidth = pixelWidth;
         mGlyphStrike.pixelHeight = pixelHeight;
+        mPhaseStrikesSynced = false;
     }
 
     private void updateTransform() {
         mGlyphStrike.skewX = (int) ((mSlantAngle * 0x10000) + 0.5f);
+        mFieldStrike.skewX = mGlyphStrike.skewX;
+        mPhaseStrikesSynced = false;
+    }
+
+    private void syncPhaseStrikes() {
+        if (!mPhaseStrikesSynced) {
+            mPhaseStrikesSynced = true;
+            mPhaseStrikes[0] = mGlyphStrike;
+
+            for (int i = 1; i < SUBPIXEL_PHASES; i++) {
+                GlyphStrike phaseStrike = mGlyphStrike.clone();
+                phaseStrike.shiftX = (i * 64) >> SUBPIXEL_SHIFT;
+                mPhaseStrikes[i] = phaseStrike;
+            }
+        }
     }
 
     private void syncShadowLayer() {
         if (!mShadowLayerSynced) {
             mShadowLayerSynced = true;
             mPaint.setShadowLayer(mShadowRadius, mShadowDx, mShadowDy, mShadowColor);
+            mFieldPaint.setShadowLayer(mShadowRadius, mShadowDx, mShadowDy, mShadowColor);
         }
     }
 
@@ -164,6 +217,63 @@ public class Renderer {
         mWritingDirection = writingDirection;
     }
 
+    /**
+     * Returns whether this renderer positions glyphs at fractional pixels. The default value is
+     * <code>false</code>.
+     *
+     * @return <code>true</code> if glyphs are positioned at fractional pixels, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isSubpixelPositioning() {
+        return mSubpixelPositioning;
+    }
+
+    /**
+     * Enables or disables positioning of glyphs at fractional pixels. The default value is
+     * <code>false</code>.
+     * <p>
+     * By default, the origin of each glyph is rounded to a whole pixel, which makes the spacing of
+     * small text uneven and the text jitter while it is scrolled or animated. With subpixel
+     * positioning, the origin is quantized to a quarter of a pixel instead, and up to four
+     * horizontally shifted masks of each glyph are rasterized and cached.
+     *
+     * @param subpixelPositioning <code>true</code> to position glyphs at fractional pixels,
+     *        <code>false</code> otherwise.
+     */
+    public void setSubpixelPositioning(boolean subpixelPositioning) {
+        mSubpixelPositioning = subpixelPositioning;
+    }
+
+    /**
+     * Returns whether this renderer fills glyphs from their distance fields. The default value is
+     * <code>false</code>.
+     *
+     * @return <code>true</code> if glyphs are filled from their distance fields,
+     *         <code>false</code> otherwise.
+     */
+    public boolean isDistanceFieldRendering() {
+        return mDistanceFieldRendering;
+    }
+
+    /**
+     * Enables or disables filling of glyphs from their distance fields. The default value is
+     * <code>false</code>.
+     * <p>
+     * By default, the masks of glyphs are rasterized and cached separately for every type size, so
+     * that animating the size, such as while zooming, rasterizes a new set of masks at each step.
+     * With distance field rendering, a single field of each glyph is generated on the CPU at a
+     * fixed reference size, and it is scaled to any type size and sharpened with a threshold while
+     * drawing. Such glyphs are positioned at fractional pixels, but the corners of large glyphs are
+     * slightly rounded and the hinting of small ones is lost. Strokes are still drawn from the
+     * regular masks.
+     *
+     * @param distanceFieldRendering <code>true</code> to fill glyphs from their distance fields,
+     *        <code>false</code> otherwise.
+     */
+    public void setDistanceFieldRendering(boolean distanceFieldRendering) {
+        mDistanceFieldRendering = distanceFieldRendering;
+    }
+
     /**
      * Returns this renderer's typeface, used for drawing glyphs.
      *
@@ -181,6 +291,8 @@ public class Renderer {
     public void setTypeface(Typeface typeface) {
         mTypeface = typeface;
         mGlyphStrike.typeface = typeface;
+        mFieldStrike.typeface = typeface;
+        mPhaseStrikesSynced = false;
     }
 
     /**
@@ -453,8 +565,45 @@ public class Renderer {
         mShadowLayerSynced = false;
     }
 
-    private @NonNull Path getGlyphPath(int glyphId) {
-        return GlyphCache.getInstance().getGlyphPath(mGlyphStrike, glyphId);
+    /**
+     * Loads specified glyphs into the glyph cache with the current state of this renderer, so that
+     * drawing them later does not need to rasterize them. This method can be invoked on a worker
+     * thread as long as the renderer is not modified in the meantime.
+     *
+     * @param glyphIds The list containing the glyph IDs.
+     */
+    public void prefetchGlyphs(@NonNull IntList glyphIds) {
+        checkNotNull(glyphIds);
+
+        if (mShouldRender && mTypeface != null) {
+            if (mSubpixelPositioning) {
+                syncPhaseStrikes();
+
+                // The phases in which the glyphs will be drawn are not known in advance.
+                for (GlyphStrike phaseStrike : mPhaseStrikes) {
+                    prefetchGlyphs(phaseStrike, glyphIds);
+                }
+            } else {
+                prefetchGlyphs(mGlyphStrike, glyphIds);
+            }
+        }
+    }
+
+    private void prefetchGlyphs(@NonNull GlyphStrike strike, @NonNull IntList glyphIds) {
+        GlyphCache cache = GlyphCache.getInstance();
+        int size = glyphIds.size();
+
+        if (mRenderingStyle == RenderingStyle.FILL || mRenderingStyle == RenderingStyle.FILL_STROKE) {
+            GlyphStrike fillStrike = (mDistanceFieldRendering ? mFieldStrike : strike);
+            cache.getMaskGlyphs(fillStrike, glyphIds, new Glyph[size]);
+        }
+
+        if (mRenderingStyle == RenderingStyle.STROKE || mRenderingStyle == RenderingStyle.FILL_STROKE) {
+            for (int i = 0; i < size; i++) {
+                cache.getMaskGlyph(strike, glyphIds.get(i), mGlyphLineRadius,
+                                   mGlyphLineCap, mGlyphLineJoin, mGlyphMiterLimit);
+            }
+        }
     }
 
     /**
@@ -464,10 +613,7 @@ public class Renderer {
      * @return The path of the glyph specified by <code>glyphId</code>.
      */
     public @NonNull Path generatePath(int glyphId) {
-        Path glyphPath = new Path();
-        glyphPath.addPath(getGlyphPath(glyphId));
-
-        return glyphPath;
+        return GlyphCache.getInstance().getGlyphPath(mGlyphStrike, glyphId).toPath();
     }
 
     /**
@@ -484,15 +630,15 @@ public class Renderer {
         float penX = 0.0f;
 
         int size = glyphIds.size();
+        GlyphPath[] glyphPaths = new GlyphPath[size];
+        GlyphCache.getInstance().getGlyphPaths(mGlyphStrike, glyphIds, glyphPaths);
 
         for (int i = 0; i < size; i++) {
-            int glyphId = glyphIds.get(i);
             float xOffset = offsets.getX(i);
             float yOffset = offsets.getY(i);
             float advance = advances.get(i);
 
-            Path glyphPath = getGlyphPath(glyphId);
-            cumulativePath.addPath(glyphPath, penX + xOffset, yOffset);
+            glyphPaths[i].addTo(cumulativePath, penX + xOffset, yOffset);
 
             penX += advance;
         }
@@ -500,27 +646,23 @@ public class Renderer {
         return cumulativePath;
     }
 
-    private void getBoundingBox(int glyphId, @NonNull RectF boundingBox) {
-        Glyph glyph = GlyphCache.getInstance().getMaskGlyph(mGlyphStrike, glyphId);
-        boundingBox.set(glyph.leftSideBearing(), glyph.topSideBearing(),
-                        glyph.rightSideBearing(), glyph.bottomSideBearing());
-    }
-
     /**
-     * Calculates the bounding box of specified glyph.
+     * Calculates the bounding box of specified glyph. The box is derived from the outline of the
+     * glyph without rasterizing it.
      *
      * @param glyphId The ID of glyph whose bounding box is calculated.
      * @return A rectangle that tightly encloses the path of the specified glyph.
      */
     public @NonNull RectF computeBoundingBox(int glyphId) {
-        RectF boundingBox = new RectF();
-        getBoundingBox(glyphId, boundingBox);
+        float[] bounds = obtainBoundsBuffer(1);
+        GlyphCache.getInstance().getGlyphBounds(mGlyphStrike, IntList.of(glyphId), bounds);
 
-        return boundingBox;
+        return new RectF(bounds[0], -bounds[3], bounds[2], -bounds[1]);
     }
 
     /**
-     * Calculates the bounding box of specified glyphs.
+     * Calculates the bounding box of specified glyphs. The boxes are derived from the outlines of
+     * the glyphs without rasterizing them.
      *
      * @param glyphIds The list containing the glyph IDs.
      * @param offsets The list containing the glyph offsets.
@@ -529,36 +671,114 @@ public class Renderer {
      */
     public @NonNull RectF computeBoundingBox(@NonNull IntList glyphIds,
                                              @NonNull PointList offsets, @NonNull FloatList advances) {
-        RectF glyphBBox = new RectF();
-        RectF cumulativeBBox = new RectF();
-        float penX = 0.0f;
-
         int size = glyphIds.size();
+        float[] bounds = obtainBoundsBuffer(size);
+        float[] cumulativeBounds = new float[4];
+
+        if (size > 0) {
+            GlyphCache.getInstance().getGlyphBounds(mGlyphStrike, glyphIds, bounds);
+            unionGlyphBounds(bounds, offsets, advances, size,
+                             mWritingDirection == WritingDirection.RIGHT_TO_LEFT, cumulativeBounds);
+        }
+
+        return new RectF(cumulativeBounds[0], cumulativeBounds[1],
+                         cumulativeBounds[2], cumulativeBounds[3]);
+    }
+
+    /**
+     * Places the control boxes of glyphs at their pen positions, in the same way as they are
+     * drawn, and writes their union as the left, top, right and bottom edges of the result. Empty
+     * boxes are skipped.
+     */
+    static void unionGlyphBounds(@NonNull float[] bounds, @NonNull PointList offsets,
+                                 @NonNull FloatList advances, int size, boolean reverseMode,
+                                 @NonNull float[] result) {
+        boolean empty = true;
+        float penX = 0.0f;
 
         for (int i = 0; i < size; i++) {
-            int glyphId = glyphIds.get(i);
-            float xOffset = offsets.getX(i);
-            float yOffset = offsets.getY(i);
             float advance = advances.get(i);
 
-            getBoundingBox(glyphId, glyphBBox);
-            glyphBBox.offset(penX + xOffset, yOffset);
-            cumulativeBBox.union(cumulativeBBox);
+            if (reverseMode) {
+                penX -= advance;
+            }
 
-            penX += advance;
+            int index = i * 4;
+            float xMin = bounds[index];
+            float yMin = bounds[index + 1];
+            float xMax = bounds[index + 2];
+            float yMax = bounds[index + 3];
+
+            if (xMin < xMax && yMin < yMax) {
+                // Flip the box as the y-axis of the canvas points downwards.
+                float left = penX + offsets.getX(i) + xMin;
+                float top = -offsets.getY(i) - yMax;
+                float right = penX + offsets.getX(i) + xMax;
+                float bottom = -offsets.getY(i) - yMin;
+
+                if (empty) {
+                    empty = false;
+                    result[0] = left;
+                    result[1] = top;
+                    result[2] = right;
+                    result[3] = bottom;
+                } else {
+                    result[0] = Math.min(result[0], left);
+                    result[1] = Math.min(result[1], top);
+                    result[2] = Math.max(result[2], right);
+                    result[3] = Math.max(result[3], bottom);
+                }
+            }
+
+            if (!reverseMode) {
+                penX += advance;
+            }
         }
 
-        return cumulativeBBox;
+        if (empty) {
+            Arrays.fill(result, 0, 4, 0.0f);
+        }
+    }
+
+    private @NonNull float[] obtainBoundsBuffer(int size) {
+        if (mBoundsBuffer.length < size * 4) {
+            mBoundsBuffer = new float[size * 4];
+        }
+
+        return mBoundsBuffer;
     }
 
     private void drawGlyphs(@NonNull Canvas canvas,
                             @NonNull IntList glyphIds, @NonNull PointList offsets, @NonNull FloatList advances,
                             boolean strokeMode) {
+        Rect clipBounds = mClipBounds;
+        if (!getDrawingBounds(canvas, clipBounds)) {
+            return;
+        }
+
         GlyphCache cache = GlyphCache.getInstance();
+        GlyphBatch batch = (canBatchGlyphs(canvas) ? mGlyphBatch : null);
         boolean reverseMode = (mWritingDirection == WritingDirection.RIGHT_TO_LEFT);
         float penX = 0.0f;
 
         int size = glyphIds.size();
+        Glyph[] maskGlyphs = null;
+        int[] origins = null;
+
+        if (mSubpixelPositioning) {
+            syncPhaseStrikes();
+            origins = quantizeOrigins(offsets, advances, size);
+        }
+
+        if (!strokeMode) {
+            maskGlyphs = obtainGlyphBuffer(size);
+
+            if (origins == null) {
+                cache.getMaskGlyphs(mGlyphStrike, glyphIds, maskGlyphs);
+            } else {
+                getPhaseMaskGlyphs(glyphIds, origins, size, maskGlyphs, false);
+            }
+        }
 
         for (int i = 0; i < size; i++) {
             int glyphId = glyphIds.get(i);
@@ -570,22 +790,376 @@ public class Renderer {
                 penX -= advance;
             }
 
+            GlyphStrike strike = (origins == null
+                                  ? mGlyphStrike
+                                  : mPhaseStrikes[origins[i] & SUBPIXEL_MASK]);
             Glyph maskGlyph = (!strokeMode
-                               ? cache.getMaskGlyph(mGlyphStrike, glyphId)
-                               : cache.getMaskGlyph(mGlyphStrike, glyphId, mGlyphLineRadius,
+                               ? maskGlyphs[i]
+                               : cache.getMaskGlyph(strike, glyphId, mGlyphLineRadius,
                                                     mGlyphLineCap, mGlyphLineJoin, mGlyphMiterLimit));
             Bitmap maskBitmap = maskGlyph.bitmap();
             if (maskBitmap != null) {
-                int left = (int) (penX + xOffset + maskGlyph.leftSideBearing() + 0.5f);
+                int left;
+                if (origins == null) {
+                    left = (int) (penX + xOffset + maskGlyph.leftSideBearing() + 0.5f);
+                } else {
+                    // The fraction of the origin is already a part of the shifted mask.
+                    left = (origins[i] >> SUBPIXEL_SHIFT) + maskGlyph.leftSideBearing();
+                }
                 int top = (int) (-yOffset - maskGlyph.topSideBearing() + 0.5f);
+                int maskWidth = maskGlyph.maskWidth();
+                int maskHeight = maskGlyph.maskHeight();
+
+                if (maskWidth > 0 && maskHeight > 0
+                        && clipBounds.intersects(left, top, left + maskWidth, top + maskHeight)) {
+                    GlyphAtlas.Page atlasPage = maskGlyph.atlasPage();
+
+                    if (atlasPage == null) {
+                        canvas.drawBitmap(maskBitmap, left, top, mPaint);
+                    } else if (batch != null) {
+                        batch.add(atlasPage, maskGlyph.bitmapX(), maskGlyph.bitmapY(),
+                                  maskWidth, maskHeight, left, top);
+                    } else {
+                        int maskX = maskGlyph.bitmapX();
+                        int maskY = maskGlyph.bitmapY();
+
+                        mMaskSrcRect.set(maskX, maskY, maskX + maskWidth, maskY + maskHeight);
+                        mMaskDstRect.set(left, top, left + maskWidth, top + maskHeight);
+
+                        canvas.drawBitmap(maskBitmap, mMaskSrcRect, mMaskDstRect, mPaint);
+                    }
+                }
+            }
 
-                canvas.drawBitmap(maskBitmap, left, top, mPaint);
+            if (!reverseMode) {
+                penX += advance;
+            }
+        }
+
+        if (batch != null && batch.size() > 0) {
+            mBatchPaint.setColor(mPaint.getColor());
+            batch.draw(canvas, mBatchPaint);
+        }
+
+        if (maskGlyphs != null) {
+            // Do not keep the glyphs alive after they get evicted from the cache.
+            Arrays.fill(maskGlyphs, 0, size, null);
+        }
+    }
+
+    private boolean canBatchGlyphs(@NonNull Canvas canvas) {
+        // A shadow layer is not applied to vertices, so shadowed glyphs are drawn one by one.
+        if (mShadowRadius > 0.0f) {
+            return false;
+        }
+
+        return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= HARDWARE_VERTICES_SDK;
+    }
+
+    private boolean getDrawingBounds(@NonNull Canvas canvas, @NonNull Rect bounds) {
+        if (!canvas.getClipBounds(bounds)) {
+            return false;
+        }
+
+        // A glyph outside of the clip may still cast its shadow inside of it.
+        if (mShadowRadius > 0.0f) {
+            int extentX = (int) Math.ceil(mShadowRadius + Math.abs(mShadowDx));
+            int extentY = (int) Math.ceil(mShadowRadius + Math.abs(mShadowDy));
+
+            bounds.inset(-extentX, -extentY);
+        }
+
+        return true;
+    }
+
+    private void drawFieldGlyphs(@NonNull Canvas canvas,
+                                 @NonNull IntList glyphIds, @NonNull PointList offsets, @NonNull FloatList advances) {
+        boolean reverseMode = (mWritingDirection == WritingDirection.RIGHT_TO_LEFT);
+        float scaleX = (mTypeSize * mScaleX) / DistanceField.REFERENCE_SIZE;
+        float scaleY = (mTypeSize * mScaleY) / DistanceField.REFERENCE_SIZE;
+        float penX = 0.0f;
+
+        Rect clipBounds = mClipBounds;
+        if (!getDrawingBounds(canvas, clipBounds)) {
+            return;
+        }
+
+        int size = glyphIds.size();
+        Glyph[] fieldGlyphs = obtainGlyphBuffer(size);
+        GlyphCache.getInstance().getMaskGlyphs(mFieldStrike, glyphIds, fieldGlyphs);
+
+        syncFieldSharpness(Math.min(scaleX, scaleY));
+
+        // The threshold cannot be applied after the alpha of a translucent color, so the color is
+        // drawn opaque into a layer carrying its alpha.
+        int fillAlpha = Color.alpha(mFillColor);
+        int saveCount = -1;
+        if (fillAlpha < 255) {
+            saveCount = saveLayerAlpha(canvas, fillAlpha);
+        }
+        mFieldPaint.setColor(mFillColor | 0xFF000000);
+
+        for (int i = 0; i < size; i++) {
+            float xOffset = offsets.getX(i);
+            float yOffset = offsets.getY(i);
+            float advance = advances.get(i);
+
+            if (reverseMode) {
+                penX -= advance;
+            }
+
+            Glyph fieldGlyph = fieldGlyphs[i];
+            Bitmap fieldBitmap = fieldGlyph.bitmap();
+            if (fieldBitmap != null) {
+                float left = penX + xOffset + (fieldGlyph.leftSideBearing() * scaleX);
+                float top = -yOffset - (fieldGlyph.topSideBearing() * scaleY);
+                float right = left + (fieldGlyph.maskWidth() * scaleX);
+                float bottom = top + (fieldGlyph.maskHeight() * scaleY);
+
+                mFieldDstRect.set(left, top, right, bottom);
+
+                if (mFieldDstRect.intersects(clipBounds.left, clipBounds.top,
+                                             clipBounds.right, clipBounds.bottom)) {
+                    if (fieldBitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+                        canvas.drawBitmap(fieldBitmap, null, mFieldDstRect, mFieldPaint);
+                    } else {
+                        // Color glyphs are kept as plain bitmaps at the reference size.
+                        canvas.drawBitmap(fieldBitmap, null, mFieldDstRect, mPaint);
+                    }
+                }
             }
 
             if (!reverseMode) {
                 penX += advance;
             }
         }
+
+        if (saveCount >= 0) {
+            canvas.restoreToCount(saveCount);
+        }
+
+        // Do not keep the glyphs alive after they get evicted from the cache.
+        Arrays.fill(fieldGlyphs, 0, size, null);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int saveLayerAlpha(@NonNull Canvas canvas, int alpha) {
+        return canvas.saveLayerAlpha(null, alpha, Canvas.ALL_SAVE_FLAG);
+    }
+
+    private void syncFieldSharpness(float scale) {
+        // A field value step covers (spread / 127.5) pixels of the reference size. Stretch the
+        // values around the edge so that the transition spans a single device pixel.
+        float sharpness = Math.max(1.0f, 2.0f * DistanceField.SPREAD * scale);
+
+        if (sharpness != mFieldSharpness) {
+            mFieldSharpness = sharpness;
+
+            float offset = 127.5f * (1.0f - sharpness);
+            mFieldPaint.setColorFilter(new ColorMatrixColorFilter(new float[] {
+                1.0f, 0.0f, 0.0f, 0.0f, 0.0f,
+                0.0f, 1.0f, 0.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, 1.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, 0.0f, sharpness, offset
+            }));
+        }
+    }
+
+    private @NonNull int[] quantizeOrigins(@NonNull PointList offsets, @NonNull FloatList advances,
+                                           int size) {
+        boolean reverseMode = (mWritingDirection == WritingDirection.RIGHT_TO_LEFT);
+        float penX = 0.0f;
+
+        if (mOriginBuffer.length < size) {
+            mOriginBuffer = new int[size];
+        }
+
+        for (int i = 0; i < size; i++) {
+            float advance = advances.get(i);
+
+            if (reverseMode) {
+                penX -= advance;
+            }
+
+            // Keep the origin in units of a phase, so that its whole pixel and phase can be
+            // extracted with a shift and a mask respectively.
+            float originX = penX + offsets.getX(i);
+            mOriginBuffer[i] = (int) Math.floor((originX * SUBPIXEL_PHASES) + 0.5f);
+
+            if (!reverseMode) {
+                penX += advance;
+            }
+        }
+
+        return mOriginBuffer;
+    }
+
+    private void getPhaseMaskGlyphs(@NonNull IntList glyphIds, @NonNull int[] origins, int size,
+                                    @NonNull Glyph[] maskGlyphs, boolean coverage) {
+        GlyphCache cache = GlyphCache.getInstance();
+        int[] phaseStarts = mPhaseStarts;
+
+        if (mIndexBuffer.length < size) {
+            mIndexBuffer = new int[size];
+        }
+
+        // Group the glyph positions by phase so that each phase strike is fetched in bulk.
+        Arrays.fill(phaseStarts, 0);
+        for (int i = 0; i < size; i++) {
+            phaseStarts[(origins[i] & SUBPIXEL_MASK) + 1]++;
+        }
+        for (int i = 1; i <= SUBPIXEL_PHASES; i++) {
+            phaseStarts[i] += phaseStarts[i - 1];
+        }
+        for (int i = 0; i < size; i++) {
+            mIndexBuffer[phaseStarts[origins[i] & SUBPIXEL_MASK]++] = i;
+        }
+
+        // Each entry now marks the end of its phase, which is the start of the next one.
+        int start = 0;
+
+        for (int i = 0; i < SUBPIXEL_PHASES; i++) {
+            int end = phaseStarts[i];
+            if (end > start) {
+                if (coverage) {
+                    cache.getCoverageGlyphs(mPhaseStrikes[i], glyphIds, mIndexBuffer, start,
+                                            end - start, maskGlyphs);
+                } else {
+                    cache.getMaskGlyphs(mPhaseStrikes[i], glyphIds, mIndexBuffer, start,
+                                        end - start, maskGlyphs);
+                }
+            }
+
+            start = end;
+        }
+    }
+
+    private @NonNull Glyph[] obtainGlyphBuffer(int size) {
+        if (mGlyphBuffer.length < size) {
+            mGlyphBuffer = new Glyph[size];
+        }
+
+        return mGlyphBuffer;
+    }
+
+    private void drawGlyphs(@NonNull PixelBuffer target,
+                            @NonNull IntList glyphIds, @NonNull PointList offsets, @NonNull FloatList advances,
+                            boolean strokeMode) {
+        GlyphCache cache = GlyphCache.getInstance();
+        boolean reverseMode = (mWritingDirection == WritingDirection.RIGHT_TO_LEFT);
+        float translateX = target.getTranslateX();
+        float translateY = target.getTranslateY();
+        float penX = 0.0f;
+
+        int size = glyphIds.size();
+        Glyph[] maskGlyphs = null;
+        int[] origins = null;
+
+        if (mSubpixelPositioning) {
+            syncPhaseStrikes();
+            origins = quantizeOrigins(offsets, advances, size);
+        }
+
+        if (!strokeMode) {
+            maskGlyphs = obtainGlyphBuffer(size);
+
+            if (origins == null) {
+                cache.getCoverageGlyphs(mGlyphStrike, glyphIds, null, 0, size, maskGlyphs);
+            } else {
+                getPhaseMaskGlyphs(glyphIds, origins, size, maskGlyphs, true);
+            }
+        }
+
+        if (mMaskBuffer.length < size) {
+            mMaskBuffer = new byte[size][];
+            mPlacementBuffer = new int[size * PixelCompositor.PLACEMENT_SIZE];
+        }
+
+        // The phases are relative to the translation, so its whole pixels are added separately.
+        int originX = (int) Math.floor(translateX + 0.5f);
+        int maskCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            int glyphId = glyphIds.get(i);
+            float xOffset = offsets.getX(i);
+            float yOffset = offsets.getY(i);
+            float advance = advances.get(i);
+
+            if (reverseMode) {
+                penX -= advance;
+            }
+
+            GlyphStrike strike = (origins == null
+                                  ? mGlyphStrike
+                                  : mPhaseStrikes[origins[i] & SUBPIXEL_MASK]);
+            Glyph maskGlyph = (!strokeMode
+                               ? maskGlyphs[i]
+                               : cache.getCoverageGlyph(strike, glyphId, mGlyphLineRadius,
+                                                        mGlyphLineCap, mGlyphLineJoin, mGlyphMiterLimit));
+            byte[] coverage = maskGlyph.coverage();
+            int maskWidth = maskGlyph.maskWidth();
+            int maskHeight = maskGlyph.maskHeight();
+
+            if (coverage != null && maskWidth > 0 && maskHeight > 0) {
+                int left;
+                if (origins == null) {
+                    left = (int) Math.floor(translateX + penX + xOffset + maskGlyph.leftSideBearing() + 0.5f);
+                } else {
+                    left = originX + (origins[i] >> SUBPIXEL_SHIFT) + maskGlyph.leftSideBearing();
+                }
+                int top = (int) Math.floor(translateY - yOffset - maskGlyph.topSideBearing() + 0.5f);
+
+                int offset = maskCount * PixelCompositor.PLACEMENT_SIZE;
+                mPlacementBuffer[offset + 0] = maskWidth;
+                mPlacementBuffer[offset + 1] = maskHeight;
+                mPlacementBuffer[offset + 2] = left;
+                mPlacementBuffer[offset + 3] = top;
+                mMaskBuffer[maskCount++] = coverage;
+            }
+
+            if (!reverseMode) {
+                penX += advance;
+            }
+        }
+
+        int color = (strokeMode ? mStrokeColor : mFillColor);
+        PixelCompositor.compositeMasks(target, mMaskBuffer, mPlacementBuffer, maskCount, color);
+
+        // Do not keep the glyphs and their masks alive after they get evicted from the cache.
+        Arrays.fill(mMaskBuffer, 0, maskCount, null);
+        if (maskGlyphs != null) {
+            Arrays.fill(maskGlyphs, 0, size, null);
+        }
+    }
+
+    /**
+     * Draws specified glyphs into the given pixel buffer, at its current translation and within
+     * its current clip. The glyphs are drawn with their fill and stroke masks in the rendering
+     * style of this renderer, without any shadow. The masks are used even if distance field
+     * rendering is enabled.
+     * <p>
+     * The masks are kept as plain coverage arrays, apart from the bitmaps used for canvases, and
+     * are blended into the buffer by a native routine without going through a <code>Canvas</code>
+     * or any platform bitmap. Separate renderers can draw into separate buffers concurrently.
+     *
+     * @param target The pixel buffer into which to draw the glyphs.
+     * @param glyphIds The list containing the glyph IDs.
+     * @param offsets The list containing the glyph offsets.
+     * @param advances The list containing the glyph advances.
+     */
+    public void drawGlyphs(@NonNull PixelBuffer target,
+                           @NonNull IntList glyphIds, @NonNull PointList offsets, @NonNull FloatList advances) {
+        checkNotNull(target);
+
+        if (mShouldRender && !target.isClipEmpty()) {
+            if (mRenderingStyle == RenderingStyle.FILL || mRenderingStyle == RenderingStyle.FILL_STROKE) {
+                drawGlyphs(target, glyphIds, offsets, advances, false);
+            }
+
+            if (mRenderingStyle == RenderingStyle.STROKE || mRenderingStyle == RenderingStyle.FILL_STROKE) {
+                drawGlyphs(target, glyphIds, offsets, advances, true);
+            }
+        }
     }
 
     /**
@@ -608,7 +1182,12 @@ public class Renderer {
 
             if (mRenderingStyle == RenderingStyle.FILL || mRenderingStyle == RenderingStyle.FILL_STROKE) {
                 mPaint.setColor(mFillColor);
-                drawGlyphs(canvas, glyphIds, offsets, advances, false);
+
+                if (mDistanceFieldRendering) {
+                    drawFieldGlyphs(canvas, glyphIds, offsets, advances);
+                } else {
+                    drawGlyphs(canvas, glyphIds, offsets, advances, false);
+                }
             }
 
             if (mRenderingStyle == RenderingStyle.STROKE || mRenderingStyle == RenderingStyle.FILL_STROKE) {
@@ -447,7 +447,12 @@ public class Typeface {
             matrix.getValues(values);
         }
 
-        return nGetGlyphPath(nativeTypeface, glyphId, typeSize, values);
+        GlyphPath glyphPath = nGetGlyphPath(nativeTypeface, glyphId, typeSize, values);
+        if (glyphPath == null) {
+            glyphPath = GlyphPath.EMPTY;
+        }
+
+        return glyphPath.toPath();
     }
 
     /**
@@ -548,7 +553,7 @@ public class Typeface {
 	private static native int nGetGlyphCount(long nativeTypeface);
     private static native int nGetGlyphId(long nativeTypeface, int codePoint);
     private static native float nGetGlyphAdvance(long nativeTypeface, int glyphId, float typeSize, boolean vertical);
-    private static native Path nGetGlyphPath(long nativeTypeface, int glyphId, float typeSize, float[] matrix);
+    private static native GlyphPath nGetGlyphPath(long nativeTypeface, int glyphId, float typeSize, float[] matrix);
 
 	private static native void nGetBoundingBox(long nativeTypeface, Rect boundingBox);
 
@@ -21,12 +21,13 @@ import android.text.Spanned;
 import android.text.style.ReplacementSpan;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.mta.tehreer.collections.FloatList;
 import com.mta.tehreer.graphics.Typeface;
 import com.mta.tehreer.sfnt.ShapingEngine;
 import com.mta.tehreer.sfnt.ShapingOrder;
-import com.mta.tehreer.sfnt.ShapingResult;
+import com.mta.tehreer.sfnt.ShapingProfile;
 import com.mta.tehreer.sfnt.WritingDirection;
 import com.mta.tehreer.unicode.BaseDirection;
 import com.mta.tehreer.unicode.BidiAlgorithm;
@@ -36,73 +37,249 @@ import com.mta.tehreer.unicode.Script;
 import com.mta.tehreer.unicode.ScriptClassifier;
 import com.mta.tehreer.unicode.ScriptRun;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
 
 public class ShapeResolver {
+    // More chunks than processors keep the workers busy when the paragraphs differ in cost.
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+    private static final int MIN_CHUNK_LENGTH = 1024;
+
+    private static final class TextRun {
+        final int index;
+        final @NonNull ShapingCache.Request request;
+        final byte bidiLevel;
+        final float ascent;
+        final float descent;
+        final float leading;
+        final float scaleX;
+        final float baselineShift;
+
+        TextRun(int index, @NonNull ShapingCache.Request request, byte bidiLevel,
+                float ascent, float descent, float leading, float scaleX, float baselineShift) {
+            this.index = index;
+            this.request = request;
+            this.bidiLevel = bidiLevel;
+            this.ascent = ascent;
+            this.descent = descent;
+            this.leading = leading;
+            this.scaleX = scaleX;
+            this.baselineShift = baselineShift;
+        }
+    }
+
+    private static final class ParagraphTask implements Runnable {
+        final @NonNull String text;
+        final @NonNull Spanned spanned;
+        final @NonNull List<Object> defaultSpans;
+        final @NonNull BidiAlgorithm bidiAlgorithm;
+        final @NonNull ScriptClassifier scriptClassifier;
+        final int charStart;
+        final int charEnd;
+        final @NonNull List<BidiParagraph> paragraphs = new ArrayList<>();
+        final @NonNull List<IntrinsicRun> runs = new ArrayList<>();
+
+        ParagraphTask(@NonNull String text, @NonNull Spanned spanned,
+                      @NonNull List<Object> defaultSpans, @NonNull BidiAlgorithm bidiAlgorithm,
+                      @NonNull ScriptClassifier scriptClassifier, int charStart, int charEnd) {
+            this.text = text;
+            this.spanned = spanned;
+            this.defaultSpans = defaultSpans;
+            this.bidiAlgorithm = bidiAlgorithm;
+            this.scriptClassifier = scriptClassifier;
+            this.charStart = charStart;
+            this.charEnd = charEnd;
+        }
+
+        @Override
+        public void run() {
+            ShapingEngine shapingEngine = null;
+
+            try {
+                shapingEngine = new ShapingEngine();
+
+                ShapingRunLocator locator = new ShapingRunLocator(spanned, defaultSpans);
+                List<TextRun> textRuns = new ArrayList<>();
+
+                BaseDirection baseDirection = BaseDirection.DEFAULT_LEFT_TO_RIGHT;
+                int paragraphStart = charStart;
+
+                while (paragraphStart != charEnd) {
+                    BidiParagraph paragraph;
+
+                    // Each paragraph retains the algorithm, and its reference count is not atomic.
+                    synchronized (bidiAlgorithm) {
+                        paragraph = bidiAlgorithm.createParagraph(paragraphStart, charEnd, baseDirection);
+                    }
+
+                    for (BidiRun bidiRun : paragraph.getLogicalRuns()) {
+                        for (ScriptRun scriptRun : scriptClassifier.getScriptRuns(bidiRun.charStart, bidiRun.charEnd)) {
+                            int scriptTag = Script.getOpenTypeTag(scriptRun.script);
+                            WritingDirection writingDirection = ShapingEngine.getScriptDirection(scriptTag);
+
+                            boolean isOddLevel = ((bidiRun.embeddingLevel & 1) == 1);
+                            boolean isBackward = (isOddLevel && writingDirection == WritingDirection.LEFT_TO_RIGHT)
+                                               | (!isOddLevel && writingDirection == WritingDirection.RIGHT_TO_LEFT);
+                            ShapingOrder shapingOrder = (isBackward ? ShapingOrder.BACKWARD : ShapingOrder.FORWARD);
+
+                            locator.reset(scriptRun.charStart, scriptRun.charEnd);
+
+                            resolveTypefaces(spanned, runs, textRuns, locator, scriptTag,
+                                             writingDirection, shapingOrder, bidiRun.embeddingLevel);
+                        }
+                    }
+                    paragraphs.add(paragraph);
+
+                    paragraphStart = paragraph.getCharEnd();
+                }
+
+                shapeTextRuns(text, runs, textRuns, shapingEngine);
+            } finally {
+                if (shapingEngine != null) {
+                    shapingEngine.dispose();
+                }
+            }
+        }
+    }
+
     public static void fillRuns(@NonNull String text, @NonNull Spanned spanned,
                                 @NonNull List<Object> defaultSpans, @NonNull byte[] breaks,
                                 @NonNull List<BidiParagraph> paragraphs, @NonNull List<IntrinsicRun> runs) {
+        fillRuns(text, spanned, defaultSpans, breaks, paragraphs, runs, null);
+    }
+
+    /**
+     * Resolves the paragraphs and runs of the text. If an executor is given, the text is split
+     * into chunks of whole paragraphs which are resolved concurrently, each with its own shaping
+     * engine, and then merged in order, so that the output is identical to the sequential one.
+     */
+    public static void fillRuns(@NonNull String text, @NonNull Spanned spanned,
+                                @NonNull List<Object> defaultSpans, @NonNull byte[] breaks,
+                                @NonNull List<BidiParagraph> paragraphs, @NonNull List<IntrinsicRun> runs,
+                                @Nullable Executor executor) {
         BidiAlgorithm bidiAlgorithm = null;
-        ShapingEngine shapingEngine = null;
 
         try {
             bidiAlgorithm = new BidiAlgorithm(text);
-            shapingEngine = new ShapingEngine();
 
+            // The classifier is only read after its construction, so the tasks can share it. The
+            // bidi algorithm is shared as well, but the paragraphs are created one at a time.
             ScriptClassifier scriptClassifier = new ScriptClassifier(text);
-            ShapingRunLocator locator = new ShapingRunLocator(spanned, defaultSpans);
+            List<ParagraphTask> tasks = new ArrayList<>();
+
+            if (executor == null) {
+                tasks.add(new ParagraphTask(text, spanned, defaultSpans,
+                                            bidiAlgorithm, scriptClassifier, 0, text.length()));
+                tasks.get(0).run();
+            } else {
+                int chunkCount = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR;
+                int chunkLength = Math.max(MIN_CHUNK_LENGTH, text.length() / chunkCount);
+                int chunkStart = 0;
+
+                while (chunkStart != text.length()) {
+                    int chunkEnd = chunkStart;
+                    do {
+                        chunkEnd = bidiAlgorithm.getParagraphBoundary(chunkEnd, text.length());
+                    } while (chunkEnd - chunkStart < chunkLength && chunkEnd != text.length());
+
+                    tasks.add(new ParagraphTask(text, spanned, defaultSpans,
+                                                bidiAlgorithm, scriptClassifier, chunkStart, chunkEnd));
+                    chunkStart = chunkEnd;
+                }
+
+                runTasks(tasks, executor);
+            }
 
-            BaseDirection baseDirection = BaseDirection.DEFAULT_LEFT_TO_RIGHT;
             byte forwardType = BreakResolver.typeMode(BreakResolver.PARAGRAPH, true);
             byte backwardType = BreakResolver.typeMode(BreakResolver.PARAGRAPH, false);
 
-            int paragraphStart = 0;
-            int suggestedEnd = text.length();
+            for (ParagraphTask task : tasks) {
+                for (BidiParagraph paragraph : task.paragraphs) {
+                    paragraphs.add(paragraph);
+
+                    breaks[paragraph.getCharStart()] |= backwardType;
+                    breaks[paragraph.getCharEnd() - 1] |= forwardType;
+                }
+
+                runs.addAll(task.runs);
+            }
+        } finally {
+            if (bidiAlgorithm != null) {
+                bidiAlgorithm.dispose();
+            }
+        }
+    }
+
+    private static void runTasks(@NonNull List<ParagraphTask> tasks, @NonNull Executor executor) {
+        int taskCount = tasks.size();
+        List<FutureTask<Void>> futures = new ArrayList<>(taskCount);
 
-            while (paragraphStart != suggestedEnd) {
-                BidiParagraph paragraph = bidiAlgorithm.createParagraph(paragraphStart, suggestedEnd, baseDirection);
-                for (BidiRun bidiRun : paragraph.getLogicalRuns()) {
-                    for (ScriptRun scriptRun : scriptClassifier.getScriptRuns(bidiRun.charStart, bidiRun.charEnd)) {
-                        int scriptTag = Script.getOpenTypeTag(scriptRun.script);
-                        WritingDirection writingDirection = ShapingEngine.getScriptDirection(scriptTag);
+        for (int i = 0; i < taskCount; i++) {
+            futures.add(new FutureTask<Void>(tasks.get(i), null));
+        }
+        try {
+            for (int i = 1; i < taskCount; i++) {
+                executor.execute(futures.get(i));
+            }
+        } catch (RejectedExecutionException e) {
+            // The rejected tasks are run below on this thread.
+        }
 
-                        boolean isOddLevel = ((bidiRun.embeddingLevel & 1) == 1);
-                        boolean isBackward = (isOddLevel && writingDirection == WritingDirection.LEFT_TO_RIGHT)
-                                           | (!isOddLevel && writingDirection == WritingDirection.RIGHT_TO_LEFT);
-                        ShapingOrder shapingOrder = (isBackward ? ShapingOrder.BACKWARD : ShapingOrder.FORWARD);
+        // Run the tasks which have not been picked up yet on this thread, so that a busy executor
+        // never leaves it waiting idle. A future which is already running ignores this call.
+        for (int i = 0; i < taskCount; i++) {
+            futures.get(i).run();
+        }
 
-                        locator.reset(scriptRun.charStart, scriptRun.charEnd);
+        // Wait for every task, even after a failure, as they share the bidi algorithm.
+        Throwable failure = null;
+        boolean interrupted = false;
 
-                        shapingEngine.setScriptTag(scriptTag);
-                        shapingEngine.setWritingDirection(writingDirection);
-                        shapingEngine.setShapingOrder(shapingOrder);
+        for (int i = 0; i < taskCount; i++) {
+            FutureTask<Void> future = futures.get(i);
 
-                        resolveTypefaces(text, spanned, runs, locator, shapingEngine, bidiRun.embeddingLevel);
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
                     }
+                    break;
                 }
-                paragraphs.add(paragraph);
+            }
+        }
 
-                breaks[paragraph.getCharStart()] |= backwardType;
-                breaks[paragraph.getCharEnd() - 1] |= forwardType;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
-                paragraphStart = paragraph.getCharEnd();
-            }
-        } finally {
-            if (shapingEngine != null) {
-                shapingEngine.dispose();
-            }
-            if (bidiAlgorithm != null) {
-                bidiAlgorithm.dispose();
-            }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
         }
     }
 
-    private static void resolveTypefaces(@NonNull String text, @NonNull Spanned spanned,
+    private static void resolveTypefaces(@NonNull Spanned spanned,
                                          @NonNull List<IntrinsicRun> runs,
-                                         @NonNull ShapingRunLocator locator,
-                                         @NonNull ShapingEngine engine, byte bidiLevel) {
+                                         @NonNull List<TextRun> textRuns,
+                                         @NonNull ShapingRunLocator locator, int scriptTag,
+                                         @NonNull WritingDirection writingDirection,
+                                         @NonNull ShapingOrder shapingOrder, byte bidiLevel) {
         Paint.FontMetricsInt metrics = null;
 
         while (locator.moveNext()) {
@@ -119,50 +296,29 @@ public class ShapeResolver {
             float leading = typeface.getLeading() * sizeByEm;
 
             ReplacementSpan replacement = locator.getReplacement();
-            IntrinsicRun intrinsicRun;
 
             if (replacement == null) {
-                engine.setTypeface(typeface);
-                engine.setTypeSize(typeSize);
-
-                ShapingResult shapingResult = null;
-
-                try {
-                    shapingResult = engine.shapeText(text, runStart, runEnd);
-
-                    WritingDirection writingDirection = engine.getWritingDirection();
-                    boolean isBackward = shapingResult.isBackward();
-                    int[] glyphIds = shapingResult.getGlyphIds().toArray();
-                    float[] offsets = shapingResult.getGlyphOffsets().toArray();
-                    float[] advances = shapingResult.getGlyphAdvances().toArray();
-                    int[] clusterMap = shapingResult.getClusterMap().toArray();
-                    FloatList caretEdges = shapingResult.getCaretEdges(null);
-
-                    float scaleX = locator.getScaleX();
-                    if (Float.compare(scaleX, 1.0f) != 0) {
-                        for (int i = 0; i < glyphIds.length; i++) {
-                            offsets[i * 2] *= scaleX;
-                            advances[i] *= scaleX;
-                        }
-                    }
-
-                    float baselineShift = locator.getBaselineShift();
-                    if (Float.compare(baselineShift, 0.0f) != 0) {
-                        for (int i = 0; i < glyphIds.length; i++) {
-                            offsets[(i * 2) + 1] += baselineShift;
-                        }
-                    }
-
-                    intrinsicRun = new IntrinsicRun(runStart, runEnd, isBackward, bidiLevel,
-                                                    writingDirection, typeface, typeSize,
-                                                    ascent, descent, leading,
-                                                    glyphIds, offsets, advances,
-                                                    clusterMap, caretEdges);
-                } finally {
-                    if (shapingResult != null) {
-                        shapingResult.dispose();
-                    }
+                ShapingProfile profile = locator.getShapingProfile();
+                int runScriptTag = scriptTag;
+                WritingDirection runDirection = writingDirection;
+                ShapingOrder runOrder = shapingOrder;
+
+                if (profile != null) {
+                    boolean isOddLevel = ((bidiLevel & 1) == 1);
+                    runScriptTag = profile.getScriptTag();
+                    runDirection = profile.getWritingDirection();
+                    runOrder = (isOddLevel != (runDirection == WritingDirection.RIGHT_TO_LEFT)
+                                ? ShapingOrder.BACKWARD : ShapingOrder.FORWARD);
                 }
+
+                // The glyphs are filled in once all text runs have been shaped together.
+                ShapingCache.Request request = new ShapingCache.Request(runStart, runEnd,
+                                                                        typeface, typeSize, runScriptTag,
+                                                                        runDirection, runOrder, profile);
+                textRuns.add(new TextRun(runs.size(), request, bidiLevel,
+                                         ascent, descent, leading,
+                                         locator.getScaleX(), locator.getBaselineShift()));
+                runs.add(null);
             } else {
                 if (metrics == null) {
                     metrics = new Paint.FontMetricsInt();
@@ -176,7 +332,6 @@ public class ShapeResolver {
                 int replacementSize = replacement.getSize(null, spanned, runStart, runEnd, metrics);
                 int runLength = runEnd - runStart;
 
-                WritingDirection writingDirection = engine.getWritingDirection();
                 int[] glyphIds = new int[] { spaceGlyph };
                 float[] offsets = new float[] { 0.0f, 0.0f };
                 float[] advances = new float[] { replacementSize };
@@ -189,14 +344,56 @@ public class ShapeResolver {
                     caretEdges[0] = replacementSize;
                 }
 
-                intrinsicRun = new IntrinsicRun(runStart, runEnd, false, bidiLevel,
-                                                writingDirection, typeface, typeSize,
-                                                -metrics.ascent, metrics.descent, metrics.leading,
-                                                glyphIds, offsets, advances,
-                                                clusterMap, FloatList.of(caretEdges));
+                runs.add(new IntrinsicRun(runStart, runEnd, false, bidiLevel,
+                                          writingDirection, typeface, typeSize,
+                                          -metrics.ascent, metrics.descent, metrics.leading,
+                                          glyphIds, offsets, advances,
+                                          clusterMap, FloatList.of(caretEdges)));
+            }
+        }
+    }
+
+    private static void shapeTextRuns(@NonNull String text, @NonNull List<IntrinsicRun> runs,
+                                      @NonNull List<TextRun> textRuns,
+                                      @NonNull ShapingEngine engine) {
+        List<ShapingCache.Request> requests = new ArrayList<>(textRuns.size());
+        for (TextRun textRun : textRuns) {
+            requests.add(textRun.request);
+        }
+
+        ShapingCache.getInstance().shapeRequests(engine, text, requests);
+
+        for (TextRun textRun : textRuns) {
+            ShapingCache.Request request = textRun.request;
+            ShapingCache.ShapedText shapedText = request.getShapedText();
+
+            int[] glyphIds = shapedText.glyphIds;
+            float[] offsets = shapedText.glyphOffsets;
+            float[] advances = shapedText.glyphAdvances;
+
+            float scaleX = textRun.scaleX;
+            if (Float.compare(scaleX, 1.0f) != 0) {
+                for (int i = 0; i < glyphIds.length; i++) {
+                    offsets[i * 2] *= scaleX;
+                    advances[i] *= scaleX;
+                }
+            }
+
+            float baselineShift = textRun.baselineShift;
+            if (Float.compare(baselineShift, 0.0f) != 0) {
+                for (int i = 0; i < glyphIds.length; i++) {
+                    offsets[(i * 2) + 1] += baselineShift;
+                }
             }
 
-            runs.add(intrinsicRun);
+            runs.set(textRun.index, new IntrinsicRun(request.charStart, request.charEnd,
+                                                     shapedText.isBackward, textRun.bidiLevel,
+                                                     request.writingDirection,
+                                                     request.typeface, request.typeSize,
+                                                     textRun.ascent, textRun.descent, textRun.leading,
+                                                     glyphIds, offsets, advances,
+                                                     shapedText.clusterMap,
+                                                     FloatList.of(shapedText.caretEdges)));
         }
     }
 }
@@ -0,0 +1,610 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.internal.layout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mta.tehreer.graphics.Typeface;
+import com.mta.tehreer.internal.util.LruCache;
+import com.mta.tehreer.sfnt.OpenTypeFeature;
+import com.mta.tehreer.sfnt.ShapingBatch;
+import com.mta.tehreer.sfnt.ShapingEngine;
+import com.mta.tehreer.sfnt.ShapingOrder;
+import com.mta.tehreer.sfnt.ShapingProfile;
+import com.mta.tehreer.sfnt.WritingDirection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the shaping results of individual words so that repeated vocabulary is shaped only once.
+ * <p>
+ * A run is split after each sequence of spaces, and every piece is shaped on its own. The pieces
+ * which are not cached yet are shaped together with a single batch, and are then joined back into
+ * the result of the whole run. As a consequence, no contextual substitution or positioning is
+ * applied across the spaces, so the output differs for the fonts which rely on such lookups, like
+ * the ones kerning across words. The cache is therefore disabled by default, in which case every
+ * run is shaped as a whole.
+ */
+public final class ShapingCache extends LruCache {
+    private static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    // Longer pieces rarely repeat, so they are shaped without polluting the cache.
+    private static final int MAX_WORD_LENGTH = 48;
+
+    private static final class Style {
+        final @NonNull Typeface typeface;
+        final float typeSize;
+        final int scriptTag;
+        final int languageTag;
+        final @NonNull Set<OpenTypeFeature> features;
+        final @NonNull WritingDirection writingDirection;
+        final @NonNull ShapingOrder shapingOrder;
+        // Not a part of the key as it only carries the values which are compared already.
+        final @Nullable ShapingProfile profile;
+        final int hash;
+
+        Style(@NonNull Typeface typeface, float typeSize, int scriptTag, int languageTag,
+              @NonNull Set<OpenTypeFeature> features, @NonNull WritingDirection writingDirection,
+              @NonNull ShapingOrder shapingOrder, @Nullable ShapingProfile profile) {
+            this.typeface = typeface;
+            this.typeSize = typeSize;
+            this.scriptTag = scriptTag;
+            this.languageTag = languageTag;
+            this.features = features;
+            this.writingDirection = writingDirection;
+            this.shapingOrder = shapingOrder;
+            this.profile = profile;
+
+            int result = System.identityHashCode(typeface);
+            result = 31 * result + Float.floatToIntBits(typeSize);
+            result = 31 * result + scriptTag;
+            result = 31 * result + languageTag;
+            result = 31 * result + features.hashCode();
+            result = 31 * result + writingDirection.hashCode();
+            result = 31 * result + shapingOrder.hashCode();
+            this.hash = result;
+        }
+
+        boolean isVisuallyRTL() {
+            return (writingDirection == WritingDirection.RIGHT_TO_LEFT)
+                 ^ (shapingOrder == ShapingOrder.BACKWARD);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            Style other = (Style) obj;
+
+            return hash == other.hash
+                && typeface == other.typeface
+                && Float.compare(typeSize, other.typeSize) == 0
+                && scriptTag == other.scriptTag
+                && languageTag == other.languageTag
+                && writingDirection == other.writingDirection
+                && shapingOrder == other.shapingOrder
+                && features.equals(other.features);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class WordKey {
+        final @NonNull Style style;
+        final @NonNull String text;
+
+        WordKey(@NonNull Style style, @NonNull String text) {
+            this.style = style;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            WordKey other = (WordKey) obj;
+
+            return style.equals(other.style) && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * style.hashCode() + text.hashCode();
+        }
+    }
+
+    /**
+     * The shaping result of a piece of a run. The caret edges are relative to the visual left of
+     * the piece.
+     */
+    private static abstract class Word {
+        final @NonNull float[] offsets;
+        final @NonNull float[] advances;
+        final @NonNull float[] caretEdges;
+        final float width;
+
+        Word(@NonNull float[] offsets, @NonNull float[] advances, @NonNull float[] caretEdges) {
+            this.offsets = offsets;
+            this.advances = advances;
+            this.caretEdges = caretEdges;
+
+            float width = 0.0f;
+            for (float advance : advances) {
+                width += advance;
+            }
+
+            this.width = width;
+        }
+
+        int glyphCount() {
+            return advances.length;
+        }
+
+        int charCount() {
+            return caretEdges.length - 1;
+        }
+
+        abstract void copyGlyphIds(@NonNull int[] target, int targetStart);
+
+        abstract void copyClusterMap(@NonNull int[] target, int targetStart, int glyphStart);
+    }
+
+    /**
+     * A piece exported directly from a batch, in the same form as the shaped text. The pieces
+     * which are not cached may be whole runs, so their cluster indexes can exceed 16 bits.
+     */
+    private static final class ShapedPiece extends Word {
+        final @NonNull int[] glyphIds;
+        final @NonNull int[] clusterMap;
+
+        ShapedPiece(@NonNull ShapingBatch batch, int index) {
+            this(batch, index, batch.getGlyphCount(index),
+                 batch.getCharEnd(index) - batch.getCharStart(index));
+        }
+
+        private ShapedPiece(@NonNull ShapingBatch batch, int index, int glyphCount, int charCount) {
+            super(new float[glyphCount * 2], new float[glyphCount], new float[charCount + 1]);
+            this.glyphIds = new int[glyphCount];
+            this.clusterMap = new int[charCount];
+
+            batch.exportTo(index, glyphIds, offsets, advances, clusterMap, caretEdges);
+        }
+
+        @Override
+        void copyGlyphIds(@NonNull int[] target, int targetStart) {
+            System.arraycopy(glyphIds, 0, target, targetStart, glyphIds.length);
+        }
+
+        @Override
+        void copyClusterMap(@NonNull int[] target, int targetStart, int glyphStart) {
+            for (int i = 0; i < clusterMap.length; i++) {
+                target[targetStart + i] = clusterMap[i] + glyphStart;
+            }
+        }
+    }
+
+    /**
+     * A word held by the cache. Glyph ids and cluster indexes are kept as unsigned 16 bit values,
+     * which is enough as the cached words are at most {@link #MAX_WORD_LENGTH} characters long.
+     */
+    private static final class CachedWord extends Word {
+        final @NonNull char[] glyphIds;
+        final @NonNull char[] clusterMap;
+
+        CachedWord(@NonNull ShapedPiece piece) {
+            super(piece.offsets, piece.advances, piece.caretEdges);
+
+            int glyphCount = piece.glyphIds.length;
+            int charCount = piece.clusterMap.length;
+
+            this.glyphIds = new char[glyphCount];
+            this.clusterMap = new char[charCount];
+
+            for (int i = 0; i < glyphCount; i++) {
+                glyphIds[i] = (char) piece.glyphIds[i];
+            }
+            for (int i = 0; i < charCount; i++) {
+                clusterMap[i] = (char) piece.clusterMap[i];
+            }
+        }
+
+        @Override
+        void copyGlyphIds(@NonNull int[] target, int targetStart) {
+            for (int i = 0; i < glyphIds.length; i++) {
+                target[targetStart + i] = glyphIds[i];
+            }
+        }
+
+        @Override
+        void copyClusterMap(@NonNull int[] target, int targetStart, int glyphStart) {
+            for (int i = 0; i < clusterMap.length; i++) {
+                target[targetStart + i] = clusterMap[i] + glyphStart;
+            }
+        }
+    }
+
+    private static class WordSegment extends LruCache.Segment<WordKey, CachedWord> {
+        //
+        // ConcurrentHashMap, ConcurrentLinkedQueue and LruCache.Node:
+        //  - 11 pointers
+        //  - 1 integer for hash code
+        //  - 1 integer for size and 2 booleans for flags
+        //
+        // WordKey, Word and the arrays:
+        //  - 8 object headers of 8 bytes
+        //  - 7 pointers
+        //  - 1 float for width
+        //
+        // Size: (11 * 4) + (2 * 4) + (8 * 8) + (7 * 4) + 4 = 148
+        //
+        private static final int ESTIMATED_OVERHEAD = 148;
+
+        WordSegment(@NonNull ShapingCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected int sizeOf(@NonNull WordKey key, @NonNull CachedWord value) {
+            int charCount = value.charCount();
+            int glyphCount = value.glyphCount();
+
+            return ESTIMATED_OVERHEAD
+                 + (key.text.length() * 2)
+                 + (charCount * 2) + ((charCount + 1) * 4)
+                 + (glyphCount * 2) + (glyphCount * 8) + (glyphCount * 4);
+        }
+    }
+
+    /**
+     * A piece of a request, either found in the cache or waiting for the batch to be shaped.
+     */
+    private static final class Piece {
+        final WordKey key;
+        Word word;
+        int batchIndex = -1;
+
+        Piece(WordKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The result of shaping a run, in the same form as exposed by <code>ShapingResult</code>.
+     */
+    public static final class ShapedText {
+        public final boolean isBackward;
+        public final @NonNull int[] glyphIds;
+        public final @NonNull float[] glyphOffsets;
+        public final @NonNull float[] glyphAdvances;
+        public final @NonNull int[] clusterMap;
+        public final @NonNull float[] caretEdges;
+
+        ShapedText(boolean isBackward, int glyphCount, int charCount) {
+            this(isBackward, new int[glyphCount], new float[glyphCount * 2], new float[glyphCount],
+                 new int[charCount], new float[charCount + 1]);
+        }
+
+        ShapedText(boolean isBackward, @NonNull int[] glyphIds, @NonNull float[] glyphOffsets,
+                   @NonNull float[] glyphAdvances, @NonNull int[] clusterMap,
+                   @NonNull float[] caretEdges) {
+            this.isBackward = isBackward;
+            this.glyphIds = glyphIds;
+            this.glyphOffsets = glyphOffsets;
+            this.glyphAdvances = glyphAdvances;
+            this.clusterMap = clusterMap;
+            this.caretEdges = caretEdges;
+        }
+    }
+
+    /**
+     * A range of text to be shaped along with its configuration. The language tag and the
+     * OpenType features are taken from the engine passed to {@link #shapeRequests}.
+     */
+    public static final class Request {
+        public final int charStart;
+        public final int charEnd;
+        public final @NonNull Typeface typeface;
+        public final float typeSize;
+        public final int scriptTag;
+        public final @NonNull WritingDirection writingDirection;
+        public final @NonNull ShapingOrder shapingOrder;
+        public final @Nullable ShapingProfile profile;
+        ShapedText shapedText;
+
+        public Request(int charStart, int charEnd, @NonNull Typeface typeface, float typeSize,
+                       int scriptTag, @NonNull WritingDirection writingDirection,
+                       @NonNull ShapingOrder shapingOrder, @Nullable ShapingProfile profile) {
+            this.charStart = charStart;
+            this.charEnd = charEnd;
+            this.typeface = typeface;
+            this.typeSize = typeSize;
+            this.scriptTag = scriptTag;
+            this.writingDirection = writingDirection;
+            this.shapingOrder = shapingOrder;
+            this.profile = profile;
+        }
+
+        public @NonNull ShapedText getShapedText() {
+            return shapedText;
+        }
+    }
+
+    private static class Holder {
+        private static final @NonNull ShapingCache INSTANCE = new ShapingCache(DEFAULT_CAPACITY);
+    }
+
+    public static @NonNull ShapingCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final @NonNull WordSegment words = new WordSegment(this);
+    private final @NonNull AtomicLong hitCount = new AtomicLong();
+    private final @NonNull AtomicLong missCount = new AtomicLong();
+    private final @NonNull AtomicLong shapingTime = new AtomicLong();
+    private volatile boolean enabled;
+
+    private ShapingCache(int capacity) {
+        super(capacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    public long missCount() {
+        return missCount.get();
+    }
+
+    public long shapingTime() {
+        return shapingTime.get();
+    }
+
+    /**
+     * Shapes the given requests, reusing the results of the words which have been shaped before.
+     * All the remaining words are shaped together with a single batch.
+     */
+    public void shapeRequests(@NonNull ShapingEngine engine, @NonNull String text,
+                              @NonNull List<Request> requests) {
+        int languageTag = engine.getLanguageTag();
+        Set<OpenTypeFeature> features = engine.getOpenTypeFeatures();
+        boolean enabled = this.enabled;
+
+        int requestCount = requests.size();
+        Style[] styles = new Style[requestCount];
+        int[] pieceEnds = new int[requestCount];
+        List<Piece> pieces = new ArrayList<>();
+        Map<WordKey, Piece> pendingWords = new HashMap<>();
+        ShapingBatch batch = new ShapingBatch();
+        int hits = 0;
+        int misses = 0;
+
+        for (int i = 0; i < requestCount; i++) {
+            Request request = requests.get(i);
+            ShapingProfile profile = request.profile;
+            Style style;
+
+            if (profile != null) {
+                style = new Style(request.typeface, request.typeSize, request.scriptTag,
+                                  profile.getLanguageTag(), profile.getOpenTypeFeatures(),
+                                  request.writingDirection, request.shapingOrder, profile);
+            } else {
+                style = new Style(request.typeface, request.typeSize, request.scriptTag,
+                                  languageTag, features,
+                                  request.writingDirection, request.shapingOrder, null);
+            }
+
+            int wordStart = request.charStart;
+            int limit = request.charEnd;
+
+            while (wordStart < limit) {
+                int wordEnd = (enabled ? nextWordEnd(text, wordStart, limit) : limit);
+                Piece piece;
+
+                if (!enabled || wordEnd - wordStart > MAX_WORD_LENGTH) {
+                    piece = new Piece(null);
+                    piece.batchIndex = addRequest(batch, style, wordStart, wordEnd);
+                } else {
+                    WordKey key = new WordKey(style, text.substring(wordStart, wordEnd));
+                    CachedWord word = words.get(key);
+                    piece = new Piece(key);
+
+                    if (word != null) {
+                        piece.word = word;
+                        hits++;
+                    } else {
+                        Piece pending = pendingWords.get(key);
+
+                        // A repeated word is shaped only once, but it is not served by the cache.
+                        if (pending != null) {
+                            piece.batchIndex = pending.batchIndex;
+                            misses++;
+                        } else {
+                            piece.batchIndex = addRequest(batch, style, wordStart, wordEnd);
+                            pendingWords.put(key, piece);
+                            misses++;
+                        }
+                    }
+                }
+
+                pieces.add(piece);
+                wordStart = wordEnd;
+            }
+
+            styles[i] = style;
+            pieceEnds[i] = pieces.size();
+        }
+
+        if (batch.getRequestCount() > 0) {
+            long startTime = System.nanoTime();
+            engine.shapeBatch(text, batch);
+            shapingTime.addAndGet(System.nanoTime() - startTime);
+
+            int shapedCount = batch.getRequestCount();
+            ShapedPiece[] shapedPieces = new ShapedPiece[shapedCount];
+            CachedWord[] cachedWords = new CachedWord[shapedCount];
+
+            for (int i = 0; i < shapedCount; i++) {
+                shapedPieces[i] = new ShapedPiece(batch, i);
+            }
+
+            for (Piece piece : pieces) {
+                int batchIndex = piece.batchIndex;
+                if (batchIndex < 0) {
+                    continue;
+                }
+
+                if (piece.key != null) {
+                    CachedWord word = cachedWords[batchIndex];
+                    if (word == null) {
+                        word = words.putIfAbsent(piece.key, new CachedWord(shapedPieces[batchIndex]));
+                        cachedWords[batchIndex] = word;
+                    }
+
+                    piece.word = word;
+                } else {
+                    piece.word = shapedPieces[batchIndex];
+                }
+            }
+        }
+
+        if (hits > 0) {
+            hitCount.addAndGet(hits);
+        }
+        if (misses > 0) {
+            missCount.addAndGet(misses);
+        }
+
+        int pieceStart = 0;
+
+        for (int i = 0; i < requestCount; i++) {
+            Request request = requests.get(i);
+            List<Piece> requestPieces = pieces.subList(pieceStart, pieceEnds[i]);
+
+            request.shapedText = joinWords(requestPieces, styles[i], request.charEnd - request.charStart);
+            pieceStart = pieceEnds[i];
+        }
+    }
+
+    private static int addRequest(@NonNull ShapingBatch batch, @NonNull Style style,
+                                  int fromIndex, int toIndex) {
+        if (style.profile != null) {
+            return batch.addRequest(style.typeface, style.typeSize, style.profile,
+                                    style.shapingOrder, fromIndex, toIndex);
+        }
+
+        return batch.addRequest(style.typeface, style.typeSize, style.scriptTag, style.languageTag,
+                                style.writingDirection, style.shapingOrder, fromIndex, toIndex);
+    }
+
+    private static int nextWordEnd(@NonNull String text, int wordStart, int limit) {
+        int index = wordStart;
+
+        // Keep the trailing spaces with the word.
+        while (index < limit && text.charAt(index) != ' ') {
+            index++;
+        }
+        while (index < limit && text.charAt(index) == ' ') {
+            index++;
+        }
+
+        return index;
+    }
+
+    private static @NonNull ShapedText joinWords(@NonNull List<Piece> pieces, @NonNull Style style,
+                                                 int charCount) {
+        boolean isBackward = (style.shapingOrder == ShapingOrder.BACKWARD);
+        boolean isVisuallyRTL = style.isVisuallyRTL();
+        int pieceCount = pieces.size();
+
+        // A run shaped as a whole is already in its final form.
+        if (pieceCount == 1 && pieces.get(0).word instanceof ShapedPiece) {
+            ShapedPiece piece = (ShapedPiece) pieces.get(0).word;
+            return new ShapedText(isBackward, piece.glyphIds, piece.offsets, piece.advances,
+                                  piece.clusterMap, piece.caretEdges);
+        }
+
+        int glyphCount = 0;
+        float totalWidth = 0.0f;
+
+        for (int i = 0; i < pieceCount; i++) {
+            Word word = pieces.get(i).word;
+            glyphCount += word.glyphCount();
+            totalWidth += word.width;
+        }
+
+        ShapedText shapedText = new ShapedText(isBackward, glyphCount, charCount);
+        int charStart = 0;
+        int glyphsBefore = 0;
+        float widthBefore = 0.0f;
+
+        for (int i = 0; i < pieceCount; i++) {
+            Word word = pieces.get(i).word;
+            int wordGlyphs = word.glyphCount();
+            int wordChars = word.charCount();
+
+            // Backward glyphs and right to left edges place the later words first.
+            int glyphStart = (isBackward ? glyphCount - glyphsBefore - wordGlyphs : glyphsBefore);
+            float edgeStart = (isVisuallyRTL ? totalWidth - widthBefore - word.width : widthBefore);
+
+            word.copyGlyphIds(shapedText.glyphIds, glyphStart);
+            System.arraycopy(word.advances, 0, shapedText.glyphAdvances, glyphStart, wordGlyphs);
+            System.arraycopy(word.offsets, 0, shapedText.glyphOffsets, glyphStart * 2, wordGlyphs * 2);
+
+            word.copyClusterMap(shapedText.clusterMap, charStart, glyphStart);
+            for (int j = 0; j <= wordChars; j++) {
+                shapedText.caretEdges[charStart + j] = word.caretEdges[j] + edgeStart;
+            }
+
+            charStart += wordChars;
+            glyphsBefore += wordGlyphs;
+            widthBefore += word.width;
+        }
+
+        return shapedText;
+    }
+}
@@ -37,7 +37,9 @@ import com.mta.tehreer.graphics.TypeWeight;
 import com.mta.tehreer.graphics.TypeWidth;
 import com.mta.tehreer.graphics.Typeface;
 import com.mta.tehreer.graphics.TypefaceManager;
+import com.mta.tehreer.layout.style.ShapingProfileSpan;
 import com.mta.tehreer.layout.style.TypeSizeSpan;
+import com.mta.tehreer.sfnt.ShapingProfile;
 
 import java.util.List;
 
@@ -54,6 +56,7 @@ public class ShapingRunLocator {
         int end;
 
         ReplacementSpan replacement;
+        ShapingProfile profile;
 
         Typeface typeface;
         TypeWeight typeWeight;
@@ -93,6 +96,7 @@ public class ShapingRunLocator {
             shapingRun.typeSlope = initial.typeSlope;
             shapingRun.typeSize = initial.typeSize;
             shapingRun.scaleX = initial.scaleX;
+            shapingRun.profile = initial.profile;
 
             resolveSpans(shapingRun, spans);
 
@@ -109,6 +113,9 @@ public class ShapingRunLocator {
                 shapingRun.typeface = typefaceSpan.getTypeface();
                 shapingRun.typeWeight = shapingRun.typeface.getWeight();
                 shapingRun.typeSlope = shapingRun.typeface.getSlope();
+            } else if (span instanceof ShapingProfileSpan) {
+                ShapingProfileSpan profileSpan = (ShapingProfileSpan) span;
+                shapingRun.profile = profileSpan.getProfile();
             } else if (span instanceof TypeSizeSpan) {
                 TypeSizeSpan typeSizeSpan = (TypeSizeSpan) span;
                 shapingRun.typeSize = typeSizeSpan.getSize();
@@ -217,7 +224,8 @@ public class ShapingRunLocator {
                         && Float.compare(current.typeSize, next.typeSize) == 0
                         && Float.compare(current.scaleX, next.scaleX) == 0
                         && Float.compare(current.baselineShift, next.baselineShift) == 0
-                        && current.replacement == next.replacement) {
+                        && current.replacement == next.replacement
+                        && current.profile == next.profile) {
                     current.end = next.end;
                 } else {
                     break;
@@ -259,4 +267,8 @@ public class ShapingRunLocator {
     public ReplacementSpan getReplacement() {
         return mCurrent.replacement;
     }
+
+    public ShapingProfile getShapingProfile() {
+        return mCurrent.profile;
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,33 @@ package com.mta.tehreer.internal.util;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A size bounded cache whose entries are partitioned into segments.
+ * <p>
+ * Lookups are lock free. Insertions and removals only lock the segment they belong to, so that
+ * the segments never contend with each other. Eviction follows the CLOCK policy: every entry
+ * carries a reference bit which is set on each hit, and the clock hand gives a second chance to
+ * referenced entries before evicting them. This approximates the LRU order without touching any
+ * shared structure on cache hits.
+ */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public abstract class LruCache {
     private static class Node<K, V> {
         public final Segment<K, V> segment;
         public final K key;
-        public V value;
-        public Node<K, V> previous;
-        public Node<K, V> next;
+        public volatile V value;
+        public int size;
+        public volatile boolean referenced;
+        public volatile boolean removed;
 
         public Node(Segment<K, V> segment, K key, V value) {
             this.segment = segment;
@@ -37,135 +54,368 @@ public abstract class LruCache {
         }
     }
 
-    private static class List {
-        final @NonNull Node header = new Node(null, null, null);
+    protected static class Segment<K, V> {
+        protected final @NonNull LruCache cache;
+        private final @NonNull ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
 
-        public List() {
-            header.previous = header.next = header;
-        }
+        // Written only under the segment lock, read without it.
+        private volatile int size;
+        private volatile int count;
+        private volatile long evictionCount;
+        private volatile long evictedSize;
 
-        public Node last() {
-            return header.previous;
-        }
+        public Segment(@NonNull LruCache cache) {
+            if (cache == null) {
+                throw new NullPointerException();
+            }
 
-        public void makeFirst(@NonNull Node node) {
-            remove(node);
-            addFirst(node);
+            this.cache = cache;
         }
 
-        public void addFirst(@NonNull Node node) {
-            node.previous = header;
-            node.next = header.next;
-            header.next.previous = node;
-            header.next = node;
+        protected int sizeOf(@NonNull K key, @NonNull V value) {
+            return 1;
         }
 
-        public void remove(@NonNull Node node) {
-            node.previous.next = node.next;
-            node.next.previous = node.previous;
-            node.next = node.previous = null;
+        protected void onEntryEvicted(@NonNull K key, @NonNull V value) {
         }
 
-        public void clear() {
-            header.previous = header.next = header;
+        /**
+         * Returns the maximum size of this segment, or zero if it is only bounded by the capacity
+         * of the cache.
+         */
+        protected int quota() {
+            return 0;
         }
-    }
 
-    protected static class Segment<K, V> {
-        protected final @NonNull LruCache cache;
-        private final @NonNull HashMap<K, Node<K, V>> map = new HashMap<>();
+        public final int size() {
+            return size;
+        }
 
-        public Segment(@NonNull LruCache cache) {
-            if (cache == null) {
-                throw new NullPointerException();
-            }
+        public final int count() {
+            return count;
+        }
 
-            this.cache = cache;
+        public final long evictionCount() {
+            return evictionCount;
         }
 
-        protected int sizeOf(@NonNull K key, @NonNull V value) {
-            return 1;
+        public final long evictedSize() {
+            return evictedSize;
         }
 
         public final @Nullable V get(@NonNull K key) {
-            synchronized (cache) {
+            Node<K, V> node = map.get(key);
+            if (node != null) {
+                // Avoid dirtying the shared cache line if the bit is already set.
+                if (!node.referenced) {
+                    node.referenced = true;
+                }
+
+                return node.value;
+            }
+
+            return null;
+        }
+
+        public final @NonNull V putIfAbsent(@NonNull K key, @NonNull V value) {
+            synchronized (this) {
                 Node<K, V> node = map.get(key);
                 if (node != null) {
-                    cache.list.makeFirst(node);
+                    node.referenced = true;
                     return node.value;
                 }
+
+                insertNode(key, value);
             }
 
-            return null;
+            trimToQuota();
+            cache.trimToCapacity();
+
+            return value;
         }
 
+        // Replaces the value of an existing entry, measuring its size again.
         public final void put(@NonNull K key, @NonNull V value) {
-            synchronized (cache) {
-                Node<K, V> newNode = new Node<>(this, key, value);
-                Node<K, V> oldNode = map.put(key, newNode);
-                if (oldNode != null) {
-                    throw new IllegalArgumentException("An entry with same key has already been added");
-                }
+            synchronized (this) {
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    int newSize = sizeOf(key, value);
 
-                cache.size += sizeOf(key, value);
-                cache.list.addFirst(newNode);
+                    size += newSize - node.size;
+                    cache.size.addAndGet(newSize - node.size);
+                    node.value = value;
+                    node.size = newSize;
+                    node.referenced = true;
+                } else {
+                    insertNode(key, value);
+                }
             }
 
-            cache.trimToSize(cache.capacity);
+            trimToQuota();
+            cache.trimToCapacity();
         }
 
         public final void remove(@NonNull K key) {
-            synchronized (cache) {
+            synchronized (this) {
                 Node<K, V> node = map.remove(key);
                 if (node != null) {
-                    cache.size -= sizeOf(key, node.value);
-                    cache.list.remove(node);
+                    detachNode(node);
+                }
+            }
+
+            cache.purgeClock();
+        }
+
+        public final void remove(@NonNull K key, @NonNull V value) {
+            synchronized (this) {
+                Node<K, V> node = map.get(key);
+                if (node != null && node.value == value) {
+                    map.remove(key);
+                    detachNode(node);
+                }
+            }
+
+            cache.purgeClock();
+        }
+
+        private void insertNode(@NonNull K key, @NonNull V value) {
+            Node<K, V> node = new Node<>(this, key, value);
+            node.size = sizeOf(key, value);
+
+            map.put(key, node);
+            size += node.size;
+            count++;
+            cache.size.addAndGet(node.size);
+            cache.count.incrementAndGet();
+            cache.offerClock(node);
+        }
+
+        private void detachNode(@NonNull Node<K, V> node) {
+            // The node stays in the clock until the hand reaches it or the clock is purged, so the
+            // value is released right away.
+            node.removed = true;
+            node.value = null;
+            size -= node.size;
+            count--;
+            cache.size.addAndGet(-node.size);
+            cache.count.decrementAndGet();
+        }
+
+        private void markEvicted(@NonNull Node<K, V> node) {
+            detachNode(node);
+            evictionCount++;
+            evictedSize += node.size;
+        }
+
+        private void notifyEvicted(@NonNull Node<K, V> node, @NonNull V value) {
+            cache.evictionCount.incrementAndGet();
+            cache.evictedSize.addAndGet(node.size);
+
+            onEntryEvicted(node.key, value);
+        }
+
+        private void evictNode(@NonNull Node<K, V> node) {
+            V value = null;
+
+            synchronized (this) {
+                if (!node.removed && map.remove(node.key, node)) {
+                    value = node.value;
+                    markEvicted(node);
                 }
             }
+
+            if (value != null) {
+                notifyEvicted(node, value);
+            }
+        }
+
+        private void trimToQuota() {
+            int quota = quota();
+            if (quota > 0 && size > quota) {
+                trimToSize(quota);
+            }
+        }
+
+        /**
+         * Evicts the entries of this segment alone until its size drops to the given limit. The
+         * entries are swept in the order of the underlying map, giving a second chance to the
+         * referenced ones in the same way as the clock of the cache.
+         */
+        public final void trimToSize(int maxSize) {
+            List<Node<K, V>> evictedNodes = new ArrayList<>();
+            List<V> evictedValues = new ArrayList<>();
+
+            synchronized (this) {
+                for (int pass = 0; pass < 2 && size > maxSize; pass++) {
+                    Iterator<Node<K, V>> iterator = map.values().iterator();
+
+                    while (size > maxSize && iterator.hasNext()) {
+                        Node<K, V> node = iterator.next();
+                        if (pass == 0 && node.referenced) {
+                            node.referenced = false;
+                            continue;
+                        }
+
+                        iterator.remove();
+                        evictedNodes.add(node);
+                        evictedValues.add(node.value);
+                        markEvicted(node);
+                    }
+                }
+            }
+
+            for (int i = 0; i < evictedNodes.size(); i++) {
+                notifyEvicted(evictedNodes.get(i), evictedValues.get(i));
+            }
+
+            cache.purgeClock();
         }
     }
 
-    private final @NonNull List list;
-    private int capacity;
-    private int size;
+    private final @NonNull ConcurrentLinkedQueue<Node> clock = new ConcurrentLinkedQueue<>();
+    // The size of the clock queue, as counting it would need a full traversal.
+    private final @NonNull AtomicInteger clockLength = new AtomicInteger();
+    private final @NonNull ReentrantLock evictionLock = new ReentrantLock();
+    private final @NonNull AtomicInteger size = new AtomicInteger();
+    private final @NonNull AtomicInteger count = new AtomicInteger();
+    private final @NonNull AtomicLong evictionCount = new AtomicLong();
+    private final @NonNull AtomicLong evictedSize = new AtomicLong();
+    private volatile int capacity;
 
     public LruCache(int capacity) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("Invalid Capacity: " + capacity);
         }
 
-        this.list = new List();
         this.capacity = capacity;
-        this.size = 0;
     }
 
-    public synchronized final int capacity() {
+    public final int capacity() {
         return capacity;
     }
 
-    public synchronized final int size() {
-        return size;
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid Capacity: " + capacity);
+        }
+
+        this.capacity = capacity;
+        trimToSize(capacity);
+    }
+
+    public final int size() {
+        return size.get();
+    }
+
+    public final int count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of entries evicted so far, including the ones dropped by {@link #clear()}.
+     */
+    public final long evictionCount() {
+        return evictionCount.get();
+    }
+
+    public final long evictedSize() {
+        return evictedSize.get();
+    }
+
+    final int clockLength() {
+        return clockLength.get();
+    }
+
+    public void clear() {
+        evictionLock.lock();
+
+        try {
+            Node node;
+            while ((node = pollClock()) != null) {
+                node.segment.evictNode(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
-    public synchronized void clear() {
-        list.clear();
+    private void trimToCapacity() {
+        // Let the thread which is already evicting do the job instead of waiting for it.
+        while (size.get() > capacity && evictionLock.tryLock()) {
+            try {
+                evictEntries(capacity);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
     }
 
     public void trimToSize(int maxSize) {
-        while (true) {
-            synchronized (this) {
-                if (size <= maxSize) {
-                    break;
-                }
+        evictionLock.lock();
 
-                Node toEvict = list.last();
-                if (toEvict == list.header) {
-                    break;
-                }
+        try {
+            evictEntries(maxSize);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evictEntries(int maxSize) {
+        // Every live entry gets at most one second chance per sweep so that the hand always
+        // terminates even if other threads keep referencing the entries.
+        int chances = count.get();
 
-                Segment segment = toEvict.segment;
-                Object key = toEvict.key;
-                segment.remove(key);
+        while (size.get() > maxSize) {
+            Node node = pollClock();
+            if (node == null) {
+                break;
+            }
+            if (node.removed) {
+                continue;
+            }
+
+            if (node.referenced && chances > 0) {
+                chances--;
+                node.referenced = false;
+                offerClock(node);
+                continue;
+            }
+
+            node.segment.evictNode(node);
+        }
+    }
+
+    private void offerClock(@NonNull Node node) {
+        clock.offer(node);
+        clockLength.incrementAndGet();
+    }
+
+    private @Nullable Node pollClock() {
+        Node node = clock.poll();
+        if (node != null) {
+            clockLength.decrementAndGet();
+        }
+
+        return node;
+    }
+
+    /**
+     * Drops the removed nodes from the clock once they outnumber the live ones. The hand only
+     * drops them while the cache is above its capacity, which may rarely be the case if the
+     * segments are kept within their quotas.
+     */
+    private void purgeClock() {
+        if (clockLength.get() - count.get() > count.get() && evictionLock.tryLock()) {
+            try {
+                Iterator<Node> iterator = clock.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().removed) {
+                        iterator.remove();
+                        clockLength.decrementAndGet();
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
             }
         }
     }
@@ -19,6 +19,10 @@ package com.mta.tehreer.layout;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
 import android.text.Layout;
 import android.text.Spanned;
 import android.text.style.LeadingMarginSpan;
@@ -27,23 +31,46 @@ import android.text.style.LineBackgroundSpan;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.mta.tehreer.graphics.PixelBuffer;
 import com.mta.tehreer.graphics.Renderer;
 import com.mta.tehreer.internal.Description;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
 
 /**
  * Represents a frame containing multiple lines of text. The frame object is the output resulting
  * from text-framing process performed by a typesetter object.
  */
 public class ComposedFrame {
+    // Hardware canvases cannot replay recorded vertices before Android Q.
+    private static final int HARDWARE_PICTURE_SDK = 29;
+
+    /**
+     * Interface definition for a callback to be invoked when a glyph prefetch of a frame finishes.
+     */
+    public interface PrefetchCallback {
+        /**
+         * Called when all glyphs of the frame have been loaded into the cache, or the prefetch has
+         * been cancelled. It is invoked on the worker thread in the former case, and on the
+         * cancelling thread in the latter one.
+         *
+         * @param frame The frame whose glyphs were prefetched.
+         * @param cancelled <code>true</code> if the prefetch was cancelled before it could finish.
+         */
+        void onPrefetchFinished(@NonNull ComposedFrame frame, boolean cancelled);
+    }
+
     private final CharSequence source;
     private final int frameStart;
     private final int frameEnd;
     private final @NonNull List<ComposedLine> lineList;
+    private final float maxLineHeight;
 
     private float mOriginX;
     private float mOriginY;
@@ -51,6 +78,13 @@ public class ComposedFrame {
     private float mHeight;
 
     private @Nullable Paint paint;
+    private final @NonNull Rect clipBounds = new Rect();
+
+    private boolean mRecordingEnabled;
+    private @Nullable Picture mRecording;
+    private @Nullable RendererState mRecordingState;
+    private float mRecordingLeft;
+    private float mRecordingTop;
 
     ComposedFrame(CharSequence source, int charStart, int charEnd,
                   @NonNull List<ComposedLine> lineList) {
@@ -58,6 +92,12 @@ public class ComposedFrame {
         this.frameStart = charStart;
         this.frameEnd = charEnd;
         this.lineList = Collections.unmodifiableList(lineList);
+
+        float maxLineHeight = 0.0f;
+        for (ComposedLine composedLine : lineList) {
+            maxLineHeight = Math.max(maxLineHeight, composedLine.getHeight());
+        }
+        this.maxLineHeight = maxLineHeight;
     }
 
     void setContainerRect(float originX, float originY, float width, float height) {
@@ -291,12 +331,11 @@ public class ComposedFrame {
         return selectionPath;
     }
 
-    private void drawBackground(@NonNull Canvas canvas) {
+    private void drawBackground(@NonNull Canvas canvas, int firstLine, int endLine) {
         int frameLeft = 0;
         int frameRight = (int) (mWidth + 0.5f);
 
-        int lineCount = lineList.size();
-        for (int i = 0; i < lineCount; i++) {
+        for (int i = firstLine; i < endLine; i++) {
             ComposedLine composedLine = lineList.get(i);
             Object[] lineSpans = composedLine.getSpans();
 
@@ -338,10 +377,167 @@ public class ComposedFrame {
     public void draw(@NonNull Renderer renderer, @NonNull Canvas canvas, float x, float y) {
         canvas.translate(x, y);
 
-        drawBackground(canvas);
+        if (mRecordingEnabled && canReplayRecording(canvas)) {
+            if (mRecording == null || !mRecordingState.matches(renderer)) {
+                record(renderer);
+            }
 
-        int lineCount = lineList.size();
-        for (int i = 0; i < lineCount; i++) {
+            canvas.translate(mRecordingLeft, mRecordingTop);
+            canvas.drawPicture(mRecording);
+            canvas.translate(-mRecordingLeft, -mRecordingTop);
+        } else {
+            drawContents(renderer, canvas);
+        }
+
+        canvas.translate(-x, -y);
+    }
+
+    private static boolean canReplayRecording(@NonNull Canvas canvas) {
+        return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= HARDWARE_PICTURE_SDK;
+    }
+
+    /**
+     * Computes the area that the drawing of this frame may cover, relative to the frame itself.
+     * It includes the frame rect along with the lines padded by their heights, leaving enough room
+     * for the ink overflowing their typographic bounds, and the shadow of the renderer.
+     */
+    void computeDrawingBounds(@NonNull Renderer renderer, @NonNull RectF bounds) {
+        float left = 0.0f;
+        float top = 0.0f;
+        float right = mWidth;
+        float bottom = mHeight;
+
+        for (ComposedLine composedLine : lineList) {
+            float overflow = composedLine.getHeight();
+
+            left = Math.min(left, composedLine.getLeft() - overflow);
+            top = Math.min(top, composedLine.getTop() - overflow);
+            right = Math.max(right, composedLine.getRight() + overflow);
+            bottom = Math.max(bottom, composedLine.getBottom() + overflow);
+        }
+
+        float shadowExtent = RendererState.shadowExtent(renderer);
+        bounds.set(left - shadowExtent, top - shadowExtent,
+                   right + shadowExtent, bottom + shadowExtent);
+    }
+
+    private void record(@NonNull Renderer renderer) {
+        // The renderer skips the glyphs outside of the recording bounds.
+        RectF bounds = new RectF();
+        computeDrawingBounds(renderer, bounds);
+
+        float left = (float) Math.floor(bounds.left);
+        float top = (float) Math.floor(bounds.top);
+        float right = bounds.right;
+        float bottom = bounds.bottom;
+
+        int width = Math.max(1, (int) Math.ceil(right - left));
+        int height = Math.max(1, (int) Math.ceil(bottom - top));
+
+        Picture recording = new Picture();
+        Canvas canvas = recording.beginRecording(width, height);
+        canvas.translate(-left, -top);
+        drawContents(renderer, canvas);
+        recording.endRecording();
+
+        if (mRecordingState == null) {
+            mRecordingState = new RendererState();
+        }
+        mRecordingState.capture(renderer);
+
+        mRecording = recording;
+        mRecordingLeft = left;
+        mRecordingTop = top;
+    }
+
+    private int getFirstLineBelow(float y) {
+        int low = 0;
+        int high = lineList.size();
+
+        // Lines are sorted vertically, so their bottoms are in ascending order.
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (lineList.get(mid).getBottom() <= y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private int getFirstLineFrom(float y, int start) {
+        int low = start;
+        int high = lineList.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (lineList.get(mid).getTop() < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Draws the lines of this frame into the given pixel buffer using the given
+     * <code>renderer</code>. The position is relative to the current translation of the buffer.
+     * Only the glyphs are drawn; leading margin, line background and replacement spans require a
+     * canvas and are skipped.
+     *
+     * @param renderer The renderer to use for drawing this frame.
+     * @param buffer The pixel buffer into which to draw this frame.
+     * @param x The x- position at which to draw this frame.
+     * @param y The y- position at which to draw this frame.
+     */
+    public void draw(@NonNull Renderer renderer, @NonNull PixelBuffer buffer, float x, float y) {
+        checkNotNull(renderer, "renderer");
+        checkNotNull(buffer, "buffer");
+
+        if (buffer.isClipEmpty()) {
+            return;
+        }
+
+        buffer.translate(x, y);
+
+        float overflow = maxLineHeight + RendererState.shadowExtent(renderer);
+        float clipTop = buffer.getClipTop() - buffer.getTranslateY();
+        float clipBottom = buffer.getClipBottom() - buffer.getTranslateY();
+
+        int firstLine = getFirstLineBelow(clipTop - overflow);
+        int endLine = getFirstLineFrom(clipBottom + overflow, firstLine);
+
+        for (int i = firstLine; i < endLine; i++) {
+            ComposedLine composedLine = lineList.get(i);
+            composedLine.draw(renderer, buffer, composedLine.getOriginX(), composedLine.getOriginY());
+        }
+
+        buffer.translate(-x, -y);
+    }
+
+    private void drawContents(@NonNull Renderer renderer, @NonNull Canvas canvas) {
+        if (!canvas.getClipBounds(clipBounds)) {
+            return;
+        }
+
+        // Leave room for the ink and shadows overflowing the typographic bounds of the lines.
+        float shadowExtent = RendererState.shadowExtent(renderer);
+        float overflow = maxLineHeight + shadowExtent;
+        float clipLeft = clipBounds.left - shadowExtent;
+        float clipRight = clipBounds.right + shadowExtent;
+
+        int firstLine = getFirstLineBelow(clipBounds.top - overflow);
+        int endLine = getFirstLineFrom(clipBounds.bottom + overflow, firstLine);
+
+        drawBackground(canvas, firstLine, endLine);
+
+        for (int i = firstLine; i < endLine; i++) {
             ComposedLine composedLine = lineList.get(i);
             Object[] lineSpans = composedLine.getSpans();
 
@@ -379,10 +575,70 @@ public class ComposedFrame {
                 }
             }
 
-            composedLine.draw(renderer, canvas, composedLine.getOriginX(), composedLine.getOriginY());
+            composedLine.draw(renderer, canvas, composedLine.getOriginX(), composedLine.getOriginY(),
+                              clipLeft, clipRight);
         }
+    }
 
-        canvas.translate(-x, -y);
+    /**
+     * Returns whether this frame is recorded on its first draw and replayed afterwards. The default
+     * value is <code>false</code>.
+     *
+     * @return <code>true</code> if the drawing of this frame is recorded, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isRecordingEnabled() {
+        return mRecordingEnabled;
+    }
+
+    /**
+     * Enables or disables recording of this frame.
+     * <p>
+     * When enabled, the first draw records the frame into a picture, and the later draws replay it
+     * without walking the lines, spans and glyphs again. The recording is made again whenever a
+     * renderer property affecting the appearance of the frame, such as fill color, rendering style,
+     * stroke or shadow, differs from the one used for recording. Recordings are not replayed on
+     * hardware accelerated canvases before Android Q, the frame is drawn directly instead.
+     *
+     * @param recordingEnabled <code>true</code> to record the drawing of this frame,
+     *                         <code>false</code> to draw it directly and discard any recording.
+     */
+    public void setRecordingEnabled(boolean recordingEnabled) {
+        mRecordingEnabled = recordingEnabled;
+
+        if (!recordingEnabled) {
+            invalidateRecording();
+        }
+    }
+
+    /**
+     * Discards the recording of this frame so that the next draw records it again. It should be
+     * called when a span drawn by this frame changes its appearance.
+     */
+    public void invalidateRecording() {
+        mRecording = null;
+    }
+
+    /**
+     * Loads the glyphs of this frame into the glyph cache on a worker thread so that the first
+     * draw does not have to rasterize them. The glyphs are deduplicated per typeface and size, and
+     * are loaded with the current rendering style, slant, vertical scale and stroke attributes of
+     * the given renderer. The renderer itself is not accessed after this method returns.
+     *
+     * @param renderer The renderer that will be used for drawing this frame.
+     * @param executor The executor on which to load the glyphs.
+     * @param callback An optional callback to be invoked when the prefetch finishes.
+     * @return A future which can be used to cancel the prefetch.
+     */
+    public @NonNull Future<?> prefetchGlyphs(@NonNull Renderer renderer, @NonNull Executor executor,
+                                             @Nullable PrefetchCallback callback) {
+        checkNotNull(renderer, "renderer");
+        checkNotNull(executor, "executor");
+
+        GlyphPrefetchTask task = new GlyphPrefetchTask(this, renderer, callback);
+        executor.execute(task);
+
+        return task;
     }
 
     @Override
@@ -17,10 +17,12 @@
 package com.mta.tehreer.layout;
 
 import android.graphics.Canvas;
+import android.graphics.Rect;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Size;
 
+import com.mta.tehreer.graphics.PixelBuffer;
 import com.mta.tehreer.graphics.Renderer;
 import com.mta.tehreer.internal.Description;
 
@@ -384,13 +386,65 @@ public class ComposedLine {
      * @param y The y- position at which to draw this line.
      */
     public void draw(@NonNull Renderer renderer, @NonNull Canvas canvas, float x, float y) {
+        Rect clipBounds = new Rect();
+        if (canvas.getClipBounds(clipBounds)) {
+            float shadowExtent = RendererState.shadowExtent(renderer);
+            draw(renderer, canvas, x, y,
+                 clipBounds.left - shadowExtent, clipBounds.right + shadowExtent);
+        }
+    }
+
+    /**
+     * Draws this line into the given pixel buffer, at its current translation, using the given
+     * <code>renderer</code>.
+     *
+     * @param renderer The renderer to use for drawing this line.
+     * @param buffer The pixel buffer into which to draw this line.
+     * @param x The x- position at which to draw this line.
+     * @param y The y- position at which to draw this line.
+     */
+    public void draw(@NonNull Renderer renderer, @NonNull PixelBuffer buffer, float x, float y) {
+        if (buffer.isClipEmpty()) {
+            return;
+        }
+
+        // Bring the clip into the coordinates of the line origin.
+        float shadowExtent = RendererState.shadowExtent(renderer);
+        float clipLeft = buffer.getClipLeft() - buffer.getTranslateX() - shadowExtent;
+        float clipRight = buffer.getClipRight() - buffer.getTranslateX() + shadowExtent;
+
         for (GlyphRun glyphRun : runList) {
             float translateX = x + glyphRun.getOriginX();
             float translateY = y + glyphRun.getOriginY();
 
-            canvas.translate(translateX, translateY);
-            glyphRun.draw(renderer, canvas);
-            canvas.translate(-translateX, -translateY);
+            if (isRunVisible(glyphRun, translateX, clipLeft, clipRight)) {
+                buffer.translate(translateX, translateY);
+                glyphRun.draw(renderer, buffer);
+                buffer.translate(-translateX, -translateY);
+            }
+        }
+    }
+
+    private static boolean isRunVisible(@NonNull GlyphRun glyphRun, float runX,
+                                        float clipLeft, float clipRight) {
+        // Leave room for the ink overflowing the typographic extent of the run.
+        float overflow = glyphRun.getHeight();
+
+        return runX + glyphRun.getWidth() + overflow > clipLeft
+            && runX - overflow < clipRight;
+    }
+
+    void draw(@NonNull Renderer renderer, @NonNull Canvas canvas, float x, float y,
+              float clipLeft, float clipRight) {
+        for (GlyphRun glyphRun : runList) {
+            float translateX = x + glyphRun.getOriginX();
+            float translateY = y + glyphRun.getOriginY();
+
+            if (isRunVisible(glyphRun, translateX, clipLeft, clipRight)) {
+                canvas.translate(translateX, translateY);
+                glyphRun.draw(renderer, canvas);
+                canvas.translate(-translateX, -translateY);
+            }
         }
     }
 
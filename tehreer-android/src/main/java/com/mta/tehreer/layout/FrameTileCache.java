@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mta.tehreer.graphics.Renderer;
+import com.mta.tehreer.internal.util.LruCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
+
+/**
+ * Draws composed frames through a cache of fixed size tiles, so that scrolling a large frame
+ * mostly draws tiles which have already been rendered.
+ * <p>
+ * The tiles of a frame are rendered into bitmaps with a private copy of the renderer attributes.
+ * They are kept per frame and renderer state, so that a frame drawn with several fill colors,
+ * rendering styles, strokes or shadows keeps the tiles of each. The least recently used tiles are
+ * evicted when the cache exceeds its capacity in bytes, and a renderer state is forgotten once
+ * all of its tiles have been evicted. If an
+ * executor is provided, the tiles lying ahead of the visible area in the direction of scrolling
+ * are rendered on it in advance.
+ * <p>
+ * Frames are drawn at whole pixel positions so that their tiles can be reused. A frame drawn
+ * through this cache should not be drawn directly on another thread at the same time.
+ */
+public class FrameTileCache {
+    /**
+     * The default size of a tile in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final int MAX_POOL_SIZE = 8;
+    private static final int MAX_PENDING_TILES = 16;
+
+    private static class Tile {
+        static final int CACHED = 0;
+        static final int DRAWN = 1;
+        static final int RECYCLED = 2;
+
+        final @NonNull Bitmap bitmap;
+        // A drawn bitmap may still be read by the canvas or referenced by a display list or a
+        // picture, so only the tiles which have never been drawn can give their bitmaps back.
+        final @NonNull AtomicInteger state = new AtomicInteger(CACHED);
+
+        Tile(@NonNull Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        boolean acquire() {
+            return state.get() == DRAWN
+                || state.compareAndSet(CACHED, DRAWN)
+                || state.get() == DRAWN;
+        }
+
+        boolean recycle() {
+            return state.compareAndSet(CACHED, RECYCLED);
+        }
+    }
+
+    private static class TileCache extends LruCache {
+        private static class Segment extends LruCache.Segment<Long, Tile> {
+            final @NonNull RendererState state;
+            final @NonNull Set<Long> pendingKeys = Collections.synchronizedSet(new HashSet<Long>());
+            volatile boolean discarded;
+
+            Segment(@NonNull TileCache cache, @NonNull RendererState state) {
+                super(cache);
+                this.state = state;
+            }
+
+            @Override
+            protected int sizeOf(@NonNull Long key, @NonNull Tile value) {
+                return value.bitmap.getRowBytes() * value.bitmap.getHeight();
+            }
+
+            @Override
+            protected void onEntryEvicted(@NonNull Long key, @NonNull Tile value) {
+                ((TileCache) cache).owner.recycleTile(value);
+            }
+        }
+
+        final @NonNull FrameTileCache owner;
+
+        TileCache(@NonNull FrameTileCache owner, int capacity) {
+            super(capacity);
+            this.owner = owner;
+        }
+    }
+
+    private final int tileSize;
+    private final @NonNull TileCache tileCache;
+    private final @NonNull Map<ComposedFrame, List<TileCache.Segment>> segments =
+            new WeakHashMap<>();
+    private final @NonNull ArrayDeque<Bitmap> bitmapPool = new ArrayDeque<>();
+    private final @NonNull Rect clipBounds = new Rect();
+    private final @NonNull RectF drawingBounds = new RectF();
+
+    // Rendering is serialized as the frames and the renderer are not thread safe.
+    private final @NonNull Object renderLock = new Object();
+    private final @NonNull Renderer tileRenderer = new Renderer();
+    private final @NonNull Canvas tileCanvas = new Canvas();
+    private @Nullable RendererState tileRendererState;
+
+    private volatile @Nullable Executor mExecutor;
+    private volatile int mPrefetchExtent;
+    private @Nullable TileCache.Segment mLastSegment;
+    private int mLastClipTop;
+
+    /**
+     * Constructs a tile cache with the default tile size.
+     *
+     * @param capacity The maximum number of bytes that the tile bitmaps can occupy.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public FrameTileCache(int capacity) {
+        this(capacity, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs a tile cache.
+     *
+     * @param capacity The maximum number of bytes that the tile bitmaps can occupy.
+     * @param tileSize The width and height of each tile in pixels.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> or <code>tileSize</code> is not
+     *         positive.
+     */
+    public FrameTileCache(int capacity, int tileSize) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        checkArgument(tileSize > 0, "Tile size must be positive");
+
+        this.tileSize = tileSize;
+        this.tileCache = new TileCache(this, capacity);
+        this.mPrefetchExtent = tileSize;
+    }
+
+    /**
+     * Returns the width and height of each tile in pixels.
+     *
+     * @return The size of each tile.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns the executor on which the tiles are prefetched, or <code>null</code> if the tiles
+     * are only rendered when they become visible.
+     *
+     * @return The executor used for prefetching tiles.
+     */
+    public @Nullable Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Sets the executor on which the tiles lying ahead of the visible area are rendered.
+     *
+     * @param executor The executor to use for prefetching tiles, or <code>null</code> to disable
+     *                 prefetching.
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the distance in pixels beyond the visible area within which the tiles are
+     * prefetched. The default value is equal to the tile size.
+     *
+     * @return The prefetch extent.
+     */
+    public int getPrefetchExtent() {
+        return mPrefetchExtent;
+    }
+
+    /**
+     * Sets the distance in pixels beyond the visible area within which the tiles are prefetched.
+     * The distance applies ahead of the visible area in the direction of scrolling, or on both
+     * sides if the area has not moved.
+     *
+     * @param prefetchExtent The prefetch extent.
+     *
+     * @throws IllegalArgumentException if <code>prefetchExtent</code> is negative.
+     */
+    public void setPrefetchExtent(int prefetchExtent) {
+        checkArgument(prefetchExtent >= 0, "Prefetch extent must not be negative");
+        mPrefetchExtent = prefetchExtent;
+    }
+
+    /**
+     * Returns the number of bytes occupied by the cached tiles.
+     *
+     * @return The size of the cache.
+     */
+    public int size() {
+        return tileCache.size();
+    }
+
+    /**
+     * Removes all tiles from the cache.
+     */
+    public void clear() {
+        synchronized (segments) {
+            discardSegments();
+        }
+        synchronized (bitmapPool) {
+            bitmapPool.clear();
+        }
+    }
+
+    private void discardSegments() {
+        for (List<TileCache.Segment> frameSegments : segments.values()) {
+            for (TileCache.Segment segment : frameSegments) {
+                discardSegment(segment);
+            }
+        }
+
+        segments.clear();
+    }
+
+    private static void discardSegment(@NonNull TileCache.Segment segment) {
+        segment.discarded = true;
+        segment.trimToSize(0);
+    }
+
+    private @NonNull TileCache.Segment obtainSegment(@NonNull ComposedFrame frame,
+                                                     @NonNull Renderer renderer) {
+        synchronized (segments) {
+            List<TileCache.Segment> frameSegments = segments.get(frame);
+            if (frameSegments == null) {
+                frameSegments = new ArrayList<>();
+                segments.put(frame, frameSegments);
+            }
+
+            TileCache.Segment matchingSegment = null;
+
+            for (int i = frameSegments.size() - 1; i >= 0; i--) {
+                TileCache.Segment segment = frameSegments.get(i);
+                if (matchingSegment == null && segment.state.matches(renderer)) {
+                    matchingSegment = segment;
+                } else if (segment.count() == 0 && segment.pendingKeys.isEmpty()) {
+                    // All tiles of this state have been evicted, so forget the state as well.
+                    discardSegment(segment);
+                    frameSegments.remove(i);
+                }
+            }
+
+            if (matchingSegment == null) {
+                RendererState state = new RendererState();
+                state.capture(renderer);
+
+                // The segment must not refer to the frame, which is weakly held as its key.
+                matchingSegment = new TileCache.Segment(tileCache, state);
+                frameSegments.add(matchingSegment);
+            }
+
+            return matchingSegment;
+        }
+    }
+
+    private static long tileKey(int column, int row) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private @NonNull Bitmap obtainBitmap() {
+        Bitmap bitmap;
+        synchronized (bitmapPool) {
+            bitmap = bitmapPool.poll();
+        }
+
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        return bitmap;
+    }
+
+    private void recycleTile(@NonNull Tile tile) {
+        if (tile.recycle()) {
+            synchronized (bitmapPool) {
+                if (bitmapPool.size() < MAX_POOL_SIZE) {
+                    bitmapPool.offer(tile.bitmap);
+                }
+            }
+        }
+    }
+
+    private @NonNull Tile renderTile(@NonNull TileCache.Segment segment,
+                                     @NonNull ComposedFrame frame,
+                                     int column, int row, boolean acquire) {
+        Long key = tileKey(column, row);
+
+        synchronized (renderLock) {
+            Tile tile = segment.get(key);
+            if (tile != null && (!acquire || tile.acquire())) {
+                return tile;
+            }
+
+            if (tileRendererState != segment.state) {
+                segment.state.applyTo(tileRenderer);
+                tileRendererState = segment.state;
+            }
+
+            Bitmap bitmap = obtainBitmap();
+            tileCanvas.setBitmap(bitmap);
+            frame.draw(tileRenderer, tileCanvas, -column * tileSize, -row * tileSize);
+            tileCanvas.setBitmap(null);
+
+            tile = new Tile(bitmap);
+            if (acquire) {
+                // Acquire before caching so that an immediate eviction cannot recycle the bitmap.
+                tile.acquire();
+            }
+            if (!segment.discarded) {
+                segment.putIfAbsent(key, tile);
+            }
+
+            return tile;
+        }
+    }
+
+    /**
+     * Draws the given frame onto the given <code>canvas</code> from the cached tiles, rendering the
+     * visible tiles which are missing.
+     *
+     * @param frame The frame to draw.
+     * @param renderer The renderer to use for drawing the frame.
+     * @param canvas The canvas onto which to draw the frame.
+     * @param x The x- position at which to draw the frame, rounded to a whole pixel.
+     * @param y The y- position at which to draw the frame, rounded to a whole pixel.
+     */
+    public void draw(@NonNull ComposedFrame frame, @NonNull Renderer renderer,
+                     @NonNull Canvas canvas, float x, float y) {
+        checkNotNull(frame, "frame");
+        checkNotNull(renderer, "renderer");
+        checkNotNull(canvas, "canvas");
+
+        if (!canvas.getClipBounds(clipBounds)) {
+            return;
+        }
+
+        int originX = Math.round(x);
+        int originY = Math.round(y);
+        TileCache.Segment segment = obtainSegment(frame, renderer);
+
+        // Find the tiles covering the visible part of the frame.
+        RectF bounds = drawingBounds;
+        frame.computeDrawingBounds(renderer, bounds);
+        if (!bounds.intersect(clipBounds.left - originX, clipBounds.top - originY,
+                              clipBounds.right - originX, clipBounds.bottom - originY)) {
+            return;
+        }
+
+        int firstColumn = tileIndex(bounds.left);
+        int lastColumn = tileIndex((float) Math.ceil(bounds.right) - 1.0f);
+        int firstRow = tileIndex(bounds.top);
+        int lastRow = tileIndex((float) Math.ceil(bounds.bottom) - 1.0f);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                // A tile which lost the race against its eviction is rendered again.
+                Tile tile = segment.get(tileKey(column, row));
+                if (tile == null || !tile.acquire()) {
+                    tile = renderTile(segment, frame, column, row, true);
+                }
+
+                canvas.drawBitmap(tile.bitmap,
+                                  originX + column * tileSize, originY + row * tileSize, null);
+            }
+        }
+
+        prefetchTiles(segment, frame, clipBounds.top - originY,
+                      firstColumn, lastColumn, firstRow, lastRow);
+    }
+
+    private int tileIndex(float position) {
+        return (int) Math.floor(position / tileSize);
+    }
+
+    private void prefetchTiles(@NonNull TileCache.Segment segment, @NonNull ComposedFrame frame,
+                               int clipTop, int firstColumn, int lastColumn,
+                               int firstRow, int lastRow) {
+        Executor executor = mExecutor;
+        int prefetchExtent = mPrefetchExtent;
+
+        // Prefetch ahead of the scrolling direction, or on both sides if it is unknown.
+        int scrollDelta = (mLastSegment == segment ? clipTop - mLastClipTop : 0);
+        mLastSegment = segment;
+        mLastClipTop = clipTop;
+
+        if (executor == null || prefetchExtent == 0) {
+            return;
+        }
+
+        // Keep to the rows of the frame, with one more on either side for the overflowing ink.
+        int frameFirstRow = tileIndex(0.0f) - 1;
+        int frameLastRow = tileIndex(frame.getHeight()) + 1;
+
+        int rowExtent = (prefetchExtent + tileSize - 1) / tileSize;
+        int startRow = Math.max(firstRow - (scrollDelta <= 0 ? rowExtent : 0), frameFirstRow);
+        int endRow = Math.min(lastRow + (scrollDelta >= 0 ? rowExtent : 0), frameLastRow);
+
+        for (int row = startRow; row <= endRow; row++) {
+            if (row >= firstRow && row <= lastRow) {
+                continue;
+            }
+
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (segment.pendingKeys.size() >= MAX_PENDING_TILES) {
+                    return;
+                }
+
+                Long key = tileKey(column, row);
+                if (segment.get(key) == null && segment.pendingKeys.add(key)) {
+                    executor.execute(new PrefetchTask(segment, frame, column, row));
+                }
+            }
+        }
+    }
+
+    private class PrefetchTask implements Runnable {
+        final @NonNull TileCache.Segment segment;
+        final @NonNull ComposedFrame frame;
+        final int column;
+        final int row;
+
+        PrefetchTask(@NonNull TileCache.Segment segment, @NonNull ComposedFrame frame,
+                     int column, int row) {
+            this.segment = segment;
+            this.frame = frame;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!segment.discarded) {
+                    renderTile(segment, frame, column, row, false);
+                }
+            } finally {
+                segment.pendingKeys.remove(tileKey(column, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout;
+
+import android.text.style.ReplacementSpan;
+import android.text.style.ScaleXSpan;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mta.tehreer.collections.IntList;
+import com.mta.tehreer.graphics.Renderer;
+import com.mta.tehreer.graphics.Typeface;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+final class GlyphPrefetchTask extends FutureTask<Void> {
+    private static final int CHUNK_SIZE = 256;
+
+    private static class StrikeGlyphs {
+        final @NonNull Typeface typeface;
+        final float typeSize;
+        final float scaleX;
+        final @NonNull BitSet glyphIds = new BitSet();
+
+        StrikeGlyphs(@NonNull Typeface typeface, float typeSize, float scaleX) {
+            this.typeface = typeface;
+            this.typeSize = typeSize;
+            this.scaleX = scaleX;
+        }
+
+        boolean matches(@NonNull Typeface typeface, float typeSize, float scaleX) {
+            return this.typeface == typeface && this.typeSize == typeSize && this.scaleX == scaleX;
+        }
+    }
+
+    private static class Prefetcher implements Callable<Void> {
+        final @NonNull List<ComposedLine> lines;
+        final @NonNull Renderer renderer;
+        volatile boolean cancelled;
+
+        Prefetcher(@NonNull List<ComposedLine> lines, @NonNull Renderer renderer) {
+            this.lines = lines;
+            this.renderer = renderer;
+        }
+
+        private @NonNull List<StrikeGlyphs> collectGlyphs() {
+            List<StrikeGlyphs> strikes = new ArrayList<>();
+
+            for (ComposedLine line : lines) {
+                for (GlyphRun run : line.getRuns()) {
+                    float scaleX = 1.0f;
+                    boolean replaced = false;
+
+                    for (Object span : run.getSpans()) {
+                        if (span instanceof ReplacementSpan) {
+                            replaced = true;
+                        } else if (span instanceof ScaleXSpan) {
+                            scaleX = ((ScaleXSpan) span).getScaleX();
+                        }
+                    }
+                    if (replaced) {
+                        continue;
+                    }
+
+                    Typeface typeface = run.getTypeface();
+                    float typeSize = run.getTypeSize();
+                    StrikeGlyphs strike = null;
+
+                    for (StrikeGlyphs candidate : strikes) {
+                        if (candidate.matches(typeface, typeSize, scaleX)) {
+                            strike = candidate;
+                            break;
+                        }
+                    }
+                    if (strike == null) {
+                        strike = new StrikeGlyphs(typeface, typeSize, scaleX);
+                        strikes.add(strike);
+                    }
+
+                    IntList glyphIds = run.getGlyphIds();
+                    int glyphCount = glyphIds.size();
+
+                    for (int i = 0; i < glyphCount; i++) {
+                        strike.glyphIds.set(glyphIds.get(i));
+                    }
+                }
+            }
+
+            return strikes;
+        }
+
+        @Override
+        public Void call() {
+            List<StrikeGlyphs> strikes = collectGlyphs();
+            int[] chunk = new int[CHUNK_SIZE];
+
+            for (StrikeGlyphs strike : strikes) {
+                renderer.setTypeface(strike.typeface);
+                renderer.setTypeSize(strike.typeSize);
+                renderer.setScaleX(strike.scaleX);
+
+                int glyphId = strike.glyphIds.nextSetBit(0);
+
+                while (glyphId >= 0) {
+                    if (cancelled) {
+                        return null;
+                    }
+
+                    int count = 0;
+                    while (glyphId >= 0 && count < CHUNK_SIZE) {
+                        chunk[count++] = glyphId;
+                        glyphId = strike.glyphIds.nextSetBit(glyphId + 1);
+                    }
+
+                    renderer.prefetchGlyphs(IntList.of(chunk).subList(0, count));
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private final @NonNull Prefetcher prefetcher;
+    private final @NonNull ComposedFrame frame;
+    private final @Nullable ComposedFrame.PrefetchCallback callback;
+
+    GlyphPrefetchTask(@NonNull ComposedFrame frame, @NonNull Renderer renderer,
+                      @Nullable ComposedFrame.PrefetchCallback callback) {
+        this(new Prefetcher(frame.getLines(), copyRenderer(renderer)), frame, callback);
+    }
+
+    private GlyphPrefetchTask(@NonNull Prefetcher prefetcher, @NonNull ComposedFrame frame,
+                              @Nullable ComposedFrame.PrefetchCallback callback) {
+        super(prefetcher);
+        this.prefetcher = prefetcher;
+        this.frame = frame;
+        this.callback = callback;
+    }
+
+    // The given renderer may be modified by its owner while the task is running, so the worker
+    // thread uses a private copy of the attributes affecting glyph masks.
+    private static @NonNull Renderer copyRenderer(@NonNull Renderer renderer) {
+        Renderer copy = new Renderer();
+        copy.setRenderingStyle(renderer.getRenderingStyle());
+        copy.setSubpixelPositioning(renderer.isSubpixelPositioning());
+        copy.setDistanceFieldRendering(renderer.isDistanceFieldRendering());
+        copy.setSlantAngle(renderer.getSlantAngle());
+        copy.setScaleY(renderer.getScaleY());
+        copy.setStrokeWidth(renderer.getStrokeWidth());
+        copy.setStrokeCap(renderer.getStrokeCap());
+        copy.setStrokeJoin(renderer.getStrokeJoin());
+        copy.setStrokeMiter(renderer.getStrokeMiter());
+
+        return copy;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        prefetcher.cancelled = true;
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    protected void done() {
+        if (callback != null) {
+            callback.onPrefetchFinished(frame, isCancelled());
+        }
+    }
+}
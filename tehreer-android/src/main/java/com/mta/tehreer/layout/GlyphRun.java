@@ -28,6 +28,7 @@ import androidx.annotation.Nullable;
 import com.mta.tehreer.collections.FloatList;
 import com.mta.tehreer.collections.IntList;
 import com.mta.tehreer.collections.PointList;
+import com.mta.tehreer.graphics.PixelBuffer;
 import com.mta.tehreer.graphics.Renderer;
 import com.mta.tehreer.graphics.Typeface;
 import com.mta.tehreer.internal.layout.CaretEdgeList;
@@ -617,7 +618,23 @@ public class GlyphRun {
         return null;
     }
 
-    private void drawEdgeCluster(@NonNull Renderer renderer, @NonNull Canvas canvas, @NonNull ClusterRange cluster) {
+    private void drawGlyphs(@NonNull Renderer renderer,
+                            @Nullable Canvas canvas, @Nullable PixelBuffer buffer,
+                            int glyphStart, int glyphEnd) {
+        IntList ids = glyphIds.subList(glyphStart, glyphEnd);
+        PointList offsets = glyphOffsets.subList(glyphStart, glyphEnd);
+        FloatList advances = glyphAdvances.subList(glyphStart, glyphEnd);
+
+        if (canvas != null) {
+            renderer.drawGlyphs(canvas, ids, offsets, advances);
+        } else {
+            renderer.drawGlyphs(buffer, ids, offsets, advances);
+        }
+    }
+
+    private void drawEdgeCluster(@NonNull Renderer renderer,
+                                 @Nullable Canvas canvas, @Nullable PixelBuffer buffer,
+                                 @NonNull ClusterRange cluster) {
 	    final boolean startClipped = (cluster.actualStart < charStart);
 	    final boolean endClipped = (cluster.actualEnd > charEnd);
 
@@ -632,16 +649,25 @@ public class GlyphRun {
             clipLeft = (endClipped ? getCaretEdge(charEnd) : Float.NEGATIVE_INFINITY);
         }
 
-        canvas.save();
-        canvas.clipRect(clipLeft, Float.NEGATIVE_INFINITY, clipRight, Float.POSITIVE_INFINITY);
-        canvas.translate(getLeadingEdge(cluster.actualStart, cluster.actualEnd), 0.0f);
+        float leadingEdge = getLeadingEdge(cluster.actualStart, cluster.actualEnd);
+
+        if (canvas != null) {
+            canvas.save();
+            canvas.clipRect(clipLeft, Float.NEGATIVE_INFINITY, clipRight, Float.POSITIVE_INFINITY);
+            canvas.translate(leadingEdge, 0.0f);
 
-        renderer.drawGlyphs(canvas,
-                            glyphIds.subList(cluster.glyphStart, cluster.glyphEnd),
-                            glyphOffsets.subList(cluster.glyphStart, cluster.glyphEnd),
-                            glyphAdvances.subList(cluster.glyphStart, cluster.glyphEnd));
+            drawGlyphs(renderer, canvas, null, cluster.glyphStart, cluster.glyphEnd);
 
-        canvas.restore();
+            canvas.restore();
+        } else {
+            int saveCount = buffer.save();
+            buffer.clipRect(clipLeft, Float.NEGATIVE_INFINITY, clipRight, Float.POSITIVE_INFINITY);
+            buffer.translate(leadingEdge, 0.0f);
+
+            drawGlyphs(renderer, null, buffer, cluster.glyphStart, cluster.glyphEnd);
+
+            buffer.restoreToCount(saveCount);
+        }
     }
 
     /**
@@ -652,6 +678,22 @@ public class GlyphRun {
      * @param canvas The canvas onto which to draw this run.
      */
 	public void draw(@NonNull Renderer renderer, @NonNull Canvas canvas) {
+        draw(renderer, canvas, null);
+    }
+
+    /**
+     * Draws this run into the given pixel buffer, at its current translation, using the given
+     * <code>renderer</code>. Replacement spans are not drawn as they require a canvas.
+     *
+     * @param renderer The renderer to use for drawing this run.
+     * @param buffer The pixel buffer into which to draw this run.
+     */
+    public void draw(@NonNull Renderer renderer, @NonNull PixelBuffer buffer) {
+        draw(renderer, null, buffer);
+    }
+
+    private void draw(@NonNull Renderer renderer,
+                      @Nullable Canvas canvas, @Nullable PixelBuffer buffer) {
 	    renderer.setTypeface(typeface);
         renderer.setTypeSize(typeSize);
         renderer.setScaleX(1.0f);
@@ -688,7 +730,7 @@ public class GlyphRun {
             int chunkEnd = charEnd;
 
             if (firstCluster != null) {
-                drawEdgeCluster(renderer, canvas, firstCluster);
+                drawEdgeCluster(renderer, canvas, buffer, firstCluster);
 
                 // Exclude first cluster characters.
                 chunkStart = firstCluster.actualEnd;
@@ -704,20 +746,25 @@ public class GlyphRun {
                 glyphStart = (isBackward ? lastCluster.glyphEnd : glyphStart);
             }
 
-            canvas.save();
-            canvas.translate(getLeadingEdge(chunkStart, chunkEnd), 0.0f);
-
-            renderer.drawGlyphs(canvas,
-                                glyphIds.subList(glyphStart, glyphEnd),
-                                glyphOffsets.subList(glyphStart, glyphEnd),
-                                glyphAdvances.subList(glyphStart, glyphEnd));
-
-            canvas.restore();
+            if (glyphStart < glyphEnd) {
+                // The chunk is not clipped, so a plain translation avoids a save and restore.
+                float leadingEdge = getLeadingEdge(chunkStart, chunkEnd);
+
+                if (canvas != null) {
+                    canvas.translate(leadingEdge, 0.0f);
+                    drawGlyphs(renderer, canvas, null, glyphStart, glyphEnd);
+                    canvas.translate(-leadingEdge, 0.0f);
+                } else {
+                    buffer.translate(leadingEdge, 0.0f);
+                    drawGlyphs(renderer, null, buffer, glyphStart, glyphEnd);
+                    buffer.translate(-leadingEdge, 0.0f);
+                }
+            }
 
             if (lastCluster != null) {
-                drawEdgeCluster(renderer, canvas, lastCluster);
+                drawEdgeCluster(renderer, canvas, buffer, lastCluster);
             }
-        } else {
+        } else if (canvas != null) {
             int top = (int) -(ascent + 0.5f);
             int bottom = (int) (descent + 0.5f);
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout;
+
+import androidx.annotation.NonNull;
+
+import com.mta.tehreer.graphics.Renderer;
+import com.mta.tehreer.graphics.RenderingStyle;
+import com.mta.tehreer.graphics.StrokeCap;
+import com.mta.tehreer.graphics.StrokeJoin;
+
+/**
+ * Captures the renderer properties that affect the appearance of a frame. The typeface, type
+ * size, horizontal scale and writing direction are left out as each glyph run sets its own.
+ */
+final class RendererState {
+    private int fillColor;
+    private RenderingStyle renderingStyle;
+    private boolean subpixelPositioning;
+    private boolean distanceFieldRendering;
+    private float slantAngle;
+    private float scaleY;
+    private int strokeColor;
+    private float strokeWidth;
+    private StrokeCap strokeCap;
+    private StrokeJoin strokeJoin;
+    private float strokeMiter;
+    private float shadowRadius;
+    private float shadowDx;
+    private float shadowDy;
+    private int shadowColor;
+
+    /**
+     * Returns the distance by which the shadow of the renderer may reach beyond the glyphs.
+     */
+    static float shadowExtent(@NonNull Renderer renderer) {
+        float shadowRadius = renderer.getShadowRadius();
+        if (shadowRadius <= 0.0f) {
+            return 0.0f;
+        }
+
+        return shadowRadius + Math.max(Math.abs(renderer.getShadowDx()),
+                                       Math.abs(renderer.getShadowDy()));
+    }
+
+    void capture(@NonNull Renderer renderer) {
+        fillColor = renderer.getFillColor();
+        renderingStyle = renderer.getRenderingStyle();
+        subpixelPositioning = renderer.isSubpixelPositioning();
+        distanceFieldRendering = renderer.isDistanceFieldRendering();
+        slantAngle = renderer.getSlantAngle();
+        scaleY = renderer.getScaleY();
+        strokeColor = renderer.getStrokeColor();
+        strokeWidth = renderer.getStrokeWidth();
+        strokeCap = renderer.getStrokeCap();
+        strokeJoin = renderer.getStrokeJoin();
+        strokeMiter = renderer.getStrokeMiter();
+        shadowRadius = renderer.getShadowRadius();
+        shadowDx = renderer.getShadowDx();
+        shadowDy = renderer.getShadowDy();
+        shadowColor = renderer.getShadowColor();
+    }
+
+    void applyTo(@NonNull Renderer renderer) {
+        renderer.setFillColor(fillColor);
+        renderer.setRenderingStyle(renderingStyle);
+        renderer.setSubpixelPositioning(subpixelPositioning);
+        renderer.setDistanceFieldRendering(distanceFieldRendering);
+        renderer.setSlantAngle(slantAngle);
+        renderer.setScaleY(scaleY);
+        renderer.setStrokeColor(strokeColor);
+        renderer.setStrokeWidth(strokeWidth);
+        renderer.setStrokeCap(strokeCap);
+        renderer.setStrokeJoin(strokeJoin);
+        renderer.setStrokeMiter(strokeMiter);
+        renderer.setShadowRadius(shadowRadius);
+        renderer.setShadowDx(shadowDx);
+        renderer.setShadowDy(shadowDy);
+        renderer.setShadowColor(shadowColor);
+    }
+
+    boolean matches(@NonNull Renderer renderer) {
+        return fillColor == renderer.getFillColor()
+            && renderingStyle == renderer.getRenderingStyle()
+            && subpixelPositioning == renderer.isSubpixelPositioning()
+            && distanceFieldRendering == renderer.isDistanceFieldRendering()
+            && slantAngle == renderer.getSlantAngle()
+            && scaleY == renderer.getScaleY()
+            && strokeColor == renderer.getStrokeColor()
+            && strokeWidth == renderer.getStrokeWidth()
+            && strokeCap == renderer.getStrokeCap()
+            && strokeJoin == renderer.getStrokeJoin()
+            && strokeMiter == renderer.getStrokeMiter()
+            && shadowRadius == renderer.getShadowRadius()
+            && shadowDx == renderer.getShadowDx()
+            && shadowDy == renderer.getShadowDy()
+            && shadowColor == renderer.getShadowColor();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout;
+
+import androidx.annotation.NonNull;
+
+import com.mta.tehreer.internal.layout.ShapingCache;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+
+/**
+ * The <code>ShapingCacheManager</code> class provides management activities related to the cache
+ * of shaped words shared by all typesetters.
+ * <p>
+ * When enabled, the typesetters split each run after its spaces and look up the resulting words
+ * by their text along with the typeface, type size, script, language, OpenType features, writing
+ * direction and shaping order of the run, so that repeated vocabulary is shaped only once. The
+ * words are shaped without their surrounding context, so the cache should only be enabled for the
+ * fonts which apply no substitution or positioning across the spaces.
+ */
+public class ShapingCacheManager {
+    private ShapingCacheManager() { }
+
+    /**
+     * Returns whether the typesetters look up the shaped words in the cache. The cache is disabled
+     * by default.
+     *
+     * @return <code>true</code> if the cache is enabled, <code>false</code> otherwise.
+     */
+    public static boolean isEnabled() {
+        return ShapingCache.getInstance().isEnabled();
+    }
+
+    /**
+     * Enables or disables the cache. An enabled cache makes the typesetters shape each word on its
+     * own, so that the contextual features of a font no longer apply across the spaces. A disabled
+     * cache is cleared, and the typesetters shape each run as a whole.
+     *
+     * @param enabled Whether the cache should be enabled.
+     */
+    public static void setEnabled(boolean enabled) {
+        ShapingCache.getInstance().setEnabled(enabled);
+    }
+
+    /**
+     * Returns the maximum number of bytes which the shaped words can hold. By default, it is one
+     * megabyte.
+     *
+     * @return The capacity of the shaping cache in bytes.
+     */
+    public static int getCapacity() {
+        return ShapingCache.getInstance().capacity();
+    }
+
+    /**
+     * Sets the maximum number of bytes which the shaped words can hold, evicting the least
+     * recently used words if the cache is already larger.
+     *
+     * @param capacity The capacity of the shaping cache in bytes.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public static void setCapacity(int capacity) {
+        checkArgument(capacity > 0, "The capacity must be positive");
+        ShapingCache.getInstance().setCapacity(capacity);
+    }
+
+    /**
+     * Removes all the shaped words from the cache.
+     */
+    public static void clear() {
+        ShapingCache.getInstance().clear();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the shaping cache.
+     *
+     * @return The current statistics of the shaping cache.
+     */
+    public static @NonNull ShapingCacheStats getStats() {
+        ShapingCache cache = ShapingCache.getInstance();
+
+        return new ShapingCacheStats(cache.capacity(), cache.hitCount(), cache.missCount(),
+                                     cache.shapingTime(), cache.evictionCount(),
+                                     cache.size(), cache.count());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout;
+
+/**
+ * The <code>ShapingCacheStats</code> class represents a snapshot of the statistics of the shaping
+ * cache. The counters are cumulative since the start of the process, whereas the sizes reflect the
+ * moment at which the snapshot was taken.
+ */
+public final class ShapingCacheStats {
+    private final int capacity;
+    private final long hitCount;
+    private final long missCount;
+    private final long shapingTime;
+    private final long evictionCount;
+    private final int byteCount;
+    private final int entryCount;
+
+    ShapingCacheStats(int capacity, long hitCount, long missCount, long shapingTime,
+                      long evictionCount, int byteCount, int entryCount) {
+        this.capacity = capacity;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.shapingTime = shapingTime;
+        this.evictionCount = evictionCount;
+        this.byteCount = byteCount;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Returns the maximum number of bytes which the shaped words can hold.
+     *
+     * @return The capacity of the shaping cache in bytes.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of words which were served from memory.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of words which had to be shaped.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the fraction of word lookups which were served from memory.
+     *
+     * @return The hit rate between zero and one, or zero if no word has been looked up yet.
+     */
+    public float getHitRate() {
+        long lookupCount = hitCount + missCount;
+        if (lookupCount == 0) {
+            return 0.0f;
+        }
+
+        return (float) hitCount / lookupCount;
+    }
+
+    /**
+     * Returns the total time spent in shaping the text, including the runs which were not cached.
+     *
+     * @return The shaping time in nanoseconds.
+     */
+    public long getShapingTime() {
+        return shapingTime;
+    }
+
+    /**
+     * Returns the number of words evicted so far, including the ones dropped when the cache was
+     * cleared.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes currently held by the shaping cache.
+     *
+     * @return The current number of bytes.
+     */
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of words currently held by the shaping cache.
+     *
+     * @return The current number of words.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+}
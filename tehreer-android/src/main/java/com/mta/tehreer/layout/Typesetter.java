@@ -35,6 +35,7 @@ import com.mta.tehreer.layout.style.TypefaceSpan;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
 import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
@@ -68,7 +69,7 @@ public class Typesetter {
         spanned.setSpan(new TypefaceSpan(typeface), 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
         spanned.setSpan(new TypeSizeSpan(typeSize), 0, text.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
 
-        init(text, spanned, null);
+        init(text, spanned, null, null);
 	}
 
     /**
@@ -86,10 +87,39 @@ public class Typesetter {
         checkNotNull(spanned, "spanned");
         checkArgument(spanned.length() > 0, "Text is empty");
 
-        init(StringUtils.copyString(spanned), spanned, defaultSpans);
+        init(StringUtils.copyString(spanned), spanned, defaultSpans, null);
     }
 
-    private void init(@NonNull String text, @NonNull Spanned spanned, @Nullable List<Object> defaultSpans) {
+    /**
+     * Constructs the typesetter object using a spanned text, resolving its paragraphs concurrently
+     * on the given executor. The paragraphs are split into chunks, each of which is analyzed and
+     * shaped by a separate task, and the outcome is identical to the one of sequential
+     * typesetting. The calling thread also takes part in the work and returns once all chunks are
+     * done, so a short text is simply typeset on the calling thread.
+     * <p>
+     * The spanned text must not be modified until the constructor returns, and its replacement
+     * spans may be measured on the threads of the executor.
+     *
+     * @param spanned The spanned text to typeset.
+     * @param defaultSpans The spans to apply on the whole text before the spans of
+     *        <code>spanned</code>, or <code>null</code>.
+     * @param executor The executor on which the chunks of paragraphs are typeset.
+     *
+     * @throws NullPointerException if <code>spanned</code> or <code>executor</code> is
+     *         <code>null</code>.
+     * @throws IllegalArgumentException if <code>spanned</code> is empty.
+     */
+    public Typesetter(@NonNull Spanned spanned, @Nullable List<Object> defaultSpans,
+                      @NonNull Executor executor) {
+        checkNotNull(spanned, "spanned");
+        checkNotNull(executor, "executor");
+        checkArgument(spanned.length() > 0, "Text is empty");
+
+        init(StringUtils.copyString(spanned), spanned, defaultSpans, executor);
+    }
+
+    private void init(@NonNull String text, @NonNull Spanned spanned, @Nullable List<Object> defaultSpans,
+                      @Nullable Executor executor) {
         mText = text;
         mSpanned = spanned;
         mBreakRecord = new byte[text.length()];
@@ -102,7 +132,7 @@ public class Typesetter {
 
         BreakResolver.fillBreaks(mText, mBreakRecord);
         ShapeResolver.fillRuns(mText, mSpanned, defaultSpans, mBreakRecord,
-                               mBidiParagraphs, mIntrinsicRuns);
+                               mBidiParagraphs, mIntrinsicRuns, executor);
     }
 
     /**
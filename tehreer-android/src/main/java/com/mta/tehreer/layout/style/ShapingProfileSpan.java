@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.layout.style;
+
+import android.text.TextPaint;
+import android.text.style.MetricAffectingSpan;
+
+import com.mta.tehreer.sfnt.ShapingProfile;
+
+/**
+ * The <code>ShapingProfileSpan</code> class represents a span for specifying the shaping profile
+ * of text. The script tag, language tag, OpenType features and writing direction of the profile
+ * take the place of the ones resolved for the covered text, which should therefore be written in
+ * the script of the profile.
+ */
+public class ShapingProfileSpan extends MetricAffectingSpan {
+
+    private final ShapingProfile profile;
+
+    /**
+     * Constructs a shaping profile span object.
+     *
+     * @param profile The shaping profile object.
+     */
+    public ShapingProfileSpan(ShapingProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Returns this span's shaping profile.
+     *
+     * @return The shaping profile of this span.
+     */
+    public ShapingProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void updateMeasureState(TextPaint textPaint) {
+    }
+
+    @Override
+    public void updateDrawState(TextPaint textPaint) {
+    }
+}
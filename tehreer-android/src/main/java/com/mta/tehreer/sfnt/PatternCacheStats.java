@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.sfnt;
+
+/**
+ * The <code>PatternCacheStats</code> class represents a snapshot of the statistics of the pattern
+ * caches of all typefaces. The counters are cumulative since the start of the process, whereas the
+ * sizes reflect the moment at which the snapshot was taken.
+ */
+public final class PatternCacheStats {
+    static final int STATS_SIZE = 6;
+
+    private final int capacity;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long patternCount;
+    private final long featureSetCount;
+    private final long featureSetSize;
+
+    PatternCacheStats(int capacity, long[] stats) {
+        this.capacity = capacity;
+        this.hitCount = stats[0];
+        this.missCount = stats[1];
+        this.evictionCount = stats[2];
+        this.patternCount = stats[3];
+        this.featureSetCount = stats[4];
+        this.featureSetSize = stats[5];
+    }
+
+    /**
+     * Returns the maximum number of patterns which are cached per typeface.
+     *
+     * @return The capacity of the pattern cache of each typeface.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of shaping calls which found their pattern in the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of shaping calls which had to build their pattern.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the fraction of pattern lookups which were served from the cache.
+     *
+     * @return The hit rate between zero and one, or zero if no pattern has been looked up yet.
+     */
+    public float getHitRate() {
+        long lookupCount = hitCount + missCount;
+        if (lookupCount == 0) {
+            return 0.0f;
+        }
+
+        return (float) hitCount / lookupCount;
+    }
+
+    /**
+     * Returns the number of patterns evicted so far to keep the caches within their capacity.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of patterns currently held by the caches of all live typefaces.
+     *
+     * @return The current number of patterns.
+     */
+    public long getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Returns the number of OpenType feature sets which are currently interned. The patterns are
+     * keyed by a plain id of their feature set, and at most 256 of the most recently used feature
+     * sets are kept.
+     *
+     * @return The current number of interned feature sets.
+     */
+    public long getFeatureSetCount() {
+        return featureSetCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the interned feature sets.
+     *
+     * @return The current size of the interned feature sets in bytes.
+     */
+    public long getFeatureSetSize() {
+        return featureSetSize;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.sfnt;
+
+import androidx.annotation.NonNull;
+
+import com.mta.tehreer.graphics.Typeface;
+
+import java.util.Arrays;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+import static com.mta.tehreer.internal.util.Preconditions.checkElementIndex;
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
+
+/**
+ * The <code>ShapingBatch</code> class represents a list of shaping requests which are shaped
+ * together by {@link ShapingEngine#shapeBatch(String, ShapingBatch)} with a single native call.
+ * <p>
+ * Each request specifies a range of text along with its own typeface, type size, script tag,
+ * language tag, writing direction and shaping order, whereas the OpenType features of the engine
+ * apply to all requests except the ones added with a {@link ShapingProfile}. The outputs of the
+ * requests are packed into shared arrays, from which they can be copied with
+ * {@link #exportTo(int, int[], float[], float[], int[], float[])}.
+ * <p>
+ * A shaping batch is not thread safe and should be used by a single thread at a time.
+ */
+public class ShapingBatch {
+    // Script tag, language tag, writing direction, shaping order, char start and char end.
+    static final int PARAM_SIZE = 6;
+
+    @NonNull Typeface[] typefaces = new Typeface[8];
+    @NonNull float[] typeSizes = new float[8];
+    @NonNull int[] params = new int[8 * PARAM_SIZE];
+    @NonNull ShapingProfile[] profiles = new ShapingProfile[8];
+    @NonNull long[] profileHandles = new long[8];
+    @NonNull int[] charOffsets = new int[9];
+    int requestCount;
+
+    @NonNull int[] glyphStarts = new int[0];
+    @NonNull int[] glyphIds = new int[0];
+    @NonNull float[] glyphOffsets = new float[0];
+    @NonNull float[] glyphAdvances = new float[0];
+    @NonNull int[] clusterMap = new int[0];
+    @NonNull float[] caretEdges = new float[0];
+    boolean isShaped;
+
+    /**
+     * Adds a shaping request to this batch, clearing the outputs of any previous shaping.
+     *
+     * @param typeface The typeface to use for shaping.
+     * @param typeSize The type size to use for shaping.
+     * @param scriptTag The script tag to use for shaping.
+     * @param languageTag The language tag to use for shaping.
+     * @param writingDirection The writing direction to use for shaping.
+     * @param shapingOrder The shaping order to use for shaping.
+     * @param fromIndex The index of the first character (inclusive) to be shaped.
+     * @param toIndex The index of the last character (exclusive) to be shaped.
+     * @return The index of the added request.
+     *
+     * @throws NullPointerException if <code>typeface</code>, <code>writingDirection</code> or
+     *         <code>shapingOrder</code> is <code>null</code>.
+     * @throws IllegalArgumentException if <code>typeSize</code> is negative, or
+     *         <code>fromIndex</code> is negative, or <code>fromIndex</code> is greater than
+     *         <code>toIndex</code>.
+     */
+    public int addRequest(@NonNull Typeface typeface, float typeSize,
+                          int scriptTag, int languageTag,
+                          @NonNull WritingDirection writingDirection,
+                          @NonNull ShapingOrder shapingOrder, int fromIndex, int toIndex) {
+        checkNotNull(typeface, "typeface");
+        checkNotNull(writingDirection, "writingDirection");
+        checkNotNull(shapingOrder, "shapingOrder");
+        checkArgument(typeSize >= 0.0f, "The value of font size is negative");
+        checkArgument(fromIndex >= 0, "From Index: " + fromIndex);
+        checkArgument(toIndex >= fromIndex, "Bad Range: [" + fromIndex + ", " + toIndex + ')');
+
+        if (requestCount == typefaces.length) {
+            int capacity = requestCount * 2;
+            typefaces = Arrays.copyOf(typefaces, capacity);
+            typeSizes = Arrays.copyOf(typeSizes, capacity);
+            params = Arrays.copyOf(params, capacity * PARAM_SIZE);
+            profiles = Arrays.copyOf(profiles, capacity);
+            profileHandles = Arrays.copyOf(profileHandles, capacity);
+            charOffsets = Arrays.copyOf(charOffsets, capacity + 1);
+        }
+
+        int offset = requestCount * PARAM_SIZE;
+        typefaces[requestCount] = typeface;
+        typeSizes[requestCount] = typeSize;
+        params[offset + 0] = scriptTag;
+        params[offset + 1] = languageTag;
+        params[offset + 2] = writingDirection.value;
+        params[offset + 3] = shapingOrder.value;
+        params[offset + 4] = fromIndex;
+        params[offset + 5] = toIndex;
+        profiles[requestCount] = null;
+        profileHandles[requestCount] = 0;
+        charOffsets[requestCount + 1] = charOffsets[requestCount] + (toIndex - fromIndex);
+        isShaped = false;
+
+        return requestCount++;
+    }
+
+    /**
+     * Adds a shaping request to this batch which is shaped with the script tag, language tag,
+     * OpenType features and writing direction of the given profile, clearing the outputs of any
+     * previous shaping.
+     *
+     * @param typeface The typeface to use for shaping.
+     * @param typeSize The type size to use for shaping.
+     * @param profile The shaping profile to use for shaping.
+     * @param shapingOrder The shaping order to use for shaping.
+     * @param fromIndex The index of the first character (inclusive) to be shaped.
+     * @param toIndex The index of the last character (exclusive) to be shaped.
+     * @return The index of the added request.
+     *
+     * @throws NullPointerException if <code>typeface</code>, <code>profile</code> or
+     *         <code>shapingOrder</code> is <code>null</code>.
+     * @throws IllegalArgumentException if <code>typeSize</code> is negative, or
+     *         <code>fromIndex</code> is negative, or <code>fromIndex</code> is greater than
+     *         <code>toIndex</code>.
+     */
+    public int addRequest(@NonNull Typeface typeface, float typeSize,
+                          @NonNull ShapingProfile profile,
+                          @NonNull ShapingOrder shapingOrder, int fromIndex, int toIndex) {
+        checkNotNull(profile, "profile");
+
+        int index = addRequest(typeface, typeSize, profile.getScriptTag(), profile.getLanguageTag(),
+                               profile.getWritingDirection(), shapingOrder, fromIndex, toIndex);
+        profiles[index] = profile;
+        profileHandles[index] = profile.nativeProfile;
+
+        return index;
+    }
+
+    /**
+     * Removes all the requests of this batch along with their outputs.
+     */
+    public void clear() {
+        Arrays.fill(typefaces, 0, requestCount, null);
+        Arrays.fill(profiles, 0, requestCount, null);
+        requestCount = 0;
+        isShaped = false;
+    }
+
+    /**
+     * Returns the number of requests in this batch.
+     *
+     * @return The number of requests.
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns whether this batch has been shaped since the last request was added.
+     *
+     * @return <code>true</code> if the outputs are available, <code>false</code> otherwise.
+     */
+    public boolean isShaped() {
+        return isShaped;
+    }
+
+    /**
+     * Returns the index of the first character (inclusive) of the specified request.
+     *
+     * @param index The index of the request.
+     * @return The index of the first character of the request.
+     *
+     * @throws IndexOutOfBoundsException if <code>index</code> is out of range.
+     */
+    public int getCharStart(int index) {
+        checkElementIndex(index, requestCount);
+        return params[index * PARAM_SIZE + 4];
+    }
+
+    /**
+     * Returns the index of the last character (exclusive) of the specified request.
+     *
+     * @param index The index of the request.
+     * @return The index of the last character of the request.
+     *
+     * @throws IndexOutOfBoundsException if <code>index</code> is out of range.
+     */
+    public int getCharEnd(int index) {
+        checkElementIndex(index, requestCount);
+        return params[index * PARAM_SIZE + 5];
+    }
+
+    /**
+     * Returns whether the glyphs of the specified request are in backward order.
+     *
+     * @param index The index of the request.
+     * @return <code>true</code> if the request is shaped in backward order, <code>false</code>
+     *         otherwise.
+     *
+     * @throws IndexOutOfBoundsException if <code>index</code> is out of range.
+     */
+    public boolean isBackward(int index) {
+        checkElementIndex(index, requestCount);
+        return params[index * PARAM_SIZE + 3] == ShapingOrder.BACKWARD.value;
+    }
+
+    /**
+     * Returns the number of glyphs produced by the specified request.
+     *
+     * @param index The index of the request.
+     * @return The number of glyphs of the request.
+     *
+     * @throws IllegalStateException if this batch has not been shaped.
+     * @throws IndexOutOfBoundsException if <code>index</code> is out of range.
+     */
+    public int getGlyphCount(int index) {
+        checkShaped();
+        checkElementIndex(index, requestCount);
+
+        return glyphStarts[index + 1] - glyphStarts[index];
+    }
+
+    /**
+     * Copies the outputs of the specified request into the given arrays, in the same layout as
+     * {@link ShapingResult#exportTo(int[], float[], float[], int[], float[])}.
+     *
+     * @param index The index of the request.
+     * @param glyphIds The array receiving the glyph IDs, having at least a length of glyph count.
+     * @param glyphOffsets The array receiving the glyph offsets, having at least a length of twice
+     *        the glyph count.
+     * @param glyphAdvances The array receiving the glyph advances, having at least a length of
+     *        glyph count.
+     * @param clusterMap The array receiving the cluster map, having at least a length of the
+     *        character count of the request.
+     * @param caretEdges The array receiving the caret edges, having at least a length of one more
+     *        than the character count of the request.
+     *
+     * @throws IllegalStateException if this batch has not been shaped.
+     * @throws IndexOutOfBoundsException if <code>index</code> is out of range, or if any of the
+     *         arrays is too short.
+     */
+    public void exportTo(int index, @NonNull int[] glyphIds, @NonNull float[] glyphOffsets,
+                         @NonNull float[] glyphAdvances, @NonNull int[] clusterMap,
+                         @NonNull float[] caretEdges) {
+        checkShaped();
+        checkElementIndex(index, requestCount);
+
+        int glyphStart = glyphStarts[index];
+        int glyphCount = glyphStarts[index + 1] - glyphStart;
+        int charStart = charOffsets[index];
+        int charCount = charOffsets[index + 1] - charStart;
+
+        System.arraycopy(this.glyphIds, glyphStart, glyphIds, 0, glyphCount);
+        System.arraycopy(this.glyphOffsets, glyphStart * 2, glyphOffsets, 0, glyphCount * 2);
+        System.arraycopy(this.glyphAdvances, glyphStart, glyphAdvances, 0, glyphCount);
+        System.arraycopy(this.clusterMap, charStart, clusterMap, 0, charCount);
+        System.arraycopy(this.caretEdges, charStart + index, caretEdges, 0, charCount + 1);
+    }
+
+    private void checkShaped() {
+        if (!isShaped) {
+            throw new IllegalStateException("The batch has not been shaped");
+        }
+    }
+
+    int charCount() {
+        return charOffsets[requestCount];
+    }
+}
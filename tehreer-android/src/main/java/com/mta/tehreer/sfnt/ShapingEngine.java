@@ -104,9 +104,47 @@ public class ShapingEngine implements Disposable {
         return WritingDirection.valueOf(nGetScriptDefaultDirection(scriptTag));
     }
 
+    /**
+     * Returns the maximum number of patterns which are cached per typeface. A pattern holds the
+     * lookups of a typeface which apply to a combination of script, language and OpenType
+     * features.
+     *
+     * @return The maximum number of patterns cached per typeface.
+     */
+    public static int getPatternCacheCapacity() {
+        return nGetPatternCacheCapacity();
+    }
+
+    /**
+     * Sets the maximum number of patterns which are cached per typeface. The least recently used
+     * patterns are evicted once a typeface exceeds the capacity. A smaller capacity takes effect as
+     * soon as a new pattern is cached for a typeface.
+     *
+     * @param capacity The maximum number of patterns cached per typeface.
+     *
+     * @throws IllegalArgumentException if <code>capacity</code> is negative.
+     */
+    public static void setPatternCacheCapacity(int capacity) {
+        checkArgument(capacity >= 0, "Capacity is negative");
+        nSetPatternCacheCapacity(capacity);
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the pattern caches of all typefaces.
+     *
+     * @return The current statistics of the pattern caches.
+     */
+    public static @NonNull PatternCacheStats getPatternCacheStats() {
+        long[] stats = new long[PatternCacheStats.STATS_SIZE];
+        nGetPatternCacheStats(stats);
+
+        return new PatternCacheStats(nGetPatternCacheCapacity(), stats);
+    }
+
     private static class Base {
         Typeface typeface = null;
         Set<OpenTypeFeature> features = Collections.emptySet();
+        ShapingProfile profile = null;
     }
 
     private final Base base;
@@ -182,6 +220,7 @@ public class ShapingEngine implements Disposable {
      * @param scriptTag The new script tag.
      */
 	public void setScriptTag(int scriptTag) {
+        base.profile = null;
 		nSetScriptTag(nativeEngine, scriptTag);
 	}
 
@@ -204,6 +243,7 @@ public class ShapingEngine implements Disposable {
      * @param languageTag The new language tag.
      */
 	public void setLanguageTag(int languageTag) {
+        base.profile = null;
 		nSetLanguageTag(nativeEngine, languageTag);
 	}
 
@@ -230,6 +270,7 @@ public class ShapingEngine implements Disposable {
 	    checkNotNull(features);
 
 	    base.features = new LinkedHashSet<>(features);
+	    base.profile = null;
 
 	    int size = features.size();
         int[] tags = new int[size];
@@ -246,6 +287,38 @@ public class ShapingEngine implements Disposable {
         nSetOpenTypeFeatures(nativeEngine, tags, values);
     }
 
+    /**
+     * Returns the shaping profile which was last applied to this shaping engine, or
+     * <code>null</code> if the script tag, language tag or OpenType features have been changed
+     * since then.
+     *
+     * @return The current shaping profile, or <code>null</code>.
+     */
+    public ShapingProfile getShapingProfile() {
+        return base.profile;
+    }
+
+    /**
+     * Applies the script tag, language tag, OpenType features and writing direction of the given
+     * profile to this shaping engine. The features are not passed through JNI again, and the
+     * pattern built for the current typeface is pinned by the profile, so that it survives the
+     * eviction from the pattern cache of the typeface.
+     * <p>
+     * Changing the script tag, language tag or OpenType features afterwards detaches the profile
+     * from this shaping engine.
+     *
+     * @param profile The shaping profile to apply.
+     *
+     * @throws NullPointerException if <code>profile</code> is <code>null</code>.
+     */
+    public void setShapingProfile(@NonNull ShapingProfile profile) {
+        checkNotNull(profile, "profile");
+
+        base.features = profile.getOpenTypeFeatures();
+        base.profile = profile;
+        nSetShapingProfile(nativeEngine, profile.nativeProfile);
+    }
+
     /**
      * Returns the direction in which this shaping engine will place the resultant glyphs. The
      * default value is {@link WritingDirection#LEFT_TO_RIGHT}.
@@ -330,6 +403,56 @@ public class ShapingEngine implements Disposable {
         return result;
     }
 
+    /**
+     * Shapes all the requests of the given batch with a single native call, saving the overhead of
+     * configuring the engine and creating a <code>ShapingResult</code> object for every run.
+     * <p>
+     * The requests are shaped with the OpenType features of this engine unless they carry a
+     * {@link ShapingProfile}, whereas the rest of the configuration is taken from each request. The
+     * configuration of this engine is left unchanged.
+     *
+     * @param text The text containing the ranges of the requests.
+     * @param batch The batch whose requests are to be shaped.
+     *
+     * @throws NullPointerException if <code>text</code> or <code>batch</code> is <code>null</code>.
+     * @throws IllegalArgumentException if the range of a request exceeds the length of
+     *         <code>text</code>.
+     */
+    public void shapeBatch(@NonNull String text, @NonNull ShapingBatch batch) {
+        checkNotNull(text, "text");
+        checkNotNull(batch, "batch");
+
+        int requestCount = batch.requestCount;
+        int charCount = batch.charCount();
+
+        for (int i = 0; i < requestCount; i++) {
+            int toIndex = batch.params[i * ShapingBatch.PARAM_SIZE + 5];
+            checkArgument(toIndex <= text.length(), "To Index: " + toIndex + ", Text Length: " + text.length());
+        }
+
+        if (batch.glyphStarts.length < requestCount + 1) {
+            batch.glyphStarts = new int[batch.typefaces.length + 1];
+        }
+        if (batch.clusterMap.length < charCount) {
+            batch.clusterMap = new int[charCount];
+        }
+        if (batch.caretEdges.length < charCount + requestCount) {
+            batch.caretEdges = new float[charCount + batch.typefaces.length];
+        }
+
+        // The glyph arrays are allocated natively as their size is only known after shaping.
+        Object[] glyphArrays = new Object[3];
+
+        nShapeBatch(nativeEngine, text, batch.typefaces, batch.typeSizes, batch.params,
+                    batch.profileHandles, requestCount, batch.glyphStarts, batch.clusterMap, batch.caretEdges,
+                    glyphArrays);
+
+        batch.glyphIds = (int[]) glyphArrays[0];
+        batch.glyphOffsets = (float[]) glyphArrays[1];
+        batch.glyphAdvances = (float[]) glyphArrays[2];
+        batch.isShaped = true;
+    }
+
 	@Override
 	public void dispose() {
         nDispose(nativeEngine);
@@ -348,6 +471,9 @@ public class ShapingEngine implements Disposable {
     }
 
     private static native int nGetScriptDefaultDirection(int scriptTag);
+    private static native int nGetPatternCacheCapacity();
+    private static native void nSetPatternCacheCapacity(int capacity);
+    private static native void nGetPatternCacheStats(long[] stats);
 
 	private static native long nCreate();
 	private static native void nDispose(long nativeEngine);
@@ -364,6 +490,7 @@ public class ShapingEngine implements Disposable {
     private static native void nSetLanguageTag(long nativeEngine, int languageTag);
 
     private static native void nSetOpenTypeFeatures(long nativeEngine, int[] tags, short[] values);
+    private static native void nSetShapingProfile(long nativeEngine, long nativeProfile);
 
     private static native int nGetWritingDirection(long nativeEngine);
 	private static native void nSetWritingDirection(long nativeEngine, int writingDirection);
@@ -372,4 +499,9 @@ public class ShapingEngine implements Disposable {
     private static native void nSetShapingOrder(long nativeEngine, int shapingOrder);
 
 	private static native void nShapeText(long nativeEngine, long nativeResult, String text, int fromIndex, int toIndex);
+    private static native void nShapeBatch(long nativeEngine, String text,
+                                           Typeface[] typefaces, float[] typeSizes, int[] params,
+                                           long[] profiles, int requestCount,
+                                           int[] glyphStarts, int[] clusterMap, float[] caretEdges,
+                                           Object[] glyphArrays);
 }
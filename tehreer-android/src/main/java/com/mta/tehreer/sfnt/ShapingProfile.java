@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mta.tehreer.sfnt;
+
+import androidx.annotation.NonNull;
+
+import com.mta.tehreer.internal.JniBridge;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
+
+/**
+ * The <code>ShapingProfile</code> class represents an immutable combination of script, language,
+ * OpenType features and writing direction, which is compiled once into a native object.
+ * <p>
+ * Applying a profile to a {@link ShapingEngine} avoids passing the features through JNI again, and
+ * the pattern which a typeface builds for the profile is pinned by the profile itself, so that it
+ * is never evicted from the pattern cache of the typeface. The pinned patterns are released along
+ * with the profile when it is garbage collected. A profile can be shared freely between threads,
+ * and can be attached to text with {@link com.mta.tehreer.layout.style.ShapingProfileSpan}.
+ */
+public final class ShapingProfile {
+    static {
+        JniBridge.loadLibrary();
+    }
+
+    private final int scriptTag;
+    private final int languageTag;
+    private final @NonNull Set<OpenTypeFeature> features;
+    private final @NonNull WritingDirection writingDirection;
+    final long nativeProfile;
+
+    /**
+     * Constructs a shaping profile object which uses the default direction of the script.
+     * <p>
+     * A tag can be created from string by using {@link SfntTag#make(String)} method.
+     *
+     * @param scriptTag The script tag of the profile.
+     * @param languageTag The language tag of the profile.
+     * @param features The OpenType features of the profile.
+     *
+     * @throws NullPointerException if <code>features</code> is <code>null</code>.
+     */
+    public ShapingProfile(int scriptTag, int languageTag, @NonNull Set<OpenTypeFeature> features) {
+        this(scriptTag, languageTag, features, ShapingEngine.getScriptDirection(scriptTag));
+    }
+
+    /**
+     * Constructs a shaping profile object.
+     * <p>
+     * A tag can be created from string by using {@link SfntTag#make(String)} method.
+     *
+     * @param scriptTag The script tag of the profile.
+     * @param languageTag The language tag of the profile.
+     * @param features The OpenType features of the profile.
+     * @param writingDirection The writing direction of the profile.
+     *
+     * @throws NullPointerException if <code>features</code> or <code>writingDirection</code> is
+     *         <code>null</code>.
+     */
+    public ShapingProfile(int scriptTag, int languageTag, @NonNull Set<OpenTypeFeature> features,
+                          @NonNull WritingDirection writingDirection) {
+        checkNotNull(features, "features");
+        checkNotNull(writingDirection, "writingDirection");
+
+        this.scriptTag = scriptTag;
+        this.languageTag = languageTag;
+        this.features = Collections.unmodifiableSet(new LinkedHashSet<>(features));
+        this.writingDirection = writingDirection;
+
+        int size = this.features.size();
+        int[] tags = new int[size];
+        short[] values = new short[size];
+        int index = 0;
+
+        for (OpenTypeFeature feature : this.features) {
+            tags[index] = feature.tag();
+            values[index] = (short) feature.value();
+
+            index += 1;
+        }
+
+        this.nativeProfile = nCreate(scriptTag, languageTag, tags, values, writingDirection.value);
+    }
+
+    /**
+     * Returns the script tag of this profile.
+     *
+     * @return The script tag of this profile.
+     */
+    public int getScriptTag() {
+        return scriptTag;
+    }
+
+    /**
+     * Returns the language tag of this profile.
+     *
+     * @return The language tag of this profile.
+     */
+    public int getLanguageTag() {
+        return languageTag;
+    }
+
+    /**
+     * Returns the OpenType features of this profile.
+     *
+     * @return An unmodifiable set of OpenType features.
+     */
+    public @NonNull Set<OpenTypeFeature> getOpenTypeFeatures() {
+        return features;
+    }
+
+    /**
+     * Returns the writing direction of this profile.
+     *
+     * @return The writing direction of this profile.
+     */
+    public @NonNull WritingDirection getWritingDirection() {
+        return writingDirection;
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            nDispose(nativeProfile);
+        } finally {
+            super.finalize();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShapingProfile{scriptTag=" + SfntTag.toString(scriptTag)
+                + ", languageTag=" + SfntTag.toString(languageTag)
+                + ", openTypeFeatures=" + features.toString()
+                + ", writingDirection=" + writingDirection.toString()
+                + '}';
+    }
+
+    private static native long nCreate(int scriptTag, int languageTag, int[] tags, short[] values,
+                                       int writingDirection);
+    private static native void nDispose(long nativeProfile);
+}
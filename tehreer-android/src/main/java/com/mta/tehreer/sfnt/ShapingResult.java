@@ -30,6 +30,9 @@ import com.mta.tehreer.internal.collections.Int32BufferPointList;
 import com.mta.tehreer.internal.collections.UInt16BufferIntList;
 import com.mta.tehreer.internal.collections.UIntPtrBufferIntList;
 
+import static com.mta.tehreer.internal.util.Preconditions.checkArgument;
+import static com.mta.tehreer.internal.util.Preconditions.checkNotNull;
+
 /**
  * A <code>ShapingResult</code> object is a container for the results of text shaping. It is
  * generated by a <code>ShapingEngine</code> object to provide the information related to
@@ -253,6 +256,47 @@ public class ShapingResult implements Disposable {
         return FloatList.of(caretEdges);
     }
 
+    /**
+     * Copies the glyph IDs, glyph offsets, glyph advances, cluster map and caret edges of this
+     * <code>ShapingResult</code> object into the given arrays with a single native call. The
+     * offsets are stored as consecutive x and y pairs, and the caret edges have a caret stop on
+     * every code unit. Unlike {@link #getClusterMap()}, the cluster map is filled with zeros if no
+     * glyph is produced.
+     *
+     * @param glyphIds The array receiving the glyph IDs, having at least a length of glyph count.
+     * @param glyphOffsets The array receiving the glyph offsets, having at least a length of twice
+     *        the glyph count.
+     * @param glyphAdvances The array receiving the glyph advances, having at least a length of
+     *        glyph count.
+     * @param clusterMap The array receiving the cluster map, having at least a length of the
+     *        represented character count.
+     * @param caretEdges The array receiving the caret edges, having at least a length of one more
+     *        than the represented character count.
+     *
+     * @throws NullPointerException if any of the arrays is <code>null</code>.
+     * @throws IllegalArgumentException if any of the arrays is too short.
+     */
+    public void exportTo(@NonNull int[] glyphIds, @NonNull float[] glyphOffsets,
+                         @NonNull float[] glyphAdvances, @NonNull int[] clusterMap,
+                         @NonNull float[] caretEdges) {
+        checkNotNull(glyphIds, "glyphIds");
+        checkNotNull(glyphOffsets, "glyphOffsets");
+        checkNotNull(glyphAdvances, "glyphAdvances");
+        checkNotNull(clusterMap, "clusterMap");
+        checkNotNull(caretEdges, "caretEdges");
+
+        int glyphCount = getGlyphCount();
+        int charCount = getCharCount();
+
+        checkArgument(glyphIds.length >= glyphCount, "Glyph ids array is too short");
+        checkArgument(glyphOffsets.length >= glyphCount * 2, "Glyph offsets array is too short");
+        checkArgument(glyphAdvances.length >= glyphCount, "Glyph advances array is too short");
+        checkArgument(clusterMap.length >= charCount, "Cluster map array is too short");
+        checkArgument(caretEdges.length >= charCount + 1, "Caret edges array is too short");
+
+        nExportTo(nativeResult, glyphIds, glyphOffsets, glyphAdvances, clusterMap, caretEdges);
+    }
+
 	@Override
 	public void dispose() {
         nDispose(nativeResult);
@@ -287,4 +331,6 @@ public class ShapingResult implements Disposable {
     private static native long nGetClusterMapPtr(long nativeResult);
 
     private static native void nGetCaretEdges(long nativeResult, boolean[] caretStops, float[] caretEdges);
+    private static native void nExportTo(long nativeResult, int[] glyphIds, float[] glyphOffsets,
+                                         float[] glyphAdvances, int[] clusterMap, float[] caretEdges);
 }
@@ -68,6 +68,7 @@ public class TLabel extends View {
 
     private @NonNull RectF mLayoutRect = new RectF();
     private @Nullable ComposedFrame mComposedFrame = null;
+    private boolean mRecordingEnabled = false;
 
     public TLabel(Context context) {
         super(context);
@@ -203,6 +204,7 @@ public class TLabel extends View {
             mResolver.setFrameBounds(mLayoutRect);
 
             mComposedFrame = mResolver.createFrame(0, mTypesetter.getSpanned().length());
+            mComposedFrame.setRecordingEnabled(mRecordingEnabled);
 
             mTextWidth = (int) (mComposedFrame.getWidth() + 0.5f);
             mTextHeight = (int) (mComposedFrame.getHeight() + 0.5f);
@@ -351,6 +353,33 @@ public class TLabel extends View {
         invalidate();
     }
 
+    /**
+     * Returns whether the composed frame of this Label is recorded and replayed across draws. The
+     * default value is <code>false</code>.
+     *
+     * @return <code>true</code> if the composed frame is recorded, <code>false</code> otherwise.
+     */
+    public boolean isRecordingEnabled() {
+        return mRecordingEnabled;
+    }
+
+    /**
+     * Enables or disables recording of the composed frame, so that redrawing an unchanged Label,
+     * such as while it is being scrolled, replays the recorded frame.
+     *
+     * @param recordingEnabled <code>true</code> to record the composed frame, <code>false</code>
+     *                         otherwise.
+     *
+     * @see ComposedFrame#setRecordingEnabled(boolean)
+     */
+    public void setRecordingEnabled(boolean recordingEnabled) {
+        mRecordingEnabled = recordingEnabled;
+
+        if (mComposedFrame != null) {
+            mComposedFrame.setRecordingEnabled(recordingEnabled);
+        }
+    }
+
     /**
      * Returns the current composed frame that is being displayed.
      *
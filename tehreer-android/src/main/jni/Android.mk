@@ -174,10 +174,12 @@ FILE_LIST := \
     GlyphRasterizer.cpp \
     JavaBridge.cpp \
     PatternCache.cpp \
+    PixelCompositor.cpp \
     Raw.cpp \
     ScriptClassifier.cpp \
     SfntTables.cpp \
     ShapingEngine.cpp \
+    ShapingProfile.cpp \
     ShapingResult.cpp \
     StreamUtils.cpp \
     Tehreer.cpp \
@@ -40,6 +40,8 @@ public:
     ~FontFile();
 
     FT_Long numFaces() const { return m_numFaces; }
+    /* Whether separate faces of this file can be used on different threads simultaneously. */
+    bool isShareable() const { return m_stream == nullptr; }
     FT_Face createFace(FT_Long faceIndex, FT_Long instanceIndex);
 
     FontFile *retain();
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ extern "C" {
 #include <ft2build.h>
 #include FT_FREETYPE_H
 #include FT_BITMAP_H
+#include FT_GLYPH_H
 #include FT_IMAGE_H
 #include FT_OUTLINE_H
 #include FT_SIZES_H
@@ -34,19 +35,22 @@ extern "C" {
 
 using namespace Tehreer;
 
-GlyphRasterizer::GlyphRasterizer(Typeface &typeface, FT_F26Dot6 pixelWidth, FT_F26Dot6 pixelHeight, FT_Matrix transform)
+GlyphRasterizer::GlyphRasterizer(Typeface &typeface, FT_F26Dot6 pixelWidth, FT_F26Dot6 pixelHeight,
+    FT_Matrix transform, FT_Vector delta, bool isolated)
     : m_typeface(typeface)
+    , m_ownFace(isolated ? typeface.createIsolatedFace() : nullptr)
+    , m_ownStroker(nullptr)
     , m_size(nullptr)
     , m_transform(transform)
+    , m_delta(delta)
 {
-    m_typeface.lock();
+    FT_Face baseFace = lockFace();
 
-    FT_Face baseFace = m_typeface.ftFace();
     FT_New_Size(baseFace, &m_size);
     FT_Activate_Size(m_size);
     FT_Set_Char_Size(baseFace, pixelWidth, pixelHeight, 0, 0);
 
-    m_typeface.unlock();
+    unlockFace();
 }
 
 GlyphRasterizer::~GlyphRasterizer()
@@ -58,8 +62,44 @@ GlyphRasterizer::~GlyphRasterizer()
          *      internal list of the face containing all the sizes.
          */
 
-        m_typeface.lock();
+        lockFace();
         FT_Done_Size(m_size);
+        unlockFace();
+    }
+    if (m_ownStroker) {
+        FT_Stroker_Done(m_ownStroker);
+    }
+    if (m_ownFace) {
+        std::mutex &mutex = FreeType::mutex();
+        mutex.lock();
+
+        FT_Done_Face(m_ownFace);
+
+        mutex.unlock();
+    }
+}
+
+FT_Face GlyphRasterizer::lockFace()
+{
+    /*
+     * An isolated rasterizer works on its own face, so it only needs to exclude the other threads
+     * using this very rasterizer. Otherwise the face of the typeface is shared with all other
+     * rasterizers and the typeface itself.
+     */
+    if (m_ownFace) {
+        m_mutex.lock();
+        return m_ownFace;
+    }
+
+    m_typeface.lock();
+    return m_typeface.ftFace();
+}
+
+void GlyphRasterizer::unlockFace()
+{
+    if (m_ownFace) {
+        m_mutex.unlock();
+    } else {
         m_typeface.unlock();
     }
 }
@@ -67,7 +107,20 @@ GlyphRasterizer::~GlyphRasterizer()
 void GlyphRasterizer::unsafeActivate(FT_Face ftFace)
 {
     FT_Activate_Size(m_size);
-    FT_Set_Transform(ftFace, &m_transform, nullptr);
+    FT_Set_Transform(ftFace, &m_transform, &m_delta);
+}
+
+FT_Stroker GlyphRasterizer::unsafeStroker()
+{
+    if (m_ownFace) {
+        if (!m_ownStroker) {
+            FT_Stroker_New(FreeType::library(), &m_ownStroker);
+        }
+
+        return m_ownStroker;
+    }
+
+    return m_typeface.ftStroker();
 }
 
 jobject GlyphRasterizer::unsafeCreateBitmap(const JavaBridge bridge, const FT_Bitmap *bitmap)
@@ -93,6 +146,33 @@ jobject GlyphRasterizer::unsafeCreateBitmap(const JavaBridge bridge, const FT_Bi
     return glyphBitmap;
 }
 
+static jbyteArray createCoverage(const JavaBridge bridge, const FT_Bitmap *bitmap)
+{
+    if (bitmap->pixel_mode != FT_PIXEL_MODE_GRAY) {
+        LOGW("Unsupported pixel mode of freetype bitmap");
+        return nullptr;
+    }
+
+    jint width = static_cast<jint>(bitmap->width);
+    jint height = static_cast<jint>(bitmap->rows);
+    if (width == 0 || height == 0) {
+        return nullptr;
+    }
+
+    JNIEnv *env = bridge.env();
+    jbyteArray coverage = env->NewByteArray(width * height);
+    if (coverage) {
+        /* Pack the rows tightly, dropping any padding of the pitch. */
+        const unsigned char *row = bitmap->buffer;
+        for (jint y = 0; y < height; y++) {
+            env->SetByteArrayRegion(coverage, y * width, width, reinterpret_cast<const jbyte *>(row));
+            row += bitmap->pitch;
+        }
+    }
+
+    return coverage;
+}
+
 void GlyphRasterizer::loadBitmap(const JavaBridge bridge, jobject glyph)
 {
     FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
@@ -100,9 +180,7 @@ void GlyphRasterizer::loadBitmap(const JavaBridge bridge, jobject glyph)
     jint leftSideBearing = 0;
     jint topSideBearing = 0;
 
-    m_typeface.lock();
-
-    FT_Face baseFace = m_typeface.ftFace();
+    FT_Face baseFace = lockFace();
     unsafeActivate(baseFace);
 
     FT_Error error = FT_Load_Glyph(baseFace, glyphID, FT_LOAD_RENDER);
@@ -116,18 +194,190 @@ void GlyphRasterizer::loadBitmap(const JavaBridge bridge, jobject glyph)
         }
     }
 
-    m_typeface.unlock();
+    unlockFace();
 
     bridge.Glyph_ownBitmap(glyph, glyphBitmap, leftSideBearing, topSideBearing);
 }
 
-void GlyphRasterizer::loadOutline(const JavaBridge bridge, jobject glyph)
+void GlyphRasterizer::loadBitmaps(const JavaBridge bridge, jobjectArray glyphs, jint count)
+{
+    JNIEnv *env = bridge.env();
+
+    FT_Face baseFace = lockFace();
+    unsafeActivate(baseFace);
+
+    for (jint i = 0; i < count; i++) {
+        jobject glyph = env->GetObjectArrayElement(glyphs, i);
+        FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+        jobject glyphBitmap = nullptr;
+        jint leftSideBearing = 0;
+        jint topSideBearing = 0;
+
+        FT_Error error = FT_Load_Glyph(baseFace, glyphID, FT_LOAD_RENDER);
+        if (error == FT_Err_Ok) {
+            FT_GlyphSlot glyphSlot = baseFace->glyph;
+            glyphBitmap = unsafeCreateBitmap(bridge, &glyphSlot->bitmap);
+
+            if (glyphBitmap) {
+                leftSideBearing = glyphSlot->bitmap_left;
+                topSideBearing = glyphSlot->bitmap_top;
+            }
+        }
+
+        bridge.Glyph_ownBitmap(glyph, glyphBitmap, leftSideBearing, topSideBearing);
+
+        /* Release the local references so that long runs do not overflow the table. */
+        if (glyphBitmap) {
+            env->DeleteLocalRef(glyphBitmap);
+        }
+        env->DeleteLocalRef(glyph);
+    }
+
+    unlockFace();
+}
+
+FT_Glyph GlyphRasterizer::loadMaskGlyph(FT_UInt glyphID)
+{
+    FT_Glyph maskGlyph = nullptr;
+
+    FT_Face baseFace = lockFace();
+    unsafeActivate(baseFace);
+
+    FT_Error error = FT_Load_Glyph(baseFace, glyphID, FT_LOAD_RENDER);
+    if (error == FT_Err_Ok) {
+        FT_Get_Glyph(baseFace->glyph, &maskGlyph);
+    }
+
+    unlockFace();
+
+    return maskGlyph;
+}
+
+void GlyphRasterizer::loadMask(const JavaBridge bridge, jobject glyph, jobject atlas)
 {
     FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+    /* Keep a copy of the mask so that the face is not locked while talking to the atlas. */
+    FT_Glyph maskGlyph = loadMaskGlyph(glyphID);
 
-    m_typeface.lock();
+    jobject glyphBitmap = nullptr;
+    jint leftSideBearing = 0;
+    jint topSideBearing = 0;
+
+    if (maskGlyph && maskGlyph->format == FT_GLYPH_FORMAT_BITMAP) {
+        FT_BitmapGlyph bitmapGlyph = reinterpret_cast<FT_BitmapGlyph>(maskGlyph);
+        FT_Bitmap *bitmap = &bitmapGlyph->bitmap;
+        jint width = static_cast<jint>(bitmap->width);
+        jint height = static_cast<jint>(bitmap->rows);
+
+        if (bitmap->pixel_mode == FT_PIXEL_MODE_GRAY && width > 0 && height > 0) {
+            jobject page = bridge.GlyphAtlas_allocate(atlas, glyph, width, height);
+            if (page) {
+                jint x = bridge.Glyph_getBitmapX(glyph);
+                jint y = bridge.Glyph_getBitmapY(glyph);
+
+                /* Serialize the writes into the pages of the atlas. */
+                bridge.env()->MonitorEnter(atlas);
+                bridge.Bitmap_setPixels(page, x, y, bitmap->buffer, width, height, bitmap->pitch);
+                bridge.env()->MonitorExit(atlas);
+
+                bridge.Glyph_ownAtlasMask(glyph, width, height, bitmapGlyph->left, bitmapGlyph->top);
+                FT_Done_Glyph(maskGlyph);
+
+                return;
+            }
+        }
+
+        /* The mask does not fit into the atlas, so give it a separate bitmap. */
+        glyphBitmap = unsafeCreateBitmap(bridge, bitmap);
+        if (glyphBitmap) {
+            leftSideBearing = bitmapGlyph->left;
+            topSideBearing = bitmapGlyph->top;
+        }
+    }
+
+    if (maskGlyph) {
+        FT_Done_Glyph(maskGlyph);
+    }
+
+    bridge.Glyph_ownBitmap(glyph, glyphBitmap, leftSideBearing, topSideBearing);
+}
+
+void GlyphRasterizer::loadMasks(const JavaBridge bridge, jobjectArray glyphs, jint count, jobject atlas)
+{
+    JNIEnv *env = bridge.env();
+
+    for (jint i = 0; i < count; i++) {
+        jobject glyph = env->GetObjectArrayElement(glyphs, i);
+        loadMask(bridge, glyph, atlas);
+        env->DeleteLocalRef(glyph);
+    }
+}
+
+void GlyphRasterizer::loadCoverages(const JavaBridge bridge, jobjectArray glyphs, jint count)
+{
+    JNIEnv *env = bridge.env();
+
+    for (jint i = 0; i < count; i++) {
+        jobject glyph = env->GetObjectArrayElement(glyphs, i);
+        FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+        /* Keep a copy of the mask so that the face is not locked while creating the array. */
+        FT_Glyph maskGlyph = loadMaskGlyph(glyphID);
+
+        jbyteArray coverage = nullptr;
+        jint width = 0;
+        jint height = 0;
+        jint leftSideBearing = 0;
+        jint topSideBearing = 0;
+
+        if (maskGlyph && maskGlyph->format == FT_GLYPH_FORMAT_BITMAP) {
+            FT_BitmapGlyph bitmapGlyph = reinterpret_cast<FT_BitmapGlyph>(maskGlyph);
+            coverage = createCoverage(bridge, &bitmapGlyph->bitmap);
+
+            if (coverage) {
+                width = static_cast<jint>(bitmapGlyph->bitmap.width);
+                height = static_cast<jint>(bitmapGlyph->bitmap.rows);
+                leftSideBearing = bitmapGlyph->left;
+                topSideBearing = bitmapGlyph->top;
+            }
+        }
+
+        if (maskGlyph) {
+            FT_Done_Glyph(maskGlyph);
+        }
+
+        bridge.Glyph_ownCoverage(glyph, coverage, width, height, leftSideBearing, topSideBearing);
 
-    FT_Face baseFace = m_typeface.ftFace();
+        /* Release the local references so that long runs do not overflow the table. */
+        if (coverage) {
+            env->DeleteLocalRef(coverage);
+        }
+        env->DeleteLocalRef(glyph);
+    }
+}
+
+static jint outlineByteCount(FT_Glyph glyph)
+{
+    if (!glyph) {
+        return 0;
+    }
+    if (glyph->format != FT_GLYPH_FORMAT_OUTLINE) {
+        return sizeof(FT_GlyphRec);
+    }
+
+    // The outline owns its points, their tags and the end points of its contours.
+    const FT_Outline &outline = reinterpret_cast<FT_OutlineGlyph>(glyph)->outline;
+    size_t byteCount = sizeof(FT_OutlineGlyphRec)
+                     + (outline.n_points * (sizeof(FT_Vector) + sizeof(char)))
+                     + (outline.n_contours * sizeof(short));
+
+    return static_cast<jint>(byteCount);
+}
+
+void GlyphRasterizer::loadOutline(const JavaBridge bridge, jobject glyph)
+{
+    FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+
+    FT_Face baseFace = lockFace();
     unsafeActivate(baseFace);
 
     FT_Glyph outline = nullptr;
@@ -136,79 +386,188 @@ void GlyphRasterizer::loadOutline(const JavaBridge bridge, jobject glyph)
         FT_Get_Glyph(baseFace->glyph, &outline);
     }
 
-    m_typeface.unlock();
+    unlockFace();
 
-    bridge.Glyph_ownOutline(glyph, outline ? reinterpret_cast<jlong>(outline) : 0);
+    bridge.Glyph_ownOutline(glyph, outline ? reinterpret_cast<jlong>(outline) : 0, outlineByteCount(outline));
 }
 
 void GlyphRasterizer::loadPath(const JavaBridge bridge, jobject glyph)
 {
     FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
 
-    m_typeface.lock();
-
-    FT_Face baseFace = m_typeface.ftFace();
+    FT_Face baseFace = lockFace();
     unsafeActivate(baseFace);
 
-    jobject glyphPath = m_typeface.getGlyphPathNoLock(bridge, glyphID);
+    jobject glyphPath = Typeface::getGlyphPathNoLock(bridge, baseFace, glyphID);
 
-    m_typeface.unlock();
+    unlockFace();
 
     bridge.Glyph_ownPath(glyph, glyphPath);
 }
 
-jobject GlyphRasterizer::strokeGlyph(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
+void GlyphRasterizer::loadPaths(const JavaBridge bridge, jobjectArray glyphs, jint count)
+{
+    JNIEnv *env = bridge.env();
+
+    FT_Face baseFace = lockFace();
+    unsafeActivate(baseFace);
+
+    for (jint i = 0; i < count; i++) {
+        jobject glyph = env->GetObjectArrayElement(glyphs, i);
+        FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+
+        jobject glyphPath = Typeface::getGlyphPathNoLock(bridge, baseFace, glyphID);
+        bridge.Glyph_ownPath(glyph, glyphPath);
+
+        /* Release the local references so that long runs do not overflow the table. */
+        if (glyphPath) {
+            env->DeleteLocalRef(glyphPath);
+        }
+        env->DeleteLocalRef(glyph);
+    }
+
+    unlockFace();
+}
+
+void GlyphRasterizer::loadBounds(const JavaBridge bridge, jintArray glyphIDs, jint count, jfloatArray bounds)
+{
+    JNIEnv *env = bridge.env();
+    jint *idValues = env->GetIntArrayElements(glyphIDs, nullptr);
+    jfloat *boundValues = env->GetFloatArrayElements(bounds, nullptr);
+
+    FT_Face baseFace = lockFace();
+    unsafeActivate(baseFace);
+
+    for (jint i = 0; i < count; i++) {
+        FT_UInt glyphID = static_cast<FT_UInt>(idValues[i]);
+        jfloat *glyphBounds = &boundValues[i * 4];
+        FT_BBox cbox = { 0, 0, 0, 0 };
+
+        /* Only load the glyph, its control box is available without rendering it. */
+        FT_Error error = FT_Load_Glyph(baseFace, glyphID, FT_LOAD_DEFAULT);
+        if (error == FT_Err_Ok) {
+            FT_GlyphSlot glyphSlot = baseFace->glyph;
+
+            if (glyphSlot->format == FT_GLYPH_FORMAT_OUTLINE) {
+                FT_Outline_Get_CBox(&glyphSlot->outline, &cbox);
+            } else if (glyphSlot->format == FT_GLYPH_FORMAT_BITMAP) {
+                cbox.xMin = glyphSlot->bitmap_left * 64;
+                cbox.yMax = glyphSlot->bitmap_top * 64;
+                cbox.xMax = cbox.xMin + static_cast<FT_Pos>(glyphSlot->bitmap.width) * 64;
+                cbox.yMin = cbox.yMax - static_cast<FT_Pos>(glyphSlot->bitmap.rows) * 64;
+            }
+        }
+
+        glyphBounds[0] = cbox.xMin / 64.0f;
+        glyphBounds[1] = cbox.yMin / 64.0f;
+        glyphBounds[2] = cbox.xMax / 64.0f;
+        glyphBounds[3] = cbox.yMax / 64.0f;
+    }
+
+    unlockFace();
+
+    env->ReleaseFloatArrayElements(bounds, boundValues, 0);
+    env->ReleaseIntArrayElements(glyphIDs, idValues, JNI_ABORT);
+}
+
+FT_Glyph GlyphRasterizer::strokeOutline(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
     FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit)
 {
-    FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
     FT_Glyph baseGlyph = reinterpret_cast<FT_Glyph>(bridge.Glyph_getNativeOutline(glyph));
 
     if (baseGlyph) {
-        m_typeface.lock();
+        lockFace();
 
-        FT_Stroker stroker = m_typeface.ftStroker();
+        FT_Stroker stroker = unsafeStroker();
         FT_Stroker_Set(stroker, lineRadius, lineCap, lineJoin, miterLimit);
         FT_Error error = FT_Glyph_Stroke(&baseGlyph, stroker, 0);
 
-        m_typeface.unlock();
+        unlockFace();
 
         if (error == FT_Err_Ok) {
             FT_Glyph_To_Bitmap(&baseGlyph, FT_RENDER_MODE_NORMAL, nullptr, 1);
+            return baseGlyph;
+        }
+    }
+
+    return nullptr;
+}
 
-            FT_BitmapGlyph bitmapGlyph = reinterpret_cast<FT_BitmapGlyph>(baseGlyph);
-            jobject strokeBitmap = nullptr;
-            jint leftSideBearing = 0;
-            jint topSideBearing = 0;
+jobject GlyphRasterizer::strokeGlyph(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
+    FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit)
+{
+    FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+    FT_Glyph strokeGlyph = strokeOutline(bridge, glyph, lineRadius, lineCap, lineJoin, miterLimit);
+
+    if (strokeGlyph) {
+        FT_BitmapGlyph bitmapGlyph = reinterpret_cast<FT_BitmapGlyph>(strokeGlyph);
+        jobject strokeBitmap = nullptr;
+        jint leftSideBearing = 0;
+        jint topSideBearing = 0;
+
+        strokeBitmap = unsafeCreateBitmap(bridge, &bitmapGlyph->bitmap);
+        if (strokeBitmap) {
+            leftSideBearing = bitmapGlyph->left;
+            topSideBearing = bitmapGlyph->top;
+        }
 
-            strokeBitmap = unsafeCreateBitmap(bridge, &bitmapGlyph->bitmap);
-            if (strokeBitmap) {
-                leftSideBearing = bitmapGlyph->left;
-                topSideBearing = bitmapGlyph->top;
-            }
+        jobject result = bridge.Glyph_construct(glyphID);
+        bridge.Glyph_ownBitmap(result, strokeBitmap, leftSideBearing, topSideBearing);
+
+        /* Dispose the stroked / bitmap glyph. */
+        FT_Done_Glyph(strokeGlyph);
 
-            jobject result = bridge.Glyph_construct(glyphID);
-            bridge.Glyph_ownBitmap(result, strokeBitmap, leftSideBearing, topSideBearing);
+        return result;
+    }
 
-            /* Dispose the stroked / bitmap glyph. */
-            FT_Done_Glyph(baseGlyph);
+    return nullptr;
+}
 
-            return result;
+jobject GlyphRasterizer::strokeCoverage(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
+    FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit)
+{
+    FT_UInt glyphID = static_cast<FT_UInt>(bridge.Glyph_getGlyphID(glyph));
+    FT_Glyph strokeGlyph = strokeOutline(bridge, glyph, lineRadius, lineCap, lineJoin, miterLimit);
+
+    if (strokeGlyph) {
+        FT_BitmapGlyph bitmapGlyph = reinterpret_cast<FT_BitmapGlyph>(strokeGlyph);
+        jbyteArray coverage = createCoverage(bridge, &bitmapGlyph->bitmap);
+        jint width = 0;
+        jint height = 0;
+        jint leftSideBearing = 0;
+        jint topSideBearing = 0;
+
+        if (coverage) {
+            width = static_cast<jint>(bitmapGlyph->bitmap.width);
+            height = static_cast<jint>(bitmapGlyph->bitmap.rows);
+            leftSideBearing = bitmapGlyph->left;
+            topSideBearing = bitmapGlyph->top;
         }
+
+        jobject result = bridge.Glyph_construct(glyphID);
+        bridge.Glyph_ownCoverage(result, coverage, width, height, leftSideBearing, topSideBearing);
+
+        /* Dispose the stroked / bitmap glyph. */
+        FT_Done_Glyph(strokeGlyph);
+
+        return result;
     }
 
     return nullptr;
 }
 
 static jlong create(JNIEnv *env, jobject obj, jlong typefaceHandle, jint pixelWidth, jint pixelHeight,
-    jint transformXX, jint transformXY, jint transformYX, jint transformYY)
+    jint transformXX, jint transformXY, jint transformYX, jint transformYY,
+    jint deltaX, jint deltaY, jboolean isolated)
 {
     Typeface *typeface = reinterpret_cast<Typeface *>(typefaceHandle);
     FT_Matrix transform = {
         transformXX, transformXY,
         transformYX, transformYY
     };
+    FT_Vector delta = { deltaX, deltaY };
 
-    GlyphRasterizer *glyphRasterizer = new GlyphRasterizer(*typeface, pixelWidth, pixelHeight, transform);
+    GlyphRasterizer *glyphRasterizer = new GlyphRasterizer(*typeface, pixelWidth, pixelHeight, transform, delta, isolated);
     return reinterpret_cast<jlong>(glyphRasterizer);
 }
 
@@ -224,6 +583,18 @@ static void loadBitmap(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobject
     glyphRasterizer->loadBitmap(JavaBridge(env), glyph);
 }
 
+static void loadBitmaps(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobjectArray glyphs, jint count)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    glyphRasterizer->loadBitmaps(JavaBridge(env), glyphs, count);
+}
+
+static void loadMasks(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobjectArray glyphs, jint count, jobject atlas)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    glyphRasterizer->loadMasks(JavaBridge(env), glyphs, count, atlas);
+}
+
 static void loadOutline(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobject glyph)
 {
     GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
@@ -236,6 +607,24 @@ static void loadPath(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobject g
     glyphRasterizer->loadPath(JavaBridge(env), glyph);
 }
 
+static void loadPaths(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobjectArray glyphs, jint count)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    glyphRasterizer->loadPaths(JavaBridge(env), glyphs, count);
+}
+
+static void loadBounds(JNIEnv *env, jobject obj, jlong rasterizerHandle, jintArray glyphIDs, jint count, jfloatArray bounds)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    glyphRasterizer->loadBounds(JavaBridge(env), glyphIDs, count, bounds);
+}
+
+static void loadCoverages(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobjectArray glyphs, jint count)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    glyphRasterizer->loadCoverages(JavaBridge(env), glyphs, count);
+}
+
 static jobject strokeGlyph(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobject glyph,
     jint lineRadius, jint lineCap, jint lineJoin, jint miterLimit)
 {
@@ -249,13 +638,32 @@ static jobject strokeGlyph(JNIEnv *env, jobject obj, jlong rasterizerHandle, job
                                         strokeCap, strokeJoin, strokeMiter);
 }
 
+static jobject strokeCoverage(JNIEnv *env, jobject obj, jlong rasterizerHandle, jobject glyph,
+    jint lineRadius, jint lineCap, jint lineJoin, jint miterLimit)
+{
+    GlyphRasterizer *glyphRasterizer = reinterpret_cast<GlyphRasterizer *>(rasterizerHandle);
+    FT_Fixed strokeRadius = static_cast<FT_Fixed >(lineRadius);
+    FT_Stroker_LineCap strokeCap = static_cast<FT_Stroker_LineCap>(lineCap);
+    FT_Stroker_LineJoin strokeJoin = static_cast<FT_Stroker_LineJoin>(lineJoin);
+    FT_Fixed strokeMiter = static_cast<FT_Fixed>(miterLimit);
+
+    return glyphRasterizer->strokeCoverage(JavaBridge(env), glyph, strokeRadius,
+                                           strokeCap, strokeJoin, strokeMiter);
+}
+
 static JNINativeMethod JNI_METHODS[] = {
-    { "nCreate", "(JIIIIII)J", (void *)create },
+    { "nCreate", "(JIIIIIIIIZ)J", (void *)create },
     { "nDispose", "(J)V", (void *)dispose },
     { "nLoadBitmap", "(JLcom/mta/tehreer/graphics/Glyph;)V", (void *)loadBitmap },
+    { "nLoadBitmaps", "(J[Lcom/mta/tehreer/graphics/Glyph;I)V", (void *)loadBitmaps },
+    { "nLoadMasks", "(J[Lcom/mta/tehreer/graphics/Glyph;ILcom/mta/tehreer/graphics/GlyphAtlas;)V", (void *)loadMasks },
+    { "nLoadCoverages", "(J[Lcom/mta/tehreer/graphics/Glyph;I)V", (void *)loadCoverages },
     { "nLoadOutline", "(JLcom/mta/tehreer/graphics/Glyph;)V", (void *)loadOutline },
     { "nLoadPath", "(JLcom/mta/tehreer/graphics/Glyph;)V", (void *)loadPath },
+    { "nLoadPaths", "(J[Lcom/mta/tehreer/graphics/Glyph;I)V", (void *)loadPaths },
+    { "nLoadBounds", "(J[II[F)V", (void *)loadBounds },
     { "nStrokeGlyph", "(JLcom/mta/tehreer/graphics/Glyph;IIII)Lcom/mta/tehreer/graphics/Glyph;", (void *)strokeGlyph },
+    { "nStrokeCoverage", "(JLcom/mta/tehreer/graphics/Glyph;IIII)Lcom/mta/tehreer/graphics/Glyph;", (void *)strokeCoverage },
 };
 
 jint register_com_mta_tehreer_graphics_GlyphRasterizer(JNIEnv *env)
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2016-2018 Muhammad Tayyab Akram
+ * Copyright (C) 2016-2019 Muhammad Tayyab Akram
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,10 +20,13 @@
 extern "C" {
 #include <ft2build.h>
 #include FT_FREETYPE_H
+#include FT_GLYPH_H
+#include FT_STROKER_H
 #include FT_TYPES_H
 }
 
 #include <jni.h>
+#include <mutex>
 
 #include "FreeType.h"
 #include "Glyph.h"
@@ -34,25 +37,47 @@ namespace Tehreer {
 
 class GlyphRasterizer {
 public:
-    GlyphRasterizer(Typeface &typeface, FT_F26Dot6 pixelWidth, FT_F26Dot6 pixelHeight, FT_Matrix transform);
+    GlyphRasterizer(Typeface &typeface, FT_F26Dot6 pixelWidth, FT_F26Dot6 pixelHeight,
+        FT_Matrix transform, FT_Vector delta, bool isolated = false);
     ~GlyphRasterizer();
 
     Typeface &typeface() { return m_typeface; }
+    bool isIsolated() const { return m_ownFace != nullptr; }
+
+    FT_Glyph loadMaskGlyph(FT_UInt glyphID);
 
     void loadBitmap(const JavaBridge bridge, jobject glyph);
+    void loadBitmaps(const JavaBridge bridge, jobjectArray glyphs, jint count);
+    void loadMask(const JavaBridge bridge, jobject glyph, jobject atlas);
+    void loadMasks(const JavaBridge bridge, jobjectArray glyphs, jint count, jobject atlas);
+    void loadCoverages(const JavaBridge bridge, jobjectArray glyphs, jint count);
     void loadOutline(const JavaBridge bridge, jobject glyph);
     void loadPath(const JavaBridge bridge, jobject glyph);
+    void loadPaths(const JavaBridge bridge, jobjectArray glyphs, jint count);
+    void loadBounds(const JavaBridge bridge, jintArray glyphIDs, jint count, jfloatArray bounds);
 
     jobject strokeGlyph(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
         FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit);
+    jobject strokeCoverage(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
+        FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit);
 
 private:
     Typeface &m_typeface;
+    FT_Face m_ownFace;
+    FT_Stroker m_ownStroker;
+    std::mutex m_mutex;
     FT_Size m_size;
     FT_Matrix m_transform;
+    FT_Vector m_delta;
+
+    FT_Face lockFace();
+    void unlockFace();
 
     void unsafeActivate(FT_Face ftFace);
+    FT_Stroker unsafeStroker();
     jobject unsafeCreateBitmap(const JavaBridge bridge, const FT_Bitmap *bitmap);
+    FT_Glyph strokeOutline(const JavaBridge bridge, jobject glyph, FT_Fixed lineRadius,
+        FT_Stroker_LineCap lineCap, FT_Stroker_LineJoin lineJoin, FT_Fixed miterLimit);
 };
 
 }
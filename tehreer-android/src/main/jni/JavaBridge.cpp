@@ -15,6 +15,7 @@
  */
 
 #include <android/bitmap.h>
+#include <cstdint>
 #include <cstring>
 #include <jni.h>
 
@@ -37,23 +38,24 @@ static jclass    GLYPH;
 static jmethodID GLYPH__CONSTRUCTOR;
 static jfieldID  GLYPH__GLYPH_ID;
 static jfieldID  GLYPH__NATIVE_OUTLINE;
+static jfieldID  GLYPH__BITMAP_X;
+static jfieldID  GLYPH__BITMAP_Y;
 static jmethodID GLYPH__OWN_BITMAP;
+static jmethodID GLYPH__OWN_ATLAS_MASK;
+static jmethodID GLYPH__OWN_COVERAGE;
 static jmethodID GLYPH__OWN_OUTLINE;
 static jmethodID GLYPH__OWN_PATH;
 
+static jmethodID GLYPH_ATLAS__ALLOCATE;
+
+static jclass    GLYPH_PATH;
+static jmethodID GLYPH_PATH__CONSTRUCTOR;
+
 static jmethodID INPUT_STREAM__READ;
 
 static jclass    NAME_TABLE_RECORD;
 static jmethodID NAME_TABLE_RECORD__CONSTRUCTOR;
 
-static jclass    PATH;
-static jmethodID PATH__CONSTRUCTOR;
-static jmethodID PATH__CLOSE;
-static jmethodID PATH__CUBIC_TO;
-static jmethodID PATH__LINE_TO;
-static jmethodID PATH__MOVE_TO;
-static jmethodID PATH__QUAD_TO;
-
 static jmethodID RECT__SET;
 
 static jclass    STRING;
@@ -90,9 +92,20 @@ void JavaBridge::load(JNIEnv* env)
     GLYPH__CONSTRUCTOR = env->GetMethodID(clazz, "<init>", "(I)V");
     GLYPH__GLYPH_ID = env->GetFieldID(clazz, "glyphId", "I");
     GLYPH__NATIVE_OUTLINE = env->GetFieldID(clazz, "nativeOutline", "J");
+    GLYPH__BITMAP_X = env->GetFieldID(clazz, "mBitmapX", "I");
+    GLYPH__BITMAP_Y = env->GetFieldID(clazz, "mBitmapY", "I");
     GLYPH__OWN_BITMAP = env->GetMethodID(clazz, "ownBitmap", "(Landroid/graphics/Bitmap;II)V");
-    GLYPH__OWN_OUTLINE = env->GetMethodID(clazz, "ownOutline", "(J)V");
-    GLYPH__OWN_PATH = env->GetMethodID(clazz, "ownPath", "(Landroid/graphics/Path;)V");
+    GLYPH__OWN_ATLAS_MASK = env->GetMethodID(clazz, "ownAtlasMask", "(IIII)V");
+    GLYPH__OWN_COVERAGE = env->GetMethodID(clazz, "ownCoverage", "([BIIII)V");
+    GLYPH__OWN_OUTLINE = env->GetMethodID(clazz, "ownOutline", "(JI)V");
+    GLYPH__OWN_PATH = env->GetMethodID(clazz, "ownPath", "(Lcom/mta/tehreer/graphics/GlyphPath;)V");
+
+    clazz = env->FindClass("com/mta/tehreer/graphics/GlyphAtlas");
+    GLYPH_ATLAS__ALLOCATE = env->GetMethodID(clazz, "allocate", "(Lcom/mta/tehreer/graphics/Glyph;II)Landroid/graphics/Bitmap;");
+
+    clazz = env->FindClass("com/mta/tehreer/graphics/GlyphPath");
+    GLYPH_PATH = (jclass)env->NewGlobalRef(clazz);
+    GLYPH_PATH__CONSTRUCTOR = env->GetMethodID(clazz, "<init>", "([B[F)V");
 
     clazz = env->FindClass("java/io/InputStream");
     INPUT_STREAM__READ = env->GetMethodID(clazz, "read", "([BII)I");
@@ -101,15 +114,6 @@ void JavaBridge::load(JNIEnv* env)
     NAME_TABLE_RECORD = (jclass)env->NewGlobalRef(clazz);
     NAME_TABLE_RECORD__CONSTRUCTOR = env->GetMethodID(clazz, "<init>", "(IIII[B)V");
 
-    clazz = env->FindClass("android/graphics/Path");
-    PATH = (jclass)env->NewGlobalRef(clazz);
-    PATH__CONSTRUCTOR = env->GetMethodID(clazz, "<init>", "()V");
-    PATH__CLOSE = env->GetMethodID(clazz, "close", "()V");
-    PATH__CUBIC_TO = env->GetMethodID(clazz, "cubicTo", "(FFFFFF)V");
-    PATH__LINE_TO = env->GetMethodID(clazz, "lineTo", "(FF)V");
-    PATH__MOVE_TO = env->GetMethodID(clazz, "moveTo", "(FF)V");
-    PATH__QUAD_TO = env->GetMethodID(clazz, "quadTo", "(FFFF)V");
-
     clazz = env->FindClass("android/graphics/Rect");
     RECT__SET = env->GetMethodID(clazz, "set", "(IIII)V");
 
@@ -173,6 +177,26 @@ void JavaBridge::Bitmap_setPixels(jobject bitmap, const void *pixels, size_t len
     AndroidBitmap_unlockPixels(m_env, bitmap);
 }
 
+void JavaBridge::Bitmap_setPixels(jobject bitmap, jint x, jint y, const void *pixels, jint width, jint height, jint pitch) const
+{
+    AndroidBitmapInfo info;
+    void *target = nullptr;
+
+    AndroidBitmap_getInfo(m_env, bitmap, &info);
+    AndroidBitmap_lockPixels(m_env, bitmap, &target);
+
+    const uint8_t *source = static_cast<const uint8_t *>(pixels);
+    uint8_t *destination = static_cast<uint8_t *>(target) + (y * info.stride) + x;
+
+    for (jint row = 0; row < height; row++) {
+        memcpy(destination, source, static_cast<size_t>(width));
+        source += pitch;
+        destination += info.stride;
+    }
+
+    AndroidBitmap_unlockPixels(m_env, bitmap);
+}
+
 jobject JavaBridge::Glyph_construct(jint glyphID) const
 {
     return m_env->NewObject(GLYPH, GLYPH__CONSTRUCTOR, glyphID);
@@ -188,59 +212,59 @@ jlong JavaBridge::Glyph_getNativeOutline(jobject glyph) const
     return m_env->GetLongField(glyph, GLYPH__NATIVE_OUTLINE);
 }
 
-void JavaBridge::Glyph_ownBitmap(jobject glyph, jobject bitmap, jint left, jint top) const
+jint JavaBridge::Glyph_getBitmapX(jobject glyph) const
 {
-    m_env->CallVoidMethod(glyph, GLYPH__OWN_BITMAP, bitmap, left, top);
+    return m_env->GetIntField(glyph, GLYPH__BITMAP_X);
 }
 
-void JavaBridge::Glyph_ownOutline(jobject glyph, jlong nativeOutline) const
+jint JavaBridge::Glyph_getBitmapY(jobject glyph) const
 {
-    m_env->CallVoidMethod(glyph, GLYPH__OWN_OUTLINE, nativeOutline);
+    return m_env->GetIntField(glyph, GLYPH__BITMAP_Y);
 }
 
-void JavaBridge::Glyph_ownPath(jobject glyph, jobject path) const
+void JavaBridge::Glyph_ownBitmap(jobject glyph, jobject bitmap, jint left, jint top) const
 {
-    m_env->CallVoidMethod(glyph, GLYPH__OWN_PATH, path);
+    m_env->CallVoidMethod(glyph, GLYPH__OWN_BITMAP, bitmap, left, top);
 }
 
-jint JavaBridge::InputStream_read(jobject inputStream, jbyteArray buffer, jint offset, jint length) const
+void JavaBridge::Glyph_ownAtlasMask(jobject glyph, jint width, jint height, jint left, jint top) const
 {
-    return m_env->CallIntMethod(inputStream, INPUT_STREAM__READ, buffer, offset, length);
+    m_env->CallVoidMethod(glyph, GLYPH__OWN_ATLAS_MASK, width, height, left, top);
 }
 
-jobject JavaBridge::NameTableRecord_construct(jint nameId, jint platformId, jint languageId, jint encodingId, jbyteArray bytes) const
+void JavaBridge::Glyph_ownCoverage(jobject glyph, jbyteArray coverage, jint width, jint height, jint left, jint top) const
 {
-    return m_env->NewObject(NAME_TABLE_RECORD, NAME_TABLE_RECORD__CONSTRUCTOR, nameId, platformId, languageId, encodingId, bytes);
+    m_env->CallVoidMethod(glyph, GLYPH__OWN_COVERAGE, coverage, width, height, left, top);
 }
 
-jobject JavaBridge::Path_construct() const
+void JavaBridge::Glyph_ownOutline(jobject glyph, jlong nativeOutline, jint byteCount) const
 {
-    return m_env->NewObject(PATH, PATH__CONSTRUCTOR);
+    m_env->CallVoidMethod(glyph, GLYPH__OWN_OUTLINE, nativeOutline, byteCount);
 }
 
-void JavaBridge::Path_close(jobject path) const
+void JavaBridge::Glyph_ownPath(jobject glyph, jobject glyphPath) const
 {
-    m_env->CallVoidMethod(path, PATH__CLOSE);
+    m_env->CallVoidMethod(glyph, GLYPH__OWN_PATH, glyphPath);
 }
 
-void JavaBridge::Path_cubicTo(jobject path, jfloat x1, jfloat y1, jfloat x2, jfloat y2, jfloat x3, jfloat y3) const
+jobject JavaBridge::GlyphAtlas_allocate(jobject atlas, jobject glyph, jint width, jint height) const
 {
-    m_env->CallVoidMethod(path, PATH__CUBIC_TO, x1, y1, x2, y2, x3, y3);
+    return m_env->CallObjectMethod(atlas, GLYPH_ATLAS__ALLOCATE, glyph, width, height);
 }
 
-void JavaBridge::Path_lineTo(jobject path, jfloat x, jfloat y) const
+jobject JavaBridge::GlyphPath_construct(jbyteArray verbs, jfloatArray points) const
 {
-    m_env->CallVoidMethod(path, PATH__LINE_TO, x, y);
+    return m_env->NewObject(GLYPH_PATH, GLYPH_PATH__CONSTRUCTOR, verbs, points);
 }
 
-void JavaBridge::Path_moveTo(jobject path, jfloat dx, jfloat dy) const
+jint JavaBridge::InputStream_read(jobject inputStream, jbyteArray buffer, jint offset, jint length) const
 {
-    m_env->CallVoidMethod(path, PATH__MOVE_TO, dx, dy);
+    return m_env->CallIntMethod(inputStream, INPUT_STREAM__READ, buffer, offset, length);
 }
 
-void JavaBridge::Path_quadTo(jobject path, jfloat x1, jfloat y1, jfloat x2, jfloat y2) const
+jobject JavaBridge::NameTableRecord_construct(jint nameId, jint platformId, jint languageId, jint encodingId, jbyteArray bytes) const
 {
-    m_env->CallVoidMethod(path, PATH__QUAD_TO, x1, y1, x2, y2);
+    return m_env->NewObject(NAME_TABLE_RECORD, NAME_TABLE_RECORD__CONSTRUCTOR, nameId, platformId, languageId, encodingId, bytes);
 }
 
 void JavaBridge::Rect_set(jobject rect, jint left, jint top, jint right, jint bottom) const
@@ -41,25 +41,27 @@ public:
 
     jobject Bitmap_create(jint width, jint height, BitmapConfig config) const;
     void Bitmap_setPixels(jobject bitmap, const void *pixels, size_t length) const;
+    void Bitmap_setPixels(jobject bitmap, jint x, jint y, const void *pixels, jint width, jint height, jint pitch) const;
 
     jobject Glyph_construct(jint glyphID) const;
     jint Glyph_getGlyphID(jobject glyph) const;
     jlong Glyph_getNativeOutline(jobject glyph) const;
+    jint Glyph_getBitmapX(jobject glyph) const;
+    jint Glyph_getBitmapY(jobject glyph) const;
     void Glyph_ownBitmap(jobject glyph, jobject bitmap, jint left, jint top) const;
-    void Glyph_ownOutline(jobject glyph, jlong nativeOutline) const;
-    void Glyph_ownPath(jobject glyph, jobject path) const;
+    void Glyph_ownAtlasMask(jobject glyph, jint width, jint height, jint left, jint top) const;
+    void Glyph_ownCoverage(jobject glyph, jbyteArray coverage, jint width, jint height, jint left, jint top) const;
+    void Glyph_ownOutline(jobject glyph, jlong nativeOutline, jint byteCount) const;
+    void Glyph_ownPath(jobject glyph, jobject glyphPath) const;
+
+    jobject GlyphAtlas_allocate(jobject atlas, jobject glyph, jint width, jint height) const;
+
+    jobject GlyphPath_construct(jbyteArray verbs, jfloatArray points) const;
 
     jint InputStream_read(jobject inputStream, jbyteArray buffer, jint offset, jint length) const;
 
     jobject NameTableRecord_construct(jint nameId, jint platformId, jint languageId, jint encodingId, jbyteArray bytes) const;
 
-    jobject Path_construct() const;
-    void Path_close(jobject path) const;
-    void Path_cubicTo(jobject path, jfloat x1, jfloat y1, jfloat x2, jfloat y2, jfloat x3, jfloat y3) const;
-    void Path_lineTo(jobject path, jfloat x, jfloat y) const;
-    void Path_moveTo(jobject path, jfloat dx, jfloat dy) const;
-    void Path_quadTo(jobject path, jfloat x1, jfloat y1, jfloat x2, jfloat y2) const;
-
     void Rect_set(jobject rect, jint left, jint top, jint right, jint bottom) const;
 
     jclass String_class() const;
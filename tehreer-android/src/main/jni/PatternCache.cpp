@@ -18,35 +18,206 @@ extern "C" {
 #include <SFPattern.h>
 }
 
+#include <cstddef>
+#include <cstdint>
+#include <list>
+#include <mutex>
+#include <unordered_map>
+#include <utility>
+#include <vector>
+
 #include "PatternCache.h"
 
+using namespace std;
 using namespace Tehreer;
 
+namespace {
+
+struct FeatureSet {
+    vector<uint32_t> featureTags;
+    vector<uint16_t> featureValues;
+
+    bool operator ==(const FeatureSet &other) const
+    {
+        return featureTags == other.featureTags
+            && featureValues == other.featureValues;
+    }
+};
+
+struct FeatureSetHash {
+    size_t operator()(const FeatureSet &featureSet) const
+    {
+        const size_t prime = 31;
+
+        size_t result = 1;
+        for (uint32_t tag : featureSet.featureTags) {
+            result = prime * result + hash<uint32_t>()(tag);
+        }
+        for (uint16_t value : featureSet.featureValues) {
+            result = prime * result + hash<uint16_t>()(value);
+        }
+
+        return result;
+    }
+};
+
+struct FeatureSetEntry {
+    uint32_t featureSetId;
+    list<const FeatureSet *>::iterator usage;
+};
+
+/*
+ * The interned feature sets are bounded as well. The ids are never reused, so a feature set which
+ * is interned again after its eviction simply gets a new id, and the patterns keyed by the old one
+ * age out of the pattern caches. The ids would only wrap after four billion distinct interns.
+ */
+const size_t MAX_FEATURE_SETS = 256;
+/* The estimated bookkeeping of a feature set in the map, in the usage list and in its vectors. */
+const size_t FEATURE_SET_OVERHEAD = 128;
+
+mutex featureSetMutex;
+unordered_map<FeatureSet, FeatureSetEntry, FeatureSetHash> featureSetIds;
+list<const FeatureSet *> featureSetUsage;
+uint32_t lastFeatureSetId = 0;
+size_t featureSetSize = 0;
+
+size_t featureSetByteCount(const FeatureSet &featureSet)
+{
+    return featureSet.featureTags.size() * sizeof(uint32_t)
+         + featureSet.featureValues.size() * sizeof(uint16_t)
+         + FEATURE_SET_OVERHEAD;
+}
+
+}
+
+const size_t PatternCache::DEFAULT_CAPACITY;
+
+atomic<size_t> PatternCache::s_capacity(PatternCache::DEFAULT_CAPACITY);
+atomic<uint64_t> PatternCache::s_hitCount(0);
+atomic<uint64_t> PatternCache::s_missCount(0);
+atomic<uint64_t> PatternCache::s_evictionCount(0);
+atomic<uint64_t> PatternCache::s_patternCount(0);
+
+uint32_t PatternCache::internFeatureSet(const vector<uint32_t> &featureTags, const vector<uint16_t> &featureValues)
+{
+    if (featureTags.empty()) {
+        return 0;
+    }
+
+    FeatureSet featureSet = { featureTags, featureValues };
+    lock_guard<mutex> lock(featureSetMutex);
+
+    auto pair = featureSetIds.find(featureSet);
+    if (pair != featureSetIds.end()) {
+        featureSetUsage.splice(featureSetUsage.begin(), featureSetUsage, pair->second.usage);
+        return pair->second.featureSetId;
+    }
+
+    if (featureSetIds.size() >= MAX_FEATURE_SETS) {
+        auto oldest = featureSetIds.find(*featureSetUsage.back());
+        featureSetSize -= featureSetByteCount(oldest->first);
+
+        featureSetUsage.pop_back();
+        featureSetIds.erase(oldest);
+    }
+
+    // Zero is reserved for the empty feature set.
+    if (++lastFeatureSetId == 0) {
+        lastFeatureSetId = 1;
+    }
+
+    auto inserted = featureSetIds.emplace(move(featureSet), FeatureSetEntry()).first;
+    featureSetUsage.push_front(&inserted->first);
+    inserted->second = { lastFeatureSetId, featureSetUsage.begin() };
+    featureSetSize += featureSetByteCount(inserted->first);
+
+    return lastFeatureSetId;
+}
+
+PatternStats PatternCache::stats()
+{
+    PatternStats stats;
+    stats.hitCount = s_hitCount.load();
+    stats.missCount = s_missCount.load();
+    stats.evictionCount = s_evictionCount.load();
+    stats.patternCount = s_patternCount.load();
+
+    featureSetMutex.lock();
+    stats.featureSetCount = featureSetIds.size();
+    stats.featureSetSize = featureSetSize;
+    featureSetMutex.unlock();
+
+    return stats;
+}
+
 PatternCache::PatternCache()
 {
 }
 
+PatternCache::~PatternCache()
+{
+    for (auto &pair : m_patterns) {
+        SFPatternRelease(pair.second.pattern);
+    }
+
+    s_patternCount -= m_patterns.size();
+}
+
+void PatternCache::evict(size_t capacity)
+{
+    while (m_patterns.size() > capacity) {
+        auto pair = m_patterns.find(m_usage.back());
+        SFPatternRelease(pair->second.pattern);
+
+        m_patterns.erase(pair);
+        m_usage.pop_back();
+
+        s_patternCount -= 1;
+        s_evictionCount += 1;
+    }
+}
+
 void PatternCache::put(const PatternKey &key, SFPatternRef pattern)
 {
-    m_mutex.lock();
+    lock_guard<mutex> lock(m_mutex);
 
-    m_patterns[key] = PatternValue(SFPatternRetain(pattern), &SFPatternRelease);
+    auto pair = m_patterns.find(key);
+    if (pair != m_patterns.end()) {
+        SFPatternRelease(pair->second.pattern);
+        pair->second.pattern = SFPatternRetain(pattern);
 
-    m_mutex.unlock();
+        m_usage.splice(m_usage.begin(), m_usage, pair->second.usage);
+        return;
+    }
+
+    // Make room for the new pattern first so that the capacity is never exceeded.
+    size_t capacity = s_capacity.load();
+    if (capacity == 0) {
+        return;
+    }
+    evict(capacity - 1);
+
+    m_usage.push_front(key);
+    m_patterns[key] = { SFPatternRetain(pattern), m_usage.begin() };
+
+    s_patternCount += 1;
 }
 
 SFPatternRef PatternCache::get(const PatternKey &key)
 {
     SFPatternRef pattern = nullptr;
-
-    m_mutex.lock();
+    lock_guard<mutex> lock(m_mutex);
 
     auto pair = m_patterns.find(key);
     if (pair != m_patterns.end()) {
-        pattern = pair->second.get();
-    }
+        // The pattern is retained so that it outlives an eviction by another thread.
+        pattern = SFPatternRetain(pair->second.pattern);
+        m_usage.splice(m_usage.begin(), m_usage, pair->second.usage);
 
-    m_mutex.unlock();
+        s_hitCount += 1;
+    } else {
+        s_missCount += 1;
+    }
 
     return pattern;
 }
@@ -13,7 +13,6 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 #ifndef _TEHREER__PATTERN_CACHE_H
 #define _TEHREER__PATTERN_CACHE_H
 
@@ -21,8 +20,10 @@ extern "C" {
 #include <SFPattern.h>
 }
 
-#include <functional>
-#include <memory>
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+#include <list>
 #include <mutex>
 #include <unordered_map>
 #include <vector>
@@ -32,50 +33,58 @@ namespace Tehreer {
 struct PatternKey {
     uint32_t scriptTag;
     uint32_t languageTag;
-    std::vector<uint32_t> featureTags;
-    std::vector<uint16_t> featureValues;
+    uint32_t featureSetId;
 
     PatternKey()
     {
         this->scriptTag = 0;
         this->languageTag = 0;
+        this->featureSetId = 0;
     }
 
-    PatternKey(uint32_t scriptTag, uint32_t languageTag)
+    PatternKey(uint32_t scriptTag, uint32_t languageTag, uint32_t featureSetId)
     {
         this->scriptTag = scriptTag;
         this->languageTag = languageTag;
-    }
-
-    PatternKey(uint32_t scriptTag, uint32_t languageTag,
-               const std::vector<uint32_t> &featureTags,
-               const std::vector<uint16_t> &featureValues)
-    {
-        this->scriptTag = scriptTag;
-        this->languageTag = languageTag;
-        this->featureTags = featureTags;
-        this->featureValues = featureValues;
+        this->featureSetId = featureSetId;
     }
 
     bool operator ==(const PatternKey &other) const
     {
         return scriptTag == other.scriptTag
             && languageTag == other.languageTag
-            && featureTags == other.featureTags
-            && featureValues == other.featureValues;
+            && featureSetId == other.featureSetId;
     }
 };
 
+struct PatternStats {
+    uint64_t hitCount;
+    uint64_t missCount;
+    uint64_t evictionCount;
+    uint64_t patternCount;
+    uint64_t featureSetCount;
+    uint64_t featureSetSize;
+};
+
 class PatternCache {
 public:
+    static const size_t DEFAULT_CAPACITY = 32;
+
+    static uint32_t internFeatureSet(const std::vector<uint32_t> &featureTags,
+                                     const std::vector<uint16_t> &featureValues);
+
+    static size_t capacity() { return s_capacity.load(); }
+    static void setCapacity(size_t capacity) { s_capacity.store(capacity); }
+
+    static PatternStats stats();
+
     PatternCache();
+    ~PatternCache();
 
     void put(const PatternKey &key, SFPatternRef pattern);
     SFPatternRef get(const PatternKey &key);
 
 private:
-    typedef std::unique_ptr<_SFPattern, std::function<void (SFPatternRef)>> PatternValue;
-
     struct PatternHash {
         size_t operator()(const PatternKey &key) const
         {
@@ -84,20 +93,28 @@ private:
             size_t result = 1;
             result = prime * result + std::hash<uint32_t>()(key.scriptTag);
             result = prime * result + std::hash<uint32_t>()(key.languageTag);
-
-            for (uint32_t tag : key.featureTags) {
-                result = prime * result + std::hash<uint32_t>()(tag);
-            }
-            for (uint16_t value : key.featureValues) {
-                result = prime * result + std::hash<uint16_t>()(value);
-            }
+            result = prime * result + std::hash<uint32_t>()(key.featureSetId);
 
             return result;
         }
     };
 
+    struct PatternEntry {
+        SFPatternRef pattern;
+        std::list<PatternKey>::iterator usage;
+    };
+
+    static std::atomic<size_t> s_capacity;
+    static std::atomic<uint64_t> s_hitCount;
+    static std::atomic<uint64_t> s_missCount;
+    static std::atomic<uint64_t> s_evictionCount;
+    static std::atomic<uint64_t> s_patternCount;
+
     std::mutex m_mutex;
-    std::unordered_map<PatternKey, PatternValue, PatternHash> m_patterns;
+    std::list<PatternKey> m_usage;
+    std::unordered_map<PatternKey, PatternEntry, PatternHash> m_patterns;
+
+    void evict(size_t capacity);
 };
 
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <algorithm>
+#include <cstddef>
+#include <cstdint>
+#include <jni.h>
+
+#if defined(__ARM_NEON__) || defined(__aarch64__)
+#include <arm_neon.h>
+#define TEHREER_NEON
+#endif
+
+#include "JavaBridge.h"
+#include "PixelCompositor.h"
+
+using namespace Tehreer;
+
+static const jint FORMAT_ALPHA_8 = 0;
+static const jint PLACEMENT_SIZE = 4;
+
+static inline uint32_t div255(uint32_t value)
+{
+    value += 128;
+    return (value + (value >> 8)) >> 8;
+}
+
+#ifdef TEHREER_NEON
+
+static inline uint8x8_t div255(uint16x8_t value)
+{
+    // Same rounding as the scalar version: (v + ((v + 128) >> 8) + 128) >> 8.
+    return vraddhn_u16(value, vrshrq_n_u16(value, 8));
+}
+
+#endif
+
+static void blendCoverageRow(uint8_t *target, const uint8_t *mask, jint count, uint8_t alpha)
+{
+    jint index = 0;
+
+#ifdef TEHREER_NEON
+    uint8x8_t alphaVector = vdup_n_u8(alpha);
+
+    for (; index + 8 <= count; index += 8) {
+        uint8x8_t coverage = div255(vmull_u8(vld1_u8(mask + index), alphaVector));
+        uint8x8_t pixels = vld1_u8(target + index);
+        uint8x8_t added = div255(vmull_u8(coverage, vmvn_u8(pixels)));
+
+        vst1_u8(target + index, vadd_u8(pixels, added));
+    }
+#endif
+
+    for (; index < count; index++) {
+        uint32_t coverage = div255(mask[index] * alpha);
+        uint32_t pixel = target[index];
+
+        target[index] = static_cast<uint8_t>(pixel + div255(coverage * (255 - pixel)));
+    }
+}
+
+static void blendColorRow(uint8_t *target, const uint8_t *mask, jint count, const uint8_t *color)
+{
+    jint index = 0;
+
+#ifdef TEHREER_NEON
+    for (; index + 8 <= count; index += 8) {
+        uint8x8_t coverage = vld1_u8(mask + index);
+        uint8x8x4_t pixels = vld4_u8(target + index * 4);
+        uint8x8_t inverse = vmvn_u8(div255(vmull_u8(coverage, vdup_n_u8(color[3]))));
+
+        for (int channel = 0; channel < 4; channel++) {
+            uint8x8_t source = div255(vmull_u8(coverage, vdup_n_u8(color[channel])));
+            uint8x8_t remaining = div255(vmull_u8(pixels.val[channel], inverse));
+
+            pixels.val[channel] = vadd_u8(source, remaining);
+        }
+
+        vst4_u8(target + index * 4, pixels);
+    }
+#endif
+
+    for (; index < count; index++) {
+        uint32_t coverage = mask[index];
+        uint32_t inverse = 255 - div255(coverage * color[3]);
+        uint8_t *pixel = target + index * 4;
+
+        for (int channel = 0; channel < 4; channel++) {
+            uint32_t source = div255(coverage * color[channel]);
+            pixel[channel] = static_cast<uint8_t>(source + div255(pixel[channel] * inverse));
+        }
+    }
+}
+
+static void compositeMasks(JNIEnv *env, jobject obj, jobject buffer, jint format, jint rowBytes,
+    jint clipLeft, jint clipTop, jint clipRight, jint clipBottom,
+    jobjectArray masks, jintArray placements, jint count, jint color)
+{
+    uint8_t *pixels = static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+    if (!pixels) {
+        return;
+    }
+
+    uint32_t argb = static_cast<uint32_t>(color);
+    uint8_t alpha = static_cast<uint8_t>(argb >> 24);
+    // Premultiplied color in the byte order of the pixels.
+    uint8_t premultiplied[4] = {
+        static_cast<uint8_t>(div255(((argb >> 16) & 0xFF) * alpha)),
+        static_cast<uint8_t>(div255(((argb >> 8) & 0xFF) * alpha)),
+        static_cast<uint8_t>(div255((argb & 0xFF) * alpha)),
+        alpha
+    };
+    size_t pixelSize = (format == FORMAT_ALPHA_8 ? 1 : 4);
+
+    // The masks are fetched through JNI, so the placements cannot be accessed critically.
+    jint *values = env->GetIntArrayElements(placements, nullptr);
+
+    for (jint i = 0; i < count; i++) {
+        const jint *placement = values + (i * PLACEMENT_SIZE);
+        jint maskWidth = placement[0];
+        jint left = placement[2];
+        jint top = placement[3];
+        jint right = left + maskWidth;
+        jint bottom = top + placement[1];
+
+        jint startX = std::max(left, clipLeft);
+        jint startY = std::max(top, clipTop);
+        jint endX = std::min(right, clipRight);
+        jint endY = std::min(bottom, clipBottom);
+        if (startX >= endX || startY >= endY) {
+            continue;
+        }
+
+        jbyteArray mask = static_cast<jbyteArray>(env->GetObjectArrayElement(masks, i));
+        if (!mask) {
+            continue;
+        }
+
+        void *maskPixels = env->GetPrimitiveArrayCritical(mask, nullptr);
+        if (maskPixels) {
+            jint width = endX - startX;
+            const uint8_t *maskRow = static_cast<const uint8_t *>(maskPixels)
+                                   + (startY - top) * maskWidth
+                                   + (startX - left);
+            uint8_t *targetRow = pixels + (startY * static_cast<size_t>(rowBytes)) + (startX * pixelSize);
+
+            for (jint y = startY; y < endY; y++) {
+                if (format == FORMAT_ALPHA_8) {
+                    blendCoverageRow(targetRow, maskRow, width, alpha);
+                } else {
+                    blendColorRow(targetRow, maskRow, width, premultiplied);
+                }
+
+                maskRow += maskWidth;
+                targetRow += rowBytes;
+            }
+
+            env->ReleasePrimitiveArrayCritical(mask, maskPixels, JNI_ABORT);
+        }
+
+        env->DeleteLocalRef(mask);
+    }
+
+    env->ReleaseIntArrayElements(placements, values, JNI_ABORT);
+}
+
+static JNINativeMethod JNI_METHODS[] = {
+    { "nCompositeMasks", "(Ljava/nio/ByteBuffer;IIIIII[[B[III)V", (void *)compositeMasks },
+};
+
+jint register_com_mta_tehreer_graphics_PixelCompositor(JNIEnv *env)
+{
+    return JavaBridge::registerClass(env, "com/mta/tehreer/graphics/PixelCompositor", JNI_METHODS, sizeof(JNI_METHODS) / sizeof(JNI_METHODS[0]));
+}
@@ -28,6 +28,7 @@ extern "C" {
 #include "JavaBridge.h"
 #include "PatternCache.h"
 #include "ShapingEngine.h"
+#include "ShapingProfile.h"
 
 using namespace std;
 using namespace Tehreer;
@@ -47,6 +48,8 @@ ShapingEngine::ShapingEngine()
     , m_typeSize(16.0)
     , m_scriptTag(SFTagMake('D', 'F', 'L', 'T'))
     , m_languageTag(SFTagMake('d', 'f', 'l', 't'))
+    , m_featureSetId(0)
+    , m_profile(nullptr)
     , m_shapingOrder(ShapingOrder::FORWARD)
     , m_writingDirection(WritingDirection::LEFT_TO_RIGHT)
 {
@@ -62,6 +65,22 @@ void ShapingEngine::setOpenTypeFeatures(const vector<uint32_t> &featureTags, con
 {
     m_featureTags = featureTags;
     m_featureValues = featureValues;
+    m_featureSetId = PatternCache::internFeatureSet(featureTags, featureValues);
+    m_profile = nullptr;
+}
+
+void ShapingEngine::setShapingProfile(ShapingProfile *shapingProfile)
+{
+    if (shapingProfile) {
+        m_scriptTag = shapingProfile->scriptTag();
+        m_languageTag = shapingProfile->languageTag();
+        m_featureTags = shapingProfile->featureTags();
+        m_featureValues = shapingProfile->featureValues();
+        m_featureSetId = shapingProfile->featureSetId();
+        setWritingDirection(shapingProfile->writingDirection());
+    }
+
+    m_profile = shapingProfile;
 }
 
 void ShapingEngine::setShapingOrder(ShapingOrder shapingOrder)
@@ -78,19 +97,33 @@ void ShapingEngine::setWritingDirection(WritingDirection writingDirection)
 
 void ShapingEngine::shapeText(ShapingResult &shapingResult, const jchar *charArray, jint charStart, jint charEnd)
 {
-    PatternCache &cache = m_typeface->patternCache();
-    PatternKey key(m_scriptTag, m_languageTag, m_featureTags, m_featureValues);
-    SFPatternRef pattern = cache.get(key);
+    SFFontRef sfFont = m_typeface->sfFont();
+    SFPatternRef pattern = nullptr;
 
-    if (!pattern) {
-        SFSchemeSetFont(m_sfScheme, m_typeface->sfFont());
-        SFSchemeSetScriptTag(m_sfScheme, m_scriptTag);
-        SFSchemeSetLanguageTag(m_sfScheme, m_languageTag);
-        SFSchemeSetFeatureValues(m_sfScheme, m_featureTags.data(), m_featureValues.data(), m_featureTags.size());
+    if (m_profile) {
+        pattern = m_profile->getPattern(sfFont);
+    }
 
-        pattern = SFSchemeBuildPattern(m_sfScheme);
-        cache.put(key, pattern);
-        SFPatternRelease(pattern);
+    if (!pattern) {
+        PatternCache &cache = m_typeface->patternCache();
+        PatternKey key(m_scriptTag, m_languageTag, m_featureSetId);
+        pattern = cache.get(key);
+
+        if (!pattern) {
+            SFSchemeSetFont(m_sfScheme, sfFont);
+            SFSchemeSetScriptTag(m_sfScheme, m_scriptTag);
+            SFSchemeSetLanguageTag(m_sfScheme, m_languageTag);
+            SFSchemeSetFeatureValues(m_sfScheme, m_featureTags.data(), m_featureValues.data(), m_featureTags.size());
+
+            pattern = SFSchemeBuildPattern(m_sfScheme);
+            if (pattern) {
+                cache.put(key, pattern);
+            }
+        }
+
+        if (pattern && m_profile) {
+            m_profile->pinPattern(sfFont, pattern);
+        }
     }
 
     if (pattern) {
@@ -101,6 +134,7 @@ void ShapingEngine::shapeText(ShapingResult &shapingResult, const jchar *charArr
         SFArtistSetPattern(m_sfArtist, pattern);
         SFArtistSetString(m_sfArtist, SFStringEncodingUTF16, stringBuffer, stringLength);
         SFArtistFillAlbum(m_sfArtist, shapingResult.sfAlbum());
+        SFPatternRelease(pattern);
     }
 
     jfloat sizeByEm = m_typeSize / m_typeface->ftFace()->units_per_EM;
@@ -117,6 +151,31 @@ static jint getScriptDefaultDirection(JNIEnv *env, jobject obj, jint scriptTag)
     return static_cast<jint>(defaultDirection);
 }
 
+static jint getPatternCacheCapacity(JNIEnv *env, jobject obj)
+{
+    return static_cast<jint>(PatternCache::capacity());
+}
+
+static void setPatternCacheCapacity(JNIEnv *env, jobject obj, jint capacity)
+{
+    PatternCache::setCapacity(static_cast<size_t>(capacity));
+}
+
+static void getPatternCacheStats(JNIEnv *env, jobject obj, jlongArray statsArray)
+{
+    PatternStats stats = PatternCache::stats();
+    jlong values[] = {
+        static_cast<jlong>(stats.hitCount),
+        static_cast<jlong>(stats.missCount),
+        static_cast<jlong>(stats.evictionCount),
+        static_cast<jlong>(stats.patternCount),
+        static_cast<jlong>(stats.featureSetCount),
+        static_cast<jlong>(stats.featureSetSize),
+    };
+
+    env->SetLongArrayRegion(statsArray, 0, sizeof(values) / sizeof(values[0]), values);
+}
+
 static jlong create(JNIEnv *env, jobject obj)
 {
     ShapingEngine *shapingEngine = new ShapingEngine();
@@ -186,6 +245,14 @@ static void setLanguageTag(JNIEnv *env, jobject obj, jlong engineHandle, jint la
     shapingEngine->setLanguageTag(inputTag);
 }
 
+static void setShapingProfile(JNIEnv *env, jobject obj, jlong engineHandle, jlong profileHandle)
+{
+    ShapingEngine *shapingEngine = reinterpret_cast<ShapingEngine *>(engineHandle);
+    ShapingProfile *shapingProfile = reinterpret_cast<ShapingProfile *>(profileHandle);
+
+    shapingEngine->setShapingProfile(shapingProfile);
+}
+
 static void setOpenTypeFeatures(JNIEnv *env, jobject obj, jlong engineHandle, jintArray tagsArray, jshortArray valuesArray)
 {
     ShapingEngine *shapingEngine = reinterpret_cast<ShapingEngine *>(engineHandle);
@@ -250,10 +317,158 @@ static void shapeText(JNIEnv *env, jobject obj, jlong engineHandle, jlong result
     env->ReleaseStringChars(text, charArray);
 }
 
+static void shapeBatch(JNIEnv *env, jobject obj, jlong engineHandle, jstring text,
+    jobjectArray typefaces, jfloatArray typeSizes, jintArray params, jlongArray profiles, jint requestCount,
+    jintArray glyphStarts, jintArray clusterMap, jfloatArray caretEdges, jobjectArray glyphArrays)
+{
+    const jint PARAM_SIZE = 6;
+
+    ShapingEngine *shapingEngine = reinterpret_cast<ShapingEngine *>(engineHandle);
+    JavaBridge bridge(env);
+
+    Typeface *savedTypeface = const_cast<Typeface *>(shapingEngine->typeface());
+    jfloat savedTypeSize = shapingEngine->typeSize();
+    uint32_t savedScriptTag = shapingEngine->scriptTag();
+    uint32_t savedLanguageTag = shapingEngine->languageTag();
+    WritingDirection savedDirection = shapingEngine->writingDirection();
+    ShapingOrder savedOrder = shapingEngine->shapingOrder();
+    ShapingProfile *savedProfile = shapingEngine->shapingProfile();
+    const vector<uint32_t> savedFeatureTags = shapingEngine->featureTags();
+    const vector<uint16_t> savedFeatureValues = shapingEngine->featureValues();
+    bool hasProfileFeatures = false;
+
+    vector<jfloat> sizeValues(requestCount);
+    vector<jint> paramValues(requestCount * PARAM_SIZE);
+    vector<jlong> profileValues(requestCount);
+    env->GetFloatArrayRegion(typeSizes, 0, requestCount, sizeValues.data());
+    env->GetIntArrayRegion(params, 0, requestCount * PARAM_SIZE, paramValues.data());
+    env->GetLongArrayRegion(profiles, 0, requestCount, profileValues.data());
+
+    vector<jint> startValues(requestCount + 1);
+    vector<jint> clusterValues;
+    vector<jfloat> edgeValues;
+    vector<jint> glyphIdValues;
+    vector<jfloat> glyphOffsetValues;
+    vector<jfloat> glyphAdvanceValues;
+
+    const jchar *charArray = env->GetStringChars(text, nullptr);
+    jobject lastTypeface = nullptr;
+
+    for (jint i = 0; i < requestCount; i++) {
+        const jint *requestParams = &paramValues[i * PARAM_SIZE];
+        jobject jtypeface = env->GetObjectArrayElement(typefaces, i);
+
+        if (!lastTypeface || !env->IsSameObject(jtypeface, lastTypeface)) {
+            jlong typefaceHandle = bridge.Typeface_getNativeTypeface(jtypeface);
+            shapingEngine->setTypeface(reinterpret_cast<Typeface *>(typefaceHandle));
+        }
+        if (lastTypeface) {
+            env->DeleteLocalRef(lastTypeface);
+        }
+        lastTypeface = jtypeface;
+
+        shapingEngine->setTypeSize(sizeValues[i]);
+        shapingEngine->setScriptTag(static_cast<uint32_t>(requestParams[0]));
+        shapingEngine->setLanguageTag(static_cast<uint32_t>(requestParams[1]));
+        shapingEngine->setWritingDirection(static_cast<WritingDirection>(requestParams[2]));
+        shapingEngine->setShapingOrder(static_cast<ShapingOrder>(requestParams[3]));
+
+        // A request with a profile brings its own features, which are dropped again for the
+        // requests without one.
+        ShapingProfile *shapingProfile = reinterpret_cast<ShapingProfile *>(profileValues[i]);
+        if (shapingProfile) {
+            shapingEngine->setShapingProfile(shapingProfile);
+            hasProfileFeatures = true;
+        } else if (hasProfileFeatures) {
+            shapingEngine->setOpenTypeFeatures(savedFeatureTags, savedFeatureValues);
+            hasProfileFeatures = false;
+        }
+
+        jint charStart = requestParams[4];
+        jint charEnd = requestParams[5];
+        jint charCount = charEnd - charStart;
+
+        // A fresh result keeps a request whose pattern could not be built from reporting the
+        // glyphs of the previous one.
+        ShapingResult shapingResult;
+        shapingEngine->shapeText(shapingResult, charArray, charStart, charEnd);
+
+        SFAlbumRef album = shapingResult.sfAlbum();
+        SFUInteger glyphCount = SFAlbumGetGlyphCount(album);
+        jfloat sizeByEm = shapingResult.sizeByEm();
+
+        const SFGlyphID *glyphIDsPtr = SFAlbumGetGlyphIDsPtr(album);
+        const SFPoint *glyphOffsetsPtr = SFAlbumGetGlyphOffsetsPtr(album);
+        const SFInt32 *glyphAdvancesPtr = SFAlbumGetGlyphAdvancesPtr(album);
+        const SFUInteger *charToGlyphMapPtr = SFAlbumGetCodeunitToGlyphMapPtr(album);
+
+        for (SFUInteger j = 0; j < glyphCount; j++) {
+            glyphIdValues.push_back(static_cast<jint>(glyphIDsPtr[j]));
+            glyphOffsetValues.push_back(glyphOffsetsPtr[j].x * sizeByEm);
+            glyphOffsetValues.push_back(glyphOffsetsPtr[j].y * sizeByEm);
+            glyphAdvanceValues.push_back(glyphAdvancesPtr[j] * sizeByEm);
+        }
+
+        for (jint j = 0; j < charCount; j++) {
+            clusterValues.push_back(charToGlyphMapPtr ? static_cast<jint>(charToGlyphMapPtr[j]) : 0);
+        }
+
+        size_t edgeStart = edgeValues.size();
+        edgeValues.resize(edgeStart + charCount + 1);
+        SFAlbumGetCaretEdges(album, nullptr, sizeByEm, &edgeValues[edgeStart]);
+
+        startValues[i + 1] = static_cast<jint>(glyphIdValues.size());
+    }
+
+    if (lastTypeface) {
+        env->DeleteLocalRef(lastTypeface);
+    }
+    env->ReleaseStringChars(text, charArray);
+
+    shapingEngine->setTypeface(savedTypeface);
+    shapingEngine->setTypeSize(savedTypeSize);
+    shapingEngine->setScriptTag(savedScriptTag);
+    shapingEngine->setLanguageTag(savedLanguageTag);
+
+    if (hasProfileFeatures) {
+        shapingEngine->setOpenTypeFeatures(savedFeatureTags, savedFeatureValues);
+    }
+    if (savedProfile) {
+        shapingEngine->setShapingProfile(savedProfile);
+    }
+
+    shapingEngine->setWritingDirection(savedDirection);
+    shapingEngine->setShapingOrder(savedOrder);
+
+    jsize totalGlyphs = static_cast<jsize>(glyphIdValues.size());
+    jintArray glyphIds = env->NewIntArray(totalGlyphs);
+    jfloatArray glyphOffsets = env->NewFloatArray(totalGlyphs * 2);
+    jfloatArray glyphAdvances = env->NewFloatArray(totalGlyphs);
+
+    if (!glyphIds || !glyphOffsets || !glyphAdvances) {
+        // An OutOfMemoryError is pending.
+        return;
+    }
+
+    env->SetIntArrayRegion(glyphIds, 0, totalGlyphs, glyphIdValues.data());
+    env->SetFloatArrayRegion(glyphOffsets, 0, totalGlyphs * 2, glyphOffsetValues.data());
+    env->SetFloatArrayRegion(glyphAdvances, 0, totalGlyphs, glyphAdvanceValues.data());
+    env->SetIntArrayRegion(glyphStarts, 0, requestCount + 1, startValues.data());
+    env->SetIntArrayRegion(clusterMap, 0, static_cast<jsize>(clusterValues.size()), clusterValues.data());
+    env->SetFloatArrayRegion(caretEdges, 0, static_cast<jsize>(edgeValues.size()), edgeValues.data());
+
+    env->SetObjectArrayElement(glyphArrays, 0, glyphIds);
+    env->SetObjectArrayElement(glyphArrays, 1, glyphOffsets);
+    env->SetObjectArrayElement(glyphArrays, 2, glyphAdvances);
+}
+
 static JNINativeMethod JNI_METHODS[] = {
     { "nCreate", "()J", (void *)create },
     { "nDispose", "(J)V", (void *)dispose },
     { "nGetScriptDefaultDirection", "(I)I", (void *)getScriptDefaultDirection },
+    { "nGetPatternCacheCapacity", "()I", (void *)getPatternCacheCapacity },
+    { "nSetPatternCacheCapacity", "(I)V", (void *)setPatternCacheCapacity },
+    { "nGetPatternCacheStats", "([J)V", (void *)getPatternCacheStats },
     { "nSetTypeface", "(JLcom/mta/tehreer/graphics/Typeface;)V", (void *)setTypeface },
     { "nGetTypeSize", "(J)F", (void *)getTypeSize },
     { "nSetTypeSize", "(JF)V", (void *)setTypeSize },
@@ -262,11 +477,13 @@ static JNINativeMethod JNI_METHODS[] = {
     { "nGetLanguageTag", "(J)I", (void *)getLanguageTag },
     { "nSetLanguageTag", "(JI)V", (void *)setLanguageTag },
     { "nSetOpenTypeFeatures", "(J[I[S)V", (void *)setOpenTypeFeatures },
+    { "nSetShapingProfile", "(JJ)V", (void *)setShapingProfile },
     { "nGetWritingDirection", "(J)I", (void *)getWritingDirection },
     { "nSetWritingDirection", "(JI)V", (void *)setWritingDirection },
     { "nGetShapingOrder", "(J)I", (void *)getShapingOrder },
     { "nSetShapingOrder", "(JI)V", (void *)setShapingOrder },
     { "nShapeText", "(JJLjava/lang/String;II)V", (void *)shapeText },
+    { "nShapeBatch", "(JLjava/lang/String;[Lcom/mta/tehreer/graphics/Typeface;[F[I[JI[I[I[F[Ljava/lang/Object;)V", (void *)shapeBatch },
 };
 
 jint register_com_mta_tehreer_sfnt_ShapingEngine(JNIEnv *env)
@@ -35,6 +35,8 @@ class OpenTypeScheme;
 
 namespace Tehreer {
 
+class ShapingProfile;
+
 enum ShapingOrder : uint32_t {
     FORWARD = SFTextModeForward,
     BACKWARD = SFTextModeBackward,
@@ -59,13 +61,18 @@ public:
     void setTypeSize(jfloat typeSize) { m_typeSize = typeSize; }
 
     uint32_t scriptTag() const { return m_scriptTag; }
-    void setScriptTag(uint32_t scriptTag) { m_scriptTag = scriptTag; }
+    void setScriptTag(uint32_t scriptTag) { m_scriptTag = scriptTag; m_profile = nullptr; }
 
     uint32_t languageTag() const { return m_languageTag; }
-    void setLanguageTag(uint32_t languageTag) { m_languageTag = languageTag; }
+    void setLanguageTag(uint32_t languageTag) { m_languageTag = languageTag; m_profile = nullptr; }
 
+    const std::vector<uint32_t> &featureTags() const { return m_featureTags; }
+    const std::vector<uint16_t> &featureValues() const { return m_featureValues; }
     void setOpenTypeFeatures(const std::vector<uint32_t> &featureTags, const std::vector<uint16_t> &featureValues);
 
+    ShapingProfile *shapingProfile() const { return m_profile; }
+    void setShapingProfile(ShapingProfile *shapingProfile);
+
     ShapingOrder shapingOrder() const { return m_shapingOrder; }
     void setShapingOrder(ShapingOrder shapingOrder);
 
@@ -83,6 +90,8 @@ private:
     uint32_t m_languageTag;
     std::vector<uint32_t> m_featureTags;
     std::vector<uint16_t> m_featureValues;
+    uint32_t m_featureSetId;
+    ShapingProfile *m_profile;
     ShapingOrder m_shapingOrder;
     WritingDirection m_writingDirection;
 };
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+extern "C" {
+#include <SFFont.h>
+#include <SFPattern.h>
+}
+
+#include <cstdint>
+#include <jni.h>
+#include <mutex>
+#include <vector>
+
+#include "JavaBridge.h"
+#include "PatternCache.h"
+#include "ShapingEngine.h"
+#include "ShapingProfile.h"
+
+using namespace std;
+using namespace Tehreer;
+
+ShapingProfile::ShapingProfile(uint32_t scriptTag, uint32_t languageTag,
+    const vector<uint32_t> &featureTags, const vector<uint16_t> &featureValues,
+    WritingDirection writingDirection)
+    : m_scriptTag(scriptTag)
+    , m_languageTag(languageTag)
+    , m_featureTags(featureTags)
+    , m_featureValues(featureValues)
+    , m_featureSetId(PatternCache::internFeatureSet(featureTags, featureValues))
+    , m_writingDirection(writingDirection)
+{
+}
+
+ShapingProfile::~ShapingProfile()
+{
+    for (auto &pair : m_patterns) {
+        SFPatternRelease(pair.second);
+        SFFontRelease(pair.first);
+    }
+}
+
+SFPatternRef ShapingProfile::getPattern(SFFontRef font)
+{
+    SFPatternRef pattern = nullptr;
+    lock_guard<mutex> lock(m_mutex);
+
+    auto pair = m_patterns.find(font);
+    if (pair != m_patterns.end()) {
+        pattern = SFPatternRetain(pair->second);
+    }
+
+    return pattern;
+}
+
+void ShapingProfile::pinPattern(SFFontRef font, SFPatternRef pattern)
+{
+    lock_guard<mutex> lock(m_mutex);
+
+    // The font is retained along with the pattern so that its address cannot be reused by another
+    // font while the pin exists.
+    if (m_patterns.find(font) == m_patterns.end()) {
+        m_patterns[SFFontRetain(font)] = SFPatternRetain(pattern);
+    }
+}
+
+static jlong create(JNIEnv *env, jobject obj, jint scriptTag, jint languageTag,
+    jintArray tagsArray, jshortArray valuesArray, jint writingDirection)
+{
+    jint featureCount = env->GetArrayLength(tagsArray);
+    vector<uint32_t> featureTags(featureCount);
+    vector<uint16_t> featureValues(featureCount);
+
+    env->GetIntArrayRegion(tagsArray, 0, featureCount, reinterpret_cast<jint *>(featureTags.data()));
+    env->GetShortArrayRegion(valuesArray, 0, featureCount, reinterpret_cast<jshort *>(featureValues.data()));
+
+    ShapingProfile *shapingProfile = new ShapingProfile(static_cast<uint32_t>(scriptTag),
+                                                        static_cast<uint32_t>(languageTag),
+                                                        featureTags, featureValues,
+                                                        static_cast<WritingDirection>(writingDirection));
+    return reinterpret_cast<jlong>(shapingProfile);
+}
+
+static void dispose(JNIEnv *env, jobject obj, jlong profileHandle)
+{
+    ShapingProfile *shapingProfile = reinterpret_cast<ShapingProfile *>(profileHandle);
+    delete shapingProfile;
+}
+
+static JNINativeMethod JNI_METHODS[] = {
+    { "nCreate", "(II[I[SI)J", (void *)create },
+    { "nDispose", "(J)V", (void *)dispose },
+};
+
+jint register_com_mta_tehreer_sfnt_ShapingProfile(JNIEnv *env)
+{
+    return JavaBridge::registerClass(env, "com/mta/tehreer/sfnt/ShapingProfile", JNI_METHODS, sizeof(JNI_METHODS) / sizeof(JNI_METHODS[0]));
+}
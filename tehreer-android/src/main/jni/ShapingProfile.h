@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#ifndef _TEHREER__SHAPING_PROFILE_H
+#define _TEHREER__SHAPING_PROFILE_H
+
+extern "C" {
+#include <SFFont.h>
+#include <SFPattern.h>
+}
+
+#include <cstdint>
+#include <jni.h>
+#include <mutex>
+#include <unordered_map>
+#include <vector>
+
+#include "ShapingEngine.h"
+
+namespace Tehreer {
+
+class ShapingProfile {
+public:
+    ShapingProfile(uint32_t scriptTag, uint32_t languageTag,
+                   const std::vector<uint32_t> &featureTags,
+                   const std::vector<uint16_t> &featureValues,
+                   WritingDirection writingDirection);
+    ~ShapingProfile();
+
+    uint32_t scriptTag() const { return m_scriptTag; }
+    uint32_t languageTag() const { return m_languageTag; }
+    const std::vector<uint32_t> &featureTags() const { return m_featureTags; }
+    const std::vector<uint16_t> &featureValues() const { return m_featureValues; }
+    uint32_t featureSetId() const { return m_featureSetId; }
+    WritingDirection writingDirection() const { return m_writingDirection; }
+
+    SFPatternRef getPattern(SFFontRef font);
+    void pinPattern(SFFontRef font, SFPatternRef pattern);
+
+private:
+    uint32_t m_scriptTag;
+    uint32_t m_languageTag;
+    std::vector<uint32_t> m_featureTags;
+    std::vector<uint16_t> m_featureValues;
+    uint32_t m_featureSetId;
+    WritingDirection m_writingDirection;
+
+    std::mutex m_mutex;
+    std::unordered_map<SFFontRef, SFPatternRef> m_patterns;
+};
+
+}
+
+jint register_com_mta_tehreer_sfnt_ShapingProfile(JNIEnv *env);
+
+#endif
@@ -167,6 +167,53 @@ static void getCaretEdges(JNIEnv *env, jobject obj, jlong resultHandle,
     env->ReleasePrimitiveArrayCritical(caretEdges, caretEdgesBuffer, 0);
 }
 
+static void exportTo(JNIEnv *env, jobject obj, jlong resultHandle,
+    jintArray glyphIds, jfloatArray glyphOffsets, jfloatArray glyphAdvances,
+    jintArray clusterMap, jfloatArray caretEdges)
+{
+    ShapingResult *shapingResult = reinterpret_cast<ShapingResult *>(resultHandle);
+    SFAlbumRef baseAlbum = shapingResult->sfAlbum();
+    SFUInteger glyphCount = SFAlbumGetGlyphCount(baseAlbum);
+    jint charCount = shapingResult->charEnd() - shapingResult->charStart();
+    jfloat sizeByEm = shapingResult->sizeByEm();
+
+    const SFGlyphID *glyphIDsPtr = SFAlbumGetGlyphIDsPtr(baseAlbum);
+    const SFPoint *glyphOffsetsPtr = SFAlbumGetGlyphOffsetsPtr(baseAlbum);
+    const SFInt32 *glyphAdvancesPtr = SFAlbumGetGlyphAdvancesPtr(baseAlbum);
+    const SFUInteger *charToGlyphMapPtr = SFAlbumGetCodeunitToGlyphMapPtr(baseAlbum);
+
+    void *glyphIdsBuffer = env->GetPrimitiveArrayCritical(glyphIds, nullptr);
+    void *glyphOffsetsBuffer = env->GetPrimitiveArrayCritical(glyphOffsets, nullptr);
+    void *glyphAdvancesBuffer = env->GetPrimitiveArrayCritical(glyphAdvances, nullptr);
+    void *clusterMapBuffer = env->GetPrimitiveArrayCritical(clusterMap, nullptr);
+    void *caretEdgesBuffer = env->GetPrimitiveArrayCritical(caretEdges, nullptr);
+
+    jint *glyphIdValues = static_cast<jint *>(glyphIdsBuffer);
+    jfloat *glyphOffsetValues = static_cast<jfloat *>(glyphOffsetsBuffer);
+    jfloat *glyphAdvanceValues = static_cast<jfloat *>(glyphAdvancesBuffer);
+    jint *clusterMapValues = static_cast<jint *>(clusterMapBuffer);
+    SFFloat *caretEdgeValues = static_cast<SFFloat *>(caretEdgesBuffer);
+
+    for (SFUInteger i = 0; i < glyphCount; i++) {
+        glyphIdValues[i] = static_cast<jint>(glyphIDsPtr[i]);
+        glyphOffsetValues[i * 2 + 0] = glyphOffsetsPtr[i].x * sizeByEm;
+        glyphOffsetValues[i * 2 + 1] = glyphOffsetsPtr[i].y * sizeByEm;
+        glyphAdvanceValues[i] = glyphAdvancesPtr[i] * sizeByEm;
+    }
+
+    for (jint i = 0; i < charCount; i++) {
+        clusterMapValues[i] = (charToGlyphMapPtr ? static_cast<jint>(charToGlyphMapPtr[i]) : 0);
+    }
+
+    SFAlbumGetCaretEdges(baseAlbum, nullptr, sizeByEm, caretEdgeValues);
+
+    env->ReleasePrimitiveArrayCritical(caretEdges, caretEdgesBuffer, 0);
+    env->ReleasePrimitiveArrayCritical(clusterMap, clusterMapBuffer, 0);
+    env->ReleasePrimitiveArrayCritical(glyphAdvances, glyphAdvancesBuffer, 0);
+    env->ReleasePrimitiveArrayCritical(glyphOffsets, glyphOffsetsBuffer, 0);
+    env->ReleasePrimitiveArrayCritical(glyphIds, glyphIdsBuffer, 0);
+}
+
 static JNINativeMethod JNI_METHODS[] = {
     { "nCreate", "()J", (void *)create },
     { "nDispose", "(J)V", (void *)dispose },
@@ -181,6 +228,7 @@ static JNINativeMethod JNI_METHODS[] = {
     { "nGetGlyphAdvancesPtr", "(J)J", (void *)getGlyphAdvancesPtr },
     { "nGetClusterMapPtr", "(J)J", (void *)getClusterMapPtr },
     { "nGetCaretEdges", "(J[Z[F)V", (void *)getCaretEdges },
+    { "nExportTo", "(J[I[F[F[I[F)V", (void *)exportTo },
 };
 
 jint register_com_mta_tehreer_sfnt_ShapingResult(JNIEnv *env)
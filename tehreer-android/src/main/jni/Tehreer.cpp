@@ -36,10 +36,12 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *jvm, void *reserved) {
     result = register_com_mta_tehreer_font_FontFile(env) == JNI_OK
           && register_com_mta_tehreer_graphics_Glyph(env) == JNI_OK
           && register_com_mta_tehreer_graphics_GlyphRasterizer(env) == JNI_OK
+          && register_com_mta_tehreer_graphics_PixelCompositor(env) == JNI_OK
           && register_com_mta_tehreer_graphics_Typeface(env) == JNI_OK
           && register_com_mta_tehreer_internal_Raw(env) == JNI_OK
           && register_com_mta_tehreer_sfnt_tables_SfntTables(env) == JNI_OK
           && register_com_mta_tehreer_sfnt_ShapingEngine(env) == JNI_OK
+          && register_com_mta_tehreer_sfnt_ShapingProfile(env) == JNI_OK
           && register_com_mta_tehreer_sfnt_ShapingResult(env) == JNI_OK
           && register_com_mta_tehreer_unicode_BidiAlgorithm(env) == JNI_OK
           && register_com_mta_tehreer_unicode_BidiBuffer(env) == JNI_OK
@@ -27,10 +27,12 @@
 #include "Glyph.h"
 #include "GlyphRasterizer.h"
 #include "Miscellaneous.h"
+#include "PixelCompositor.h"
 #include "Raw.h"
 #include "ScriptClassifier.h"
 #include "SfntTables.h"
 #include "ShapingEngine.h"
+#include "ShapingProfile.h"
 #include "ShapingResult.h"
 #include "Typeface.h"
 #include "Unicode.h"
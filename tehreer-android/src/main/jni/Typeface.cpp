@@ -37,6 +37,7 @@ extern "C" {
 #include <jni.h>
 #include <mutex>
 #include <string>
+#include <vector>
 
 #include "FontFile.h"
 #include "FreeType.h"
@@ -392,6 +393,42 @@ Typeface *Typeface::deriveVariation(FT_Fixed *coordArray, FT_UInt coordCount)
     return typeface;
 }
 
+FT_Face Typeface::createIsolatedFace()
+{
+    /*
+     * NOTE:
+     *      The faces opened on a stream share its read position, so they cannot be used on
+     *      separate threads.
+     */
+    if (!m_fontFile->isShareable()) {
+        return nullptr;
+    }
+
+    FT_Face ftFace = m_fontFile->createFace(m_ftFace->face_index, 0);
+    if (ftFace) {
+        FT_MM_Var *variation;
+
+        m_mutex.lock();
+
+        FT_Error error = FT_Get_MM_Var(m_ftFace, &variation);
+        if (error == FT_Err_Ok) {
+            FT_UInt numCoords = variation->num_axis;
+            FT_Fixed fixedCoords[numCoords];
+
+            // Apply the same instance to the new face.
+            if (FT_Get_Var_Design_Coordinates(m_ftFace, numCoords, fixedCoords) == FT_Err_Ok) {
+                FT_Set_Var_Design_Coordinates(ftFace, numCoords, fixedCoords);
+            }
+
+            FT_Done_MM_Var(FreeType::library(), variation);
+        }
+
+        m_mutex.unlock();
+    }
+
+    return ftFace;
+}
+
 FT_Stroker Typeface::ftStroker()
 {
     /*
@@ -468,58 +505,106 @@ FT_Fixed Typeface::getGlyphAdvance(FT_UInt glyphID, FT_F26Dot6 typeSize, bool ve
     return advance;
 }
 
-jobject Typeface::getGlyphPathNoLock(JavaBridge bridge, FT_UInt glyphID)
+jobject Typeface::getGlyphPathNoLock(JavaBridge bridge, FT_Face ftFace, FT_UInt glyphID)
 {
     jobject glyphPath = nullptr;
 
-    FT_Error error = FT_Load_Glyph(m_ftFace, glyphID, FT_LOAD_NO_BITMAP);
+    FT_Error error = FT_Load_Glyph(ftFace, glyphID, FT_LOAD_NO_BITMAP);
     if (error == FT_Err_Ok) {
+        /* The verbs must match the ones of GlyphPath. */
+        enum : jbyte {
+            MOVE_TO = 0,
+            LINE_TO = 1,
+            QUAD_TO = 2,
+            CUBIC_TO = 3,
+            CLOSE = 4,
+        };
+
         struct PathContext {
-            JavaBridge bridge;
-            jobject path;
+            vector<jbyte> verbs;
+            vector<jfloat> points;
+
+            void addVerb(jbyte verb) {
+                verbs.push_back(verb);
+            }
+
+            void addPoint(const FT_Vector *point) {
+                points.push_back(f26Dot6PosToFloat(point->x));
+                points.push_back(f26Dot6PosToFloat(point->y));
+            }
         };
 
         FT_Outline_Funcs funcs;
         funcs.move_to = [](const FT_Vector *to, void *user) -> int
         {
             PathContext *context = reinterpret_cast<PathContext *>(user);
-            context->bridge.Path_moveTo(context->path,
-                                        f26Dot6PosToFloat(to->x), f26Dot6PosToFloat(to->y));
+            /* The contours of an outline are implicitly closed. */
+            if (!context->verbs.empty()) {
+                context->addVerb(CLOSE);
+            }
+            context->addVerb(MOVE_TO);
+            context->addPoint(to);
             return 0;
         };
         funcs.line_to = [](const FT_Vector *to, void *user) -> int
         {
             PathContext *context = reinterpret_cast<PathContext *>(user);
-            context->bridge.Path_lineTo(context->path,
-                                        f26Dot6PosToFloat(to->x), f26Dot6PosToFloat(to->y));
+            context->addVerb(LINE_TO);
+            context->addPoint(to);
             return 0;
         };
         funcs.conic_to = [](const FT_Vector *control1, const FT_Vector *to, void *user) -> int
         {
             PathContext *context = reinterpret_cast<PathContext *>(user);
-            context->bridge.Path_quadTo(context->path,
-                                        f26Dot6PosToFloat(control1->x), f26Dot6PosToFloat(control1->y),
-                                        f26Dot6PosToFloat(to->x), f26Dot6PosToFloat(to->y));
+            context->addVerb(QUAD_TO);
+            context->addPoint(control1);
+            context->addPoint(to);
             return 0;
         };
         funcs.cubic_to = [](const FT_Vector *control1, const FT_Vector *control2, const FT_Vector *to, void *user) -> int
         {
             PathContext *context = reinterpret_cast<PathContext *>(user);
-            context->bridge.Path_cubicTo(context->path,
-                                         f26Dot6PosToFloat(control1->x), f26Dot6PosToFloat(control1->y),
-                                         f26Dot6PosToFloat(control2->x), f26Dot6PosToFloat(control2->y),
-                                         f26Dot6PosToFloat(to->x), f26Dot6PosToFloat(to->y));
+            context->addVerb(CUBIC_TO);
+            context->addPoint(control1);
+            context->addPoint(control2);
+            context->addPoint(to);
             return 0;
         };
         funcs.shift = 0;
         funcs.delta = 0;
 
-        PathContext context = { bridge, bridge.Path_construct() };
+        FT_Outline *outline = &ftFace->glyph->outline;
+        PathContext context;
+        context.verbs.reserve(static_cast<size_t>(outline->n_points + outline->n_contours));
+        context.points.reserve(static_cast<size_t>(outline->n_points) * 2);
 
-        FT_Outline *outline = &m_ftFace->glyph->outline;
         error = FT_Outline_Decompose(outline, &funcs, &context);
         if (error == FT_Err_Ok) {
-            glyphPath = context.path;
+            if (!context.verbs.empty()) {
+                context.addVerb(CLOSE);
+            }
+
+            /* Hand over the whole path at once instead of building it with an upcall per segment. */
+            JNIEnv *env = bridge.env();
+            jsize verbCount = static_cast<jsize>(context.verbs.size());
+            jsize valueCount = static_cast<jsize>(context.points.size());
+
+            jbyteArray verbArray = env->NewByteArray(verbCount);
+            jfloatArray pointArray = env->NewFloatArray(valueCount);
+
+            if (verbArray && pointArray) {
+                env->SetByteArrayRegion(verbArray, 0, verbCount, context.verbs.data());
+                env->SetFloatArrayRegion(pointArray, 0, valueCount, context.points.data());
+
+                glyphPath = bridge.GlyphPath_construct(verbArray, pointArray);
+            }
+
+            if (verbArray) {
+                env->DeleteLocalRef(verbArray);
+            }
+            if (pointArray) {
+                env->DeleteLocalRef(pointArray);
+            }
         }
     }
 
@@ -536,7 +621,7 @@ jobject Typeface::getGlyphPath(JavaBridge bridge, FT_UInt glyphID, FT_F26Dot6 ty
     FT_Set_Char_Size(m_ftFace, 0, typeSize, 0, 0);
     FT_Set_Transform(m_ftFace, matrix, delta);
 
-    glyphPath = getGlyphPathNoLock(bridge, glyphID);
+    glyphPath = getGlyphPathNoLock(bridge, m_ftFace, glyphID);
 
     m_mutex.unlock();
 
@@ -861,7 +946,7 @@ static JNINativeMethod JNI_METHODS[] = {
     { "nGetGlyphCount", "(J)I", (void *)getGlyphCount },
     { "nGetGlyphId", "(JI)I", (void *)getGlyphId },
     { "nGetGlyphAdvance", "(JIFZ)F", (void *)getGlyphAdvance },
-    { "nGetGlyphPath", "(JIF[F)Landroid/graphics/Path;", (void *)getGlyphPath },
+    { "nGetGlyphPath", "(JIF[F)Lcom/mta/tehreer/graphics/GlyphPath;", (void *)getGlyphPath },
     { "nGetBoundingBox", "(JLandroid/graphics/Rect;)V", (void *)getBoundingBox },
     { "nGetUnderlinePosition", "(J)I", (void *)getUnderlinePosition },
     { "nGetUnderlineThickness", "(J)I", (void *)getUnderlineThickness },
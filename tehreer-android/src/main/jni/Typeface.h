@@ -51,6 +51,7 @@ public:
     ~Typeface();
 
     Typeface *deriveVariation(FT_Fixed *coordArray, FT_UInt coordCount);
+    FT_Face createIsolatedFace();
 
     void lock() { m_mutex.lock(); };
     void unlock() { m_mutex.unlock(); }
@@ -87,7 +88,7 @@ public:
     FT_Fixed getGlyphAdvance(FT_UInt glyphID, bool vertical);
     FT_Fixed getGlyphAdvance(FT_UInt glyphID, FT_F26Dot6 typeSize, bool vertical);
 
-    jobject getGlyphPathNoLock(JavaBridge bridge, FT_UInt glyphID);
+    static jobject getGlyphPathNoLock(JavaBridge bridge, FT_Face ftFace, FT_UInt glyphID);
     jobject getGlyphPath(JavaBridge bridge, FT_UInt glyphID, FT_F26Dot6 typeSize, FT_Matrix *matrix, FT_Vector *delta);
 
 private:
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistanceFieldTest {
+    private static final int SIZE = 10;
+    private static final int SPREAD = 4;
+    private static final int FIELD_SIZE = SIZE + SPREAD * 2;
+
+    private static int valueAt(byte[] field, int x, int y) {
+        return field[y * FIELD_SIZE + x] & 0xFF;
+    }
+
+    private static byte[] squareField() {
+        byte[] mask = new byte[SIZE * SIZE];
+        Arrays.fill(mask, (byte) 0xFF);
+
+        return DistanceField.generate(mask, SIZE, SIZE, SPREAD);
+    }
+
+    @Test
+    public void testFieldIsPadded() {
+        byte[] field = squareField();
+
+        assertEquals(FIELD_SIZE * FIELD_SIZE, field.length);
+        assertEquals(0, valueAt(field, 0, 0));
+        assertEquals(255, valueAt(field, FIELD_SIZE / 2, FIELD_SIZE / 2));
+    }
+
+    @Test
+    public void testEdgeFallsAtMiddleValue() {
+        byte[] field = squareField();
+        int middle = FIELD_SIZE / 2;
+
+        // The pixels on either side of the left edge are half a step away from it.
+        int outside = valueAt(field, SPREAD - 1, middle);
+        int inside = valueAt(field, SPREAD, middle);
+
+        assertTrue(outside < 128);
+        assertTrue(inside >= 128);
+        assertEquals(255, outside + inside);
+    }
+
+    @Test
+    public void testValuesFallAwayFromEdge() {
+        byte[] field = squareField();
+        int middle = FIELD_SIZE / 2;
+
+        for (int x = 1; x <= middle; x++) {
+            assertTrue(valueAt(field, x, middle) >= valueAt(field, x - 1, middle));
+        }
+    }
+}
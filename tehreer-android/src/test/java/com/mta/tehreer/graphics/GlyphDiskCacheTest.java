@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphDiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GlyphDiskCache.Key key(int glyphId) {
+        return new GlyphDiskCache.Key(0x123456789L, 1024, 1024, 0, 0, glyphId);
+    }
+
+    private static GlyphDiskCache.Mask mask(int seed) {
+        byte[] pixels = new byte[seed * 2];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (seed + i);
+        }
+
+        return new GlyphDiskCache.Mask(seed, -seed, seed, 2, pixels);
+    }
+
+    private static void put(GlyphDiskCache cache, int glyphId) throws IOException {
+        cache.putAll(new GlyphDiskCache.Key[] { key(glyphId) },
+                     new GlyphDiskCache.Mask[] { mask(glyphId) }, 1);
+    }
+
+    private static void assertMask(GlyphDiskCache.Mask expected, GlyphDiskCache.Mask actual) {
+        assertNotNull(actual);
+        assertEquals(expected.left, actual.left);
+        assertEquals(expected.top, actual.top);
+        assertEquals(expected.width, actual.width);
+        assertEquals(expected.height, actual.height);
+        assertArrayEquals(expected.pixels, actual.pixels);
+    }
+
+    @Test
+    public void testMasksSurviveReopening() throws IOException {
+        File file = new File(folder.getRoot(), "masks");
+
+        GlyphDiskCache cache = new GlyphDiskCache(file, 1 << 20);
+        for (int i = 1; i <= 10; i++) {
+            put(cache, i);
+        }
+        cache.close();
+
+        cache = new GlyphDiskCache(file, 1 << 20);
+        assertEquals(10, cache.count());
+        for (int i = 1; i <= 10; i++) {
+            assertMask(mask(i), cache.get(key(i)));
+        }
+        assertNull(cache.get(key(11)));
+        assertNull(cache.get(new GlyphDiskCache.Key(0x123456789L, 1024, 1024, 0, 16, 1)));
+        cache.close();
+    }
+
+    @Test
+    public void testPartialRecordIsCutOff() throws IOException {
+        File file = new File(folder.getRoot(), "masks");
+
+        GlyphDiskCache cache = new GlyphDiskCache(file, 1 << 20);
+        put(cache, 1);
+        put(cache, 2);
+        int size = cache.size();
+        cache.close();
+
+        RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
+        accessFile.setLength(size - 3);
+        accessFile.close();
+
+        cache = new GlyphDiskCache(file, 1 << 20);
+        assertMask(mask(1), cache.get(key(1)));
+        assertNull(cache.get(key(2)));
+
+        put(cache, 3);
+        assertMask(mask(3), cache.get(key(3)));
+        cache.close();
+    }
+
+    @Test
+    public void testCompactionKeepsRecentMasks() throws IOException {
+        File file = new File(folder.getRoot(), "masks");
+        int maxSize = 4096;
+
+        GlyphDiskCache cache = new GlyphDiskCache(file, maxSize);
+        put(cache, 1);
+        for (int i = 2; i <= 60; i++) {
+            put(cache, i);
+            // Keep the first mask in use.
+            assertNotNull(cache.get(key(1)));
+        }
+
+        assertTrue(cache.size() <= maxSize);
+        assertMask(mask(1), cache.get(key(1)));
+        assertMask(mask(60), cache.get(key(60)));
+        assertNull(cache.get(key(2)));
+        cache.close();
+
+        cache = new GlyphDiskCache(file, maxSize);
+        assertMask(mask(1), cache.get(key(1)));
+        assertMask(mask(60), cache.get(key(60)));
+        cache.close();
+    }
+}
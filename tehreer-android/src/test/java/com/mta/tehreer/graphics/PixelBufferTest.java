@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PixelBufferTest {
+    private static final float DELTA = 0.0001f;
+
+    private static PixelBuffer createBuffer() {
+        return new PixelBuffer(ByteBuffer.allocateDirect(100 * 50 * 4), 100, 50, 400,
+                               PixelBuffer.Format.ARGB_8888);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapBufferIsRejected() {
+        new PixelBuffer(ByteBuffer.allocate(100), 10, 10, 10, PixelBuffer.Format.ALPHA_8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSmallBufferIsRejected() {
+        new PixelBuffer(ByteBuffer.allocateDirect(99), 10, 10, 10, PixelBuffer.Format.ALPHA_8);
+    }
+
+    @Test
+    public void testClipIsTranslatedAndRoundedOutwards() {
+        PixelBuffer buffer = createBuffer();
+        buffer.translate(10.0f, 5.0f);
+        buffer.clipRect(0.5f, Float.NEGATIVE_INFINITY, 20.5f, Float.POSITIVE_INFINITY);
+
+        assertEquals(10, buffer.getClipLeft());
+        assertEquals(0, buffer.getClipTop());
+        assertEquals(31, buffer.getClipRight());
+        assertEquals(50, buffer.getClipBottom());
+    }
+
+    @Test
+    public void testRestoreBringsBackState() {
+        PixelBuffer buffer = createBuffer();
+        int saveCount = buffer.save();
+
+        buffer.translate(3.0f, 4.0f);
+        buffer.clipRect(200.0f, 0.0f, 300.0f, 10.0f);
+        assertTrue(buffer.isClipEmpty());
+
+        buffer.restoreToCount(saveCount);
+
+        assertEquals(0.0f, buffer.getTranslateX(), DELTA);
+        assertEquals(0.0f, buffer.getTranslateY(), DELTA);
+        assertEquals(0, buffer.getClipLeft());
+        assertEquals(100, buffer.getClipRight());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.graphics;
+
+import com.mta.tehreer.collections.FloatList;
+import com.mta.tehreer.collections.PointList;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class RendererBoundsTest {
+    private static final float DELTA = 0.0001f;
+
+    // Control boxes as left, bottom, right and top edges with the y-axis pointing upwards.
+    private static final float[] BOUNDS = {
+        1.0f, -2.0f, 9.0f, 12.0f,
+        0.0f, 0.0f, 0.0f, 0.0f,
+        2.0f, 0.0f, 6.0f, 8.0f,
+    };
+
+    private static float[] union(float[] bounds, PointList offsets, FloatList advances,
+                                 boolean reverseMode) {
+        float[] result = new float[4];
+        Renderer.unionGlyphBounds(bounds, offsets, advances, advances.size(), reverseMode, result);
+
+        return result;
+    }
+
+    @Test
+    public void testUnionCoversAllGlyphs() {
+        PointList offsets = PointList.of(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f);
+        FloatList advances = FloatList.of(10.0f, 4.0f, 10.0f);
+
+        float[] result = union(BOUNDS, offsets, advances, false);
+
+        // The last glyph starts at 14 and ends at 20.
+        assertArrayEquals(new float[] { 1.0f, -12.0f, 20.0f, 2.0f }, result, DELTA);
+    }
+
+    @Test
+    public void testOffsetsMoveGlyphs() {
+        PointList offsets = PointList.of(0.0f, 0.0f, 0.0f, 0.0f, 3.0f, 5.0f);
+        FloatList advances = FloatList.of(10.0f, 4.0f, 10.0f);
+
+        float[] result = union(BOUNDS, offsets, advances, false);
+
+        // A positive y-offset raises the glyph, which is drawn at a smaller canvas y.
+        assertArrayEquals(new float[] { 1.0f, -13.0f, 23.0f, 2.0f }, result, DELTA);
+    }
+
+    @Test
+    public void testReverseModeAdvancesToLeft() {
+        PointList offsets = PointList.of(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f);
+        FloatList advances = FloatList.of(10.0f, 4.0f, 10.0f);
+
+        float[] result = union(BOUNDS, offsets, advances, true);
+
+        assertArrayEquals(new float[] { -22.0f, -12.0f, -1.0f, 2.0f }, result, DELTA);
+    }
+
+    @Test
+    public void testEmptyGlyphsGiveEmptyBox() {
+        PointList offsets = PointList.of(0.0f, 0.0f);
+        FloatList advances = FloatList.of(10.0f);
+
+        float[] result = union(new float[4], offsets, advances, false);
+
+        assertArrayEquals(new float[4], result, DELTA);
+    }
+}
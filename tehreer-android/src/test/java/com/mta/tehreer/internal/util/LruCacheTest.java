@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2019 Muhammad Tayyab Akram
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mta.tehreer.internal.util;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LruCacheTest {
+    private static class TestCache extends LruCache {
+        TestCache(int capacity) {
+            super(capacity);
+        }
+    }
+
+    private static class TestSegment extends LruCache.Segment<Integer, String> {
+        TestSegment(LruCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected int sizeOf(Integer key, String value) {
+            return value.length();
+        }
+    }
+
+    private static class RecordingSegment extends TestSegment {
+        final List<Integer> evictedKeys = new ArrayList<>();
+
+        RecordingSegment(LruCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected void onEntryEvicted(Integer key, String value) {
+            evictedKeys.add(key);
+        }
+    }
+
+    @Test
+    public void testPutAndGet() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        segment.put(1, "one");
+        segment.put(2, "two");
+
+        assertEquals("one", segment.get(1));
+        assertEquals("two", segment.get(2));
+        assertNull(segment.get(3));
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void testPutReplacesValue() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        segment.put(1, "one");
+        segment.put(1, "three");
+
+        assertEquals("three", segment.get(1));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        String first = "first";
+        String second = "second";
+
+        assertSame(first, segment.putIfAbsent(1, first));
+        assertSame(first, segment.putIfAbsent(1, second));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        segment.put(1, "one");
+        segment.put(2, "two");
+        segment.remove(1);
+
+        assertNull(segment.get(1));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testRemoveMatchingValue() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        String value = "one";
+        segment.put(1, value);
+        segment.remove(1, new String("one"));
+
+        assertSame(value, segment.get(1));
+
+        segment.remove(1, value);
+
+        assertNull(segment.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictionNotifiesSegment() {
+        TestCache cache = new TestCache(2);
+        RecordingSegment segment = new RecordingSegment(cache);
+
+        segment.put(1, "a");
+        segment.put(2, "b");
+        segment.remove(2);
+        segment.put(3, "c");
+        segment.put(4, "d");
+
+        assertEquals(1, segment.evictedKeys.size());
+        assertEquals(Integer.valueOf(1), segment.evictedKeys.get(0));
+    }
+
+    @Test
+    public void testSegmentCounters() {
+        TestCache cache = new TestCache(6);
+        TestSegment first = new TestSegment(cache);
+        TestSegment second = new TestSegment(cache);
+
+        first.put(1, "aa");
+        first.put(2, "bbb");
+        second.put(1, "c");
+        first.put(2, "b");
+        second.remove(1);
+
+        assertEquals(3, first.size());
+        assertEquals(2, first.count());
+        assertEquals(0, second.size());
+        assertEquals(0, second.count());
+        assertEquals(2, cache.count());
+
+        second.put(2, "dddd");
+
+        assertEquals(1, first.evictionCount());
+        assertEquals(2, first.evictedSize());
+        assertEquals(1, first.count());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.evictedSize());
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testSegmentQuota() {
+        TestCache cache = new TestCache(100);
+        TestSegment bounded = new TestSegment(cache) {
+            @Override
+            protected int quota() {
+                return 4;
+            }
+        };
+        TestSegment unbounded = new TestSegment(cache);
+
+        bounded.put(1, "aa");
+        bounded.put(2, "bb");
+        unbounded.put(1, "cccc");
+        bounded.get(2);
+        bounded.put(3, "dd");
+
+        assertNull(bounded.get(1));
+        assertEquals("bb", bounded.get(2));
+        assertEquals("dd", bounded.get(3));
+        assertEquals(4, bounded.size());
+        assertEquals("cccc", unbounded.get(1));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    public void testTrimSegment() {
+        TestCache cache = new TestCache(100);
+        RecordingSegment first = new RecordingSegment(cache);
+        TestSegment second = new TestSegment(cache);
+
+        first.put(1, "a");
+        first.put(2, "b");
+        second.put(1, "c");
+        first.trimToSize(0);
+
+        assertEquals(0, first.size());
+        assertEquals(2, first.evictedKeys.size());
+        assertEquals("c", second.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testTrimSegmentReleasesEvictedValues() throws Exception {
+        TestCache cache = new TestCache(1000);
+        TestSegment segment = new TestSegment(cache);
+        WeakReference<String> evicted = new WeakReference<>(new String("evicted"));
+
+        segment.put(0, evicted.get());
+        for (int i = 1; i < 32; i++) {
+            segment.put(i, "value");
+        }
+        segment.trimToSize(0);
+
+        // The cache never exceeded its capacity, so the clock hand did not move.
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.clockLength());
+
+        for (int i = 0; i < 10 && evicted.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(evicted.get());
+    }
+
+    @Test
+    public void testRemovedNodesArePurgedFromClock() {
+        TestCache cache = new TestCache(1000);
+        TestSegment segment = new TestSegment(cache);
+
+        for (int i = 0; i < 100; i++) {
+            segment.put(i, "value");
+            segment.remove(i);
+        }
+
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.clockLength());
+    }
+
+    @Test
+    public void testSegmentsShareCapacity() {
+        TestCache cache = new TestCache(6);
+        TestSegment first = new TestSegment(cache);
+        TestSegment second = new TestSegment(cache);
+
+        first.put(1, "aa");
+        second.put(1, "bb");
+        first.put(2, "cc");
+        second.put(2, "dd");
+
+        assertEquals(6, cache.size());
+        assertNull(first.get(1));
+        assertEquals("bb", second.get(1));
+    }
+
+    @Test
+    public void testReferencedEntriesGetSecondChance() {
+        TestCache cache = new TestCache(3);
+        TestSegment segment = new TestSegment(cache);
+
+        segment.put(1, "a");
+        segment.put(2, "b");
+        segment.put(3, "c");
+        segment.get(1);
+        segment.put(4, "d");
+
+        assertEquals("a", segment.get(1));
+        assertNull(segment.get(2));
+        assertEquals("c", segment.get(3));
+        assertEquals("d", segment.get(4));
+    }
+
+    @Test
+    public void testEvictionTerminatesWhenAllReferenced() {
+        TestCache cache = new TestCache(4);
+        TestSegment segment = new TestSegment(cache);
+
+        for (int i = 0; i < 4; i++) {
+            segment.put(i, "x");
+            segment.get(i);
+        }
+        segment.put(4, "xx");
+
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testTrimToSize() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        for (int i = 0; i < 10; i++) {
+            segment.put(i, "abcde");
+        }
+        cache.trimToSize(20);
+
+        assertEquals(20, cache.size());
+    }
+
+    @Test
+    public void testClear() {
+        TestCache cache = new TestCache(100);
+        TestSegment segment = new TestSegment(cache);
+
+        segment.put(1, "one");
+        segment.put(2, "two");
+        cache.clear();
+
+        assertNull(segment.get(1));
+        assertNull(segment.get(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentAccessRespectsCapacity() throws Exception {
+        final TestCache cache = new TestCache(512);
+        final int threadCount = 8;
+        final int iterations = 20000;
+
+        final List<TestSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            segments.add(new TestSegment(cache));
+        }
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int seed = t;
+
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+
+                        for (int i = 0; i < iterations; i++) {
+                            TestSegment segment = segments.get((i + seed) % segments.size());
+                            int key = (i * 31 + seed) % 400;
+
+                            if (segment.get(key) == null) {
+                                segment.putIfAbsent(key, "value");
+                            }
+                            if (i % 7 == 0) {
+                                segment.remove(key);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        assertTrue(cache.size() >= 0);
+        assertTrue(cache.size() <= cache.capacity());
+    }
+}